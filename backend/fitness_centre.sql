@@ -12,6 +12,9 @@
  File Encoding         : 65001
 
  Date: 09/03/2025 00:12:33
+
+ This dump only covers the `user` table. Schema changes made since then
+ live in migrations/ and must be applied on top, in version order.
 */
 
 SET NAMES utf8mb4;
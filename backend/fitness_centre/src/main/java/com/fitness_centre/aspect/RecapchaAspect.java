@@ -3,22 +3,16 @@ package com.fitness_centre.aspect;
 import com.fitness_centre.annotation.RequireRecaptcha;
 import com.fitness_centre.constant.ErrorCode;
 import com.fitness_centre.exception.AuthException;
+import com.fitness_centre.utils.RecaptchaValidator;
 import jakarta.servlet.http.HttpServletRequest;
 import org.aspectj.lang.ProceedingJoinPoint;
 import org.aspectj.lang.annotation.Around;
 import org.aspectj.lang.annotation.Aspect;
-import org.springframework.beans.factory.annotation.Value;
-import org.springframework.http.HttpEntity;
-import org.springframework.http.HttpHeaders;
-import org.springframework.http.MediaType;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
-import org.springframework.web.client.RestTemplate;
 import org.springframework.web.context.request.RequestContextHolder;
 import org.springframework.web.context.request.ServletRequestAttributes;
 
-import java.util.HashMap;
-import java.util.Map;
-
 /**
  * @author
  * @Classname RecapchaAspect
@@ -28,17 +22,8 @@ import java.util.Map;
 @Aspect
 @Component
 public class RecapchaAspect {
-    @Value("${recaptcha.secretKey}")
-    private String secretKey;
-
-    @Value("${recaptcha.API_KEY}")
-    private String API_KEY;
-
-    private final RestTemplate restTemplate = new RestTemplate();
-
-    /*
-        threshold:Confidence
-     */
+    @Autowired
+    private RecaptchaValidator recaptchaValidator;
 
     @Around("@annotation(requireRecaptcha)")
     public Object validateRecaptcha(
@@ -66,74 +51,6 @@ public class RecapchaAspect {
     }
 
     public boolean verify(String recaptchaToken,double threshold,String expectedAction){
-        if(recaptchaToken == null || recaptchaToken.isEmpty()){
-            return false;
-        }
-
-        String verifyUrl = "https://recaptchaenterprise.googleapis.com/v1/projects/"
-                + "my-project-4899-1741522706419"
-                + "/assessments?key=" + API_KEY ;
-
-
-        Map<String, Object> requestBody = new HashMap<>();
-        Map<String, String> eventMap = new HashMap<>();
-
-        eventMap.put("token",recaptchaToken);
-        eventMap.put("expectedAction",expectedAction);
-        eventMap.put("siteKey",secretKey);
-
-        requestBody.put("event",eventMap);
-
-        HttpHeaders headers = new HttpHeaders();
-        headers.setContentType(MediaType.APPLICATION_JSON);
-
-        HttpEntity<Map<String,Object>> httpEntity = new HttpEntity<>(requestBody,headers);
-
-        Map<?,?> responseBody;
-
-        try{
-            responseBody = restTemplate.postForObject(verifyUrl,httpEntity,Map.class);
-        }
-        catch (Exception ex){
-            return false;
-        }
-
-
-        if(responseBody == null){
-            return false;
-        }
-
-        // get tokenProperties from responseBody
-        Map<String, Object> tokenProperties = (Map<String, Object>) responseBody.get("tokenProperties");
-        if (tokenProperties == null) {
-            return false;
-        }
-
-        Boolean valid = (Boolean) tokenProperties.get("valid");
-        String action = (String) tokenProperties.get("action");
-
-        // get riskAnalysis
-        Map<String, Object> riskAnalysis = (Map<String, Object>) responseBody.get("riskAnalysis");
-        if (riskAnalysis == null) {
-            return false;
-        }
-
-        Object rawScore =  riskAnalysis.get("score");
-
-        if (valid == null || !valid) {
-            // token  invalidReason
-            return false;
-        }
-        if (rawScore instanceof Number) {
-            Number numScore = (Number) rawScore;
-            double score = numScore.doubleValue();
-            if(score < threshold){
-                return false;
-            }
-        }
-        if (expectedAction != null && !expectedAction.equals(action)) {
-            return false;
-        }
-        return true;
+        return recaptchaValidator.verify(recaptchaToken, threshold, expectedAction);
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,54 @@
+package com.fitness_centre.config;
+
+import com.fitness_centre.service.infrastructure.BlobStore;
+import com.fitness_centre.service.infrastructure.LocalBlobStore;
+import com.fitness_centre.service.infrastructure.S3BlobStore;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.util.Map;
+
+/**
+ * @author
+ * @Classname BlobStoreConfig
+ * @Description Chooses where uploaded photos are stored: upload.store=local (default) or s3
+ * @date 19/10/2026
+ */
+@Configuration
+public class BlobStoreConfig {
+
+    @Bean
+    @ConditionalOnProperty(name = "upload.store", havingValue = "local", matchIfMissing = true)
+    public BlobStore localBlobStore(@Value("${upload.temp-path}") String tempPath,
+                                    @Value("${upload.formal-path}") String formalPath) {
+        return new LocalBlobStore(Map.of("temp", Paths.get(tempPath), "formal", Paths.get(formalPath)));
+    }
+
+    /**
+     * Any S3-compatible endpoint (AWS, MinIO) with path-style addressing; temp/ and formal/ become key prefixes in one bucket.
+     * The request timeout bounds how long a stalled S3 can hold a file-serving request thread or a rendition worker.
+     */
+    @Bean
+    @ConditionalOnProperty(name = "upload.store", havingValue = "s3")
+    public BlobStore s3BlobStore(@Value("${upload.s3.endpoint}") String endpoint,
+                                 @Value("${upload.s3.bucket}") String bucket,
+                                 @Value("${upload.s3.region:us-east-1}") String region,
+                                 @Value("${upload.s3.access-key}") String accessKey,
+                                 @Value("${upload.s3.secret-key}") String secretKey,
+                                 @Value("${upload.s3.part-size:" + S3BlobStore.MIN_PART_SIZE + "}") int partSize,
+                                 @Value("${upload.s3.connect-timeout-ms:2000}") long connectTimeoutMs,
+                                 @Value("${upload.s3.request-timeout-ms:30000}") long requestTimeoutMs) {
+        HttpClient httpClient = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_1_1)
+                .connectTimeout(Duration.ofMillis(connectTimeoutMs))
+                .build();
+        return new S3BlobStore(URI.create(endpoint), bucket, region, accessKey, secretKey,
+                Math.max(partSize, S3BlobStore.MIN_PART_SIZE), httpClient, Duration.ofMillis(requestTimeoutMs));
+    }
+}
@@ -0,0 +1,41 @@
+package com.fitness_centre.config;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.http.client.JdkClientHttpRequestFactory;
+import org.springframework.web.client.RestTemplate;
+
+import java.net.http.HttpClient;
+import java.time.Duration;
+
+/**
+ * @author
+ * @Classname RecaptchaConfig
+ * @Description HTTP client shared by every reCAPTCHA verification
+ * @date 19/10/2026
+ */
+@Configuration
+public class RecaptchaConfig {
+
+    /**
+     * One JDK HttpClient keeps its connections alive between assessments, so a login no longer pays
+     * for a fresh TCP + TLS handshake. Both timeouts bound how long a slow Google endpoint can hold a request thread.
+     */
+    @Bean("recaptchaRestTemplate")
+    public RestTemplate recaptchaRestTemplate(
+            @Value("${recaptcha.connect-timeout-ms:2000}") long connectTimeoutMs,
+            @Value("${recaptcha.read-timeout-ms:3000}") long readTimeoutMs) {
+        return buildRestTemplate(Duration.ofMillis(connectTimeoutMs), Duration.ofMillis(readTimeoutMs));
+    }
+
+    public static RestTemplate buildRestTemplate(Duration connectTimeout, Duration readTimeout) {
+        HttpClient httpClient = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_1_1)
+                .connectTimeout(connectTimeout)
+                .build();
+        JdkClientHttpRequestFactory requestFactory = new JdkClientHttpRequestFactory(httpClient);
+        requestFactory.setReadTimeout(readTimeout);
+        return new RestTemplate(requestFactory);
+    }
+}
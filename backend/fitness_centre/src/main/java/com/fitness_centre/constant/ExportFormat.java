@@ -0,0 +1,42 @@
+package com.fitness_centre.constant;
+
+import com.fitness_centre.exception.BusinessException;
+
+/**
+ * @author
+ * @Classname ExportFormat
+ * @Description File formats offered by the export endpoints
+ * @date 19/10/2026
+ */
+public enum ExportFormat {
+    //表格软件直接打开
+    CSV("csv","text/csv;charset=UTF-8"),
+
+    //每行一个 JSON 对象, 方便程序逐行读取
+    NDJSON("ndjson","application/x-ndjson;charset=UTF-8");
+
+    private final String extension;
+    private final String contentType;
+
+    ExportFormat(String extension,String contentType){
+        this.extension = extension;
+        this.contentType = contentType;
+    }
+
+    public String getExtension(){
+        return this.extension;
+    }
+
+    public String getContentType(){
+        return this.contentType;
+    }
+
+    public static ExportFormat of(String format){
+        for(ExportFormat exportFormat : values()){
+            if(exportFormat.extension.equalsIgnoreCase(format)){
+                return exportFormat;
+            }
+        }
+        throw new BusinessException(ErrorCode.INVALID_PARAMETER.getCode(),"Unknown export format: " + format);
+    }
+}
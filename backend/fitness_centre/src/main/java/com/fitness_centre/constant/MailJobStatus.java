@@ -0,0 +1,35 @@
+package com.fitness_centre.constant;
+
+/**
+ * @author
+ * @Classname MailJobStatus
+ * @Description Lifecycle of a mail in the outbox
+ * @date 19/10/2026
+ */
+public enum MailJobStatus {
+    //等待发送(包括等待重试)
+    PENDING("pending","Pending"),
+
+    SENDING("sending","Sending"),
+
+    SENT("sent","Sent"),
+
+    //重试次数用完
+    FAILED("failed","Failed");
+
+    private final String status;
+    private final String desc;
+
+    MailJobStatus(String status,String desc){
+        this.status = status;
+        this.desc = desc;
+    }
+
+    public String getStatus(){
+        return this.status;
+    }
+
+    public String getDesc(){
+        return this.desc;
+    }
+}
@@ -0,0 +1,56 @@
+package com.fitness_centre.constant;
+
+/**
+ * @author
+ * @Classname PhotoRendition
+ * @Description Sizes produced for every uploaded coach photo, stored side by side in one directory per coach
+ * @date 19/10/2026
+ */
+public enum PhotoRendition {
+    //列表里的小头像
+    THUMB("thumb",160),
+
+    //教练卡片
+    CARD("card",480),
+
+    //详情页, coach_info.photo 存的就是这一张的地址
+    FULL("full",1600);
+
+    private final String name;
+
+    //长边最大像素
+    private final int maxSide;
+
+    PhotoRendition(String name,int maxSide){
+        this.name = name;
+        this.maxSide = maxSide;
+    }
+
+    public String getName(){
+        return this.name;
+    }
+
+    public int getMaxSide(){
+        return this.maxSide;
+    }
+
+    public String fileName(String extension){
+        return this.name + "." + extension;
+    }
+
+    /**
+     * Url of this rendition in the same set as {@code photoUrl}.
+     * Photos that are not part of a rendition set (the default photo, old uploads) are returned unchanged.
+     */
+    public String urlOf(String photoUrl){
+        if(photoUrl == null){
+            return null;
+        }
+        String prefix = "/" + FULL.name + ".";
+        int index = photoUrl.lastIndexOf(prefix);
+        if(index < 0 || photoUrl.indexOf('/', index + 1) >= 0){
+            return photoUrl;
+        }
+        return photoUrl.substring(0, index + 1) + this.name + photoUrl.substring(index + prefix.length() - 1);
+    }
+}
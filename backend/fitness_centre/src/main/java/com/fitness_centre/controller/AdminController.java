@@ -1,14 +1,22 @@
 package com.fitness_centre.controller;
 
 import com.baomidou.mybatisplus.extension.plugins.pagination.Page;
+import com.fitness_centre.constant.ErrorCode;
+import com.fitness_centre.constant.ExportFormat;
 import com.fitness_centre.domain.User;
 import com.fitness_centre.dto.GeneralResponseResult;
 import com.fitness_centre.dto.admin.UserListQueryRequest;
+import com.fitness_centre.exception.BusinessException;
 import com.fitness_centre.service.biz.impl.UserServiceImpl;
+import com.fitness_centre.service.infrastructure.DataExporter;
+import com.fitness_centre.service.infrastructure.MailOutbox;
+import com.fitness_centre.utils.RecaptchaValidator;
+import jakarta.servlet.http.HttpServletResponse;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.*;
 
+import java.io.IOException;
 import java.util.List;
 import java.util.Map;
 
@@ -24,6 +32,15 @@ public class AdminController {
     @Autowired
     private UserServiceImpl userService;
 
+    @Autowired
+    private MailOutbox mailOutbox;
+
+    @Autowired
+    private DataExporter dataExporter;
+
+    @Autowired
+    private RecaptchaValidator recaptchaValidator;
+
     @PreAuthorize("hasRole(T(com.fitness_centre.constant.UserRole).ADMIN.getRole())")
     @GetMapping("/list")
     public Page<User> userList(@ModelAttribute UserListQueryRequest queryRequest){
@@ -49,4 +66,42 @@ public class AdminController {
         Integer status = (Integer) requestBody.get("status");
         return userService.updateStatus(id,status);
     }
-}
\ No newline at end of file
+
+    //不带 memberId 时导出全部会员
+    @GetMapping("/export/history")
+    @PreAuthorize("hasRole(T(com.fitness_centre.constant.UserRole).ADMIN.getRole())")
+    public void exportTrainingHistory(@RequestParam(required = false) Long memberId,
+                                      @RequestParam(defaultValue = "csv") String format,
+                                      HttpServletResponse response) throws IOException {
+        ExportFormat exportFormat = ExportFormat.of(format);
+        DataExporter.prepare(response, exportFormat, "training-history");
+        dataExporter.exportTrainingHistory(memberId, exportFormat, response.getOutputStream());
+    }
+
+    @GetMapping("/export/bookings")
+    @PreAuthorize("hasRole(T(com.fitness_centre.constant.UserRole).ADMIN.getRole())")
+    public void exportBookings(@RequestParam(required = false) Long memberId,
+                               @RequestParam(defaultValue = "csv") String format,
+                               HttpServletResponse response) throws IOException {
+        ExportFormat exportFormat = ExportFormat.of(format);
+        DataExporter.prepare(response, exportFormat, "bookings");
+        dataExporter.exportBookings(memberId, exportFormat, response.getOutputStream());
+    }
+
+    @GetMapping("/mail/{jobId}")
+    @PreAuthorize("hasRole(T(com.fitness_centre.constant.UserRole).ADMIN.getRole())")
+    public GeneralResponseResult mailJobStatus(@PathVariable String jobId){
+        Map<String, Object> status = mailOutbox.getJobStatus(jobId);
+        if(status == null){
+            throw new BusinessException(ErrorCode.INVALID_PARAMETER.getCode(),"Mail job not found");
+        }
+        return new GeneralResponseResult(ErrorCode.SUCCESS,status);
+    }
+
+    //reCAPTCHA 调用次数, 失败, 熔断拒绝, 延迟和熔断器状态
+    @GetMapping("/recaptcha/metrics")
+    @PreAuthorize("hasRole(T(com.fitness_centre.constant.UserRole).ADMIN.getRole())")
+    public GeneralResponseResult recaptchaMetrics(){
+        return new GeneralResponseResult(ErrorCode.SUCCESS,recaptchaValidator.getMetrics());
+    }
+}
@@ -13,8 +13,12 @@ import com.fitness_centre.dto.GeneralResponseResult;
 import com.fitness_centre.dto.subscription.SubscriptionListResponse;
 import com.fitness_centre.security.LoginUser;
 import com.fitness_centre.service.biz.interfaces.*;
+import com.fitness_centre.service.infrastructure.ReferenceData;
+import com.fitness_centre.service.infrastructure.UnreadCounters;
 import org.ietf.jgss.GSSName;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.security.core.Authentication;
 import org.springframework.web.bind.annotation.*;
@@ -49,7 +53,10 @@ public class CoachController {
     private TrainingHistoryService trainingHistoryService;
 
     @Autowired
-    private TagService tagService;
+    private ReferenceData referenceData;
+
+    @Autowired
+    private UnreadCounters unreadCounters;
 
     //Upload file
     @PreAuthorize("hasRole(T(com.fitness_centre.constant.UserRole).COACH.getRole())")
@@ -221,6 +228,15 @@ public class CoachController {
         return trainingHistoryService.addTrainingHistory(userId,sessionId,feedback,tagList);
     }
 
+    //一次补录多节已结束的课, 全部成功或全部不记录
+    @PreAuthorize("hasRole(T(com.fitness_centre.constant.UserRole).COACH.getRole())")
+    @PostMapping("/training/history/batch")
+    public GeneralResponseResult addSessionHistories(Authentication authentication, @RequestBody List<AddHistoryRequest> requests){
+        LoginUser loginUser = (LoginUser) authentication.getPrincipal();
+        Long userId = loginUser.getId();
+        return trainingHistoryService.addTrainingHistories(userId,requests);
+    }
+
     @PreAuthorize("hasRole(T(com.fitness_centre.constant.UserRole).COACH.getRole())")
     @GetMapping("/session/unrecord")
     public GeneralResponseResult getUnRecordSession(Authentication authentication,
@@ -231,6 +247,15 @@ public class CoachController {
         return sessionBookingService.coachGetUnRecordSession(userId,pageNow,pageSize);
     }
 
+    //仪表盘上的所有未读数一次取回
+    @PreAuthorize("hasRole(T(com.fitness_centre.constant.UserRole).COACH.getRole())")
+    @GetMapping("/unread/count")
+    public GeneralResponseResult countUnread(Authentication authentication){
+        LoginUser loginUser = (LoginUser) authentication.getPrincipal();
+        Long userId = loginUser.getId();
+        return new GeneralResponseResult(ErrorCode.SUCCESS,unreadCounters.counts(userId,UserRole.COACH));
+    }
+
     @PreAuthorize("hasRole(T(com.fitness_centre.constant.UserRole).COACH.getRole())")
     @GetMapping("/session/unrecord/count")
     public GeneralResponseResult countUnRecordsession(Authentication authentication){
@@ -241,7 +266,7 @@ public class CoachController {
 
     @PreAuthorize("hasRole(T(com.fitness_centre.constant.UserRole).COACH.getRole())")
     @GetMapping("/tags")
-    public GeneralResponseResult getAllTags(){
-        return new GeneralResponseResult(ErrorCode.SUCCESS,tagService.getAllTags());
+    public ResponseEntity<GeneralResponseResult> getAllTags(@RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch){
+        return ReferenceData.respond(ifNoneMatch, referenceData.current(), ReferenceData.Snapshot::getTags);
     }
 }
\ No newline at end of file
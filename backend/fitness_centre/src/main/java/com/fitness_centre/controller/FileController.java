@@ -0,0 +1,40 @@
+package com.fitness_centre.controller;
+
+import com.fitness_centre.service.infrastructure.FileSender;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Controller;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.util.UriUtils;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * @author
+ * @Classname FileController
+ * @Description Serves uploaded photos from the temp and formal areas of the blob store
+ * @date 19/10/2026
+ */
+@Controller
+public class FileController {
+    @Autowired
+    private FileSender fileSender;
+
+    @GetMapping("/temp/**")
+    public void tempFile(HttpServletRequest request, HttpServletResponse response) throws IOException {
+        fileSender.send(keyOf("/temp", request), request, response);
+    }
+
+    @GetMapping("/formal/**")
+    public void formalFile(HttpServletRequest request, HttpServletResponse response) throws IOException {
+        fileSender.send(keyOf("/formal", request), request, response);
+    }
+
+    //请求路径 /temp/42/... 对应存储里的 temp/42/...
+    private String keyOf(String prefix, HttpServletRequest request) {
+        String path = request.getRequestURI().substring(request.getContextPath().length() + prefix.length());
+        return prefix.substring(1) + UriUtils.decode(path, StandardCharsets.UTF_8);
+    }
+}
@@ -2,9 +2,12 @@ package com.fitness_centre.controller;
 
 import com.baomidou.mybatisplus.core.metadata.IPage;
 import com.fitness_centre.constant.ErrorCode;
+import com.fitness_centre.constant.ExportFormat;
 import com.fitness_centre.constant.RequestStatus;
 import com.fitness_centre.constant.UserRole;
 import com.fitness_centre.dto.GeneralResponseResult;
+import com.fitness_centre.dto.HistorySearchRequest;
+import com.fitness_centre.dto.RateHistoryRequest;
 import com.fitness_centre.dto.subscription.SubscriptionListResponse;
 import com.fitness_centre.dto.member.BookingRequest;
 import com.fitness_centre.dto.member.CoachDetailsResponse;
@@ -12,12 +15,19 @@ import com.fitness_centre.dto.member.CoachQueryRequest;
 import com.fitness_centre.dto.subscription.SubscriptionRequest;
 import com.fitness_centre.security.LoginUser;
 import com.fitness_centre.service.biz.interfaces.*;
+import com.fitness_centre.service.infrastructure.DataExporter;
+import com.fitness_centre.service.infrastructure.ReferenceData;
+import com.fitness_centre.service.infrastructure.UnreadCounters;
+import jakarta.servlet.http.HttpServletResponse;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.security.core.Authentication;
 import org.springframework.web.bind.annotation.*;
 
+import java.io.IOException;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.util.HashMap;
@@ -37,19 +47,22 @@ public class MemberController {
     private CoachService coachService;
 
     @Autowired
-    private TagService tagService;
+    private SubscriptionService subscriptionService;
 
     @Autowired
-    private LocationService locationService;
+    private SessionBookingService sessionBookingService;
 
     @Autowired
-    private SubscriptionService subscriptionService;
+    private TrainingHistoryService trainingHistoryService;
 
     @Autowired
-    private SessionBookingService sessionBookingService;
+    private ReferenceData referenceData;
 
     @Autowired
-    private TrainingHistoryService trainingHistoryService;
+    private UnreadCounters unreadCounters;
+
+    @Autowired
+    private DataExporter dataExporter;
 
     @PreAuthorize("hasRole(T(com.fitness_centre.constant.UserRole).MEMBER.getRole())")
     @GetMapping("/coachList")
@@ -59,13 +72,27 @@ public class MemberController {
         return coachService.coachList(userId,request);
     }
 
+    @PreAuthorize("hasRole(T(com.fitness_centre.constant.UserRole).MEMBER.getRole())")
+    @GetMapping("/coach/suggest")
+    GeneralResponseResult coachSuggest(@RequestParam("q") String q, @RequestParam(value = "limit", defaultValue = "8") int limit){
+        return coachService.coachSuggest(q,limit);
+    }
+
+    @PreAuthorize("hasRole(T(com.fitness_centre.constant.UserRole).MEMBER.getRole())")
+    @GetMapping("/coach/popular")
+    GeneralResponseResult coachPopular(@RequestParam(value = "limit", defaultValue = "10") int limit){
+        return coachService.popularCoaches(limit);
+    }
+
     @PreAuthorize("hasRole(T(com.fitness_centre.constant.UserRole).MEMBER.getRole())")
     @GetMapping("/coach/filter")
-    GeneralResponseResult coachFiler(){
-        Map<String,Map> map = new HashMap<>();
-        map.put("tags",tagService.getAllTags());
-        map.put("locations",locationService.getAllLocations());
-        return new GeneralResponseResult(ErrorCode.SUCCESS,map);
+    ResponseEntity<GeneralResponseResult> coachFiler(@RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch){
+        return ReferenceData.respond(ifNoneMatch, referenceData.current(), snapshot -> {
+            Map<String,Map> map = new HashMap<>();
+            map.put("tags",snapshot.getTags());
+            map.put("locations",snapshot.getLocationNames());
+            return map;
+        });
     }
     //--------------------------------------- Coach Subscription --------------------------------------------
 
@@ -200,6 +227,60 @@ public class MemberController {
         return trainingHistoryService.viewTrainingHistory(userId,pageNow,pageSize,startDate,endDate);
     }
 
+    //按教练反馈里的词搜索, 可以再加日期和 tag 条件
+    @PreAuthorize("hasRole(T(com.fitness_centre.constant.UserRole).MEMBER.getRole())")
+    @GetMapping("/training/history/search")
+    public GeneralResponseResult searchTrainingHistory(Authentication authentication,
+                                                       @ModelAttribute HistorySearchRequest request){
+        LoginUser loginUser = (LoginUser) authentication.getPrincipal();
+        Long userId = loginUser.getId();
+        return trainingHistoryService.searchTrainingHistory(userId,request);
+    }
+
+    //ProgressChart 用的每周汇总, 默认最近一年
+    @PreAuthorize("hasRole(T(com.fitness_centre.constant.UserRole).MEMBER.getRole())")
+    @GetMapping("/training/progress")
+    public GeneralResponseResult trainingProgress(Authentication authentication,
+                                                  @RequestParam(defaultValue = "52") int weeks){
+        LoginUser loginUser = (LoginUser) authentication.getPrincipal();
+        Long userId = loginUser.getId();
+        return trainingHistoryService.memberProgress(userId,weeks);
+    }
+
+    //导出自己的全部训练记录, 边查边写
+    @PreAuthorize("hasRole(T(com.fitness_centre.constant.UserRole).MEMBER.getRole())")
+    @GetMapping("/export/history")
+    public void exportTrainingHistory(Authentication authentication,
+                                      @RequestParam(defaultValue = "csv") String format,
+                                      HttpServletResponse response) throws IOException {
+        LoginUser loginUser = (LoginUser) authentication.getPrincipal();
+        Long userId = loginUser.getId();
+        ExportFormat exportFormat = ExportFormat.of(format);
+        DataExporter.prepare(response, exportFormat, "training-history");
+        dataExporter.exportTrainingHistory(userId, exportFormat, response.getOutputStream());
+    }
+
+    @PreAuthorize("hasRole(T(com.fitness_centre.constant.UserRole).MEMBER.getRole())")
+    @GetMapping("/export/bookings")
+    public void exportBookings(Authentication authentication,
+                               @RequestParam(defaultValue = "csv") String format,
+                               HttpServletResponse response) throws IOException {
+        LoginUser loginUser = (LoginUser) authentication.getPrincipal();
+        Long userId = loginUser.getId();
+        ExportFormat exportFormat = ExportFormat.of(format);
+        DataExporter.prepare(response, exportFormat, "bookings");
+        dataExporter.exportBookings(userId, exportFormat, response.getOutputStream());
+    }
+
+    //仪表盘上的所有未读数一次取回
+    @PreAuthorize("hasRole(T(com.fitness_centre.constant.UserRole).MEMBER.getRole())")
+    @GetMapping("/unread/count")
+    public GeneralResponseResult countUnread(Authentication authentication){
+        LoginUser loginUser = (LoginUser) authentication.getPrincipal();
+        Long userId = loginUser.getId();
+        return new GeneralResponseResult(ErrorCode.SUCCESS,unreadCounters.counts(userId,UserRole.MEMBER));
+    }
+
     @PreAuthorize("hasRole(T(com.fitness_centre.constant.UserRole).MEMBER.getRole())")
     @GetMapping("/training/unreadHistory/count")
     public GeneralResponseResult countUnreadHistory(Authentication authentication){
@@ -218,10 +299,18 @@ public class MemberController {
     }
 
     @PreAuthorize("hasRole(T(com.fitness_centre.constant.UserRole).MEMBER.getRole())")
-    @GetMapping("/location/info")
-    public GeneralResponseResult getAllLocations(Authentication authentication){
+    @PatchMapping("/training/history/{id}/rating")
+    public GeneralResponseResult rateTrainingHistory(Authentication authentication,
+                                                     @PathVariable("id") Long id,
+                                                     @RequestBody RateHistoryRequest request){
         LoginUser loginUser = (LoginUser) authentication.getPrincipal();
         Long userId = loginUser.getId();
-        return new GeneralResponseResult(ErrorCode.SUCCESS,locationService.mapLocation());
+        return trainingHistoryService.rateTrainingHistory(userId,id,request.getRating());
+    }
+
+    @PreAuthorize("hasRole(T(com.fitness_centre.constant.UserRole).MEMBER.getRole())")
+    @GetMapping("/location/info")
+    public ResponseEntity<GeneralResponseResult> getAllLocations(@RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch){
+        return ReferenceData.respond(ifNoneMatch, referenceData.current(), ReferenceData.Snapshot::getLocations);
     }
 }
\ No newline at end of file
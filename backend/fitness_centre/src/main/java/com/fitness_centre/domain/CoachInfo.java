@@ -31,6 +31,17 @@ public class CoachInfo implements Serializable {
     private String photo;
 
     private String intro;
-    //todo 定时任务计算
+    //平均分 = ratingSum / ratingCount, 收到评分时增量更新, 定时任务对账
     private Double rating;
+
+    private Long ratingSum;
+
+    private Integer ratingCount;
+
+    public CoachInfo(Long id, String photo, String intro, Double rating) {
+        this.id = id;
+        this.photo = photo;
+        this.intro = intro;
+        this.rating = rating;
+    }
 }
\ No newline at end of file
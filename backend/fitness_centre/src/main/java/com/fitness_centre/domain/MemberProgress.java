@@ -0,0 +1,42 @@
+package com.fitness_centre.domain;
+
+import com.baomidou.mybatisplus.annotation.TableName;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.io.Serializable;
+import java.time.LocalDate;
+
+/**
+ * @author
+ * @Classname MemberProgress
+ * @Description One weekly counter of a member's training: sessions, sessions per tag or sessions per coach
+ * @date 19/10/2026
+ */
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+@TableName("member_progress")
+public class MemberProgress implements Serializable {
+    private static final long serialVersionUID = 1L;
+
+    public static final String SESSIONS = "session";
+
+    public static final String TAGS = "tag";
+
+    public static final String COACHES = "coach";
+
+    private Long memberId;
+
+    //所在周的周一
+    private LocalDate weekStart;
+
+    //SESSIONS, TAGS 或 COACHES
+    private String dimension;
+
+    //tag id 或教练 id, 课程总数时为 0
+    private Long itemId;
+
+    private Integer count;
+}
@@ -39,5 +39,7 @@ public class TrainingHistory implements Serializable {
     @JsonFormat(pattern = "yyyy-MM-dd HH:mm")
     private LocalDateTime endTime;
     private String feedback;
+    //会员对这次训练的评分 1-5, 没评为 null
+    private Integer rating;
     private Boolean memberIsRead;
 }
\ No newline at end of file
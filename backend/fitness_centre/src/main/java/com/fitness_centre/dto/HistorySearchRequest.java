@@ -0,0 +1,36 @@
+package com.fitness_centre.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.format.annotation.DateTimeFormat;
+
+import java.time.LocalDate;
+import java.util.List;
+
+/**
+ * @author
+ * @Classname HistorySearchRequest
+ * @Description Search a member's training history by words in the coach's feedback
+ * @date 19/10/2026
+ */
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class HistorySearchRequest {
+
+    //空格分开的多个词要同时出现
+    private String query;
+
+    @DateTimeFormat(pattern = "yyyy/MM/dd")
+    private LocalDate startDate;
+
+    @DateTimeFormat(pattern = "yyyy/MM/dd")
+    private LocalDate endDate;
+
+    //带其中任意一个 tag 即可
+    private List<Long> tagIds;
+
+    private int pageNow = 1;
+    private int pageSize = 10;
+}
@@ -0,0 +1,40 @@
+package com.fitness_centre.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+/**
+ * @author
+ * @Classname HistorySearchRow
+ * @Description One feedback search hit as read from the database, names joined in and tag ids concatenated
+ * @date 19/10/2026
+ */
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class HistorySearchRow {
+    private Long id;
+
+    private LocalDateTime startTime;
+
+    private LocalDateTime endTime;
+
+    private String memberName;
+
+    private String coachName;
+
+    private String message;
+
+    private Boolean memberIsRead;
+
+    private String feedback;
+
+    //逗号分隔的 tag id
+    private String tagIds;
+
+    //全文索引给出的相关度
+    private Double score;
+}
@@ -0,0 +1,26 @@
+package com.fitness_centre.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+/**
+ * @author
+ * @Classname MemberProgressResponse
+ * @Description A member's training per week over a period, with the tag and coach mix
+ * @date 19/10/2026
+ */
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class MemberProgressResponse {
+    //每周的课程数, label 是这周周一 yyyy-MM-dd, 从早到晚
+    private List<ProgressPoint> sessions;
+
+    //按总数从多到少
+    private List<ProgressSeries> tags;
+
+    private List<ProgressSeries> coaches;
+}
@@ -0,0 +1,20 @@
+package com.fitness_centre.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * @author
+ * @Classname ProgressPoint
+ * @Description One point of a progress chart, in the label/value shape ProgressChart draws
+ * @date 19/10/2026
+ */
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class ProgressPoint {
+    private String label;
+
+    private long value;
+}
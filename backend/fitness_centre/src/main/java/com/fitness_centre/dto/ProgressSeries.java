@@ -0,0 +1,30 @@
+package com.fitness_centre.dto;
+
+import com.fasterxml.jackson.databind.annotation.JsonSerialize;
+import com.fasterxml.jackson.databind.ser.std.ToStringSerializer;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+/**
+ * @author
+ * @Classname ProgressSeries
+ * @Description Weekly session counts for one tag or one coach
+ * @date 19/10/2026
+ */
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class ProgressSeries {
+    @JsonSerialize(using = ToStringSerializer.class)
+    private Long id;
+
+    private String name;
+
+    private long total;
+
+    //与 sessions 相同的周, 没有课的周为 0
+    private List<ProgressPoint> weeks;
+}
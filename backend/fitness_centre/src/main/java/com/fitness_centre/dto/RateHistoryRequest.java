@@ -0,0 +1,18 @@
+package com.fitness_centre.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * @author
+ * @Classname RateHistoryRequest
+ * @Description A member's rating of one training session, 1 to 5
+ * @date 19/10/2026
+ */
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class RateHistoryRequest {
+    private Integer rating;
+}
@@ -0,0 +1,43 @@
+package com.fitness_centre.dto.export;
+
+import com.fitness_centre.constant.RequestStatus;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+/**
+ * @author
+ * @Classname BookingExportRow
+ * @Description One session booking row as read by the export cursor, names already joined in
+ * @date 19/10/2026
+ */
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class BookingExportRow {
+    private Long id;
+
+    private LocalDateTime startTime;
+
+    private LocalDateTime endTime;
+
+    private String memberName;
+
+    private String coachName;
+
+    private RequestStatus status;
+
+    private String message;
+
+    private String reply;
+
+    private LocalDateTime requestTime;
+
+    private LocalDateTime responseTime;
+
+    private LocalDateTime cancelTime;
+
+    private Boolean isRecord;
+}
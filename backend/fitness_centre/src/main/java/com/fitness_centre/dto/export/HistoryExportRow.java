@@ -0,0 +1,37 @@
+package com.fitness_centre.dto.export;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+/**
+ * @author
+ * @Classname HistoryExportRow
+ * @Description One training history row as read by the export cursor, names already joined in
+ * @date 19/10/2026
+ */
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class HistoryExportRow {
+    private Long id;
+
+    private LocalDateTime startTime;
+
+    private LocalDateTime endTime;
+
+    private String memberName;
+
+    private String coachName;
+
+    private String message;
+
+    private String feedback;
+
+    private Integer rating;
+
+    //逗号分隔的 tag id, 名字从内存里的参考数据取
+    private String tagIds;
+}
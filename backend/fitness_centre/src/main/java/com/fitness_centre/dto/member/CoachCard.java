@@ -0,0 +1,42 @@
+package com.fitness_centre.dto.member;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.io.Serializable;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * @author
+ * @Classname CoachCard
+ * @Description Member-independent projection of one coach as shown in the coach list, cached per coach id
+ * @date 19/10/2026
+ */
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class CoachCard implements Serializable {
+    private static final long serialVersionUID = 1L;
+
+    private Long coachId;
+
+    private String userName;
+
+    //存生日而不是年龄, 卡片不会因为跨年而过期
+    private LocalDate birthday;
+
+    private String email;
+
+    private String photo;
+
+    private String intro;
+
+    private Double rating;
+
+    private List<String> tagNames = new ArrayList<>();
+
+    private List<String> locationNames = new ArrayList<>();
+}
@@ -1,6 +1,7 @@
 package com.fitness_centre.dto.member;
 
 import com.fasterxml.jackson.annotation.JsonFormat;
+import com.fasterxml.jackson.annotation.JsonInclude;
 import com.fasterxml.jackson.databind.annotation.JsonSerialize;
 import com.fasterxml.jackson.databind.ser.std.ToStringSerializer;
 import com.fitness_centre.domain.Location;
@@ -34,13 +35,16 @@ public class CoachDetailsResponse {
 
     private String intro;
 
+    //平均评分, 还没人评过为 null
+    private Double rating;
+
     private List<String> tagNames;
 
     private List<String> locationNames;
 
-    // 这两个是为了配合 SQL 中的 group_concat 结果
-    private String groupTagNames;
-    private String groupLocationNames;
-
     private String status;
+
+    //按距离搜索时到最近场馆的公里数
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    private Double distanceKm;
 }
\ No newline at end of file
@@ -0,0 +1,20 @@
+package com.fitness_centre.dto.member;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * @author
+ * @Classname CoachLabel
+ * @Description One tag or location name of a coach, as read when building coach cards
+ * @date 19/10/2026
+ */
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class CoachLabel {
+    private Long coachId;
+
+    private String name;
+}
@@ -0,0 +1,36 @@
+package com.fitness_centre.dto.member;
+
+import com.baomidou.mybatisplus.extension.plugins.pagination.Page;
+import com.fasterxml.jackson.annotation.JsonInclude;
+import lombok.Getter;
+import lombok.Setter;
+
+import java.util.Map;
+
+/**
+ * @author
+ * @Classname CoachPageResponse
+ * @Description One page of the coach list, optionally with facet counts per tag and location
+ * @date 19/10/2026
+ */
+@Getter
+@Setter
+public class CoachPageResponse extends Page<CoachDetailsResponse> {
+
+    /**
+     * tag id -> coaches matching the current location and name filters that have the tag;
+     * only present when the request asks for facets
+     */
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    private Map<Long, Integer> tagCounts;
+
+    /**
+     * location id -> coaches matching the current tag and name filters at the location
+     */
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    private Map<Long, Integer> locationCounts;
+
+    public CoachPageResponse(long current, long size) {
+        super(current, size);
+    }
+}
@@ -21,6 +21,18 @@ public class CoachQueryRequest {
 
     private List<Long> locationIds;
 
+    //是否同时返回每个 tag / location 的教练数
+    private boolean facets;
+
+    //按距离搜索: 当前位置, 半径为空时不限距离
+    private Double latitude;
+    private Double longitude;
+    private Double radiusKm;
+
+    public static final String SORT_RATING = "rating";
+
+    //排序: 为空按默认顺序, "rating" 按评分从高到低
+    private String sort;
 
     private int pageNow = 1;
     private int pageSize = 10;
@@ -0,0 +1,23 @@
+package com.fitness_centre.dto.member;
+
+import com.fasterxml.jackson.databind.annotation.JsonSerialize;
+import com.fasterxml.jackson.databind.ser.std.ToStringSerializer;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * @author
+ * @Classname CoachSuggestion
+ * @Description One autocomplete entry for the coach name box
+ * @date 19/10/2026
+ */
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class CoachSuggestion {
+    @JsonSerialize(using = ToStringSerializer.class)
+    private Long coachId;
+
+    private String userName;
+}
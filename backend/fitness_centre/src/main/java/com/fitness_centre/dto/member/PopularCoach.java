@@ -0,0 +1,28 @@
+package com.fitness_centre.dto.member;
+
+import com.fasterxml.jackson.databind.annotation.JsonSerialize;
+import com.fasterxml.jackson.databind.ser.std.ToStringSerializer;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * @author
+ * @Classname PopularCoach
+ * @Description One entry of the coach popularity leaderboard
+ * @date 19/10/2026
+ */
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class PopularCoach {
+    @JsonSerialize(using = ToStringSerializer.class)
+    private Long coachId;
+
+    private String userName;
+
+    private String photo;
+
+    //窗口内被接受的订阅和课程的加权数
+    private long score;
+}
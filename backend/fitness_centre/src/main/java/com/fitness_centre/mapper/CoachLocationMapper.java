@@ -4,6 +4,7 @@ import com.baomidou.mybatisplus.core.mapper.BaseMapper;
 import com.fitness_centre.domain.CoachInfo;
 import com.fitness_centre.domain.CoachLocation;
 import com.fitness_centre.domain.Location;
+import com.fitness_centre.dto.member.CoachLabel;
 import org.apache.ibatis.annotations.*;
 
 import java.util.List;
@@ -34,16 +35,20 @@ public interface CoachLocationMapper extends BaseMapper<CoachLocation> {
 """)
     List<Location> selectLocationsByCoachId(@Param("coachId") Long coachId);
 
-    //查教练没选的location
-    @Select("""
-        SELECT l.*
-        FROM location l
-        LEFT JOIN coach_location cl 
-            ON  l.id = cl.location_id
-            AND cl.coach_id = #{coachId}
-        WHERE cl.coach_id IS NULL
-""")
-    List<Location> selectLocationsNotChosenByCoach(@Param("coachId") Long coachId);
+    //一批教练的 location 名, 建教练卡片用
+    @Select({
+            "<script>",
+            "SELECT cl.coach_id AS coachId, l.location_name AS name",
+            "FROM coach_location cl",
+            "JOIN location l ON l.id = cl.location_id",
+            "WHERE cl.coach_id IN",
+            "<foreach item='coachId' collection='coachIds' open='(' separator=',' close=')'>",
+            "   #{coachId}",
+            "</foreach>",
+            "ORDER BY cl.coach_id, l.id",
+            "</script>"
+    })
+    List<CoachLabel> selectLocationNamesByCoachIds(@Param("coachIds") List<Long> coachIds);
 
     @Delete({
             "<script>",
@@ -4,11 +4,16 @@ import com.baomidou.mybatisplus.core.mapper.BaseMapper;
 import com.baomidou.mybatisplus.core.metadata.IPage;
 import com.baomidou.mybatisplus.extension.plugins.pagination.Page;
 import com.fitness_centre.domain.CoachInfo;
+import com.fitness_centre.dto.member.CoachCard;
 import com.fitness_centre.dto.member.CoachDetailsResponse;
 import com.fitness_centre.dto.member.CoachQueryRequest;
 import org.apache.ibatis.annotations.Mapper;
+import org.apache.ibatis.annotations.Select;
+import org.apache.ibatis.annotations.Update;
 import org.springframework.data.repository.query.Param;
 
+import java.util.List;
+
 /**
  * @author
  * @Classname CoachInfoMapper
@@ -18,16 +23,86 @@ import org.springframework.data.repository.query.Param;
 @Mapper
 public interface CoachMapper extends BaseMapper<CoachInfo> {
     /**
-     * 多表查询教练信息（分页）
+     * 按条件分页查询教练 id, 搜索索引没建好时用
      *
      * @param page   MyBatis-Plus 分页对象
-     * @param memberId 当前登录的会员ID，用于查 member_coach 表是否存在 pending
      * @param request 查询条件（userName / tagIds / locationIds 等）
-     * @return 分页后的教练信息
+     * @return 分页后的教练 id, 按 id 升序
      */
-    IPage<CoachDetailsResponse> selectCoachPage(
+    IPage<Long> selectCoachIdPage(
             Page<?> page,
-            @Param("memberId") Long memberId,
             @Param("request") CoachQueryRequest request
     );
+
+    /**
+     * 按 id 取教练卡片(不含 tag/location 名), 顺序不保证, 已删除的教练不返回
+     *
+     * @param coachIds 教练 id
+     */
+    List<CoachCard> selectCardsByIds(@Param("coachIds") List<Long> coachIds);
+
+    //搜索索引启动时读取的教练列表
+    @Select("""
+        SELECT c.id AS coachId, u.user_name AS userName, c.intro AS intro, c.rating AS rating
+        FROM coach_info c
+        JOIN sys_user u ON u.id = c.id
+        ORDER BY c.id
+""")
+    List<CoachDetailsResponse> selectIndexRows();
+
+    //按 id 分批读取仍然存在的教练的照片地址, 已删除用户的照片视为无人引用
+    @Select("""
+        SELECT c.id, c.photo
+        FROM coach_info c
+        JOIN sys_user u ON u.id = c.id
+        WHERE c.id > #{afterId}
+        ORDER BY c.id
+        LIMIT #{limit}
+""")
+    List<CoachInfo> selectPhotosAfter(@Param("afterId") Long afterId, @Param("limit") int limit);
+
+    //照片在此期间没有被重新上传时才更新地址
+    @Update("UPDATE coach_info SET photo = #{newPhoto} WHERE id = #{id} AND photo = #{oldPhoto}")
+    int updatePhotoIfUnchanged(@Param("id") Long id, @Param("oldPhoto") String oldPhoto, @Param("newPhoto") String newPhoto);
+
+    //收到一条评分时增量更新累计值; MySQL 按顺序赋值, rating 用的是加过之后的 sum 和 count
+    @Update("""
+        UPDATE coach_info
+        SET rating_sum = COALESCE(rating_sum, 0) + #{sumDelta},
+            rating_count = COALESCE(rating_count, 0) + #{countDelta},
+            rating = IF(rating_count > 0, rating_sum / rating_count, NULL)
+        WHERE id = #{id}
+""")
+    int addRating(@Param("id") Long id, @Param("sumDelta") int sumDelta, @Param("countDelta") int countDelta);
+
+    //累计值和 training_history 对不上的教练
+    @Select("""
+        SELECT c.id
+        FROM coach_info c
+        LEFT JOIN (
+            SELECT coach_id, SUM(rating) AS total, COUNT(rating) AS cnt
+            FROM training_history
+            WHERE rating IS NOT NULL
+            GROUP BY coach_id
+        ) r ON r.coach_id = c.id
+        WHERE COALESCE(c.rating_sum, 0) <> COALESCE(r.total, 0)
+           OR COALESCE(c.rating_count, 0) <> COALESCE(r.cnt, 0)
+""")
+    List<Long> selectRatingDriftIds();
+
+    //按 training_history 重新算一位教练的累计值, 一条语句完成
+    @Update("""
+        UPDATE coach_info c,
+            (SELECT COALESCE(SUM(rating), 0) AS total, COUNT(rating) AS cnt
+             FROM training_history
+             WHERE coach_id = #{id}) r
+        SET c.rating_sum = r.total,
+            c.rating_count = r.cnt,
+            c.rating = IF(r.cnt > 0, r.total / r.cnt, NULL)
+        WHERE c.id = #{id}
+""")
+    int recomputeRating(@Param("id") Long id);
+
+    @Select("SELECT rating FROM coach_info WHERE id = #{id}")
+    Double selectRating(@Param("id") Long id);
 }
@@ -4,6 +4,7 @@ import com.baomidou.mybatisplus.core.mapper.BaseMapper;
 import com.fitness_centre.domain.CoachTag;
 import com.fitness_centre.domain.Location;
 import com.fitness_centre.domain.Tag;
+import com.fitness_centre.dto.member.CoachLabel;
 import org.apache.ibatis.annotations.*;
 
 import java.util.List;
@@ -28,16 +29,20 @@ public interface CoachTagMapper extends BaseMapper<CoachTag> {
     //Select coaches associated with a specific tag
 
 
-    //Select tags not chosen by a coach
-    @Select("""
-        SELECT t.*
-        FROM tag t 
-        LEFT JOIN coach_tag ct 
-            ON t.id = ct.tag_id
-            AND ct.coach_id = #{coach_id}
-        WHERE ct.coach_id IS NULL
-""")
-    List<Tag> selectTagsNotChosenByCoachId(@Param("coach_id") Long coachId);
+    //一批教练的 tag 名, 建教练卡片用
+    @Select({
+            "<script>",
+            "SELECT ct.coach_id AS coachId, t.tag_name AS name",
+            "FROM coach_tag ct",
+            "JOIN tag t ON t.id = ct.tag_id",
+            "WHERE ct.coach_id IN",
+            "<foreach item='coachId' collection='coachIds' open='(' separator=',' close=')'>",
+            "   #{coachId}",
+            "</foreach>",
+            "ORDER BY ct.coach_id, t.id",
+            "</script>"
+    })
+    List<CoachLabel> selectTagNamesByCoachIds(@Param("coachIds") List<Long> coachIds);
 
     @Delete({
             "<script>",
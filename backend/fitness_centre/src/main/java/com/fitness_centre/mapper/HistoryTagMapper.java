@@ -1,11 +1,10 @@
 package com.fitness_centre.mapper;
 
 import com.baomidou.mybatisplus.core.mapper.BaseMapper;
-import com.fasterxml.jackson.databind.ser.Serializers;
 import com.fitness_centre.domain.HistoryTag;
-import com.fitness_centre.domain.Tag;
+import org.apache.ibatis.annotations.Insert;
 import org.apache.ibatis.annotations.Mapper;
-import org.springframework.data.repository.query.Param;
+import org.apache.ibatis.annotations.Param;
 
 import java.util.List;
 
@@ -17,4 +16,16 @@ import java.util.List;
  */
 @Mapper
 public interface HistoryTagMapper extends BaseMapper<HistoryTag> {
+
+    //一条多行 INSERT 写入所有记录的 tag
+    @Insert({
+            "<script>",
+            "INSERT INTO history_tag (history_id, tag_id)",
+            "VALUES",
+            "<foreach item='link' collection='links' separator=','>",
+            "   (#{link.historyId}, #{link.tagId})",
+            "</foreach>",
+            "</script>"
+    })
+    int insertLinks(@Param("links") List<HistoryTag> links);
 }
@@ -0,0 +1,68 @@
+package com.fitness_centre.mapper;
+
+import com.baomidou.mybatisplus.core.mapper.BaseMapper;
+import com.fitness_centre.domain.MemberProgress;
+import org.apache.ibatis.annotations.Delete;
+import org.apache.ibatis.annotations.Insert;
+import org.apache.ibatis.annotations.Mapper;
+import org.apache.ibatis.annotations.Param;
+
+import java.util.List;
+
+/**
+ * @author
+ * @Classname MemberProgressMapper
+ * @Description Weekly training counters per member, kept up to date as history is recorded
+ * @date 19/10/2026
+ */
+@Mapper
+public interface MemberProgressMapper extends BaseMapper<MemberProgress> {
+
+    //记录训练时在同一事务里累加
+    @Insert({
+            "<script>",
+            "INSERT INTO member_progress (member_id, week_start, dimension, item_id, count)",
+            "VALUES",
+            "<foreach item='row' collection='rows' separator=','>",
+            "   (#{row.memberId}, #{row.weekStart}, #{row.dimension}, #{row.itemId}, #{row.count})",
+            "</foreach>",
+            "ON DUPLICATE KEY UPDATE count = count + VALUES(count)",
+            "</script>"
+    })
+    int addCounts(@Param("rows") List<MemberProgress> rows);
+
+    //从训练记录统计出的全部计数
+    String COUNTED = """
+            SELECT th.member_id,
+                   DATE_SUB(DATE(th.start_time), INTERVAL WEEKDAY(th.start_time) DAY) AS week_start,
+                   'session' AS dimension, 0 AS item_id, COUNT(*) AS total
+            FROM training_history th
+            GROUP BY th.member_id, week_start
+            UNION ALL
+            SELECT th.member_id,
+                   DATE_SUB(DATE(th.start_time), INTERVAL WEEKDAY(th.start_time) DAY) AS week_start,
+                   'coach' AS dimension, th.coach_id AS item_id, COUNT(*) AS total
+            FROM training_history th
+            GROUP BY th.member_id, week_start, th.coach_id
+            UNION ALL
+            SELECT th.member_id,
+                   DATE_SUB(DATE(th.start_time), INTERVAL WEEKDAY(th.start_time) DAY) AS week_start,
+                   'tag' AS dimension, ht.tag_id AS item_id, COUNT(*) AS total
+            FROM training_history th
+            JOIN history_tag ht ON ht.history_id = th.id
+            GROUP BY th.member_id, week_start, ht.tag_id
+            """;
+
+    //从训练记录整体重算, 直接覆盖计数, 重复执行结果不变
+    @Insert("INSERT INTO member_progress (member_id, week_start, dimension, item_id, count) "
+            + "SELECT member_id, week_start, dimension, item_id, total FROM (" + COUNTED + ") AS counted "
+            + "ON DUPLICATE KEY UPDATE count = counted.total")
+    int rebuildAll();
+
+    //训练记录已经不在的计数, rebuildAll 只覆盖不删除
+    @Delete("DELETE mp FROM member_progress mp LEFT JOIN (" + COUNTED + ") AS counted "
+            + "ON counted.member_id = mp.member_id AND counted.week_start = mp.week_start "
+            + "AND counted.dimension = mp.dimension AND counted.item_id = mp.item_id "
+            + "WHERE counted.member_id IS NULL")
+    int deleteUncounted();
+}
@@ -2,7 +2,17 @@ package com.fitness_centre.mapper;
 
 import com.baomidou.mybatisplus.core.mapper.BaseMapper;
 import com.fitness_centre.domain.SessionBooking;
+import com.fitness_centre.dto.export.BookingExportRow;
 import org.apache.ibatis.annotations.Mapper;
+import org.apache.ibatis.annotations.Options;
+import org.apache.ibatis.annotations.Param;
+import org.apache.ibatis.annotations.Select;
+import org.apache.ibatis.annotations.Update;
+import org.apache.ibatis.cursor.Cursor;
+import org.apache.ibatis.mapping.ResultSetType;
+
+import java.time.LocalDateTime;
+import java.util.List;
 
 /**
  * @author
@@ -12,4 +22,44 @@ import org.apache.ibatis.annotations.Mapper;
  */
 @Mapper
 public interface SessionBookingMapper extends BaseMapper<SessionBooking> {
+
+    //只标记这个教练已经结束且还没记录的课, 返回的行数少于传入的 id 数说明有的不能记录
+    @Update({
+            "<script>",
+            "UPDATE session_booking SET is_record = 1",
+            "WHERE coach_id = #{coachId}",
+            "  AND is_record = 0",
+            "  AND end_time &lt;= #{now}",
+            "  AND id IN",
+            "<foreach item='sessionId' collection='sessionIds' open='(' separator=',' close=')'>",
+            "   #{sessionId}",
+            "</foreach>",
+            "</script>"
+    })
+    int markRecorded(@Param("coachId") Long coachId,
+                     @Param("sessionIds") List<Long> sessionIds,
+                     @Param("now") LocalDateTime now);
+
+    //教练还没记录的课, 只取 id 和结束时间, 放进 Redis 的未记录集合
+    @Select("SELECT id, end_time FROM session_booking WHERE coach_id = #{coachId} AND is_record = 0")
+    List<SessionBooking> selectUnrecorded(@Param("coachId") Long coachId);
+
+    //导出用: 名字连表取, 驱动逐行读取, 不把结果集整个放进内存
+    @Select({
+            "<script>",
+            "SELECT sb.id, sb.start_time, sb.end_time,",
+            "       m.user_name AS member_name, c.user_name AS coach_name,",
+            "       sb.status, sb.message, sb.reply,",
+            "       sb.request_time, sb.response_time, sb.cancel_time, sb.is_record",
+            "FROM session_booking sb",
+            "LEFT JOIN sys_user m ON m.id = sb.member_id",
+            "LEFT JOIN sys_user c ON c.id = sb.coach_id",
+            "<where>",
+            "   <if test='memberId != null'>sb.member_id = #{memberId}</if>",
+            "</where>",
+            "ORDER BY sb.start_time, sb.id",
+            "</script>"
+    })
+    @Options(resultSetType = ResultSetType.FORWARD_ONLY, fetchSize = Integer.MIN_VALUE)
+    Cursor<BookingExportRow> streamForExport(@Param("memberId") Long memberId);
 }
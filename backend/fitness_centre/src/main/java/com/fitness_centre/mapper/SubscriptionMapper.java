@@ -7,6 +7,7 @@ import com.fitness_centre.domain.Subscription;
 import com.fitness_centre.dto.subscription.SubscriptionListResponse;
 import org.apache.ibatis.annotations.Mapper;
 import org.apache.ibatis.annotations.Param;
+import org.apache.ibatis.annotations.Select;
 
 import java.util.List;
 
@@ -26,4 +27,18 @@ public interface SubscriptionMapper extends BaseMapper<Subscription> {
     IPage<SubscriptionListResponse> findSubscriptionByMemberId(Page<SubscriptionListResponse> page,
                                                               @Param("memberId") Long memberId,
                                                               @Param("statusList") List<String> statusList);
+
+    //这一页里当前会员还在等待回复的教练
+    @Select({
+            "<script>",
+            "SELECT DISTINCT coach_id",
+            "FROM subscription",
+            "WHERE member_id = #{memberId} AND status = 'pending' AND coach_id IN",
+            "<foreach item='coachId' collection='coachIds' open='(' separator=',' close=')'>",
+            "   #{coachId}",
+            "</foreach>",
+            "</script>"
+    })
+    List<Long> selectPendingCoachIds(@Param("memberId") Long memberId,
+                                     @Param("coachIds") List<Long> coachIds);
 }
@@ -1,8 +1,21 @@
 package com.fitness_centre.mapper;
 
 import com.baomidou.mybatisplus.core.mapper.BaseMapper;
+import com.baomidou.mybatisplus.core.metadata.IPage;
+import com.baomidou.mybatisplus.extension.plugins.pagination.Page;
 import com.fitness_centre.domain.TrainingHistory;
+import com.fitness_centre.dto.HistorySearchRow;
+import com.fitness_centre.dto.export.HistoryExportRow;
 import org.apache.ibatis.annotations.Mapper;
+import org.apache.ibatis.annotations.Options;
+import org.apache.ibatis.annotations.Param;
+import org.apache.ibatis.annotations.Select;
+import org.apache.ibatis.annotations.Update;
+import org.apache.ibatis.cursor.Cursor;
+import org.apache.ibatis.mapping.ResultSetType;
+
+import java.time.LocalDateTime;
+import java.util.List;
 
 /**
  * @author
@@ -12,4 +25,65 @@ import org.apache.ibatis.annotations.Mapper;
  */
 @Mapper
 public interface TrainingHistoryMapper extends BaseMapper<TrainingHistory> {
+    //只有评分没被并发改过时才更新, 保证教练的累计值和这里一一对应
+    @Update("""
+        UPDATE training_history SET rating = #{rating}
+        WHERE id = #{id} AND member_id = #{memberId} AND rating <=> #{oldRating}
+""")
+    int updateRatingIfUnchanged(@Param("id") Long id, @Param("memberId") Long memberId,
+                                @Param("oldRating") Integer oldRating, @Param("rating") Integer rating);
+
+    /**
+     * 按反馈全文搜索, 相关度高的在前. 依赖 feedback 上的 ngram 全文索引:
+     * ALTER TABLE training_history ADD FULLTEXT INDEX ft_feedback (feedback) WITH PARSER ngram
+     * (见 backend/migrations/V1__schema_updates.sql), ngram_token_size 必须保持 2
+     *
+     * @param query BOOLEAN MODE 查询串, 由调用方清理过
+     */
+    @Select({
+            "<script>",
+            "SELECT th.id, th.start_time, th.end_time,",
+            "       m.user_name AS member_name, c.user_name AS coach_name,",
+            "       th.message, th.member_is_read, th.feedback,",
+            "       (SELECT GROUP_CONCAT(ht.tag_id ORDER BY ht.tag_id) FROM history_tag ht WHERE ht.history_id = th.id) AS tag_ids,",
+            "       MATCH(th.feedback) AGAINST(#{query} IN BOOLEAN MODE) AS score",
+            "FROM training_history th",
+            "LEFT JOIN sys_user m ON m.id = th.member_id",
+            "LEFT JOIN sys_user c ON c.id = th.coach_id",
+            "WHERE th.member_id = #{memberId}",
+            "  AND MATCH(th.feedback) AGAINST(#{query} IN BOOLEAN MODE)",
+            "   <if test='startTime != null'>AND th.start_time &gt;= #{startTime}</if>",
+            "   <if test='endTime != null'>AND th.end_time &lt;= #{endTime}</if>",
+            "   <if test='tagIds != null and tagIds.size() > 0'>",
+            "       AND th.id IN (SELECT history_id FROM history_tag WHERE tag_id IN",
+            "       <foreach collection='tagIds' item='tagId' open='(' separator=',' close=')'>#{tagId}</foreach>)",
+            "   </if>",
+            "ORDER BY score DESC, th.start_time DESC, th.id DESC",
+            "</script>"
+    })
+    IPage<HistorySearchRow> searchFeedback(Page<?> page,
+                                           @Param("memberId") Long memberId,
+                                           @Param("query") String query,
+                                           @Param("startTime") LocalDateTime startTime,
+                                           @Param("endTime") LocalDateTime endTime,
+                                           @Param("tagIds") List<Long> tagIds);
+
+    //导出用: 名字连表取, tag 用子查询拼成一列; 驱动逐行读取, 不把结果集整个放进内存
+    @Select({
+            "<script>",
+            "SELECT th.id, th.start_time, th.end_time,",
+            "       m.user_name AS member_name, c.user_name AS coach_name,",
+            "       th.message, th.feedback, th.rating,",
+            "       (SELECT GROUP_CONCAT(ht.tag_id ORDER BY ht.tag_id) FROM history_tag ht WHERE ht.history_id = th.id) AS tag_ids",
+            "FROM training_history th",
+            "LEFT JOIN sys_user m ON m.id = th.member_id",
+            "LEFT JOIN sys_user c ON c.id = th.coach_id",
+            "<where>",
+            "   <if test='memberId != null'>th.member_id = #{memberId}</if>",
+            "</where>",
+            "ORDER BY th.start_time, th.id",
+            "</script>"
+    })
+    @Options(resultSetType = ResultSetType.FORWARD_ONLY, fetchSize = Integer.MIN_VALUE)
+    Cursor<HistoryExportRow> streamForExport(@Param("memberId") Long memberId);
 }
@@ -5,25 +5,46 @@ import com.baomidou.mybatisplus.core.metadata.IPage;
 import com.baomidou.mybatisplus.extension.plugins.pagination.Page;
 import com.baomidou.mybatisplus.extension.service.impl.ServiceImpl;
 import com.fitness_centre.constant.ErrorCode;
+import com.fitness_centre.constant.PhotoRendition;
 import com.fitness_centre.domain.*;
 import com.fitness_centre.dto.coach.CoachInfoResponse;
 import com.fitness_centre.dto.coach.CoachInfoUpdateRequest;
 import com.fitness_centre.dto.GeneralResponseResult;
+import com.fitness_centre.dto.member.CoachCard;
 import com.fitness_centre.dto.member.CoachDetailsResponse;
+import com.fitness_centre.dto.member.CoachPageResponse;
 import com.fitness_centre.dto.member.CoachQueryRequest;
+import com.fitness_centre.dto.member.CoachSuggestion;
+import com.fitness_centre.dto.member.PopularCoach;
 import com.fitness_centre.exception.BusinessException;
+import com.fitness_centre.exception.SystemException;
 import com.fitness_centre.mapper.*;
 import com.fitness_centre.service.biz.interfaces.CoachService;
+import com.fitness_centre.service.infrastructure.CoachCardStore;
+import com.fitness_centre.service.infrastructure.CoachPageCache;
+import com.fitness_centre.service.infrastructure.CoachPopularity;
+import com.fitness_centre.service.infrastructure.CoachSearchIndex;
 import com.fitness_centre.service.infrastructure.FileService;
-import com.fitness_centre.utils.StringSplitUtil;
+import com.fitness_centre.service.infrastructure.ReferenceData;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
 import org.springframework.beans.BeanUtils;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 import org.springframework.web.multipart.MultipartFile;
 
+import java.time.LocalDate;
+import java.time.Period;
 import java.util.*;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * @author
@@ -33,6 +54,10 @@ import java.util.List;
  */
 @Service
 public class CoachServiceImpl extends ServiceImpl<CoachMapper, CoachInfo> implements CoachService {
+    private final static int MAX_SUGGESTIONS = 20;
+
+    private final static int MAX_POPULAR = 50;
+
     @Autowired
     private CoachMapper coachMapper;
 
@@ -48,7 +73,48 @@ public class CoachServiceImpl extends ServiceImpl<CoachMapper, CoachInfo> implem
     @Autowired
     private UserMapper userMapper;
 
+    @Autowired
+    private CoachSearchIndex coachSearchIndex;
+
+    @Autowired
+    private CoachCardStore coachCardStore;
+
+    @Autowired
+    private CoachPageCache coachPageCache;
+
+    @Autowired
+    private SubscriptionMapper subscriptionMapper;
+
+    @Autowired
+    private CoachPopularity coachPopularity;
+
+    @Autowired
+    private ReferenceData referenceData;
+
+    //同时在跑的查询不超过这么多, 每个占一个数据库连接
+    @Value("${coach-info.lookup-workers:8}")
+    private int lookupWorkers = 8;
+
+    //资料页的并行查询线程池, 满了由请求线程自己查, 退化成串行
+    private ThreadPoolExecutor lookupPool;
+
+    @PostConstruct
+    public void init(){
+        AtomicInteger threadNo = new AtomicInteger();
+        lookupPool = new ThreadPoolExecutor(lookupWorkers, lookupWorkers, 0, TimeUnit.MILLISECONDS,
+                new SynchronousQueue<>(),
+                r -> {
+                    Thread thread = new Thread(r, "coach-lookup-" + threadNo.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                },
+                new ThreadPoolExecutor.CallerRunsPolicy());
+    }
 
+    @PreDestroy
+    public void shutdown(){
+        lookupPool.shutdown();
+    }
 
     @Override
     @Transactional
@@ -90,30 +156,53 @@ public class CoachServiceImpl extends ServiceImpl<CoachMapper, CoachInfo> implem
                 coachTagMapper.insertTagsIfNotExists(coachId,tagIds);
             }
         }
+        //提交后同步到搜索索引
+        coachSearchIndex.updateCoach(coachId,user.getUserName(),coach.getIntro(),tagIds,locationIds);
+        coachCardStore.refresh(coachId);
         return new GeneralResponseResult(ErrorCode.SUCCESS);
 
     }
 
+    /**
+     * The four lookups do not depend on each other and run on the lookup pool, so the page waits for the
+     * slowest one rather than their sum. The tags and locations a coach has not chosen are the reference
+     * snapshot minus the chosen ones, instead of two anti-join queries.
+     */
     @Override
     public GeneralResponseResult coachInfo(Long coachId) {
+        CompletableFuture<User> userLookup = CompletableFuture.supplyAsync(() -> userMapper.selectById(coachId), lookupPool);
+        CompletableFuture<CoachInfo> coachLookup = CompletableFuture.supplyAsync(() -> coachMapper.selectById(coachId), lookupPool);
+        CompletableFuture<List<Tag>> tagLookup = CompletableFuture.supplyAsync(() -> coachTagMapper.selectTagsByCoachId(coachId), lookupPool);
+        CompletableFuture<List<Location>> locationLookup = CompletableFuture.supplyAsync(() -> coachLocationMapper.selectLocationsByCoachId(coachId), lookupPool);
+        ReferenceData.Snapshot reference = referenceData.current();
+
         CoachInfoResponse coachInfoResponse = new CoachInfoResponse();
         //得到user相关的基本信息
-        User user = userMapper.selectById(coachId);
+        User user = join(userLookup);
         coachInfoResponse.setAddress(user.getAddress());
         coachInfoResponse.setBirthday(user.getBirthday());
         coachInfoResponse.setUserName(user.getUserName());
         //得到coachInfo相关的基本信息
-        CoachInfo coachInfo = coachMapper.selectOne(
-                new LambdaQueryWrapper<CoachInfo>()
-                        .eq(CoachInfo::getId,coachId)
-        );
-        List<Tag> coachTags = coachTagMapper.selectTagsByCoachId(coachId);
-        List<Tag> otherTags = coachTagMapper.selectTagsNotChosenByCoachId(coachId);
-
-        List<Location> coachLocations = coachLocationMapper.selectLocationsByCoachId(coachId);
-        List<Location> otherLocations = coachLocationMapper.selectLocationsNotChosenByCoach(coachId);
-
-
+        CoachInfo coachInfo = join(coachLookup);
+        List<Tag> coachTags = join(tagLookup);
+        List<Location> coachLocations = join(locationLookup);
+
+        Set<Long> chosenTagIds = new HashSet<>();
+        coachTags.forEach(tag -> chosenTagIds.add(tag.getId()));
+        List<Tag> otherTags = new ArrayList<>();
+        reference.getTags().forEach((id, name) -> {
+            if (!chosenTagIds.contains(id)) {
+                otherTags.add(new Tag(id, name));
+            }
+        });
+        Set<Long> chosenLocationIds = new HashSet<>();
+        coachLocations.forEach(location -> chosenLocationIds.add(location.getId()));
+        List<Location> otherLocations = new ArrayList<>();
+        for (Location location : reference.getLocations()) {
+            if (!chosenLocationIds.contains(location.getId())) {
+                otherLocations.add(location);
+            }
+        }
 
         coachInfoResponse.setIntro(coachInfo.getIntro());
         coachInfoResponse.setCoachTags(coachTags);
@@ -133,6 +222,7 @@ public class CoachServiceImpl extends ServiceImpl<CoachMapper, CoachInfo> implem
         coach.setId(coachId);
         coach.setPhoto(url);
         coachMapper.updateById(coach);
+        coachCardStore.refresh(coachId);
         Map<String,String> map = new HashMap<>();
         map.put("photo",url);
         return new GeneralResponseResult(ErrorCode.SUCCESS,map);
@@ -154,6 +244,9 @@ public class CoachServiceImpl extends ServiceImpl<CoachMapper, CoachInfo> implem
             coachInfo.setId(coachId);
             coachInfo.setPhoto("/formal" + "/default.jpg");
             this.baseMapper.insert(coachInfo);
+            User user = userMapper.selectById(coachId);
+            coachSearchIndex.updateCoach(coachId,Objects.isNull(user) ? null : user.getUserName(),null,null,null);
+            coachCardStore.refresh(coachId);
             missingFields.add("Tags");
             missingFields.add("Introduction");
             isComplete = false;
@@ -189,29 +282,159 @@ public class CoachServiceImpl extends ServiceImpl<CoachMapper, CoachInfo> implem
 
     @Override
     public IPage<CoachDetailsResponse> coachList(Long memberId, CoachQueryRequest request) {
+        boolean nearby = checkGeoQuery(request);
+        boolean byRating = checkSort(request, nearby);
+
+        // 同样筛选条件的一页对所有会员都一样, 只有订阅状态因人而异
+        long generation = coachPageCache.generation();
+        CoachPageResponse page = coachPageCache.get(request, generation);
+        if (Objects.isNull(page)) {
+            page = buildPage(request, nearby || byRating);
+            coachPageCache.put(request, generation, page);
+        }
+        overlayStatus(memberId, page.getRecords());
+        return page;
+    }
+
+    //不含订阅状态的一页, 可以跨会员缓存
+    private CoachPageResponse buildPage(CoachQueryRequest request, boolean indexOnly) {
         // 使用 MyBatis-Plus 的分页对象
-        Page<CoachDetailsResponse> pageParam =
-                new Page<>(request.getPageNow(), request.getPageSize());
+        CoachPageResponse pageParam =
+                new CoachPageResponse(request.getPageNow(), request.getPageSize());
+
+        // 先在内存索引里筛出一页 id(需要时连同 facet 计数), 再只取这一页的详情
+        CoachSearchIndex.SearchHits hits = coachSearchIndex.search(request, pageParam.offset(), (int) pageParam.getSize());
+        if (Objects.nonNull(hits)) {
+            pageParam.setTotal(hits.getTotal());
+            pageParam.setRecords(hydrate(hits.getCoachIds()));
+            if (Objects.nonNull(hits.getDistances())) {
+                pageParam.getRecords().forEach(details -> details.setDistanceKm(hits.getDistances().get(details.getCoachId())));
+            }
+            pageParam.setTagCounts(hits.getTagCounts());
+            pageParam.setLocationCounts(hits.getLocationCounts());
+        } else if (indexOnly) {
+            // 距离和评分排序只在内存里做, 不让数据库逐行算距离或对整张连接结果排序
+            throw new SystemException(ErrorCode.FEATURE_UNAVAILABLE);
+        } else {
+            // 索引还没建好, 用 SQL 分页出 id, 详情同样从教练卡片里取
+            IPage<Long> idPage = coachMapper.selectCoachIdPage(new Page<>(request.getPageNow(), request.getPageSize()), request);
+            pageParam.setTotal(idPage.getTotal());
+            pageParam.setRecords(hydrate(idPage.getRecords()));
+        }
+        return pageParam;
+    }
+
+    /**
+     * @return whether the request searches by distance
+     */
+    private boolean checkGeoQuery(CoachQueryRequest request) {
+        Double latitude = request.getLatitude();
+        Double longitude = request.getLongitude();
+        if (Objects.isNull(latitude) && Objects.isNull(longitude)) {
+            if (Objects.nonNull(request.getRadiusKm())) {
+                throw new BusinessException(ErrorCode.INVALID_PARAMETER.getCode(),"Radius needs a latitude and longitude");
+            }
+            return false;
+        }
+        if (Objects.isNull(latitude) || Objects.isNull(longitude)
+                || Math.abs(latitude) > 90 || Math.abs(longitude) > 180) {
+            throw new BusinessException(ErrorCode.INVALID_PARAMETER.getCode(),"Invalid coordinates");
+        }
+        if (Objects.nonNull(request.getRadiusKm()) && !(request.getRadiusKm() > 0)) {
+            throw new BusinessException(ErrorCode.INVALID_PARAMETER.getCode(),"Radius must be positive");
+        }
+        return true;
+    }
+
+    /**
+     * @return whether the request sorts by rating
+     */
+    private boolean checkSort(CoachQueryRequest request, boolean nearby) {
+        String sort = request.getSort();
+        if (Objects.isNull(sort) || sort.isEmpty()) {
+            return false;
+        }
+        if (!CoachQueryRequest.SORT_RATING.equals(sort)) {
+            throw new BusinessException(ErrorCode.INVALID_PARAMETER.getCode(),"Unknown sort: " + sort);
+        }
+        if (nearby) {
+            throw new BusinessException(ErrorCode.INVALID_PARAMETER.getCode(),"Distance searches are sorted by distance");
+        }
+        return true;
+    }
 
-        // 执行自定义多表分页查询
-        IPage<CoachDetailsResponse> rawPage =
-                coachMapper.selectCoachPage(pageParam, memberId, request);
+    @Override
+    public GeneralResponseResult coachSuggest(String q, int limit) {
+        int size = Math.max(1, Math.min(limit, MAX_SUGGESTIONS));
+        List<CoachSuggestion> suggestions = coachSearchIndex.suggest(Objects.isNull(q) ? "" : q, size);
+        //索引还没建好时不给建议, 不回退到数据库
+        return new GeneralResponseResult(ErrorCode.SUCCESS, Objects.isNull(suggestions) ? new ArrayList<>() : suggestions);
+    }
 
-        // 取出结果列表
-        List<CoachDetailsResponse> records = rawPage.getRecords();
+    @Override
+    public GeneralResponseResult popularCoaches(int limit) {
+        int size = Math.max(1, Math.min(limit, MAX_POPULAR));
+        Map<Long, Long> scores = coachPopularity.top(size);
+        //名字和照片都从卡片缓存取, 只有未命中的卡片才查库
+        Map<Long, CoachCard> cards = coachCardStore.getCards(new ArrayList<>(scores.keySet()));
+        List<PopularCoach> popular = new ArrayList<>(cards.size());
+        for (CoachCard card : cards.values()) {
+            popular.add(new PopularCoach(card.getCoachId(), card.getUserName(),
+                    PhotoRendition.CARD.urlOf(card.getPhoto()), scores.get(card.getCoachId())));
+        }
+        return new GeneralResponseResult(ErrorCode.SUCCESS, popular);
+    }
 
-        // 4) 遍历每个 CoachDetailsResponse，把数据库里 GROUP_CONCAT 出来的逗号分隔字符串，拆分成 List
-        for (CoachDetailsResponse resp : records) {
-            // 拆分 tagNames
-            if (resp.getGroupTagNames() != null) {
-                resp.setTagNames(StringSplitUtil.splitByComma(resp.getGroupTagNames()));
+    //等待一个并行查询, 把查询里抛出的异常原样抛给调用方
+    private static <T> T join(CompletableFuture<T> lookup) {
+        try {
+            return lookup.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
             }
-            // 拆分 locationNames
-            if (resp.getGroupLocationNames() != null) {
-                resp.setLocationNames(StringSplitUtil.splitByComma(resp.getGroupLocationNames()));
+            throw e;
+        }
+    }
+
+    //按给定顺序取教练卡片; 期间被删除的教练直接跳过
+    private List<CoachDetailsResponse> hydrate(List<Long> coachIds) {
+        if (coachIds.isEmpty()) {
+            return new ArrayList<>();
+        }
+        Map<Long, CoachCard> cards = coachCardStore.getCards(coachIds);
+        LocalDate today = LocalDate.now();
+        List<CoachDetailsResponse> records = new ArrayList<>(cards.size());
+        for (CoachCard card : cards.values()) {
+            CoachDetailsResponse details = new CoachDetailsResponse();
+            details.setCoachId(card.getCoachId());
+            details.setUserName(card.getUserName());
+            details.setEmail(card.getEmail());
+            details.setIntro(card.getIntro());
+            details.setRating(card.getRating());
+            details.setTagNames(card.getTagNames());
+            details.setLocationNames(card.getLocationNames());
+            if (Objects.nonNull(card.getBirthday())) {
+                details.setAge(Period.between(card.getBirthday(), today).getYears());
             }
+            //列表只需要卡片尺寸的照片
+            details.setPhoto(PhotoRendition.CARD.urlOf(card.getPhoto()));
+            records.add(details);
+        }
+        return records;
+    }
+
+    //当前会员在这一页里还在等待回复的教练, 一条按会员走索引的小查询
+    private void overlayStatus(Long memberId, List<CoachDetailsResponse> records) {
+        if (records.isEmpty()) {
+            return;
+        }
+        List<Long> coachIds = new ArrayList<>(records.size());
+        records.forEach(details -> coachIds.add(details.getCoachId()));
+        Set<Long> pending = new HashSet<>(subscriptionMapper.selectPendingCoachIds(memberId, coachIds));
+        for (CoachDetailsResponse details : records) {
+            details.setStatus(pending.contains(details.getCoachId()) ? "pending" : "Normal");
         }
-        return rawPage;
     }
 
 
@@ -18,6 +18,8 @@ import com.fitness_centre.exception.BusinessException;
 import com.fitness_centre.exception.SystemException;
 import com.fitness_centre.mapper.*;
 import com.fitness_centre.service.biz.interfaces.SessionBookingService;
+import com.fitness_centre.service.infrastructure.CoachPopularity;
+import com.fitness_centre.service.infrastructure.UnreadCounters;
 import lombok.AllArgsConstructor;
 import lombok.Data;
 import org.springframework.beans.BeanUtils;
@@ -53,6 +55,12 @@ public class SessionBookingServiceImpl extends ServiceImpl<SessionBookingMapper,
     @Autowired
     private SessionBookingMapper sessionBookingMapper; // 显式注入，供单元测试 Mock
 
+    @Autowired
+    private CoachPopularity coachPopularity;
+
+    @Autowired
+    private UnreadCounters unreadCounters;
+
     //检查可用时间的步长
     private static final int BOOKING_STEP_MINUTES = 15;
 
@@ -384,6 +392,8 @@ public class SessionBookingServiceImpl extends ServiceImpl<SessionBookingMapper,
         if(row <= 0){
             throw new SystemException(ErrorCode.DB_OPERATION_ERROR);
         }
+        unreadCounters.add(request.getCoachId(),UnreadCounters.SESSION,1);
+        unreadCounters.addUnrecorded(request.getCoachId(),sessionBooking.getId(),endTime);
 
         return new GeneralResponseResult(ErrorCode.SUCCESS);
     }
@@ -401,6 +411,13 @@ public class SessionBookingServiceImpl extends ServiceImpl<SessionBookingMapper,
         if (rows <= 0){
             throw new SystemException(ErrorCode.DB_OPERATION_ERROR);
         }
+        if(Boolean.FALSE.equals(sessionBooking.getCoachIsRead())){
+            unreadCounters.add(sessionBooking.getCoachId(),UnreadCounters.SESSION,-1);
+        }
+        if(Boolean.FALSE.equals(sessionBooking.getMemberIsRead())){
+            unreadCounters.add(memberId,UnreadCounters.SESSION,-1);
+        }
+        unreadCounters.removeUnrecorded(sessionBooking.getCoachId(),List.of(requestId));
         return new GeneralResponseResult(ErrorCode.SUCCESS);
     }
 
@@ -426,6 +443,15 @@ public class SessionBookingServiceImpl extends ServiceImpl<SessionBookingMapper,
         if(row <= 0){
             throw new SystemException(ErrorCode.DB_OPERATION_ERROR);
         }
+        if(Boolean.FALSE.equals(sessionBooking.getMemberIsRead())){
+            unreadCounters.add(memberId,UnreadCounters.SESSION,-1);
+        }
+        if(!Boolean.FALSE.equals(sessionBooking.getCoachIsRead())){
+            unreadCounters.add(sessionBooking.getCoachId(),UnreadCounters.SESSION,1);
+        }
+        if(sessionBooking.getStatus() == RequestStatus.ACCEPT){
+            coachPopularity.record(sessionBooking.getCoachId(),-CoachPopularity.SESSION_WEIGHT);
+        }
         return new GeneralResponseResult(ErrorCode.SUCCESS);
     }
 
@@ -604,14 +630,8 @@ public class SessionBookingServiceImpl extends ServiceImpl<SessionBookingMapper,
     }
 
     public GeneralResponseResult countUnreadRequest(Long userId, UserRole role){
-        LambdaQueryWrapper<SessionBooking> queryWrapper = new LambdaQueryWrapper<>();
-        switch (role){
-            case MEMBER -> queryWrapper.eq(SessionBooking::getMemberId,userId)
-                    .eq(SessionBooking::getMemberIsRead,false);
-            case COACH -> queryWrapper.eq(SessionBooking::getCoachId,userId)
-                    .eq(SessionBooking::getCoachIsRead,false);
-        }
-        Long count = this.baseMapper.selectCount(queryWrapper);
+        //Redis 里的计数, 不再每次 COUNT
+        Long count = unreadCounters.counts(userId,role).getOrDefault(UnreadCounters.SESSION,0L);
         Map<String,Long> map = new HashMap<>();
         map.put("count",count);
         return new GeneralResponseResult(ErrorCode.SUCCESS,map);
@@ -620,23 +640,36 @@ public class SessionBookingServiceImpl extends ServiceImpl<SessionBookingMapper,
     @Override
     public GeneralResponseResult readRequest(Long requestId, Long userId, UserRole role) {
         LambdaUpdateWrapper<SessionBooking> updateWrapper = new LambdaUpdateWrapper<>();
+        LambdaQueryWrapper<SessionBooking> existsWrapper = new LambdaQueryWrapper<>();
+        //只改原来未读的, 改到了才把未读数减一
         switch (role){
-            case  MEMBER ->
+            case  MEMBER -> {
                 updateWrapper.eq(SessionBooking::getMemberId,userId)
                         .eq(SessionBooking::getId,requestId)
+                        .eq(SessionBooking::getMemberIsRead,false)
                         .set(SessionBooking::getMemberIsRead,true);
-
-            case COACH ->
+                existsWrapper.eq(SessionBooking::getMemberId,userId)
+                        .eq(SessionBooking::getId,requestId);
+            }
+            case COACH -> {
                 updateWrapper.eq(SessionBooking::getCoachId,userId)
                         .eq(SessionBooking::getId,requestId)
+                        .eq(SessionBooking::getCoachIsRead,false)
                         .set(SessionBooking::getCoachIsRead,true);
+                existsWrapper.eq(SessionBooking::getCoachId,userId)
+                        .eq(SessionBooking::getId,requestId);
+            }
             default ->
                 throw new BusinessException(ErrorCode.INVALID_PARAMETER.getCode(),"Illegal roles");
         }
 
         try{
             int rows = this.baseMapper.update(updateWrapper);
-            if(rows <= 0){
+            if(rows > 0){
+                unreadCounters.add(userId,UnreadCounters.SESSION,-1);
+            }
+            //已经读过的照常成功, 请求不存在才报错
+            else if(!this.baseMapper.exists(existsWrapper)){
                 throw new SystemException(ErrorCode.DB_OPERATION_ERROR);
             }
         }
@@ -651,9 +684,18 @@ public class SessionBookingServiceImpl extends ServiceImpl<SessionBookingMapper,
         if(Objects.isNull(reply)){
             throw new BusinessException(ErrorCode.INVALID_PARAMETER.getCode(),"Please bring your reply");
         }
+        //改之前的已读状态, 用来算两边未读数的变化
+        SessionBooking sessionBooking = this.baseMapper.selectOne(new LambdaQueryWrapper<SessionBooking>()
+                .eq(SessionBooking::getCoachId,coachId)
+                .eq(SessionBooking::getId,requestId));
+        if(Objects.isNull(sessionBooking)){
+            throw new SystemException(ErrorCode.DB_OPERATION_ERROR.getCode(),"Database connection error");
+        }
+        //只在状态还是刚读到的那个时更新, 并发的两次回复只有一次生效
         LambdaUpdateWrapper<SessionBooking> updateAcceptWrapper = new LambdaUpdateWrapper<>();
         updateAcceptWrapper.eq(SessionBooking::getCoachId,coachId)
                 .eq(SessionBooking::getId,requestId)
+                .eq(SessionBooking::getStatus,sessionBooking.getStatus())
                 .set(SessionBooking::getStatus,status)
                 .set(SessionBooking::getReply,reply)
                 .set(SessionBooking::getResponseTime,LocalDateTime.now())
@@ -662,13 +704,17 @@ public class SessionBookingServiceImpl extends ServiceImpl<SessionBookingMapper,
 
         int rows = this.baseMapper.update(updateAcceptWrapper);
         if(rows <= 0){
-            throw new SystemException(ErrorCode.DB_OPERATION_ERROR.getCode(),"Database connection error");
+            throw new BusinessException(ErrorCode.INVALID_PARAMETER.getCode(),"This request has just been handled, please refresh");
         }
-        LambdaQueryWrapper<SessionBooking> sessionBookingLambdaQueryWrapper = new LambdaQueryWrapper<>();
-        sessionBookingLambdaQueryWrapper.eq(SessionBooking::getId,requestId);
-        SessionBooking sessionBooking = this.baseMapper.selectOne(sessionBookingLambdaQueryWrapper);
         String autoReply = "Sorry, this slot is already taken.";
 
+        //同一时段的其他请求会被一起拒绝, 先取出它们原来的已读状态
+        List<SessionBooking> others = this.baseMapper.selectList(new LambdaQueryWrapper<SessionBooking>()
+                .eq(SessionBooking::getCoachId,coachId)
+                .ne(SessionBooking::getId,requestId)
+                .eq(SessionBooking::getStartTime,sessionBooking.getStartTime())
+                .eq(SessionBooking::getEndTime,sessionBooking.getEndTime()));
+
         LambdaUpdateWrapper<SessionBooking> updateRejectWrapper = new LambdaUpdateWrapper<>();
         updateRejectWrapper.eq(SessionBooking::getCoachId,coachId)
                 .ne(SessionBooking::getId,requestId)
@@ -682,6 +728,24 @@ public class SessionBookingServiceImpl extends ServiceImpl<SessionBookingMapper,
 
         this.baseMapper.update(updateRejectWrapper);
 
+        List<SessionBooking> changed = new ArrayList<>(others);
+        changed.add(sessionBooking);
+        long coachRead = 0;
+        for(SessionBooking booking : changed){
+            if(Boolean.FALSE.equals(booking.getCoachIsRead())){
+                coachRead++;
+            }
+            if(!Boolean.FALSE.equals(booking.getMemberIsRead())){
+                unreadCounters.add(booking.getMemberId(),UnreadCounters.SESSION,1);
+            }
+        }
+        unreadCounters.add(coachId,UnreadCounters.SESSION,-coachRead);
+
+        coachPopularity.recordTransition(coachId,CoachPopularity.SESSION_WEIGHT,sessionBooking.getStatus(),status);
+        //被一起拒绝的请求里原来接受过的, 把热度扣回来
+        for(SessionBooking other : others){
+            coachPopularity.recordTransition(coachId,CoachPopularity.SESSION_WEIGHT,other.getStatus(),RequestStatus.REJECT);
+        }
         return new GeneralResponseResult(ErrorCode.SUCCESS);
     }
 
@@ -704,11 +768,8 @@ public class SessionBookingServiceImpl extends ServiceImpl<SessionBookingMapper,
 
     @Override
     public GeneralResponseResult countUnRecordSession(Long coachId) {
-        LambdaQueryWrapper<SessionBooking> sessionQueryWrapper = new LambdaQueryWrapper<>();
-        sessionQueryWrapper.eq(SessionBooking::getCoachId,coachId)
-                .le(SessionBooking::getEndTime,LocalDateTime.now())
-                .eq(SessionBooking::getIsRecord,false);
-        Long count = this.baseMapper.selectCount(sessionQueryWrapper);
+        //已结束未记录的课按结束时间放在 Redis 有序集合里
+        Long count = unreadCounters.counts(coachId,UserRole.COACH).getOrDefault(UnreadCounters.UNRECORDED,0L);
         Map<String,Long> dataMap = new HashMap<>();
         dataMap.put("count",count);
         return new GeneralResponseResult(ErrorCode.SUCCESS,dataMap);
@@ -6,6 +6,7 @@ import com.baomidou.mybatisplus.core.metadata.IPage;
 import com.baomidou.mybatisplus.extension.plugins.pagination.Page;
 import com.baomidou.mybatisplus.extension.service.impl.ServiceImpl;
 import com.fitness_centre.constant.ErrorCode;
+import com.fitness_centre.constant.PhotoRendition;
 import com.fitness_centre.constant.RequestStatus;
 import com.fitness_centre.constant.UserRole;
 import com.fitness_centre.domain.*;
@@ -17,6 +18,8 @@ import com.fitness_centre.exception.BusinessException;
 import com.fitness_centre.exception.SystemException;
 import com.fitness_centre.mapper.*;
 import com.fitness_centre.service.biz.interfaces.SubscriptionService;
+import com.fitness_centre.service.infrastructure.CoachPopularity;
+import com.fitness_centre.service.infrastructure.UnreadCounters;
 import com.fitness_centre.utils.DateUtil;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
@@ -55,6 +58,12 @@ public class SubscriptionServiceImpl extends ServiceImpl<SubscriptionMapper,Subs
     @Autowired
     private CoachLocationMapper coachLocationMapper;
 
+    @Autowired
+    private CoachPopularity coachPopularity;
+
+    @Autowired
+    private UnreadCounters unreadCounters;
+
 
     /**
      * 会员向特定教练发送订阅。
@@ -84,6 +93,7 @@ public class SubscriptionServiceImpl extends ServiceImpl<SubscriptionMapper,Subs
         //对于coach是未读的
         subscription.setMemberIsRead(true);
         this.baseMapper.insert(subscription);
+        unreadCounters.add(request.getCoachId(),UnreadCounters.SUBSCRIPTION,1);
         return new GeneralResponseResult(ErrorCode.SUCCESS);
     }
 
@@ -184,23 +194,37 @@ public class SubscriptionServiceImpl extends ServiceImpl<SubscriptionMapper,Subs
     @Override
     public GeneralResponseResult readRequest(Long requestId, Long userId, UserRole role) {
         LambdaUpdateWrapper<Subscription> updateWrapper = new LambdaUpdateWrapper<>();
+        LambdaQueryWrapper<Subscription> existsWrapper = new LambdaQueryWrapper<>();
 
+        //只改原来未读的, 改到了才把未读数减一
         switch (role){
-            case COACH ->
+            case COACH -> {
                 updateWrapper.eq(Subscription::getCoachId,userId)
                         .eq(Subscription::getId,requestId)
+                        .eq(Subscription::getCoachIsRead,false)
                         .set(Subscription::getCoachIsRead,true);
-            case MEMBER ->
+                existsWrapper.eq(Subscription::getCoachId,userId)
+                        .eq(Subscription::getId,requestId);
+            }
+            case MEMBER -> {
                 updateWrapper.eq(Subscription::getMemberId,userId)
                         .eq(Subscription::getId,requestId)
+                        .eq(Subscription::getMemberIsRead,false)
                         .set(Subscription::getMemberIsRead,true);
+                existsWrapper.eq(Subscription::getMemberId,userId)
+                        .eq(Subscription::getId,requestId);
+            }
             default ->
                 throw new BusinessException(ErrorCode.INVALID_PARAMETER.getCode(),"Illegal roles");
         }
 
         try{
             int rows = this.baseMapper.update(null,updateWrapper);
-            if(rows < 0 || rows == 0){
+            if(rows > 0){
+                unreadCounters.add(userId,UnreadCounters.SUBSCRIPTION,-1);
+            }
+            //已经读过的照常成功, 请求不存在才报错
+            else if(!this.baseMapper.exists(existsWrapper)){
                 throw new SystemException(ErrorCode.DB_OPERATION_ERROR);
             }
         }
@@ -216,15 +240,8 @@ public class SubscriptionServiceImpl extends ServiceImpl<SubscriptionMapper,Subs
      */
     @Override
     public GeneralResponseResult countUnreadRequest(Long userId,UserRole role) {
-        LambdaQueryWrapper<Subscription> queryWrapper = new LambdaQueryWrapper<>();
-        switch (role){
-            case COACH -> queryWrapper.eq(Subscription::getCoachId,userId)
-                    .eq(Subscription::getCoachIsRead,false);
-            case MEMBER -> queryWrapper.eq(Subscription::getMemberId,userId)
-                    .eq(Subscription::getMemberIsRead,false);
-        }
-
-        Long count = this.baseMapper.selectCount(queryWrapper);
+        //Redis 里的计数, 不再每次 COUNT
+        Long count = unreadCounters.counts(userId,role).getOrDefault(UnreadCounters.SUBSCRIPTION,0L);
         Map<String,Long> map = new HashMap<>();
         map.put("count",count);
 
@@ -242,30 +259,54 @@ public class SubscriptionServiceImpl extends ServiceImpl<SubscriptionMapper,Subs
         if(Objects.isNull(reply)){
             throw new BusinessException(ErrorCode.INVALID_PARAMETER.getCode(),"Please bring your reply");
         }
+        //改之前的已读状态, 用来算两边未读数的变化
+        Subscription before = this.baseMapper.selectOne(new LambdaQueryWrapper<Subscription>()
+                .eq(Subscription::getCoachId,coachId)
+                .eq(Subscription::getId,requestId));
+        if(Objects.isNull(before)){
+            throw new SystemException(ErrorCode.DB_OPERATION_ERROR.getCode(),"Database connection error");
+        }
+        //只在状态还是刚读到的那个时更新, 并发的两次回复只有一次生效
         LambdaUpdateWrapper<Subscription> updateWrapper = new LambdaUpdateWrapper<>();
         updateWrapper.eq(Subscription::getCoachId,coachId)
                 .eq(Subscription::getId,requestId)
+                .eq(Subscription::getStatus,before.getStatus())
                 .set(Subscription::getStatus,status)
                 .set(Subscription::getReply,reply)
                 .set(Subscription::getResponseTime,LocalDateTime.now())
                 .set(Subscription::getCoachIsRead,true)
                 .set(Subscription::getMemberIsRead,false);
 
+        int rows;
         try{
-            int rows = this.baseMapper.update(null,updateWrapper);
-            if(rows <= 0){
-                throw new SystemException(ErrorCode.DB_OPERATION_ERROR);
-            }
+            rows = this.baseMapper.update(null,updateWrapper);
         }
         catch (Exception e){
             throw new SystemException(ErrorCode.DB_OPERATION_ERROR.getCode(),"Database connection error");
         }
+        if(rows <= 0){
+            throw new BusinessException(ErrorCode.INVALID_PARAMETER.getCode(),"This request has just been handled, please refresh");
+        }
+        if(Boolean.FALSE.equals(before.getCoachIsRead())){
+            unreadCounters.add(coachId,UnreadCounters.SUBSCRIPTION,-1);
+        }
+        if(!Boolean.FALSE.equals(before.getMemberIsRead())){
+            unreadCounters.add(before.getMemberId(),UnreadCounters.SUBSCRIPTION,1);
+        }
+        coachPopularity.recordTransition(coachId,CoachPopularity.SUBSCRIPTION_WEIGHT,before.getStatus(),status);
         return new GeneralResponseResult(ErrorCode.SUCCESS);
     }
 
 
     //todo 取消订阅
     public GeneralResponseResult memberCancelSubscription(Long memberId,Long coachId){
+        //只有已经接受的订阅被取消才从热度里扣掉
+        boolean wasAccepted = this.baseMapper.exists(
+                new LambdaQueryWrapper<Subscription>()
+                        .eq(Subscription::getCoachId,coachId)
+                        .eq(Subscription::getMemberId,memberId)
+                        .eq(Subscription::getStatus,RequestStatus.ACCEPT)
+        );
         LambdaUpdateWrapper<Subscription> updateWrapper = new LambdaUpdateWrapper<>();
         updateWrapper.eq(Subscription::getCoachId,coachId)
                 .eq(Subscription::getMemberId,memberId)
@@ -275,6 +316,9 @@ public class SubscriptionServiceImpl extends ServiceImpl<SubscriptionMapper,Subs
         if(row <= 0){
             throw new SystemException(ErrorCode.DB_OPERATION_ERROR);
         }
+        if(wasAccepted){
+            coachPopularity.record(coachId,-CoachPopularity.SUBSCRIPTION_WEIGHT);
+        }
         return new GeneralResponseResult(ErrorCode.SUCCESS);
     }
 
@@ -299,7 +343,7 @@ public class SubscriptionServiceImpl extends ServiceImpl<SubscriptionMapper,Subs
                     coachInfoLambdaQueryWrapper.eq(CoachInfo::getId,subscription.getCoachId());
                     CoachInfo coachInfo = coachMapper.selectOne(coachInfoLambdaQueryWrapper);
                     String intro = coachInfo.getIntro();
-                    String photo = coachInfo.getPhoto();
+                    String photo = PhotoRendition.CARD.urlOf(coachInfo.getPhoto());
 
                     List<Tag> tagList = coachTagMapper.selectTagsByCoachId(subscription.getCoachId());
                     List<String> tagNames = tagList.stream()
@@ -8,22 +8,47 @@ import com.baomidou.mybatisplus.core.metadata.IPage;
 import com.baomidou.mybatisplus.extension.plugins.pagination.Page;
 import com.baomidou.mybatisplus.extension.service.impl.ServiceImpl;
 import com.fitness_centre.constant.ErrorCode;
+import com.fitness_centre.constant.UserRole;
 import com.fitness_centre.domain.HistoryTag;
+import com.fitness_centre.domain.MemberProgress;
 import com.fitness_centre.domain.SessionBooking;
+import com.fitness_centre.domain.Tag;
 import com.fitness_centre.domain.TrainingHistory;
 import com.fitness_centre.domain.User;
+import com.fitness_centre.dto.AddHistoryRequest;
 import com.fitness_centre.dto.GeneralResponseResult;
+import com.fitness_centre.dto.HistorySearchRequest;
+import com.fitness_centre.dto.HistorySearchRow;
+import com.fitness_centre.dto.MemberProgressResponse;
+import com.fitness_centre.dto.ProgressPoint;
+import com.fitness_centre.dto.ProgressSeries;
+import com.fitness_centre.dto.member.CoachCard;
 import com.fitness_centre.dto.TrainingHistoryListResponse;
+import com.fitness_centre.exception.BusinessException;
 import com.fitness_centre.exception.SystemException;
 import com.fitness_centre.mapper.*;
 import com.fitness_centre.service.biz.interfaces.TrainingHistoryService;
+import com.fitness_centre.service.infrastructure.CoachCardStore;
+import com.fitness_centre.service.infrastructure.CoachSearchIndex;
+import com.fitness_centre.service.infrastructure.ReferenceData;
+import com.fitness_centre.service.infrastructure.UnreadCounters;
 import org.springframework.beans.BeanUtils;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 
+import java.time.DayOfWeek;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.time.temporal.TemporalAdjusters;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
@@ -37,6 +62,16 @@ import java.util.stream.Collectors;
  */
 @Service
 public class TrainingHistoryServiceImpl extends ServiceImpl<TrainingHistoryMapper,TrainingHistory> implements TrainingHistoryService {
+    private final static int MIN_RATING = 1;
+    private final static int MAX_RATING = 5;
+    //一次补录的课程数上限
+    private final static int MAX_BATCH_RECORDS = 50;
+    //进度图最多看两年
+    private final static int MAX_PROGRESS_WEEKS = 104;
+    //反馈搜索的词数和每页条数上限
+    private final static int MAX_SEARCH_TERMS = 10;
+    private final static int MAX_SEARCH_PAGE_SIZE = 50;
+
     @Autowired
     private SessionBookingMapper sessionBookingMapper;
 
@@ -49,6 +84,24 @@ public class TrainingHistoryServiceImpl extends ServiceImpl<TrainingHistoryMappe
     @Autowired
     private TagMapper tagMapper;
 
+    @Autowired
+    private CoachMapper coachMapper;
+
+    @Autowired
+    private CoachSearchIndex coachSearchIndex;
+
+    @Autowired
+    private CoachCardStore coachCardStore;
+
+    @Autowired
+    private MemberProgressMapper memberProgressMapper;
+
+    @Autowired
+    private ReferenceData referenceData;
+
+    @Autowired
+    private UnreadCounters unreadCounters;
+
     @Autowired
     private TrainingHistoryMapper trainingHistoryMapper;
 
@@ -59,43 +112,155 @@ public class TrainingHistoryServiceImpl extends ServiceImpl<TrainingHistoryMappe
     }
 
     @Override
+    @Transactional
     public GeneralResponseResult addTrainingHistory(Long coachId,Long sessionId, String feedback,List<Long> tagList) {
+        recordSessions(coachId, List.of(new AddHistoryRequest(sessionId, tagList, feedback)));
+        return new GeneralResponseResult(ErrorCode.SUCCESS);
+    }
+
+    @Override
+    @Transactional
+    public GeneralResponseResult addTrainingHistories(Long coachId, List<AddHistoryRequest> requests) {
+        if (Objects.isNull(requests) || requests.isEmpty() || requests.size() > MAX_BATCH_RECORDS) {
+            throw new BusinessException(ErrorCode.INVALID_PARAMETER.getCode(),"Record between 1 and " + MAX_BATCH_RECORDS + " sessions at a time");
+        }
+        recordSessions(coachId, requests);
+        Map<String,Integer> dataMap = new HashMap<>();
+        dataMap.put("count",requests.size());
+        return new GeneralResponseResult(ErrorCode.SUCCESS,dataMap);
+    }
+
+    /**
+     * Mark the sessions recorded first: the conditional update only matches finished, unrecorded sessions of
+     * this coach and locks them, so a second attempt at the same session matches nothing and rolls back.
+     * Then one read for the bookings, one insert per history and one multi-row insert for every tag link.
+     */
+    private void recordSessions(Long coachId, List<AddHistoryRequest> requests) {
+        List<Long> sessionIds = new ArrayList<>(requests.size());
+        for (AddHistoryRequest request : requests) {
+            if (Objects.isNull(request) || Objects.isNull(request.getSessionId())) {
+                throw new BusinessException(ErrorCode.INVALID_PARAMETER.getCode(),"Session id is required");
+            }
+            sessionIds.add(request.getSessionId());
+        }
+        if (new HashSet<>(sessionIds).size() != sessionIds.size()) {
+            throw new BusinessException(ErrorCode.INVALID_PARAMETER.getCode(),"A session can only be recorded once");
+        }
+        int rows = sessionBookingMapper.markRecorded(coachId, sessionIds, LocalDateTime.now());
+        if (rows != sessionIds.size()) {
+            throw new BusinessException(ErrorCode.RESOURCE_CONFLICT.getCode(),"Session not found, not finished or already recorded");
+        }
         // 使用普通QueryWrapper代替LambdaQueryWrapper
         QueryWrapper<SessionBooking> sessionQueryWrapper = new QueryWrapper<>();
-        sessionQueryWrapper.eq("id", sessionId).eq("coach_id", coachId);
-        SessionBooking sessionBooking = sessionBookingMapper.selectOne(sessionQueryWrapper);
-        TrainingHistory trainingHistory = new TrainingHistory();
-        BeanUtils.copyProperties(sessionBooking,trainingHistory,"id");
-        trainingHistory.setMemberIsRead(false);
-        trainingHistory.setFeedback(feedback);
-        //为了之后的主键回填
-        trainingHistory.setId(null);
-        int rows = this.trainingHistoryMapper.insert(trainingHistory);
-        if (rows <= 0){
-            throw new SystemException(ErrorCode.DB_OPERATION_ERROR);
+        sessionQueryWrapper.in("id", sessionIds);
+        Map<Long, SessionBooking> bookings = new HashMap<>();
+        for (SessionBooking booking : sessionBookingMapper.selectList(sessionQueryWrapper)) {
+            bookings.put(booking.getId(), booking);
         }
-        //将这条Session标记为已记录
-        // 使用普通UpdateWrapper代替LambdaUpdateWrapper
-        UpdateWrapper<SessionBooking> sessionUpdateWrapper = new UpdateWrapper<>();
-        sessionUpdateWrapper.eq("id", sessionId).set("is_record", true);
-        rows = sessionBookingMapper.update(sessionUpdateWrapper);
-        if (rows <= 0){
-            throw new SystemException(ErrorCode.DB_OPERATION_ERROR);
-        }
-        Long newHistoryId = trainingHistory.getId();
-        if(!tagList.isEmpty() && !Objects.isNull(tagList)){
-            //将history和tag关联
-            for(Long tagId:tagList){
-                HistoryTag historyTag = new HistoryTag();
-                historyTag.setHistoryId(newHistoryId);
-                historyTag.setTagId(tagId);
-                int linkRows = historyTagMapper.insert(historyTag);
-                if(linkRows <= 0){
-                    throw new SystemException(ErrorCode.DB_OPERATION_ERROR);
+
+        List<HistoryTag> links = new ArrayList<>();
+        Map<String, MemberProgress> progress = new LinkedHashMap<>();
+        for (AddHistoryRequest request : requests) {
+            TrainingHistory trainingHistory = new TrainingHistory();
+            BeanUtils.copyProperties(bookings.get(request.getSessionId()),trainingHistory,"id");
+            trainingHistory.setMemberIsRead(false);
+            trainingHistory.setFeedback(request.getFeedback());
+            //为了之后的主键回填
+            trainingHistory.setId(null);
+            rows = this.trainingHistoryMapper.insert(trainingHistory);
+            if (rows <= 0){
+                throw new SystemException(ErrorCode.DB_OPERATION_ERROR);
+            }
+            unreadCounters.add(trainingHistory.getMemberId(), UnreadCounters.HISTORY, 1);
+            LocalDate week = weekOf(trainingHistory.getStartTime());
+            countProgress(progress, trainingHistory.getMemberId(), week, MemberProgress.SESSIONS, 0L);
+            countProgress(progress, trainingHistory.getMemberId(), week, MemberProgress.COACHES, trainingHistory.getCoachId());
+            //将history和tag关联, 重复的tag只记一次
+            if (Objects.nonNull(request.getTagList())) {
+                for (Long tagId : new LinkedHashSet<>(request.getTagList())) {
+                    links.add(new HistoryTag(trainingHistory.getId(), tagId));
+                    countProgress(progress, trainingHistory.getMemberId(), week, MemberProgress.TAGS, tagId);
                 }
             }
         }
-        return new GeneralResponseResult(ErrorCode.SUCCESS);
+        if (!links.isEmpty()) {
+            rows = historyTagMapper.insertLinks(links);
+            if (rows != links.size()) {
+                throw new SystemException(ErrorCode.DB_OPERATION_ERROR);
+            }
+        }
+        //每周计数和记录在同一事务里, 一条多行 upsert
+        memberProgressMapper.addCounts(new ArrayList<>(progress.values()));
+        unreadCounters.removeUnrecorded(coachId, sessionIds);
+    }
+
+    private static void countProgress(Map<String, MemberProgress> progress, Long memberId, LocalDate week, String dimension, Long itemId) {
+        MemberProgress counter = progress.computeIfAbsent(memberId + "|" + week + "|" + dimension + "|" + itemId,
+                key -> new MemberProgress(memberId, week, dimension, itemId, 0));
+        counter.setCount(counter.getCount() + 1);
+    }
+
+    private static LocalDate weekOf(LocalDateTime time) {
+        return time.toLocalDate().with(TemporalAdjusters.previousOrSame(DayOfWeek.MONDAY));
+    }
+
+    @Override
+    public GeneralResponseResult memberProgress(Long memberId, int weeks) {
+        int span = Math.max(1, Math.min(weeks, MAX_PROGRESS_WEEKS));
+        LocalDate thisWeek = weekOf(LocalDateTime.now());
+        LocalDate firstWeek = thisWeek.minusWeeks(span - 1);
+        //一条按 (member_id, week_start) 走主键的查询
+        QueryWrapper<MemberProgress> progressWrapper = new QueryWrapper<>();
+        progressWrapper.eq("member_id", memberId).ge("week_start", firstWeek);
+        List<MemberProgress> counters = memberProgressMapper.selectList(progressWrapper);
+
+        long[] sessions = new long[span];
+        Map<Long, long[]> tagWeeks = new HashMap<>();
+        Map<Long, long[]> coachWeeks = new HashMap<>();
+        for (MemberProgress counter : counters) {
+            int week = (int) ChronoUnit.WEEKS.between(firstWeek, counter.getWeekStart());
+            if (week < 0 || week >= span) {
+                continue;
+            }
+            switch (counter.getDimension()) {
+                case MemberProgress.SESSIONS -> sessions[week] += counter.getCount();
+                case MemberProgress.TAGS -> tagWeeks.computeIfAbsent(counter.getItemId(), id -> new long[span])[week] += counter.getCount();
+                case MemberProgress.COACHES -> coachWeeks.computeIfAbsent(counter.getItemId(), id -> new long[span])[week] += counter.getCount();
+                default -> { }
+            }
+        }
+
+        List<String> labels = new ArrayList<>(span);
+        for (int week = 0; week < span; week++) {
+            labels.add(firstWeek.plusWeeks(week).toString());
+        }
+        //tag 名来自内存快照, 教练名来自卡片缓存, 都不再查库
+        Map<Long, String> tagNames = referenceData.current().getTags();
+        Map<Long, CoachCard> cards = coachCardStore.getCards(new ArrayList<>(coachWeeks.keySet()));
+        Map<Long, String> coachNames = new HashMap<>();
+        cards.forEach((coachId, card) -> coachNames.put(coachId, card.getUserName()));
+
+        MemberProgressResponse response = new MemberProgressResponse();
+        response.setSessions(points(labels, sessions));
+        response.setTags(series(labels, tagWeeks, tagNames, "未知标签"));
+        response.setCoaches(series(labels, coachWeeks, coachNames, "未知教练"));
+        return new GeneralResponseResult(ErrorCode.SUCCESS, response);
+    }
+
+    private static List<ProgressPoint> points(List<String> labels, long[] values) {
+        List<ProgressPoint> points = new ArrayList<>(labels.size());
+        for (int week = 0; week < labels.size(); week++) {
+            points.add(new ProgressPoint(labels.get(week), values[week]));
+        }
+        return points;
+    }
+
+    private static List<ProgressSeries> series(List<String> labels, Map<Long, long[]> weeks, Map<Long, String> names, String unknown) {
+        List<ProgressSeries> series = new ArrayList<>(weeks.size());
+        weeks.forEach((id, values) -> series.add(new ProgressSeries(id, names.getOrDefault(id, unknown),
+                Arrays.stream(values).sum(), points(labels, values))));
+        series.sort(Comparator.comparingLong(ProgressSeries::getTotal).reversed().thenComparing(ProgressSeries::getId));
+        return series;
     }
 
     @Override
@@ -163,12 +328,67 @@ public class TrainingHistoryServiceImpl extends ServiceImpl<TrainingHistoryMappe
         return new GeneralResponseResult<>(ErrorCode.SUCCESS, responsePage);
     }
 
+    /**
+     * Ranked by the full-text relevance of the feedback, newest first on ties. The date range and tag
+     * filters go into the same query, so the count and the pages agree.
+     */
+    @Override
+    public GeneralResponseResult searchTrainingHistory(Long memberId, HistorySearchRequest request) {
+        String query = toBooleanQuery(request.getQuery());
+        if(request.getPageNow() < 1 || request.getPageSize() < 1 || request.getPageSize() > MAX_SEARCH_PAGE_SIZE){
+            throw new BusinessException(ErrorCode.INVALID_PARAMETER.getCode(),"pageSize must be between 1 and " + MAX_SEARCH_PAGE_SIZE);
+        }
+        //日期范围和 viewTrainingHistory 保持一致
+        LocalDateTime startTime = Objects.isNull(request.getStartDate()) ? null : request.getStartDate().atStartOfDay();
+        LocalDateTime endTime = Objects.isNull(request.getEndDate()) ? null : request.getEndDate().atStartOfDay();
+
+        IPage<HistorySearchRow> hits = trainingHistoryMapper.searchFeedback(new Page<>(request.getPageNow(), request.getPageSize()),
+                memberId, query, startTime, endTime, request.getTagIds());
+
+        Map<Long, String> tagNames = referenceData.current().getTags();
+        List<TrainingHistoryListResponse> records = new ArrayList<>(hits.getRecords().size());
+        for (HistorySearchRow hit : hits.getRecords()) {
+            List<Tag> tags = new ArrayList<>();
+            if (Objects.nonNull(hit.getTagIds()) && !hit.getTagIds().isEmpty()) {
+                for (String id : hit.getTagIds().split(",")) {
+                    Long tagId = Long.valueOf(id.trim());
+                    tags.add(new Tag(tagId, tagNames.getOrDefault(tagId, "未知标签")));
+                }
+            }
+            records.add(new TrainingHistoryListResponse(hit.getId(), hit.getMemberName(), hit.getCoachName(),
+                    hit.getStartTime(), hit.getEndTime(), hit.getMessage(), hit.getMemberIsRead(), hit.getFeedback(), tags));
+        }
+        Page<TrainingHistoryListResponse> responsePage = new Page<>(hits.getCurrent(), hits.getSize(), hits.getTotal());
+        responsePage.setRecords(records);
+        return new GeneralResponseResult<>(ErrorCode.SUCCESS, responsePage);
+    }
+
+    /**
+     * Every word becomes a required phrase. Phrases keep the ngram parser from matching on any
+     * single bigram, and the BOOLEAN MODE operators typed by the user are dropped.
+     * This assumes the server's ngram_token_size is 2: with a larger size, words shorter than
+     * a token would never match.
+     */
+    private static String toBooleanQuery(String query) {
+        List<String> terms = new ArrayList<>();
+        if (Objects.nonNull(query)) {
+            for (String word : query.trim().split("\\s+")) {
+                String term = word.replaceAll("[+\\-<>()~*\"@]", "");
+                if (!term.isEmpty() && terms.size() < MAX_SEARCH_TERMS) {
+                    terms.add("+\"" + term + "\"");
+                }
+            }
+        }
+        if (terms.isEmpty()) {
+            throw new BusinessException(ErrorCode.INVALID_PARAMETER.getCode(),"Search query must not be empty");
+        }
+        return String.join(" ", terms);
+    }
+
     @Override
     public GeneralResponseResult countUnReadTrainingHistory(Long memberId) {
-        // 使用普通QueryWrapper代替LambdaQueryWrapper
-        QueryWrapper<TrainingHistory> trainingHistoryWrapper = new QueryWrapper<>();
-        trainingHistoryWrapper.eq("member_id", memberId).eq("member_is_read", false);
-        Long count = this.trainingHistoryMapper.selectCount(trainingHistoryWrapper);
+        //Redis 里的计数, 不再每次 COUNT
+        Long count = unreadCounters.counts(memberId, UserRole.MEMBER).getOrDefault(UnreadCounters.HISTORY, 0L);
         Map<String,Long> dataMap = new HashMap<>();
         dataMap.put("count",count);
         return new GeneralResponseResult(ErrorCode.SUCCESS,dataMap);
@@ -178,15 +398,52 @@ public class TrainingHistoryServiceImpl extends ServiceImpl<TrainingHistoryMappe
     public GeneralResponseResult readTrainingHistory(Long memberId,Long historyId) {
         // 使用普通UpdateWrapper代替LambdaUpdateWrapper
         UpdateWrapper<TrainingHistory> updateWrapper = new UpdateWrapper<>();
+        //只改原来未读的, 改到了才把未读数减一
         updateWrapper.eq("member_id", memberId)
                 .eq("id", historyId)
+                .eq("member_is_read", false)
                 .set("member_is_read", true);
         int rows = this.trainingHistoryMapper.update(updateWrapper);
-        if (rows <= 0){
+        if (rows > 0){
+            unreadCounters.add(memberId, UnreadCounters.HISTORY, -1);
+        }
+        //已经读过的照常成功, 记录不存在才报错
+        else if (!this.trainingHistoryMapper.exists(new QueryWrapper<TrainingHistory>().eq("member_id", memberId).eq("id", historyId))){
             throw new SystemException(ErrorCode.DB_OPERATION_ERROR);
         }
         return new GeneralResponseResult(ErrorCode.SUCCESS);
     }
 
-
-}
\ No newline at end of file
+    @Override
+    @Transactional
+    public GeneralResponseResult rateTrainingHistory(Long memberId, Long historyId, Integer rating) {
+        if (Objects.isNull(rating) || rating < MIN_RATING || rating > MAX_RATING) {
+            throw new BusinessException(ErrorCode.INVALID_PARAMETER.getCode(),"Rating must be between " + MIN_RATING + " and " + MAX_RATING);
+        }
+        QueryWrapper<TrainingHistory> historyWrapper = new QueryWrapper<>();
+        historyWrapper.eq("id", historyId).eq("member_id", memberId);
+        TrainingHistory history = this.trainingHistoryMapper.selectOne(historyWrapper);
+        if (Objects.isNull(history)) {
+            throw new BusinessException(ErrorCode.INVALID_PARAMETER.getCode(),"Training history not found");
+        }
+        Integer oldRating = history.getRating();
+        if (rating.equals(oldRating)) {
+            return new GeneralResponseResult(ErrorCode.SUCCESS);
+        }
+        //同一条记录被并发改分时只有一个能成功, 累计值不会重复计算
+        int rows = this.trainingHistoryMapper.updateRatingIfUnchanged(historyId, memberId, oldRating, rating);
+        if (rows <= 0) {
+            throw new SystemException(ErrorCode.RESOURCE_CONFLICT);
+        }
+        //首次评分计数加一, 改分只调整总分
+        int sumDelta = rating - (Objects.isNull(oldRating) ? 0 : oldRating);
+        int countDelta = Objects.isNull(oldRating) ? 1 : 0;
+        rows = coachMapper.addRating(history.getCoachId(), sumDelta, countDelta);
+        if (rows <= 0) {
+            throw new SystemException(ErrorCode.DB_OPERATION_ERROR);
+        }
+        coachSearchIndex.updateRating(history.getCoachId(), coachMapper.selectRating(history.getCoachId()));
+        coachCardStore.refresh(history.getCoachId());
+        return new GeneralResponseResult(ErrorCode.SUCCESS);
+    }
+}
@@ -21,20 +21,21 @@ import com.fitness_centre.exception.BusinessException;
 import com.fitness_centre.exception.SystemException;
 import com.fitness_centre.exception.ValidationException;
 import com.fitness_centre.mapper.UserMapper;
+import com.fitness_centre.service.infrastructure.CoachCardStore;
+import com.fitness_centre.service.infrastructure.CoachSearchIndex;
 import com.fitness_centre.service.infrastructure.FileService;
+import com.fitness_centre.service.infrastructure.GoogleTokenVerifier;
+import com.fitness_centre.service.infrastructure.MailOutbox;
 import com.fitness_centre.service.infrastructure.MailService;
+import com.fitness_centre.service.infrastructure.RegistrationStore;
 import com.fitness_centre.service.biz.interfaces.UserService;
 import com.fitness_centre.utils.JwtUtil;
 import com.fitness_centre.utils.RecaptchaValidator;
 import com.fitness_centre.utils.RedisCache;
 import com.google.api.client.googleapis.auth.oauth2.GoogleAuthorizationCodeTokenRequest;
 import com.google.api.client.googleapis.auth.oauth2.GoogleIdToken;
-import com.google.api.client.googleapis.auth.oauth2.GoogleIdTokenVerifier;
 import com.google.api.client.googleapis.auth.oauth2.GoogleTokenResponse;
-import com.google.api.client.googleapis.javanet.GoogleNetHttpTransport;
-import com.google.api.client.json.jackson2.JacksonFactory;
 import jakarta.jws.soap.SOAPBinding;
-import jakarta.mail.MessagingException;
 import org.springframework.beans.BeanUtils;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
@@ -51,9 +52,8 @@ import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 import org.springframework.web.server.ResponseStatusException;
 
-import java.io.IOException;
 import java.io.Serializable;
-import java.security.GeneralSecurityException;
+import java.time.Duration;
 import java.time.LocalDateTime;
 import java.util.*;
 import java.util.concurrent.TimeUnit;
@@ -99,9 +99,24 @@ public class UserServiceImpl extends ServiceImpl<UserMapper, User> implements Us
     @Autowired
     private MailService mailService;
 
+    @Autowired
+    private MailOutbox mailOutbox;
+
     @Autowired
     private FileService fileService;
 
+    @Autowired
+    private RegistrationStore registrationStore;
+
+    @Autowired
+    private GoogleTokenVerifier googleTokenVerifier;
+
+    @Autowired
+    private CoachSearchIndex coachSearchIndex;
+
+    @Autowired
+    private CoachCardStore coachCardStore;
+
 
     @Value("${recaptcha.threshold}")
     private double threshold;
@@ -159,7 +174,6 @@ public class UserServiceImpl extends ServiceImpl<UserMapper, User> implements Us
         return new GeneralResponseResult<>(ErrorCode.SUCCESS);
     }
 
-    //todo 频繁调用
     //发送验证码
     @Override
     public GeneralResponseResult basicInfoStore(UserRegisterRequest request)  {
@@ -177,40 +191,37 @@ public class UserServiceImpl extends ServiceImpl<UserMapper, User> implements Us
             throw new AuthException(ErrorCode.USER_ALREADY_EXISTS);
         }
 
-        //发邮件
-        sendCode(request.getEmail());
-
-        //先对密码加密
+        //先对密码加密,明文的确认密码不进redis
         request.setPassword(passwordEncoder.encode(request.getPassword()));
-        //基本信息存入redis
-        redisCache.setCacheObject("register:" + request.getEmail(),request,basicInfoExpireTime,TimeUnit.MINUTES);
+        request.setConfirmPassword(null);
 
-        return new GeneralResponseResult(ErrorCode.SUCCESS);
+        //基本信息和验证码一起写入redis,同时检查发送频率
+        String mailJobId = issueAndSend(request.getEmail(),request);
+
+        return new GeneralResponseResult(ErrorCode.SUCCESS,Map.of("mailJobId",mailJobId));
     }
 
     @Override
     public GeneralResponseResult sendCode(String email) {
+        String mailJobId = issueAndSend(email,null);
+        return new GeneralResponseResult(ErrorCode.SUCCESS,Map.of("mailJobId",mailJobId));
+    }
 
-        //控制发送的频率,一分钟发一次
-        String sendFreq = "emailSendFreq:" + email;
-        if(!Objects.isNull(redisCache.getCacheObject(sendFreq))){
-            throw new BusinessException(ErrorCode.TOO_MANY_REQUESTS);
-        }
-        redisCache.setCacheObject(sendFreq,LocalDateTime.now(),resendTime,TimeUnit.MINUTES);
-
-
-        //验证码密文
-        String code;
-        try{
-            code = mailService.sendVerificationCode(email);
-        } catch (MessagingException e) {
-            throw new SystemException(ErrorCode.EMAIL_SERVICE_ERROR);
-        }
-
-
-        //验证码存入redis
-        redisCache.setCacheObject("verifyCode:" + email,code,emailExpireTime,TimeUnit.MINUTES);
-        return new GeneralResponseResult(ErrorCode.SUCCESS);
+    /**
+     * 生成验证码并原子地写入注册状态(一分钟只能发一次)，然后把邮件放进发件箱
+     * @param request 首次提交时的注册信息，重发时为null
+     * @return 邮件任务id
+     */
+    private String issueAndSend(String email,UserRegisterRequest request){
+        String code = mailService.generateCode(6);
+        registrationStore.issueCode(email,request,code,
+                Duration.ofMinutes(emailExpireTime),
+                Duration.ofMinutes(resendTime),
+                Duration.ofMinutes(basicInfoExpireTime));
+
+        //异步发送，重试用完仍然失败时允许马上重发
+        return mailOutbox.enqueue(mailService.verificationCodeMail(email,code),
+                () -> registrationStore.releaseCooldown(email));
     }
 
 
@@ -218,21 +229,8 @@ public class UserServiceImpl extends ServiceImpl<UserMapper, User> implements Us
     @Override
     public GeneralResponseResult verifyRegister(String email,String verifyCode,String role) {
 
-        UserRegisterRequest request= redisCache.getCacheObject("register:" + email);
-        if(Objects.isNull(request)){
-            throw new AuthException(ErrorCode.USER_INFO_EXPIRED);
-        }
-        //校验验证码是否正确
-        String code = redisCache.getCacheObject("verifyCode:" + email);
-        if(Objects.isNull(code) || code.isEmpty()){
-            throw new AuthException(ErrorCode.EMAIL_VERIFICATION_FAILED);
-        }
-        if(!code.equals(verifyCode)){
-            throw new AuthException(ErrorCode.EMAIL_VERIFICATION_FAILED.getCode(),"Verification code error");
-        }
-
-        //让验证码失效
-        redisCache.deleteObject(email);
+        //校验验证码，正确时同时删除注册状态
+        UserRegisterRequest request = registrationStore.verifyAndConsume(email,verifyCode);
 
         User user = new User();
         //大型项目用Mapstruct
@@ -314,14 +312,14 @@ public class UserServiceImpl extends ServiceImpl<UserMapper, User> implements Us
         //删除个人照片
         fileService.deleteFileByUseId((Long) id);
         User user = this.baseMapper.selectById(id);
-        String loginUser = redisCache.getCacheObject("login:" + user.getEmail());
-        if(!Objects.isNull(loginUser)){
-            redisCache.deleteObject(user.getEmail());
-        }
+        //直接删除登录状态，不存在时DEL也是安全的
+        redisCache.deleteObject("login:" + user.getEmail());
         if(!removeById(id)){
             System.out.println(id);
             throw new BusinessException(ErrorCode.DB_OPERATION_ERROR);
         }
+        coachSearchIndex.removeCoach((Long) id);
+        coachCardStore.evict((Long) id);
         return new GeneralResponseResult(ErrorCode.SUCCESS);
     }
 
@@ -338,10 +336,7 @@ public class UserServiceImpl extends ServiceImpl<UserMapper, User> implements Us
         if(status.equals(UserStatus.BLOCKED)){
             //封禁后马上下线
             User user = this.baseMapper.selectById(id);
-            String loginUser = redisCache.getCacheObject("login:" + user.getEmail());
-            if(!Objects.isNull(loginUser)){
-                redisCache.deleteObject(user.getEmail());
-            }
+            redisCache.deleteObject("login:" + user.getEmail());
         }
         return new GeneralResponseResult(ErrorCode.SUCCESS);
     }
@@ -392,20 +387,11 @@ public class UserServiceImpl extends ServiceImpl<UserMapper, User> implements Us
      * 校验 Google id_token
      */
     private GoogleIdToken verifyGoogleIdToken(String idTokenString) {
-        try {
-            GoogleIdTokenVerifier verifier = new GoogleIdTokenVerifier.Builder(
-                    GoogleNetHttpTransport.newTrustedTransport(),
-                    JacksonFactory.getDefaultInstance())
-                    .setAudience(Collections.singletonList(clientId))
-                    .build();
-            GoogleIdToken idToken = verifier.verify(idTokenString);
-            if (idToken == null) {
-                throw new AuthException(ErrorCode.FORBIDDEN.getCode(), "Invalid id_token");
-            }
-            return idToken;
-        } catch (GeneralSecurityException | IOException e) {
-            throw new SystemException(ErrorCode.GOOGLE_AUTH_ERROR);
+        GoogleIdToken idToken = googleTokenVerifier.verify(idTokenString);
+        if (idToken == null) {
+            throw new AuthException(ErrorCode.FORBIDDEN.getCode(), "Invalid id_token");
         }
+        return idToken;
     }
 
 
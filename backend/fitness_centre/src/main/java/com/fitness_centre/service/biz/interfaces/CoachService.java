@@ -27,4 +27,8 @@ public interface CoachService extends IService<CoachInfo> {
 
     IPage<CoachDetailsResponse> coachList(Long id, CoachQueryRequest request);
 
+    GeneralResponseResult coachSuggest(String q, int limit);
+
+    GeneralResponseResult popularCoaches(int limit);
+
 }
@@ -4,7 +4,9 @@ import com.baomidou.mybatisplus.core.metadata.IPage;
 import com.baomidou.mybatisplus.extension.service.IService;
 import com.fitness_centre.domain.Tag;
 import com.fitness_centre.domain.TrainingHistory;
+import com.fitness_centre.dto.AddHistoryRequest;
 import com.fitness_centre.dto.GeneralResponseResult;
+import com.fitness_centre.dto.HistorySearchRequest;
 import com.fitness_centre.dto.TrainingHistoryListResponse;
 import org.springframework.cglib.core.Local;
 import org.springframework.stereotype.Service;
@@ -23,10 +25,18 @@ import java.util.List;
 public interface TrainingHistoryService extends IService<TrainingHistory> {
     GeneralResponseResult addTrainingHistory(Long coachId,Long sessionId, String feedback, List<Long> tagList);
 
+    GeneralResponseResult addTrainingHistories(Long coachId, List<AddHistoryRequest> requests);
+
     GeneralResponseResult<IPage<TrainingHistoryListResponse>> viewTrainingHistory(Long memberId, int pageNow, int pageSize, LocalDate startDate, LocalDate endDate);
 
+    GeneralResponseResult searchTrainingHistory(Long memberId, HistorySearchRequest request);
+
     GeneralResponseResult countUnReadTrainingHistory(Long memberId);
 
     GeneralResponseResult readTrainingHistory(Long memberId,Long historyId);
 
+    GeneralResponseResult rateTrainingHistory(Long memberId,Long historyId,Integer rating);
+
+    GeneralResponseResult memberProgress(Long memberId,int weeks);
+
 }
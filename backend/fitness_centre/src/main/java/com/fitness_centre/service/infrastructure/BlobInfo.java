@@ -0,0 +1,27 @@
+package com.fitness_centre.service.infrastructure;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * @author
+ * @Classname BlobInfo
+ * @Description Metadata of one blob in a BlobStore
+ * @date 19/10/2026
+ */
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class BlobInfo {
+
+    private String key;
+
+    private long size;
+
+    //毫秒时间戳
+    private long lastModified;
+
+    //带引号的强 ETag
+    private String etag;
+}
@@ -0,0 +1,50 @@
+package com.fitness_centre.service.infrastructure;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Path;
+import java.util.Optional;
+import java.util.function.Consumer;
+
+/**
+ * @author
+ * @Classname BlobStore
+ * @Description Storage for uploaded files, addressed by keys such as temp/42/9f86d081884c7d65/full.jpg
+ * @date 19/10/2026
+ */
+public interface BlobStore {
+
+    /**
+     * Store the stream under the key, replacing any existing blob. The stream is consumed but not closed.
+     */
+    void put(String key, InputStream content, String contentType) throws IOException;
+
+    /**
+     * @return size, last modified time and etag of the blob, null when it does not exist
+     */
+    BlobInfo stat(String key) throws IOException;
+
+    /**
+     * Open bytes {@code start} to {@code end} (inclusive) of the blob for streaming.
+     */
+    InputStream open(String key, long start, long end) throws IOException;
+
+    void delete(String key) throws IOException;
+
+    /**
+     * Move a blob to another key, replacing the target.
+     */
+    void move(String fromKey, String toKey) throws IOException;
+
+    /**
+     * Visit every blob whose key starts with the prefix, one listing page at a time.
+     */
+    void list(String prefix, Consumer<BlobInfo> visitor) throws IOException;
+
+    /**
+     * The file backing the key when the store is on local disk, so it can be sent with zero-copy transfer.
+     */
+    default Optional<Path> localFile(String key) {
+        return Optional.empty();
+    }
+}
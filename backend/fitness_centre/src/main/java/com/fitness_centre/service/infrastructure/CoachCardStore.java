@@ -0,0 +1,183 @@
+package com.fitness_centre.service.infrastructure;
+
+import com.fitness_centre.dto.member.CoachCard;
+import com.fitness_centre.dto.member.CoachLabel;
+import com.fitness_centre.mapper.CoachLocationMapper;
+import com.fitness_centre.mapper.CoachMapper;
+import com.fitness_centre.mapper.CoachTagMapper;
+import com.fitness_centre.utils.RedisCache;
+import com.fitness_centre.utils.TransactionHooks;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BiConsumer;
+
+/**
+ * @author
+ * @Classname CoachCardStore
+ * @Description Materialised coach cards in Redis, read with one MGET per page and rebuilt from the tables on a miss
+ * @date 19/10/2026
+ */
+@Service
+public class CoachCardStore {
+
+    private static final Logger log = LoggerFactory.getLogger(CoachCardStore.class);
+
+    public static final String KEY_PREFIX = "coach:card:";
+
+    @Autowired
+    private RedisCache redisCache;
+
+    @Autowired
+    private CoachMapper coachMapper;
+
+    @Autowired
+    private CoachTagMapper coachTagMapper;
+
+    @Autowired
+    private CoachLocationMapper coachLocationMapper;
+
+    @Autowired
+    private CoachPageCache coachPageCache;
+
+    //卡片在更新时会主动刷新, 过期时间只是兜底
+    @Value("${coach-card.ttl-minutes:1440}")
+    private long ttlMinutes;
+
+    /**
+     * @return coachId -> card for every coach that still exists; order follows the given ids.
+     * Falls back to the tables when Redis is unavailable.
+     */
+    public Map<Long, CoachCard> getCards(List<Long> coachIds) {
+        if (coachIds.isEmpty()) {
+            return new LinkedHashMap<>();
+        }
+        List<String> keys = new ArrayList<>(coachIds.size());
+        coachIds.forEach(coachId -> keys.add(KEY_PREFIX + coachId));
+        List<CoachCard> cached;
+        try {
+            cached = redisCache.getMultiCacheObject(keys);
+        } catch (RuntimeException e) {
+            log.warn("Failed to read coach cards", e);
+            return ordered(coachIds, load(coachIds));
+        }
+
+        Map<Long, CoachCard> cards = new HashMap<>();
+        List<Long> missing = new ArrayList<>();
+        for (int i = 0; i < coachIds.size(); i++) {
+            CoachCard card = cached.get(i);
+            if (Objects.isNull(card)) {
+                missing.add(coachIds.get(i));
+            } else {
+                cards.put(coachIds.get(i), card);
+            }
+        }
+        if (!missing.isEmpty()) {
+            Map<Long, CoachCard> loaded = load(missing);
+            cards.putAll(loaded);
+            try {
+                store(loaded);
+            } catch (RuntimeException e) {
+                log.warn("Failed to cache coach cards", e);
+            }
+        }
+        return ordered(coachIds, cards);
+    }
+
+    //按调用方给的顺序返回
+    private static Map<Long, CoachCard> ordered(List<Long> coachIds, Map<Long, CoachCard> cards) {
+        Map<Long, CoachCard> ordered = new LinkedHashMap<>();
+        for (Long coachId : coachIds) {
+            CoachCard card = cards.get(coachId);
+            if (Objects.nonNull(card)) {
+                ordered.put(coachId, card);
+            }
+        }
+        return ordered;
+    }
+
+    /**
+     * Rebuild one coach's card once the current transaction commits, or drop it if the coach is gone.
+     * Cached list pages were built from the old card, so they go too. Failures are logged and never reach
+     * the already committed request; a card that could not be rebuilt is at least deleted when Redis allows.
+     */
+    public void refresh(Long coachId) {
+        TransactionHooks.afterCommit(() -> {
+            try {
+                Map<Long, CoachCard> loaded = load(List.of(coachId));
+                if (loaded.isEmpty()) {
+                    redisCache.deleteObject(KEY_PREFIX + coachId);
+                } else {
+                    store(loaded);
+                }
+            } catch (RuntimeException e) {
+                log.warn("Failed to refresh card of coach {}", coachId, e);
+                delete(coachId);
+            }
+            invalidatePages();
+        });
+    }
+
+    public void evict(Long coachId) {
+        TransactionHooks.afterCommit(() -> {
+            delete(coachId);
+            invalidatePages();
+        });
+    }
+
+    private void delete(Long coachId) {
+        try {
+            redisCache.deleteObject(KEY_PREFIX + coachId);
+        } catch (RuntimeException e) {
+            log.warn("Failed to delete card of coach {}", coachId, e);
+        }
+    }
+
+    private void invalidatePages() {
+        try {
+            coachPageCache.invalidate();
+        } catch (RuntimeException e) {
+            log.warn("Failed to invalidate coach pages", e);
+        }
+    }
+
+    //主键批量取单值字段, tag/location 名各一条查询, 在内存里按教练归组
+    private Map<Long, CoachCard> load(List<Long> coachIds) {
+        Map<Long, CoachCard> cards = new HashMap<>();
+        for (CoachCard card : coachMapper.selectCardsByIds(coachIds)) {
+            cards.put(card.getCoachId(), card);
+        }
+        if (cards.isEmpty()) {
+            return cards;
+        }
+        List<Long> found = new ArrayList<>(cards.keySet());
+        group(coachTagMapper.selectTagNamesByCoachIds(found), cards, (card, name) -> card.getTagNames().add(name));
+        group(coachLocationMapper.selectLocationNamesByCoachIds(found), cards, (card, name) -> card.getLocationNames().add(name));
+        return cards;
+    }
+
+    private static void group(List<CoachLabel> labels, Map<Long, CoachCard> cards, BiConsumer<CoachCard, String> add) {
+        for (CoachLabel label : labels) {
+            CoachCard card = cards.get(label.getCoachId());
+            if (Objects.nonNull(card)) {
+                add.accept(card, label.getName());
+            }
+        }
+    }
+
+    private void store(Map<Long, CoachCard> cards) {
+        Map<String, CoachCard> entries = new HashMap<>();
+        cards.forEach((coachId, card) -> entries.put(KEY_PREFIX + coachId, card));
+        redisCache.setMultiCacheObject(entries, ttlMinutes, TimeUnit.MINUTES);
+    }
+}
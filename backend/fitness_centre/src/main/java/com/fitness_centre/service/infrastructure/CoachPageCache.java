@@ -0,0 +1,149 @@
+package com.fitness_centre.service.infrastructure;
+
+import com.fitness_centre.dto.member.CoachDetailsResponse;
+import com.fitness_centre.dto.member.CoachPageResponse;
+import com.fitness_centre.dto.member.CoachQueryRequest;
+import com.fitness_centre.utils.RedisCache;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.stereotype.Service;
+
+import java.io.Serializable;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
+import java.util.TreeSet;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * @author
+ * @Classname CoachPageCache
+ * @Description Coach list pages shared by every member, keyed by the normalised filter. Pages carry no member-specific status.
+ * @date 19/10/2026
+ *
+ * Pages are shared across instances but each instance searches its own CoachSearchIndex, which only
+ * sees another instance's coach edits at its next rebuild (coach-index.rebuild-ms). Until then a page
+ * it builds can be stale and is stored here like any other, so a coach edit may take up to the rebuild
+ * interval plus this TTL to show everywhere.
+ */
+@Service
+public class CoachPageCache {
+
+    public static final String KEY_PREFIX = "coach:page:";
+
+    //当前代数, 页的 key 里带着它; 教练变更时加一, 旧代的页不再被读到, 等过期
+    public static final String GENERATION_KEY = KEY_PREFIX + "gen";
+
+    @Autowired
+    private RedisCache redisCache;
+
+    @Autowired
+    private StringRedisTemplate stringRedisTemplate;
+
+    @Value("${coach-page.ttl-seconds:300}")
+    private int ttlSeconds;
+
+    /**
+     * What is stored per page; Page itself carries paging plumbing that does not belong in the cache.
+     */
+    @Data
+    @NoArgsConstructor
+    public static class Entry implements Serializable {
+        private static final long serialVersionUID = 1L;
+        private long total;
+        private List<CoachDetailsResponse> records;
+        private Map<Long, Integer> tagCounts;
+        private Map<Long, Integer> locationCounts;
+    }
+
+    /**
+     * Read once per request and pass the same value to get and put: a page built from data older than
+     * an invalidation is then stored under the old generation, where nobody reads it.
+     */
+    public long generation() {
+        String generation = stringRedisTemplate.opsForValue().get(GENERATION_KEY);
+        return Objects.isNull(generation) ? 0L : Long.parseLong(generation);
+    }
+
+    /**
+     * @return the cached page, or null on a miss or for a request that is never cached
+     */
+    public CoachPageResponse get(CoachQueryRequest request, long generation) {
+        String key = keyOf(request, generation);
+        if (Objects.isNull(key)) {
+            return null;
+        }
+        Entry entry = redisCache.getCacheObject(key);
+        if (Objects.isNull(entry)) {
+            return null;
+        }
+        CoachPageResponse page = new CoachPageResponse(request.getPageNow(), request.getPageSize());
+        page.setTotal(entry.getTotal());
+        page.setRecords(entry.getRecords());
+        page.setTagCounts(entry.getTagCounts());
+        page.setLocationCounts(entry.getLocationCounts());
+        return page;
+    }
+
+    public void put(CoachQueryRequest request, long generation, CoachPageResponse page) {
+        String key = keyOf(request, generation);
+        if (Objects.isNull(key)) {
+            return;
+        }
+        Entry entry = new Entry();
+        entry.setTotal(page.getTotal());
+        entry.setRecords(page.getRecords());
+        entry.setTagCounts(page.getTagCounts());
+        entry.setLocationCounts(page.getLocationCounts());
+        redisCache.setCacheObject(key, entry, ttlSeconds, TimeUnit.SECONDS);
+    }
+
+    /**
+     * Drop every cached page by moving to the next generation, one INCR instead of a keyspace scan.
+     */
+    public void invalidate() {
+        stringRedisTemplate.opsForValue().increment(GENERATION_KEY);
+    }
+
+    /**
+     * Equivalent filters share a key: the name is trimmed and lower-cased (both the index and the SQL
+     * fallback match it case-insensitively) and id lists are sorted and de-duplicated. Distance
+     * searches are not cached, the coordinates rarely repeat.
+     */
+    private static String keyOf(CoachQueryRequest request, long generation) {
+        if (Objects.nonNull(request.getLatitude()) || Objects.nonNull(request.getLongitude())) {
+            return null;
+        }
+        return KEY_PREFIX + generation + ":n=" + (Objects.isNull(request.getUserName()) ? "" : request.getUserName().trim().toLowerCase(Locale.ROOT))
+                + "|t=" + idsOf(request.getTagIds())
+                + "|l=" + idsOf(request.getLocationIds())
+                + "|f=" + (request.isFacets() ? 1 : 0)
+                + "|o=" + (Objects.isNull(request.getSort()) ? "" : request.getSort())
+                + "|p=" + request.getPageNow()
+                + "|s=" + request.getPageSize();
+    }
+
+    private static String idsOf(List<Long> ids) {
+        if (Objects.isNull(ids) || ids.isEmpty()) {
+            return "";
+        }
+        TreeSet<Long> sorted = new TreeSet<>();
+        for (Long id : ids) {
+            if (Objects.nonNull(id)) {
+                sorted.add(id);
+            }
+        }
+        StringBuilder joined = new StringBuilder();
+        for (Long id : sorted) {
+            if (joined.length() > 0) {
+                joined.append(',');
+            }
+            joined.append(id);
+        }
+        return joined.toString();
+    }
+}
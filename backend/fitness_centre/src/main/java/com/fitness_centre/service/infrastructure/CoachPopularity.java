@@ -0,0 +1,123 @@
+package com.fitness_centre.service.infrastructure;
+
+import com.fitness_centre.constant.RequestStatus;
+import com.fitness_centre.utils.RedisCache;
+import com.fitness_centre.utils.TransactionHooks;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.core.ZSetOperations;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDate;
+import java.time.format.DateTimeFormatter;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * @author
+ * @Classname CoachPopularity
+ * @Description Coach demand over a sliding window of days, kept in Redis sorted sets: one bucket per day plus a running window total
+ * @date 19/10/2026
+ */
+@Service
+public class CoachPopularity {
+
+    private static final Logger log = LoggerFactory.getLogger(CoachPopularity.class);
+
+    public static final String KEY_PREFIX = "coach:popular:";
+
+    public static final String WINDOW_KEY = KEY_PREFIX + "window";
+
+    private static final String ROLLED_PREFIX = KEY_PREFIX + "rolled:";
+
+    //订阅是长期关系, 比单节课权重高
+    public static final int SUBSCRIPTION_WEIGHT = 2;
+
+    public static final int SESSION_WEIGHT = 1;
+
+    //定时任务漏跑时最多补这么多天
+    private static final int CATCH_UP_DAYS = 3;
+
+    private static final DateTimeFormatter DAY = DateTimeFormatter.BASIC_ISO_DATE;
+
+    @Autowired
+    private RedisCache redisCache;
+
+    @Value("${coach-popular.window-days:30}")
+    private int windowDays = 30;
+
+    /**
+     * Add to a coach's score once the current transaction commits: positive for an accepted
+     * subscription or session, negative for a cancellation. Redis failures only cost accuracy.
+     */
+    public void record(Long coachId, int delta) {
+        TransactionHooks.afterCommit(() -> {
+            try {
+                String bucket = bucketKey(LocalDate.now());
+                redisCache.incrementCacheZSetScore(bucket, coachId.toString(), delta);
+                //桶要活到被移出窗口之后
+                redisCache.expire(bucket, windowDays + CATCH_UP_DAYS + 1, TimeUnit.DAYS);
+                redisCache.incrementCacheZSetScore(WINDOW_KEY, coachId.toString(), delta);
+            } catch (RuntimeException e) {
+                log.warn("Failed to record popularity of coach {}", coachId, e);
+            }
+        });
+    }
+
+    /**
+     * Record one request moving from {@code before} to {@code after}: the weight is added when it becomes
+     * accepted and taken back when an accepted one moves to anything else, so a repeated reply counts once.
+     */
+    public void recordTransition(Long coachId, int weight, RequestStatus before, RequestStatus after) {
+        boolean wasAccepted = before == RequestStatus.ACCEPT;
+        boolean isAccepted = after == RequestStatus.ACCEPT;
+        if (wasAccepted != isAccepted) {
+            record(coachId, isAccepted ? weight : -weight);
+        }
+    }
+
+    /**
+     * Members are never removed from the window total, so subtracting a bucket always undoes
+     * exactly what it added; coaches at zero or below are just skipped here.
+     *
+     * @return coach id -> score, highest first, only coaches with a positive score
+     */
+    public Map<Long, Long> top(int limit) {
+        Map<Long, Long> top = new LinkedHashMap<>();
+        for (ZSetOperations.TypedTuple<String> tuple : redisCache.<String>getCacheZSetTop(WINDOW_KEY, limit)) {
+            if (Objects.nonNull(tuple.getValue()) && Objects.nonNull(tuple.getScore()) && tuple.getScore() > 0) {
+                top.put(Long.valueOf(tuple.getValue()), Math.round(tuple.getScore()));
+            }
+        }
+        return top;
+    }
+
+    @Scheduled(cron = "${coach-popular.roll-cron:0 5 0 * * *}")
+    public void roll() {
+        roll(LocalDate.now());
+    }
+
+    /**
+     * Subtract the day buckets that have left the window from the window total. Each day is only
+     * subtracted once, even with several instances or a re-run, thanks to a SET NX marker.
+     */
+    public void roll(LocalDate today) {
+        for (int back = CATCH_UP_DAYS - 1; back >= 0; back--) {
+            LocalDate expired = today.minusDays(windowDays + back);
+            if (!redisCache.setCacheObjectIfAbsent(ROLLED_PREFIX + expired.format(DAY), 1, windowDays + CATCH_UP_DAYS + 1, TimeUnit.DAYS)) {
+                continue;
+            }
+            redisCache.unionAndStoreCacheZSet(WINDOW_KEY, List.of(WINDOW_KEY, bucketKey(expired)), 1, -1);
+        }
+    }
+
+    private static String bucketKey(LocalDate day) {
+        return KEY_PREFIX + day.format(DAY);
+    }
+}
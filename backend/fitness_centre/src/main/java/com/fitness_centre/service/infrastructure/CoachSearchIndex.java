@@ -0,0 +1,541 @@
+package com.fitness_centre.service.infrastructure;
+
+import com.fitness_centre.domain.CoachLocation;
+import com.fitness_centre.domain.CoachTag;
+import com.fitness_centre.domain.Location;
+import com.fitness_centre.dto.member.CoachDetailsResponse;
+import com.fitness_centre.dto.member.CoachQueryRequest;
+import com.fitness_centre.dto.member.CoachSuggestion;
+import com.fitness_centre.mapper.CoachLocationMapper;
+import com.fitness_centre.mapper.CoachMapper;
+import com.fitness_centre.mapper.CoachTagMapper;
+import com.fitness_centre.mapper.LocationMapper;
+import com.fitness_centre.utils.GeoGrid;
+import com.fitness_centre.utils.NGramIndex;
+import com.fitness_centre.utils.PrefixSuggester;
+import com.fitness_centre.utils.TransactionHooks;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.TreeSet;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Consumer;
+
+/**
+ * @author
+ * @Classname CoachSearchIndex
+ * @Description In-memory inverted index of coaches by tag, location, name and distance, one bitmap per tag and per location
+ * @date 19/10/2026
+ */
+@Service
+public class CoachSearchIndex {
+
+    private static final Logger log = LoggerFactory.getLogger(CoachSearchIndex.class);
+
+    @Autowired
+    private CoachMapper coachMapper;
+
+    @Autowired
+    private CoachTagMapper coachTagMapper;
+
+    @Autowired
+    private CoachLocationMapper coachLocationMapper;
+
+    @Autowired
+    private LocationMapper locationMapper;
+
+    @Autowired
+    private CoachPageCache coachPageCache;
+
+    //名字里至少要出现查询中这么大比例的 trigram; 很短的查询要全部命中
+    private static final double MIN_NAME_SIMILARITY = 0.5;
+
+    //只在简介里命中时的分数, 低于任何名字命中
+    private static final double INTRO_SCORE = 0.25;
+
+    //场馆网格的格子边长, 南北方向约 5.5 公里
+    private static final double GRID_CELL_DEGREES = 0.05;
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+    //还没建好(或建索引失败)时为 null, 调用方回退到 SQL
+    private Snapshot snapshot;
+
+    //每提交一次修改加一; rebuild 读库期间提交的修改记在 patchLog 里, 换上新快照前重放
+    private long patchGeneration;
+
+    private int rebuildsRunning;
+
+    private final List<Patch> patchLog = new ArrayList<>();
+
+    private record Patch(long generation, Consumer<Snapshot> change) {
+    }
+
+    /**
+     * Coach ids are ASSIGN_ID longs, far too sparse for a bitmap, so each coach gets a dense ordinal
+     * and every bitmap is a BitSet over ordinals.
+     */
+    private static class Snapshot {
+        //ordinal -> 教练 id, 按 id 升序分配, 之后新增的排在后面
+        private final List<Long> coachIds = new ArrayList<>();
+        private final Map<Long, Integer> ordinalOf = new HashMap<>();
+        //ordinal -> 规范化后的用户名 / 简介, 更新时用来撤掉旧的 gram
+        private final List<String> names = new ArrayList<>();
+        private final List<String> intros = new ArrayList<>();
+        private final NGramIndex nameGrams = new NGramIndex();
+        private final NGramIndex introGrams = new NGramIndex();
+        //ordinal -> 原样的用户名, 用于自动补全的显示
+        private final List<String> displayNames = new ArrayList<>();
+        private final PrefixSuggester suggester = new PrefixSuggester();
+        //仍然存在的教练
+        private final BitSet live = new BitSet();
+        private final Map<Long, BitSet> byTag = new HashMap<>();
+        private final Map<Long, BitSet> byLocation = new HashMap<>();
+        //有经纬度的场馆
+        private final GeoGrid<Long> locationGrid = new GeoGrid<>(GRID_CELL_DEGREES);
+        //ordinal -> 平均评分, 以及按评分从高到低排好的 ordinal, 没评分的排最后
+        private final List<Double> ratings = new ArrayList<>();
+        private final TreeSet<Integer> byRating = new TreeSet<>(this::compareRating);
+
+        private int ordinal(Long coachId) {
+            Integer ordinal = ordinalOf.get(coachId);
+            if (Objects.isNull(ordinal)) {
+                ordinal = coachIds.size();
+                coachIds.add(coachId);
+                names.add("");
+                intros.add("");
+                displayNames.add(null);
+                ratings.add(null);
+                ordinalOf.put(coachId, ordinal);
+                byRating.add(ordinal);
+            }
+            live.set(ordinal);
+            return ordinal;
+        }
+
+        private void setText(List<String> texts, NGramIndex grams, int ordinal, String text) {
+            if (Objects.isNull(text)) {
+                return;
+            }
+            grams.remove(ordinal, texts.get(ordinal));
+            String normalized = NGramIndex.normalize(text);
+            texts.set(ordinal, normalized);
+            grams.add(ordinal, normalized);
+        }
+
+        private void setName(int ordinal, String userName) {
+            if (Objects.isNull(userName)) {
+                return;
+            }
+            suggester.remove(ordinal, names.get(ordinal));
+            setText(names, nameGrams, ordinal, userName);
+            suggester.add(ordinal, names.get(ordinal));
+            displayNames.set(ordinal, userName);
+        }
+
+        //排序键变了, 要先移出再放回
+        private void setRating(int ordinal, Double rating) {
+            byRating.remove(ordinal);
+            ratings.set(ordinal, rating);
+            byRating.add(ordinal);
+        }
+
+        private int compareRating(int a, int b) {
+            Double ratingA = ratings.get(a);
+            Double ratingB = ratings.get(b);
+            if (!Objects.equals(ratingA, ratingB)) {
+                if (Objects.isNull(ratingA)) {
+                    return 1;
+                }
+                if (Objects.isNull(ratingB)) {
+                    return -1;
+                }
+                int byValue = Double.compare(ratingB, ratingA);
+                if (byValue != 0) {
+                    return byValue;
+                }
+            }
+            return Integer.compare(a, b);
+        }
+    }
+
+    @Data
+    @AllArgsConstructor
+    public static class SearchHits {
+        private long total;
+        //当前页的教练 id, 按索引顺序
+        private List<Long> coachIds;
+        //按距离搜索时, 教练 id -> 到最近场馆的公里数
+        private Map<Long, Double> distances;
+        //tag id -> 教练数, 没有要求 facet 时为 null
+        private Map<Long, Integer> tagCounts;
+        private Map<Long, Integer> locationCounts;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void onReady() {
+        rebuild();
+        //启动期间走 SQL 回退缓存下来的页没有 facet 计数
+        coachPageCache.invalidate();
+    }
+
+    /**
+     * Reload the whole index from the database. Runs at startup and periodically as a safety net
+     * for writes that did not go through this instance. The database is read without the lock, so
+     * patches committed meanwhile are logged and replayed onto the new snapshot before it goes live;
+     * replaying one the read already saw is harmless, every patch sets state rather than adding to it.
+     */
+    @Scheduled(initialDelayString = "${coach-index.rebuild-ms:600000}", fixedDelayString = "${coach-index.rebuild-ms:600000}")
+    public void rebuild() {
+        long since;
+        lock.writeLock().lock();
+        try {
+            rebuildsRunning++;
+            since = patchGeneration;
+        } finally {
+            lock.writeLock().unlock();
+        }
+        try {
+            Snapshot fresh = new Snapshot();
+            for (CoachDetailsResponse coach : coachMapper.selectIndexRows()) {
+                int ordinal = fresh.ordinal(coach.getCoachId());
+                fresh.setText(fresh.names, fresh.nameGrams, ordinal, coach.getUserName());
+                fresh.setText(fresh.intros, fresh.introGrams, ordinal, coach.getIntro());
+                fresh.displayNames.set(ordinal, coach.getUserName());
+                fresh.setRating(ordinal, coach.getRating());
+            }
+            //一次排序建好, 不逐个插入
+            fresh.suggester.load(fresh.names);
+            for (CoachTag coachTag : coachTagMapper.selectList(null)) {
+                Integer ordinal = fresh.ordinalOf.get(coachTag.getCoachId());
+                if (Objects.nonNull(ordinal)) {
+                    fresh.byTag.computeIfAbsent(coachTag.getTagId(), id -> new BitSet()).set(ordinal);
+                }
+            }
+            for (CoachLocation coachLocation : coachLocationMapper.selectList(null)) {
+                Integer ordinal = fresh.ordinalOf.get(coachLocation.getCoachId());
+                if (Objects.nonNull(ordinal)) {
+                    fresh.byLocation.computeIfAbsent(coachLocation.getLocationId(), id -> new BitSet()).set(ordinal);
+                }
+            }
+            for (Location location : locationMapper.selectList(null)) {
+                if (Objects.nonNull(location.getLatitude()) && Objects.nonNull(location.getLongitude())) {
+                    fresh.locationGrid.add(location.getId(), location.getLatitude(), location.getLongitude());
+                }
+            }
+            lock.writeLock().lock();
+            try {
+                for (Patch patch : patchLog) {
+                    if (patch.generation() > since) {
+                        patch.change().accept(fresh);
+                    }
+                }
+                snapshot = fresh;
+            } finally {
+                lock.writeLock().unlock();
+            }
+        } catch (RuntimeException e) {
+            log.warn("Failed to build coach search index", e);
+        } finally {
+            lock.writeLock().lock();
+            try {
+                if (--rebuildsRunning == 0) {
+                    patchLog.clear();
+                }
+            } finally {
+                lock.writeLock().unlock();
+            }
+        }
+    }
+
+    public boolean isReady() {
+        lock.readLock().lock();
+        try {
+            return Objects.nonNull(snapshot);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Coaches having any of the tags and any of the locations (an empty or null list does not filter),
+     * and, when userName is given, whose name or intro matches it; those results are ordered by relevance.
+     * With a latitude and longitude, only coaches at a location within radiusKm (any distance when null)
+     * match, ordered by the distance to their nearest such location. Otherwise sort=rating orders the
+     * matches by rating, highest first, walking the pre-sorted rating order instead of sorting.
+     *
+     * @param offset rows to skip
+     * @param limit page size
+     * @return total matches, the ids of one page and, when the request asks for them, facet counts;
+     *         null when the index is not built
+     */
+    public SearchHits search(CoachQueryRequest request, long offset, int limit) {
+        lock.readLock().lock();
+        try {
+            if (Objects.isNull(snapshot)) {
+                return null;
+            }
+            BitSet named = (BitSet) snapshot.live.clone();
+            double[] scores = null;
+            String userName = request.getUserName();
+            if (Objects.nonNull(userName) && !NGramIndex.normalize(userName).isEmpty()) {
+                scores = score(NGramIndex.normalize(userName));
+                for (int i = named.nextSetBit(0); i >= 0; i = named.nextSetBit(i + 1)) {
+                    if (scores[i] <= 0) {
+                        named.clear(i);
+                    }
+                }
+            }
+            //范围内的场馆, 由近到远
+            List<GeoGrid.Hit<Long>> nearby = null;
+            if (Objects.nonNull(request.getLatitude()) && Objects.nonNull(request.getLongitude())) {
+                nearby = new ArrayList<>();
+                double radiusKm = Objects.isNull(request.getRadiusKm()) ? Double.MAX_VALUE : request.getRadiusKm();
+                snapshot.locationGrid.nearestFirst(request.getLatitude(), request.getLongitude(), radiusKm).forEachRemaining(nearby::add);
+                BitSet within = new BitSet();
+                for (GeoGrid.Hit<Long> hit : nearby) {
+                    BitSet bits = snapshot.byLocation.get(hit.value());
+                    if (Objects.nonNull(bits)) {
+                        within.or(bits);
+                    }
+                }
+                named.and(within);
+            }
+            List<Long> tagIds = request.getTagIds();
+            List<Long> locationIds = request.getLocationIds();
+            BitSet tagFilter = Objects.isNull(tagIds) || tagIds.isEmpty() ? null : union(snapshot.byTag, tagIds);
+            BitSet locationFilter = Objects.isNull(locationIds) || locationIds.isEmpty() ? null : union(snapshot.byLocation, locationIds);
+
+            //tag 的计数不受 tag 条件影响(同一组内是 OR), location 同理
+            BitSet tagBase = intersect(named, locationFilter);
+            BitSet locationBase = intersect(named, tagFilter);
+            BitSet matches = intersect(tagBase, tagFilter);
+
+            List<Long> page = new ArrayList<>(limit);
+            Map<Long, Double> distances = null;
+            if (Objects.nonNull(nearby)) {
+                //按场馆由近到远取出还没出现过的教练, 每个教练的距离就是他最近的场馆
+                distances = new HashMap<>();
+                BitSet remaining = (BitSet) matches.clone();
+                long skipped = 0;
+                for (GeoGrid.Hit<Long> hit : nearby) {
+                    BitSet bits = snapshot.byLocation.get(hit.value());
+                    if (page.size() >= limit || remaining.isEmpty()) {
+                        break;
+                    }
+                    if (Objects.isNull(bits)) {
+                        continue;
+                    }
+                    BitSet here = intersect(bits, remaining);
+                    remaining.andNot(here);
+                    for (int i = here.nextSetBit(0); i >= 0 && page.size() < limit; i = here.nextSetBit(i + 1)) {
+                        if (skipped++ >= offset) {
+                            Long coachId = snapshot.coachIds.get(i);
+                            page.add(coachId);
+                            distances.put(coachId, hit.distanceKm());
+                        }
+                    }
+                }
+            } else if (CoachQueryRequest.SORT_RATING.equals(request.getSort())) {
+                long skipped = 0;
+                for (Iterator<Integer> it = snapshot.byRating.iterator(); it.hasNext() && page.size() < limit; ) {
+                    int i = it.next();
+                    if (matches.get(i) && skipped++ >= offset) {
+                        page.add(snapshot.coachIds.get(i));
+                    }
+                }
+            } else if (Objects.isNull(scores)) {
+                long skipped = 0;
+                for (int i = matches.nextSetBit(0); i >= 0 && page.size() < limit; i = matches.nextSetBit(i + 1)) {
+                    if (skipped++ >= offset) {
+                        page.add(snapshot.coachIds.get(i));
+                    }
+                }
+            } else {
+                //按相关度排序, 相同分数按索引顺序
+                double[] relevance = scores;
+                matches.stream().boxed()
+                        .sorted(Comparator.comparingDouble((Integer i) -> -relevance[i]).thenComparingInt(i -> i))
+                        .skip(offset)
+                        .limit(limit)
+                        .forEach(i -> page.add(snapshot.coachIds.get(i)));
+            }
+            SearchHits hits = new SearchHits(matches.cardinality(), page, distances, null, null);
+            if (request.isFacets()) {
+                hits.setTagCounts(counts(snapshot.byTag, tagBase));
+                hits.setLocationCounts(counts(snapshot.byLocation, locationBase));
+            }
+            return hits;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Coaches whose name, or a later word of it, starts with the prefix, in name order.
+     *
+     * @return null when the index is not built
+     */
+    public List<CoachSuggestion> suggest(String prefix, int limit) {
+        lock.readLock().lock();
+        try {
+            if (Objects.isNull(snapshot)) {
+                return null;
+            }
+            List<CoachSuggestion> suggestions = new ArrayList<>();
+            for (int ordinal : snapshot.suggester.complete(NGramIndex.normalize(prefix), limit, snapshot.live::get)) {
+                suggestions.add(new CoachSuggestion(snapshot.coachIds.get(ordinal), snapshot.displayNames.get(ordinal)));
+            }
+            return suggestions;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Relevance of every coach to the query, 0 for no match. A name matches when at least
+     * MIN_NAME_SIMILARITY of the query's trigrams occur in it (all of them for one- or two-gram queries),
+     * which tolerates a typo, or when it contains the query inside a word;
+     * exact substrings and word prefixes rank above fuzzy hits. An intro only matches when it contains
+     * every query trigram, and ranks below any name match.
+     */
+    private double[] score(String query) {
+        List<String> grams = NGramIndex.queryGrams(query);
+        int size = snapshot.coachIds.size();
+        int[] nameHits = new int[size];
+        int[] introHits = new int[size];
+        BitSet candidates = snapshot.nameGrams.match(grams, nameHits);
+        candidates.or(snapshot.introGrams.match(grams, introHits));
+
+        //一个输错的字母最多毁掉 3 个 trigram, 两个 gram 以内的查询不容错
+        int minHits = grams.size() <= 2 ? grams.size() : Math.max(2, (int) Math.ceil(grams.size() * MIN_NAME_SIMILARITY));
+        double[] scores = new double[size];
+        for (int i = candidates.nextSetBit(0); i >= 0; i = candidates.nextSetBit(i + 1)) {
+            double similarity = (double) nameHits[i] / grams.size();
+            String name = snapshot.names.get(i);
+            if (nameHits[i] >= minHits || name.contains(query)) {
+                scores[i] = similarity;
+                if (name.contains(query)) {
+                    scores[i] += 1;
+                }
+                if (name.startsWith(query) || name.contains(" " + query)) {
+                    scores[i] += 0.5;
+                }
+            } else if (introHits[i] == grams.size()) {
+                scores[i] = INTRO_SCORE;
+            }
+        }
+        return scores;
+    }
+
+    /**
+     * Patch one coach once the current transaction commits. A null argument leaves that part unchanged;
+     * tag and location lists replace the coach's current ones.
+     */
+    public void updateCoach(Long coachId, String userName, String intro, List<Long> tagIds, List<Long> locationIds) {
+        patch(target -> {
+            int ordinal = target.ordinal(coachId);
+            target.setName(ordinal, userName);
+            target.setText(target.intros, target.introGrams, ordinal, intro);
+            if (Objects.nonNull(tagIds)) {
+                replace(target.byTag, ordinal, tagIds);
+            }
+            if (Objects.nonNull(locationIds)) {
+                replace(target.byLocation, ordinal, locationIds);
+            }
+        });
+    }
+
+    public void updateRating(Long coachId, Double rating) {
+        patch(target -> {
+            Integer ordinal = target.ordinalOf.get(coachId);
+            if (Objects.nonNull(ordinal)) {
+                target.setRating(ordinal, rating);
+            }
+        });
+    }
+
+    public void removeCoach(Long coachId) {
+        patch(target -> {
+            Integer ordinal = target.ordinalOf.get(coachId);
+            if (Objects.nonNull(ordinal)) {
+                //ordinal 不回收, 只清掉各个 bitmap 里的位
+                target.live.clear(ordinal);
+                target.byTag.values().forEach(bits -> bits.clear(ordinal));
+                target.byLocation.values().forEach(bits -> bits.clear(ordinal));
+            }
+        });
+    }
+
+    //提交后应用到当前快照, 有 rebuild 在读库时也记下来, 免得被新快照覆盖掉
+    private void patch(Consumer<Snapshot> change) {
+        TransactionHooks.afterCommit(() -> {
+            lock.writeLock().lock();
+            try {
+                patchGeneration++;
+                if (rebuildsRunning > 0) {
+                    patchLog.add(new Patch(patchGeneration, change));
+                }
+                if (Objects.nonNull(snapshot)) {
+                    change.accept(snapshot);
+                }
+            } finally {
+                lock.writeLock().unlock();
+            }
+        });
+    }
+
+    private static BitSet union(Map<Long, BitSet> bitmaps, List<Long> ids) {
+        BitSet result = new BitSet();
+        for (Long id : ids) {
+            BitSet bits = bitmaps.get(id);
+            if (Objects.nonNull(bits)) {
+                result.or(bits);
+            }
+        }
+        return result;
+    }
+
+    //filter 为 null 表示不过滤
+    private static BitSet intersect(BitSet bits, BitSet filter) {
+        BitSet result = (BitSet) bits.clone();
+        if (Objects.nonNull(filter)) {
+            result.and(filter);
+        }
+        return result;
+    }
+
+    private static Map<Long, Integer> counts(Map<Long, BitSet> bitmaps, BitSet base) {
+        Map<Long, Integer> counts = new HashMap<>();
+        BitSet scratch = new BitSet();
+        bitmaps.forEach((id, bits) -> {
+            scratch.clear();
+            scratch.or(bits);
+            scratch.and(base);
+            counts.put(id, scratch.cardinality());
+        });
+        return counts;
+    }
+
+    private static void replace(Map<Long, BitSet> bitmaps, int ordinal, List<Long> ids) {
+        bitmaps.values().forEach(bits -> bits.clear(ordinal));
+        for (Long id : ids) {
+            bitmaps.computeIfAbsent(id, key -> new BitSet()).set(ordinal);
+        }
+    }
+}
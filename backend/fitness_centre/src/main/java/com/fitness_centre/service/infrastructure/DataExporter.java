@@ -0,0 +1,105 @@
+package com.fitness_centre.service.infrastructure;
+
+import com.fitness_centre.constant.ExportFormat;
+import com.fitness_centre.dto.export.BookingExportRow;
+import com.fitness_centre.dto.export.HistoryExportRow;
+import com.fitness_centre.mapper.SessionBookingMapper;
+import com.fitness_centre.mapper.TrainingHistoryMapper;
+import jakarta.servlet.http.HttpServletResponse;
+import org.apache.ibatis.cursor.Cursor;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpHeaders;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * @author
+ * @Classname DataExporter
+ * @Description Streams training history and bookings straight from a database cursor to the response, one row at a time
+ * @date 19/10/2026
+ */
+@Service
+public class DataExporter {
+
+    static final List<String> HISTORY_COLUMNS = List.of(
+            "id", "startTime", "endTime", "member", "coach", "message", "feedback", "rating", "tags");
+
+    static final List<String> BOOKING_COLUMNS = List.of(
+            "id", "startTime", "endTime", "member", "coach", "status", "message", "reply",
+            "requestTime", "responseTime", "cancelTime", "recorded");
+
+    @Autowired
+    private TrainingHistoryMapper trainingHistoryMapper;
+
+    @Autowired
+    private SessionBookingMapper sessionBookingMapper;
+
+    @Autowired
+    private ReferenceData referenceData;
+
+    /**
+     * Set the download headers. Call before the first byte is written, once the format is known to be valid.
+     */
+    public static void prepare(HttpServletResponse response, ExportFormat format, String name) {
+        response.setContentType(format.getContentType());
+        response.setHeader(HttpHeaders.CONTENT_DISPOSITION,
+                "attachment; filename=\"" + name + "." + format.getExtension() + "\"");
+        response.setHeader(HttpHeaders.CACHE_CONTROL, "no-store");
+    }
+
+    /**
+     * The cursor only stays open inside a transaction. Names come from joins in the same query because
+     * the connection can't run anything else while a streaming result is open; tag names come from memory.
+     *
+     * @param memberId null exports every member
+     */
+    @Transactional(readOnly = true)
+    public void exportTrainingHistory(Long memberId, ExportFormat format, OutputStream out) throws IOException {
+        Map<Long, String> tags = referenceData.current().getTags();
+        try (Cursor<HistoryExportRow> cursor = trainingHistoryMapper.streamForExport(memberId);
+             ExportWriter writer = new ExportWriter(format, out, HISTORY_COLUMNS)) {
+            for (HistoryExportRow row : cursor) {
+                writer.row(Arrays.asList(row.getId(), row.getStartTime(), row.getEndTime(),
+                        row.getMemberName(), row.getCoachName(), row.getMessage(), row.getFeedback(),
+                        row.getRating(), tagNames(row.getTagIds(), tags)));
+            }
+        }
+    }
+
+    /**
+     * @param memberId null exports every member
+     */
+    @Transactional(readOnly = true)
+    public void exportBookings(Long memberId, ExportFormat format, OutputStream out) throws IOException {
+        try (Cursor<BookingExportRow> cursor = sessionBookingMapper.streamForExport(memberId);
+             ExportWriter writer = new ExportWriter(format, out, BOOKING_COLUMNS)) {
+            for (BookingExportRow row : cursor) {
+                writer.row(Arrays.asList(row.getId(), row.getStartTime(), row.getEndTime(),
+                        row.getMemberName(), row.getCoachName(),
+                        Objects.isNull(row.getStatus()) ? null : row.getStatus().getDesc(),
+                        row.getMessage(), row.getReply(),
+                        row.getRequestTime(), row.getResponseTime(), row.getCancelTime(), row.getIsRecord()));
+            }
+        }
+    }
+
+    private static List<String> tagNames(String tagIds, Map<Long, String> tags) {
+        List<String> names = new ArrayList<>();
+        if (Objects.isNull(tagIds) || tagIds.isEmpty()) {
+            return names;
+        }
+        for (String id : tagIds.split(",")) {
+            //快照刷新前新加的 tag 先用 id 占位
+            names.add(tags.getOrDefault(Long.valueOf(id.trim()), id.trim()));
+        }
+        return names;
+    }
+}
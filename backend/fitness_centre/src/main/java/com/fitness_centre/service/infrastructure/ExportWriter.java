@@ -0,0 +1,107 @@
+package com.fitness_centre.service.infrastructure;
+
+import com.alibaba.fastjson.JSON;
+import com.fitness_centre.constant.ExportFormat;
+
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * @author
+ * @Classname ExportWriter
+ * @Description Writes export rows one at a time as CSV or NDJSON, so nothing but the current row is held in memory
+ * @date 19/10/2026
+ */
+public class ExportWriter implements Closeable {
+
+    //每写这么多行推一次, 客户端能尽早开始下载
+    static final int FLUSH_EVERY = 200;
+
+    private static final DateTimeFormatter TIME = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm");
+
+    private final ExportFormat format;
+    private final List<String> columns;
+    private final Writer writer;
+    private int pending;
+
+    public ExportWriter(ExportFormat format, OutputStream out, List<String> columns) throws IOException {
+        this.format = format;
+        this.columns = columns;
+        this.writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8));
+        if (format == ExportFormat.CSV) {
+            //Excel 靠 BOM 识别 UTF-8
+            writer.write('\uFEFF');
+            writeCsvLine(columns);
+        }
+    }
+
+    /**
+     * @param values one per column; strings, numbers, booleans, times, string lists or null
+     */
+    public void row(List<?> values) throws IOException {
+        if (format == ExportFormat.CSV) {
+            writeCsvLine(values);
+        } else {
+            Map<String, Object> line = new LinkedHashMap<>();
+            for (int i = 0; i < columns.size(); i++) {
+                Object value = values.get(i);
+                line.put(columns.get(i), value instanceof LocalDateTime time ? time.format(TIME) : value);
+            }
+            writer.write(JSON.toJSONString(line));
+            writer.write('\n');
+        }
+        if (++pending >= FLUSH_EVERY) {
+            writer.flush();
+            pending = 0;
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        //只 flush, 输出流归容器管
+        writer.flush();
+    }
+
+    private void writeCsvLine(List<?> values) throws IOException {
+        for (int i = 0; i < values.size(); i++) {
+            if (i > 0) {
+                writer.write(',');
+            }
+            writer.write(csvCell(values.get(i)));
+        }
+        writer.write("\r\n");
+    }
+
+    static String csvCell(Object value) {
+        String text;
+        if (Objects.isNull(value)) {
+            return "";
+        } else if (value instanceof LocalDateTime time) {
+            text = time.format(TIME);
+        } else if (value instanceof Collection<?> items) {
+            text = String.join("; ", items.stream().map(String::valueOf).toList());
+        } else {
+            text = value.toString();
+        }
+        //防止表格软件把用户输入当公式执行
+        if (!text.isEmpty() && "=+-@".indexOf(text.charAt(0)) >= 0 && !(value instanceof Number)) {
+            text = "'" + text;
+        }
+        if (text.indexOf(',') >= 0 || text.indexOf('"') >= 0 || text.indexOf('\n') >= 0 || text.indexOf('\r') >= 0) {
+            text = "\"" + text.replace("\"", "\"\"") + "\"";
+        }
+        return text;
+    }
+}
@@ -0,0 +1,172 @@
+package com.fitness_centre.service.infrastructure;
+
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.http.MediaTypeFactory;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * @author
+ * @Classname FileSender
+ * @Description Serves uploaded files with ETag, Cache-Control, single byte ranges and zero-copy transfer from local storage
+ * @date 19/10/2026
+ */
+@Service
+public class FileSender {
+
+    //内容哈希命名的照片集: <root>/<userId>/<hash>/<rendition>.<ext>
+    private static final Pattern HASHED_KEY = Pattern.compile("^((temp|formal)/\\d+/[0-9a-f]{16,})/([^/.]+)\\.([^/.]+)$");
+
+    private static final Pattern RANGE = Pattern.compile("^bytes=(\\d*)-(\\d*)$");
+
+    public static final String IMMUTABLE = "public, max-age=31536000, immutable";
+
+    public static final String REVALIDATE = "no-cache";
+
+    //Tomcat 的 sendfile 约定, 由容器直接从文件写 socket
+    private static final String SENDFILE_SUPPORT = "org.apache.tomcat.sendfile.support";
+    private static final String SENDFILE_FILENAME = "org.apache.tomcat.sendfile.filename";
+    private static final String SENDFILE_START = "org.apache.tomcat.sendfile.start";
+    private static final String SENDFILE_END = "org.apache.tomcat.sendfile.end";
+
+    @Autowired
+    private BlobStore blobStore;
+
+    /**
+     * @param key blob key, e.g. temp/42/9f86d081884c7d65/full.jpg
+     */
+    public void send(String key, HttpServletRequest request, HttpServletResponse response) throws IOException {
+        //不接受 . 和 .. 以及空的路径段, 后端是 S3 时也不能跳出前缀
+        if (Arrays.stream(key.split("/", -1)).anyMatch(segment -> segment.isEmpty() || segment.equals(".") || segment.equals(".."))) {
+            response.sendError(HttpServletResponse.SC_NOT_FOUND);
+            return;
+        }
+        //只有已经生成的尺寸可以永久缓存, 暂存的原图和代替还没生成的尺寸返回的原图都要重新验证
+        Matcher hashed = HASHED_KEY.matcher(key);
+        boolean immutable = hashed.matches() && !FileService.SOURCE_NAME.equals(hashed.group(3));
+        BlobInfo blob = blobStore.stat(key);
+        if (Objects.isNull(blob) && immutable) {
+            key = hashed.group(1) + "/" + FileService.SOURCE_NAME + "." + hashed.group(4);
+            blob = blobStore.stat(key);
+            immutable = false;
+        }
+        if (Objects.isNull(blob)) {
+            response.sendError(HttpServletResponse.SC_NOT_FOUND);
+            return;
+        }
+
+        long length = blob.getSize();
+        String etag = blob.getEtag();
+
+        response.setHeader(HttpHeaders.ETAG, etag);
+        response.setHeader(HttpHeaders.CACHE_CONTROL, immutable ? IMMUTABLE : REVALIDATE);
+        response.setHeader(HttpHeaders.ACCEPT_RANGES, "bytes");
+
+        if (etagMatches(request.getHeader(HttpHeaders.IF_NONE_MATCH), etag)) {
+            response.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+            return;
+        }
+
+        response.setContentType(MediaTypeFactory.getMediaType(key)
+                .orElse(MediaType.APPLICATION_OCTET_STREAM).toString());
+
+        long start = 0;
+        long end = length - 1;
+        String range = request.getHeader(HttpHeaders.RANGE);
+        String ifRange = request.getHeader(HttpHeaders.IF_RANGE);
+        //If-Range 不匹配时按整个文件返回
+        if (range != null && (ifRange == null || ifRange.equals(etag))) {
+            Matcher matcher = RANGE.matcher(range.trim());
+            //多段 range 不支持, 按整个文件返回
+            if (matcher.matches()) {
+                String first = matcher.group(1);
+                String last = matcher.group(2);
+                try {
+                    if (first.isEmpty() && last.isEmpty()) {
+                        start = -1;
+                    } else if (first.isEmpty()) {
+                        //后缀 range: 最后 n 个字节
+                        start = Math.max(0, length - Long.parseLong(last));
+                    } else {
+                        start = Long.parseLong(first);
+                        if (!last.isEmpty()) {
+                            end = Math.min(end, Long.parseLong(last));
+                        }
+                    }
+                } catch (NumberFormatException e) {
+                    //超出 long 范围的数字同样无法满足
+                    start = -1;
+                }
+                if (start < 0 || start >= length || start > end) {
+                    response.setHeader(HttpHeaders.CONTENT_RANGE, "bytes */" + length);
+                    response.sendError(HttpServletResponse.SC_REQUESTED_RANGE_NOT_SATISFIABLE);
+                    return;
+                }
+                response.setStatus(HttpServletResponse.SC_PARTIAL_CONTENT);
+                response.setHeader(HttpHeaders.CONTENT_RANGE, "bytes " + start + "-" + end + "/" + length);
+            }
+        }
+
+        long count = end - start + 1;
+        response.setContentLengthLong(count);
+        if ("HEAD".equals(request.getMethod()) || count <= 0) {
+            return;
+        }
+
+        Optional<Path> file = blobStore.localFile(key);
+        if (file.isEmpty()) {
+            //远端存储: 按需要的范围流式读取, 不整个读进内存
+            try (InputStream in = blobStore.open(key, start, end)) {
+                in.transferTo(response.getOutputStream());
+            }
+            return;
+        }
+
+        if (Boolean.TRUE.equals(request.getAttribute(SENDFILE_SUPPORT))) {
+            request.setAttribute(SENDFILE_FILENAME, file.get().toString());
+            request.setAttribute(SENDFILE_START, start);
+            request.setAttribute(SENDFILE_END, end + 1);
+            return;
+        }
+
+        try (FileChannel channel = FileChannel.open(file.get(), StandardOpenOption.READ)) {
+            WritableByteChannel out = Channels.newChannel(response.getOutputStream());
+            long position = start;
+            long remaining = count;
+            while (remaining > 0) {
+                long sent = channel.transferTo(position, remaining, out);
+                if (sent <= 0) {
+                    break;
+                }
+                position += sent;
+                remaining -= sent;
+            }
+        }
+    }
+
+    private boolean etagMatches(String ifNoneMatch, String etag) {
+        if (ifNoneMatch == null) {
+            return false;
+        }
+        return Arrays.stream(ifNoneMatch.split(","))
+                .map(String::trim)
+                .map(tag -> tag.startsWith("W/") ? tag.substring(2) : tag)
+                .anyMatch(tag -> tag.equals("*") || tag.equals(etag));
+    }
+}
@@ -1,24 +1,50 @@
 package com.fitness_centre.service.infrastructure;
 
 import com.fitness_centre.constant.ErrorCode;
+import com.fitness_centre.constant.PhotoRendition;
 import com.fitness_centre.exception.BusinessException;
 import com.fitness_centre.exception.SystemException;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
 import lombok.Data;
+import org.apache.commons.io.FileUtils;
 import org.apache.commons.io.FilenameUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 import org.springframework.web.multipart.MultipartFile;
 
 import javax.imageio.ImageIO;
+import javax.imageio.ImageReadParam;
+import javax.imageio.ImageReader;
+import javax.imageio.stream.ImageInputStream;
 import java.awt.*;
 import java.awt.image.BufferedImage;
-import java.io.File;
 import java.io.IOException;
-import java.nio.Buffer;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.HexFormat;
+import java.util.Iterator;
+import java.util.List;
 import java.util.Locale;
+import java.util.Map;
 import java.util.Objects;
 import java.util.Set;
-import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Predicate;
 
 /**
  * @author
@@ -29,34 +55,78 @@ import java.util.UUID;
 @Service
 @Data
 public class FileService {
-    @Value("${upload.temp-path}")
-    private String tempPath;
+    private static final Logger log = LoggerFactory.getLogger(FileService.class);
 
-    @Value("${upload.formal-path}")
-    private String formalPath;
+    @Autowired
+    private BlobStore blobStore;
+
+    @Value("${upload.max-bytes:10485760}")
+    private long maxBytes = 10L * 1024 * 1024;
+
+    //宽 * 高 的上限, 只读文件头判断, 不解码
+    @Value("${upload.max-pixels:40000000}")
+    private long maxPixels = 40_000_000L;
+
+    @Value("${upload.image-workers:2}")
+    private int imageWorkers = 2;
+
+    @Value("${upload.image-queue:32}")
+    private int imageQueue = 32;
+
+    public final static String TEMP_ROOT = "temp";
+
+    public final static String FORMAL_ROOT = "formal";
+
+    //照片集里暂存的原图, 各个尺寸生成之前代替它们返回(不按 immutable 缓存), 全部生成后删除
+    public final static String SOURCE_NAME = "source";
+
+    private final static PhotoRendition[] LARGEST_FIRST = {PhotoRendition.FULL, PhotoRendition.CARD, PhotoRendition.THUMB};
 
     private final static Set<String> ALLOW_FORMAT = Set.of("png","jpeg","jpg");
 
+    //照片集目录名取内容 SHA-256 的前 8 个字节
+    private final static int HASH_BYTES = 8;
+
+    //渲染线程池, 队列满时拒绝新的上传, 解码和缩放永远不在请求线程里做
+    private ThreadPoolExecutor imagePool;
+
+    //每个用户最近一次上传的内容哈希, 旧任务不会再写文件
+    private final Map<Long,String> latestUpload = new ConcurrentHashMap<>();
+
+    @PostConstruct
+    public void init(){
+        AtomicInteger threadNo = new AtomicInteger();
+        imagePool = new ThreadPoolExecutor(imageWorkers, imageWorkers, 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(imageQueue),
+                r -> {
+                    Thread thread = new Thread(r, "image-pipeline-" + threadNo.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                },
+                new ThreadPoolExecutor.AbortPolicy());
+    }
+
+    @PreDestroy
+    public void shutdown(){
+        imagePool.shutdown();
+    }
+
+    /**
+     * Stage the upload as the source of the user's photo set and schedule the renditions. The set key prefix is
+     * named after the content hash and each rendition key is written once, when that rendition is ready, so a
+     * rendition url never changes meaning and can be cached forever; until then the source is served in its place.
+     * The request thread only copies bytes and reads the image header.
+     *
+     * @return url of the full rendition, e.g. /temp/42/9f86d081884c7d65/full.jpg
+     */
     public String uploadFileToTemp(MultipartFile file,Long useId){
         if(Objects.isNull(file) || file.isEmpty()){
             throw new BusinessException(ErrorCode.INVALID_PARAMETER.getCode(),"File is invalid");
         }
-        //todo 删除已经被删除的coach的照片
-        // (2) 读取图片数据
-        BufferedImage image;
-        try {
-            image = ImageIO.read(file.getInputStream());
-        } catch (IOException e) {
-            throw new SystemException(ErrorCode.SYSTEM_ERROR.getCode(), "Failed to read image file.", e);
-        }
-
-        if (Objects.isNull(image)) {
-            // 如果 read(...) 返回 null，说明可能不是有效的图片格式
-            throw new BusinessException(ErrorCode.INVALID_PARAMETER.getCode(), "Invalid image format.");
+        if(file.getSize() > maxBytes){
+            throw new BusinessException(ErrorCode.INVALID_PARAMETER.getCode(),"File is too large");
         }
 
-
-        //生成文件名
         String originFilename = file.getOriginalFilename();
         String extension = FilenameUtils.getExtension(originFilename).toLowerCase(Locale.ROOT);
         if(!ALLOW_FORMAT.contains(extension)){
@@ -66,29 +136,224 @@ public class FileService {
             extension = "jpg";
         }
 
-        String newFileName = useId + "." + extension;
-        File destFile = new File(tempPath,newFileName);
+        //先原样写到本地临时文件(边写边算哈希), 不在请求线程里解码
+        Path staging;
+        String hash;
         try{
-            ImageIO.write(image,extension,destFile);
+            staging = Files.createTempFile("upload-", "." + extension);
         } catch (IOException e) {
-            System.out.println(e.getMessage());
+            log.warn("Failed to create staging file", e);
             throw new SystemException(ErrorCode.FILE_SERVICE_ERROR);
         }
-        return  "/temp/" + newFileName;
+        try{
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            try (InputStream in = new DigestInputStream(file.getInputStream(), digest)) {
+                Files.copy(in, staging, StandardCopyOption.REPLACE_EXISTING);
+            }
+            hash = HexFormat.of().formatHex(digest.digest(), 0, HASH_BYTES);
+        } catch (IOException | NoSuchAlgorithmException e) {
+            FileUtils.deleteQuietly(staging.toFile());
+            log.warn("Failed to stage upload", e);
+            throw new SystemException(ErrorCode.FILE_SERVICE_ERROR);
+        }
+
+        try{
+            checkImageHeader(staging,extension);
+        } catch (BusinessException e){
+            FileUtils.deleteQuietly(staging.toFile());
+            throw e;
+        }
+
+        String userPrefix = TEMP_ROOT + "/" + useId + "/";
+        String setPrefix = userPrefix + hash + "/";
+        String url = "/" + setPrefix + PhotoRendition.FULL.fileName(extension);
+        try{
+            //内容相同的照片已经有完整的一套了, 直接复用; 缺了哪个(之前渲染失败)就重新生成
+            if (isComplete(setPrefix,extension)) {
+                FileUtils.deleteQuietly(staging.toFile());
+                return url;
+            }
+            //渲染排满了, 先拒绝, 不动存储里已有的照片
+            if (imagePool.getQueue().remainingCapacity() == 0) {
+                FileUtils.deleteQuietly(staging.toFile());
+                throw busy();
+            }
+
+            latestUpload.put(useId,hash);
+            //之前的照片集不再被引用, 一起清掉
+            deleteAll(userPrefix, key -> !key.startsWith(setPrefix));
+            try (InputStream in = Files.newInputStream(staging)) {
+                blobStore.put(setPrefix + SOURCE_NAME + "." + extension, in, contentTypeOf(extension));
+            }
+        } catch (IOException e) {
+            FileUtils.deleteQuietly(staging.toFile());
+            log.warn("Failed to store upload source", e);
+            throw new SystemException(ErrorCode.FILE_SERVICE_ERROR);
+        }
+
+        String format = extension;
+        try{
+            imagePool.execute(() -> createRenditions(useId,hash,staging,setPrefix,format));
+        } catch (RejectedExecutionException e) {
+            //检查之后队列又被占满了, 撤掉刚暂存的原图
+            latestUpload.remove(useId,hash);
+            try{
+                blobStore.delete(setPrefix + SOURCE_NAME + "." + extension);
+            } catch (IOException ignored) {
+                //没人引用, 清理任务会删掉
+            }
+            FileUtils.deleteQuietly(staging.toFile());
+            throw busy();
+        }
+        return url;
     }
 
+    private static BusinessException busy(){
+        return new BusinessException(ErrorCode.TOO_MANY_REQUESTS.getCode(),"Too many photos are being processed, please try again shortly");
+    }
 
-    public void deleteFileByUseId(Long userId){
-        String[] possibleExtensions = {".jpg",".jpeg","png"};
-        for(String ext : possibleExtensions){
-            String filePath = formalPath + "/" + userId + ext;
-            File file = new File(filePath);
-            if(file.exists()){
-                boolean delete = file.delete();
-                if(!delete){
-                    throw new SystemException(ErrorCode.FILE_SERVICE_ERROR.getCode(),"Unable to delete file");
+    /**
+     * Read format and dimensions from the header only.
+     */
+    private void checkImageHeader(Path path,String extension){
+        try (ImageInputStream in = ImageIO.createImageInputStream(path.toFile())) {
+            Iterator<ImageReader> readers = ImageIO.getImageReaders(in);
+            if (!readers.hasNext()) {
+                // 没有能识别的 reader，说明可能不是有效的图片格式
+                throw new BusinessException(ErrorCode.INVALID_PARAMETER.getCode(), "Invalid image format.");
+            }
+            ImageReader reader = readers.next();
+            try {
+                reader.setInput(in, true, true);
+                String format = reader.getFormatName().toLowerCase(Locale.ROOT);
+                if (!(format.equals(extension) || (format.equals("jpeg") && extension.equals("jpg")))) {
+                    throw new BusinessException(ErrorCode.INVALID_PARAMETER.getCode(), "File format error");
+                }
+                if ((long) reader.getWidth(0) * reader.getHeight(0) > maxPixels) {
+                    throw new BusinessException(ErrorCode.INVALID_PARAMETER.getCode(), "Image dimensions are too large");
                 }
+            } finally {
+                reader.dispose();
             }
+        } catch (IOException e) {
+            throw new BusinessException(ErrorCode.INVALID_PARAMETER.getCode(), "Invalid image format.");
+        }
+    }
+
+    private boolean isComplete(String setPrefix,String extension) throws IOException {
+        for (PhotoRendition rendition : LARGEST_FIRST) {
+            if (Objects.isNull(blobStore.stat(setPrefix + rendition.fileName(extension)))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void deleteAll(String prefix,Predicate<String> filter) throws IOException {
+        //先列完再删, 删除不影响正在进行的列举
+        List<String> keys = new ArrayList<>();
+        blobStore.list(prefix, blob -> {
+            if (filter.test(blob.getKey())) {
+                keys.add(blob.getKey());
+            }
+        });
+        for (String key : keys) {
+            blobStore.delete(key);
+        }
+    }
+
+    private static String contentTypeOf(String extension){
+        return extension.equals("png") ? "image/png" : "image/jpeg";
+    }
+
+    /**
+     * Decode the local staging copy once (subsampled when the source is far larger than needed) and store every
+     * rendition that does not exist yet, each scaled from the previous, larger one. The staged source and the
+     * staging copy are deleted afterwards.
+     */
+    private void createRenditions(Long useId,String hash,Path staging,String setPrefix,String extension){
+        Path tmp = null;
+        try{
+            BufferedImage current = decode(staging,PhotoRendition.FULL.getMaxSide());
+            tmp = Files.createTempFile("rendition-", "." + extension);
+            for (PhotoRendition rendition : LARGEST_FIRST) {
+                current = scale(current,rendition.getMaxSide(),extension);
+                if (!hash.equals(latestUpload.get(useId))) {
+                    return;
+                }
+                //已经发布过的不再覆盖, immutable 的 url 内容不能变
+                String key = setPrefix + rendition.fileName(extension);
+                if (Objects.nonNull(blobStore.stat(key))) {
+                    continue;
+                }
+                ImageIO.write(current,extension,tmp.toFile());
+                try (InputStream in = Files.newInputStream(tmp)) {
+                    blobStore.put(key, in, contentTypeOf(extension));
+                }
+            }
+            blobStore.delete(setPrefix + SOURCE_NAME + "." + extension);
+        } catch (Exception e) {
+            log.warn("Failed to create renditions for {}", setPrefix, e);
+        } finally {
+            latestUpload.remove(useId,hash);
+            FileUtils.deleteQuietly(staging.toFile());
+            if (Objects.nonNull(tmp)) {
+                FileUtils.deleteQuietly(tmp.toFile());
+            }
+        }
+    }
+
+    private BufferedImage decode(Path path,int targetSide) throws IOException {
+        try (ImageInputStream in = ImageIO.createImageInputStream(path.toFile())) {
+            ImageReader reader = ImageIO.getImageReaders(in).next();
+            try {
+                reader.setInput(in, true, true);
+                int longSide = Math.max(reader.getWidth(0), reader.getHeight(0));
+                ImageReadParam param = reader.getDefaultReadParam();
+                int step = Math.max(1, longSide / targetSide);
+                param.setSourceSubsampling(step, step, 0, 0);
+                return reader.read(0, param);
+            } finally {
+                reader.dispose();
+            }
+        }
+    }
+
+    private BufferedImage scale(BufferedImage image,int maxSide,String extension){
+        int width = image.getWidth();
+        int height = image.getHeight();
+        boolean alpha = extension.equals("png") && image.getColorModel().hasAlpha();
+        int type = alpha ? BufferedImage.TYPE_INT_ARGB : BufferedImage.TYPE_INT_RGB;
+        double ratio = Math.min(1.0, (double) maxSide / Math.max(width, height));
+        if (ratio == 1.0 && image.getType() == type) {
+            return image;
+        }
+        int newWidth = Math.max(1, (int) Math.round(width * ratio));
+        int newHeight = Math.max(1, (int) Math.round(height * ratio));
+        BufferedImage scaled = new BufferedImage(newWidth, newHeight, type);
+        Graphics2D g = scaled.createGraphics();
+        try {
+            g.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+            g.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
+            g.drawImage(image, 0, 0, newWidth, newHeight, null);
+        } finally {
+            g.dispose();
+        }
+        return scaled;
+    }
+
+
+    public void deleteFileByUseId(Long userId){
+        try{
+            //旧版本的 <userId>.<ext> 文件
+            for(String ext : new String[]{".jpg",".jpeg",".png"}){
+                blobStore.delete(FORMAL_ROOT + "/" + userId + ext);
+            }
+            //照片集
+            deleteAll(FORMAL_ROOT + "/" + userId + "/", key -> true);
+            deleteAll(TEMP_ROOT + "/" + userId + "/", key -> true);
+        } catch (IOException e) {
+            throw new SystemException(ErrorCode.FILE_SERVICE_ERROR.getCode(),"Unable to delete file");
         }
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,90 @@
+package com.fitness_centre.service.infrastructure;
+
+import com.fitness_centre.constant.ErrorCode;
+import com.fitness_centre.exception.SystemException;
+import com.google.api.client.googleapis.auth.oauth2.GoogleIdToken;
+import com.google.api.client.googleapis.auth.oauth2.GoogleIdTokenVerifier;
+import com.google.api.client.googleapis.auth.oauth2.GoogleOAuthConstants;
+import com.google.api.client.googleapis.auth.oauth2.GooglePublicKeysManager;
+import com.google.api.client.http.javanet.NetHttpTransport;
+import com.google.api.client.json.jackson2.JacksonFactory;
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.security.GeneralSecurityException;
+import java.util.Collections;
+
+/**
+ * @author
+ * @Classname GoogleTokenVerifier
+ * @Description Verifies Google id_tokens locally against a cached copy of Google's signing certificates
+ * @date 19/10/2026
+ */
+@Service
+public class GoogleTokenVerifier {
+
+    private static final Logger log = LoggerFactory.getLogger(GoogleTokenVerifier.class);
+
+    /**
+     * GooglePublicKeysManager refreshes on the calling thread once the keys are within 5 minutes of expiry,
+     * so the background refresh starts earlier than that.
+     */
+    private static final long BACKGROUND_REFRESH_WINDOW_MS = 10 * 60 * 1000L;
+
+    @Value("${google.client-id}")
+    private String clientId;
+
+    @Value("${google.certs-url:" + GoogleOAuthConstants.DEFAULT_PUBLIC_CERTS_ENCODED_URL + "}")
+    private String certsUrl = GoogleOAuthConstants.DEFAULT_PUBLIC_CERTS_ENCODED_URL;
+
+    private GooglePublicKeysManager publicKeysManager;
+
+    private GoogleIdTokenVerifier verifier;
+
+    @PostConstruct
+    public void init() {
+        //整个应用共用一个 transport 和 key 缓存, 过期时间取自证书接口的 Cache-Control
+        publicKeysManager = new GooglePublicKeysManager.Builder(new NetHttpTransport(), JacksonFactory.getDefaultInstance())
+                .setPublicCertsEncodedUrl(certsUrl)
+                .build();
+        verifier = new GoogleIdTokenVerifier.Builder(publicKeysManager)
+                .setAudience(Collections.singletonList(clientId))
+                .build();
+    }
+
+    /**
+     * @return the parsed token, or null when the signature, issuer, audience or expiry check fails
+     */
+    public GoogleIdToken verify(String idTokenString) {
+        try {
+            return verifier.verify(idTokenString);
+        } catch (IllegalArgumentException e) {
+            //token 格式错误
+            return null;
+        } catch (GeneralSecurityException | IOException e) {
+            throw new SystemException(ErrorCode.GOOGLE_AUTH_ERROR);
+        }
+    }
+
+    /**
+     * Fetch the certificates ahead of their expiry so no login request waits for the download.
+     * A failed fetch keeps the current keys; the next run tries again.
+     */
+    @Scheduled(fixedDelayString = "${google.certs-refresh-check-ms:60000}")
+    public void refreshIfExpiring() {
+        //还没有加载过时过期时间为 0, 第一次执行即加载
+        if (System.currentTimeMillis() + BACKGROUND_REFRESH_WINDOW_MS < publicKeysManager.getExpirationTimeMilliseconds()) {
+            return;
+        }
+        try {
+            publicKeysManager.refresh();
+        } catch (GeneralSecurityException | IOException e) {
+            log.warn("Failed to refresh Google public keys", e);
+        }
+    }
+}
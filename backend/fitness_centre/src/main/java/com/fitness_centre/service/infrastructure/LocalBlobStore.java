@@ -0,0 +1,185 @@
+package com.fitness_centre.service.infrastructure;
+
+import org.apache.commons.io.input.BoundedInputStream;
+
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.function.Consumer;
+
+/**
+ * @author
+ * @Classname LocalBlobStore
+ * @Description BlobStore on the local filesystem; the first key segment selects the root directory
+ * @date 19/10/2026
+ */
+public class LocalBlobStore implements BlobStore {
+
+    //写入中的临时文件前缀, 列举时跳过
+    private static final String PART_PREFIX = ".part-";
+
+    private final Map<String, Path> roots = new LinkedHashMap<>();
+
+    /**
+     * @param roots key prefix (e.g. "temp") to directory
+     */
+    public LocalBlobStore(Map<String, Path> roots) {
+        roots.forEach((name, dir) -> this.roots.put(name, dir.toAbsolutePath().normalize()));
+    }
+
+    @Override
+    public void put(String key, InputStream content, String contentType) throws IOException {
+        Path target = resolve(key);
+        Files.createDirectories(target.getParent());
+        //先写临时文件再改名, 读的一方不会看到写了一半的文件
+        Path part = target.resolveSibling(PART_PREFIX + UUID.randomUUID());
+        try {
+            Files.copy(content, part);
+            moveReplacing(part, target);
+        } finally {
+            Files.deleteIfExists(part);
+        }
+    }
+
+    @Override
+    public BlobInfo stat(String key) throws IOException {
+        Path file = resolve(key);
+        if (!Files.isRegularFile(file)) {
+            return null;
+        }
+        return toInfo(key, Files.readAttributes(file, BasicFileAttributes.class));
+    }
+
+    @Override
+    public InputStream open(String key, long start, long end) throws IOException {
+        Path file = resolve(key);
+        if (!Files.isRegularFile(file)) {
+            throw new FileNotFoundException(key);
+        }
+        FileChannel channel = FileChannel.open(file, StandardOpenOption.READ);
+        channel.position(start);
+        return new BoundedInputStream(Channels.newInputStream(channel), end - start + 1);
+    }
+
+    @Override
+    public void delete(String key) throws IOException {
+        Path file = resolve(key);
+        Files.deleteIfExists(file);
+        pruneEmptyParents(key, file);
+    }
+
+    @Override
+    public void move(String fromKey, String toKey) throws IOException {
+        Path source = resolve(fromKey);
+        Path target = resolve(toKey);
+        Files.createDirectories(target.getParent());
+        moveReplacing(source, target);
+        pruneEmptyParents(fromKey, source);
+    }
+
+    @Override
+    public void list(String prefix, Consumer<BlobInfo> visitor) throws IOException {
+        int slash = prefix.indexOf('/');
+        String rootName = slash < 0 ? prefix : prefix.substring(0, slash);
+        Path root = roots.get(rootName);
+        if (root == null) {
+            return;
+        }
+        //从前缀覆盖到的最深一层目录开始逐层遍历
+        String rest = slash < 0 ? "" : prefix.substring(slash + 1);
+        Path start = root.resolve(rest.substring(0, rest.lastIndexOf('/') + 1));
+        if (Files.isDirectory(start)) {
+            walk(rootName, root, start, prefix, visitor);
+        }
+    }
+
+    @Override
+    public Optional<Path> localFile(String key) {
+        try {
+            Path file = resolve(key);
+            return Files.isRegularFile(file) ? Optional.of(file) : Optional.empty();
+        } catch (IOException e) {
+            return Optional.empty();
+        }
+    }
+
+    private void walk(String rootName, Path root, Path dir, String prefix, Consumer<BlobInfo> visitor) throws IOException {
+        try (DirectoryStream<Path> entries = Files.newDirectoryStream(dir)) {
+            for (Path entry : entries) {
+                if (entry.getFileName().toString().startsWith(PART_PREFIX)) {
+                    continue;
+                }
+                BasicFileAttributes attributes = Files.readAttributes(entry, BasicFileAttributes.class);
+                if (attributes.isDirectory()) {
+                    walk(rootName, root, entry, prefix, visitor);
+                    continue;
+                }
+                String key = rootName + "/" + root.relativize(entry).toString().replace('\\', '/');
+                if (key.startsWith(prefix)) {
+                    visitor.accept(toInfo(key, attributes));
+                }
+            }
+        }
+    }
+
+    private Path resolve(String key) throws IOException {
+        int slash = key.indexOf('/');
+        Path root = slash < 0 ? null : roots.get(key.substring(0, slash));
+        if (root == null) {
+            throw new FileNotFoundException(key);
+        }
+        Path file = root.resolve(key.substring(slash + 1)).normalize();
+        //不允许 ../ 跳出根目录
+        if (!file.startsWith(root) || file.equals(root)) {
+            throw new FileNotFoundException(key);
+        }
+        return file;
+    }
+
+    private void moveReplacing(Path source, Path target) throws IOException {
+        try {
+            Files.move(source, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(source, target, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    //删除后留下的空目录一并删掉, 直到根目录
+    private void pruneEmptyParents(String key, Path file) throws IOException {
+        Path root = roots.get(key.substring(0, key.indexOf('/')));
+        for (Path dir = file.getParent(); dir != null && dir.startsWith(root) && !dir.equals(root); dir = dir.getParent()) {
+            try (DirectoryStream<Path> entries = Files.newDirectoryStream(dir)) {
+                if (entries.iterator().hasNext()) {
+                    return;
+                }
+            } catch (IOException e) {
+                return;
+            }
+            try {
+                Files.deleteIfExists(dir);
+            } catch (IOException e) {
+                //并发写入了新文件
+                return;
+            }
+        }
+    }
+
+    private static BlobInfo toInfo(String key, BasicFileAttributes attributes) {
+        long lastModified = attributes.lastModifiedTime().toMillis();
+        String etag = "\"" + Long.toHexString(attributes.size()) + "-" + Long.toHexString(lastModified) + "\"";
+        return new BlobInfo(key, attributes.size(), lastModified, etag);
+    }
+}
@@ -0,0 +1,89 @@
+package com.fitness_centre.service.infrastructure;
+
+import com.fitness_centre.constant.MailJobStatus;
+import lombok.Getter;
+
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.Delayed;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * @author
+ * @Classname MailJob
+ * @Description One mail waiting in the outbox, ordered by the time it may next be attempted
+ * @date 19/10/2026
+ */
+@Getter
+public class MailJob implements Delayed {
+
+    private final String id = UUID.randomUUID().toString();
+
+    private final String toEmail;
+
+    private final String subject;
+
+    //thymeleaf 模板名和变量, 发送时才渲染
+    private final String template;
+
+    private final Map<String, Object> variables;
+
+    private final long createdAt = System.currentTimeMillis();
+
+    private volatile MailJobStatus status = MailJobStatus.PENDING;
+
+    private volatile int attempts;
+
+    private volatile String lastError;
+
+    private volatile long nextAttemptAt = createdAt;
+
+    private volatile long finishedAt;
+
+    //重试用完后的回调, 可以为空
+    private Runnable onFailure;
+
+    public MailJob(String toEmail, String subject, String template, Map<String, Object> variables) {
+        this.toEmail = toEmail;
+        this.subject = subject;
+        this.template = template;
+        this.variables = variables;
+    }
+
+    void setOnFailure(Runnable onFailure) {
+        this.onFailure = onFailure;
+    }
+
+    void markSending() {
+        status = MailJobStatus.SENDING;
+        attempts++;
+    }
+
+    void markSent() {
+        status = MailJobStatus.SENT;
+        lastError = null;
+        finishedAt = System.currentTimeMillis();
+    }
+
+    void markRetry(String error, long delayMs) {
+        status = MailJobStatus.PENDING;
+        lastError = error;
+        nextAttemptAt = System.currentTimeMillis() + delayMs;
+    }
+
+    void markFailed(String error) {
+        status = MailJobStatus.FAILED;
+        lastError = error;
+        finishedAt = System.currentTimeMillis();
+    }
+
+    @Override
+    public long getDelay(TimeUnit unit) {
+        return unit.convert(nextAttemptAt - System.currentTimeMillis(), TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    public int compareTo(Delayed other) {
+        return Long.compare(getDelay(TimeUnit.MILLISECONDS), other.getDelay(TimeUnit.MILLISECONDS));
+    }
+}
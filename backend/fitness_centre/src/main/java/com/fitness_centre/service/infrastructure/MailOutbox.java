@@ -0,0 +1,201 @@
+package com.fitness_centre.service.infrastructure;
+
+import com.fitness_centre.constant.MailJobStatus;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import jakarta.mail.internet.MimeMessage;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.mail.MailSendException;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.DelayQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * @author
+ * @Classname MailOutbox
+ * @Description Queues mails and sends them in batches from a small worker pool, retrying with exponential backoff
+ * @date 19/10/2026
+ */
+@Service
+public class MailOutbox {
+
+    @Autowired
+    private MailService mailService;
+
+    @Value("${mail.outbox.workers:2}")
+    private int workers = 2;
+
+    //一次连接最多发送多少封
+    @Value("${mail.outbox.batch-size:20}")
+    private int batchSize = 20;
+
+    @Value("${mail.outbox.max-attempts:5}")
+    private int maxAttempts = 5;
+
+    @Value("${mail.outbox.initial-backoff-ms:2000}")
+    private long initialBackoffMs = 2000;
+
+    @Value("${mail.outbox.max-backoff-ms:300000}")
+    private long maxBackoffMs = 300000;
+
+    //发送完成(成功或失败)的任务保留多久以便查询状态
+    @Value("${mail.outbox.retention-ms:3600000}")
+    private long retentionMs = 3600000;
+
+    private final DelayQueue<MailJob> queue = new DelayQueue<>();
+
+    private final Map<String, MailJob> jobs = new ConcurrentHashMap<>();
+
+    private ExecutorService workerPool;
+
+    @PostConstruct
+    public void start() {
+        AtomicInteger threadNo = new AtomicInteger();
+        workerPool = Executors.newFixedThreadPool(workers, r -> {
+            Thread thread = new Thread(r, "mail-outbox-" + threadNo.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        for (int i = 0; i < workers; i++) {
+            workerPool.submit(this::workLoop);
+        }
+    }
+
+    @PreDestroy
+    public void stop() throws InterruptedException {
+        workerPool.shutdownNow();
+        workerPool.awaitTermination(5, TimeUnit.SECONDS);
+    }
+
+    /**
+     * Queue a mail and return immediately.
+     *
+     * @param onFailure run once when every attempt has failed, may be null
+     * @return job id for {@link #getJobStatus}
+     */
+    public String enqueue(MailJob job, Runnable onFailure) {
+        job.setOnFailure(onFailure);
+        jobs.put(job.getId(), job);
+        queue.put(job);
+        return job.getId();
+    }
+
+    /**
+     * @return id, recipient, status, attempts and last error of the job, null when unknown or already evicted
+     */
+    public Map<String, Object> getJobStatus(String jobId) {
+        MailJob job = jobs.get(jobId);
+        if (Objects.isNull(job)) {
+            return null;
+        }
+        Map<String, Object> status = new LinkedHashMap<>();
+        status.put("id", job.getId());
+        status.put("toEmail", job.getToEmail());
+        status.put("status", job.getStatus().getStatus());
+        status.put("attempts", job.getAttempts());
+        status.put("lastError", job.getLastError());
+        status.put("createdAt", job.getCreatedAt());
+        status.put("nextAttemptAt", job.getNextAttemptAt());
+        return status;
+    }
+
+    /**
+     * Number of tracked jobs in each status.
+     */
+    public Map<MailJobStatus, Long> getStatusCounts() {
+        Map<MailJobStatus, Long> counts = new EnumMap<>(MailJobStatus.class);
+        for (MailJobStatus status : MailJobStatus.values()) {
+            counts.put(status, 0L);
+        }
+        jobs.values().forEach(job -> counts.merge(job.getStatus(), 1L, Long::sum));
+        return counts;
+    }
+
+    @Scheduled(fixedDelayString = "${mail.outbox.evict-interval-ms:600000}")
+    public void evictFinished() {
+        long deadline = System.currentTimeMillis() - retentionMs;
+        jobs.values().removeIf(job -> job.getFinishedAt() > 0 && job.getFinishedAt() < deadline);
+    }
+
+    private void workLoop() {
+        while (!Thread.currentThread().isInterrupted()) {
+            List<MailJob> batch = new ArrayList<>();
+            try {
+                batch.add(queue.take());
+            } catch (InterruptedException e) {
+                return;
+            }
+            //把已经到期的任务一起带上, 共用一个 SMTP 连接
+            queue.drainTo(batch, batchSize - 1);
+            try {
+                sendBatch(batch);
+            } catch (RuntimeException e) {
+                batch.stream()
+                        .filter(job -> job.getStatus() == MailJobStatus.SENDING)
+                        .forEach(job -> retryOrFail(job, e));
+            }
+        }
+    }
+
+    private void sendBatch(List<MailJob> batch) {
+        Map<MimeMessage, MailJob> byMessage = new IdentityHashMap<>();
+        for (MailJob job : batch) {
+            job.markSending();
+            try {
+                byMessage.put(mailService.render(job), job);
+            } catch (Exception e) {
+                retryOrFail(job, e);
+            }
+        }
+        if (byMessage.isEmpty()) {
+            return;
+        }
+
+        try {
+            mailService.send(byMessage.keySet().toArray(new MimeMessage[0]));
+            byMessage.values().forEach(MailJob::markSent);
+        } catch (MailSendException e) {
+            //连接失败时所有邮件都在 failedMessages 里, 否则只重试失败的那几封
+            Map<Object, Exception> failed = e.getFailedMessages();
+            byMessage.forEach((message, job) -> {
+                if (failed.containsKey(message)) {
+                    retryOrFail(job, failed.get(message));
+                } else {
+                    job.markSent();
+                }
+            });
+        }
+    }
+
+    private void retryOrFail(MailJob job, Exception e) {
+        String error = e.getClass().getSimpleName() + ": " + e.getMessage();
+        if (job.getAttempts() >= maxAttempts) {
+            job.markFailed(error);
+            if (Objects.nonNull(job.getOnFailure())) {
+                try {
+                    job.getOnFailure().run();
+                } catch (RuntimeException ignored) {
+                    //回调失败不影响发件箱
+                }
+            }
+            return;
+        }
+        long delay = Math.min(maxBackoffMs, initialBackoffMs << Math.min(job.getAttempts() - 1, 20));
+        job.markRetry(error, delay);
+        queue.put(job);
+    }
+}
@@ -4,6 +4,7 @@ import jakarta.mail.MessagingException;
 import jakarta.mail.internet.MimeMessage;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.mail.MailException;
 import org.springframework.mail.javamail.JavaMailSender;
 import org.springframework.mail.javamail.MimeMessageHelper;
 import org.springframework.stereotype.Service;
@@ -11,6 +12,7 @@ import org.thymeleaf.context.Context;
 import org.thymeleaf.spring6.SpringTemplateEngine;
 
 import java.security.SecureRandom;
+import java.util.Map;
 
 /**
  * @author
@@ -29,7 +31,7 @@ public class MailService {
     @Value("${spring.mail.username}")
     private String fromEmail;
 
-    private String generateCode(int length){
+    public String generateCode(int length){
         SecureRandom random = new SecureRandom();
         StringBuilder sb = new StringBuilder();
         for(int i = 0;i < length;i++){
@@ -38,25 +40,34 @@ public class MailService {
         return sb.toString();
     }
 
-    public String sendVerificationCode(String toEmail) throws MessagingException {
-
+    /**
+     * Describe the verification mail; it is rendered and sent later by {@link MailOutbox}.
+     */
+    public MailJob verificationCodeMail(String toEmail,String code){
+        return new MailJob(toEmail,"Registration Verification Code","email_verification",Map.of("code",code));
+    }
 
+    public MimeMessage render(MailJob job) throws MessagingException {
         Context context = new Context();
-        String code = generateCode(6);
-        context.setVariable("code", code);
+        context.setVariables(job.getVariables());
 
-        String htmlContent = templateEngine.process("email_verification", context);
+        String htmlContent = templateEngine.process(job.getTemplate(), context);
 
         MimeMessage mimeMessage = mailSender.createMimeMessage();
         MimeMessageHelper helper = new MimeMessageHelper(mimeMessage, true, "UTF-8");
 
         helper.setFrom(fromEmail);
-        helper.setTo(toEmail);
-        helper.setSubject("Registration Verification Code");
+        helper.setTo(job.getToEmail());
+        helper.setSubject(job.getSubject());
         helper.setText(htmlContent, true);
+        return mimeMessage;
+    }
 
-        mailSender.send(mimeMessage);
-
-        return code;
+    /**
+     * Send several messages over one SMTP connection.
+     * Messages that could not be delivered are listed in {@link org.springframework.mail.MailSendException#getFailedMessages()}.
+     */
+    public void send(MimeMessage... messages) throws MailException {
+        mailSender.send(messages);
     }
-}
\ No newline at end of file
+}
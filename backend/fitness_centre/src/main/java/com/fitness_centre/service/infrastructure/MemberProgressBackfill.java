@@ -0,0 +1,77 @@
+package com.fitness_centre.service.infrastructure;
+
+import com.fitness_centre.mapper.MemberProgressMapper;
+import com.fitness_centre.utils.RedisCache;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * @author
+ * @Classname MemberProgressBackfill
+ * @Description Recounts the weekly progress counters from training history: once after deploying, then nightly
+ * @date 19/10/2026
+ */
+@Service
+public class MemberProgressBackfill {
+
+    private static final Logger log = LoggerFactory.getLogger(MemberProgressBackfill.class);
+
+    //最近一天内重算过的标记, 重启时不再重复
+    public static final String REBUILT_KEY = "member-progress:rebuilt";
+
+    @Autowired
+    private MemberProgressMapper memberProgressMapper;
+
+    @Autowired
+    private RedisCache redisCache;
+
+    /**
+     * History from before the counters existed, or recorded by an instance still running an older
+     * version during a rolling deploy, is never added to them, so startup recounts unless a rebuild
+     * ran within the last day.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void rebuildIfStale() {
+        try {
+            if (Objects.nonNull(redisCache.getCacheObject(REBUILT_KEY))) {
+                return;
+            }
+        } catch (RuntimeException e) {
+            log.warn("Failed to read member progress marker", e);
+        }
+        rebuild();
+    }
+
+    /**
+     * Overwrite every counter with the count from training history and delete counters whose history is
+     * gone. Both statements set rather than add, so two instances running it at once is harmless.
+     *
+     * @return counter rows written
+     */
+    @Scheduled(cron = "${member-progress.rebuild-cron:0 45 3 * * *}")
+    public int rebuild() {
+        int rows;
+        try {
+            int deleted = memberProgressMapper.deleteUncounted();
+            rows = memberProgressMapper.rebuildAll();
+            log.info("Member progress rebuilt: {} rows written, {} deleted", rows, deleted);
+        } catch (RuntimeException e) {
+            log.warn("Failed to rebuild member progress", e);
+            return 0;
+        }
+        try {
+            redisCache.setCacheObject(REBUILT_KEY, 1, 1, TimeUnit.DAYS);
+        } catch (RuntimeException e) {
+            log.warn("Failed to mark member progress rebuilt", e);
+        }
+        return rows;
+    }
+}
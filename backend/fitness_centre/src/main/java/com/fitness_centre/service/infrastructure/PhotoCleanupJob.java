@@ -0,0 +1,197 @@
+package com.fitness_centre.service.infrastructure;
+
+import com.fitness_centre.domain.CoachInfo;
+import com.fitness_centre.mapper.CoachMapper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Objects;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * @author
+ * @Classname PhotoCleanupJob
+ * @Description Promotes referenced temp photos to formal storage and deletes photos nothing references
+ * @date 19/10/2026
+ */
+@Service
+public class PhotoCleanupJob {
+
+    private static final Logger log = LoggerFactory.getLogger(PhotoCleanupJob.class);
+
+    private static final String TEMP_PREFIX = "/temp";
+
+    private static final String FORMAL_PREFIX = "/formal";
+
+    //照片集 url: /temp/42/<hash>/full.jpg, 引用的是整个目录
+    private static final Pattern SET_URL = Pattern.compile("^(/(temp|formal)/\\d+/[0-9a-f]{16,})/[^/]+$");
+
+    private static final Pattern SET_REFERENCE = Pattern.compile("^/(temp|formal)/\\d+/[0-9a-f]{16,}$");
+
+    //根目录下只清理旧版本的 <userId>.<ext> 文件, 其他文件(default.jpg 等)不动
+    private static final Pattern LEGACY_FILE = Pattern.compile("^(temp|formal)/\\d+\\.(jpg|jpeg|png)$");
+
+    //用户目录下的对象, 按第一层(照片集)归组
+    private static final Pattern USER_OBJECT = Pattern.compile("^((temp|formal)/\\d+/[^/]+)(/.*)?$");
+
+    @Value("${upload.cleanup-chunk-size:500}")
+    private int chunkSize = 500;
+
+    //比这个更新的文件可能还在上传或生成缩略图, 不动
+    @Value("${upload.cleanup-grace-ms:600000}")
+    private long graceMs = 600000;
+
+    @Autowired
+    private CoachMapper coachMapper;
+
+    @Autowired
+    private BlobStore blobStore;
+
+    @Autowired
+    private CoachCardStore coachCardStore;
+
+    @Scheduled(cron = "${upload.cleanup-cron:0 30 3 * * *}")
+    public PhotoCleanupReport run() {
+        PhotoCleanupReport report = new PhotoCleanupReport();
+        long startedAt = System.currentTimeMillis();
+
+        //1. 分批读取引用, 同时把 temp 里的照片搬到 formal
+        Set<String> referenced = new HashSet<>();
+        long afterId = 0;
+        List<CoachInfo> chunk;
+        do {
+            chunk = coachMapper.selectPhotosAfter(afterId, chunkSize);
+            for (CoachInfo coachInfo : chunk) {
+                report.setScannedCoaches(report.getScannedCoaches() + 1);
+                String photo = promote(coachInfo, startedAt, report);
+                if (Objects.nonNull(photo)) {
+                    referenced.add(referenceOf(photo));
+                }
+                afterId = coachInfo.getId();
+            }
+        } while (chunk.size() == chunkSize);
+
+        //2. 扫描存储, 删除没人引用且已过宽限期的照片
+        sweep(FileService.TEMP_ROOT, referenced, startedAt, report);
+        sweep(FileService.FORMAL_ROOT, referenced, startedAt, report);
+
+        log.info("Photo cleanup finished: {}", report);
+        return report;
+    }
+
+    /**
+     * Move the coach's photo from temp to formal once it has settled.
+     *
+     * @return the photo url after promotion
+     */
+    private String promote(CoachInfo coachInfo, long now, PhotoCleanupReport report) {
+        String photo = coachInfo.getPhoto();
+        if (Objects.isNull(photo) || !photo.startsWith(TEMP_PREFIX + "/")) {
+            return photo;
+        }
+        String reference = referenceOf(photo);
+        try {
+            List<BlobInfo> sources = objectsOf(reference);
+            if (sources.isEmpty() || sources.stream().anyMatch(blob -> !isOlderThanGrace(blob, now))) {
+                return photo;
+            }
+            String targetReference = FORMAL_PREFIX + reference.substring(TEMP_PREFIX.length());
+            boolean targetExists = !objectsOf(targetReference).isEmpty();
+            for (BlobInfo source : sources) {
+                if (targetExists) {
+                    //同样内容的照片集已经在 formal 里了
+                    blobStore.delete(source.getKey());
+                } else {
+                    blobStore.move(source.getKey(), FileService.FORMAL_ROOT + source.getKey().substring(FileService.TEMP_ROOT.length()));
+                }
+            }
+        } catch (IOException e) {
+            log.warn("Failed to promote {}", photo, e);
+            report.setFailed(report.getFailed() + 1);
+            return photo;
+        }
+
+        String formalPhoto = FORMAL_PREFIX + photo.substring(TEMP_PREFIX.length());
+        if (coachMapper.updatePhotoIfUnchanged(coachInfo.getId(), photo, formalPhoto) == 0) {
+            //期间重新上传过, 新照片还在宽限期内, 搬过去的这一套下次会被清掉
+            return null;
+        }
+        coachCardStore.refresh(coachInfo.getId());
+        report.setPromoted(report.getPromoted() + 1);
+        return formalPhoto;
+    }
+
+    /**
+     * Objects behind a reference: every rendition of a photo set, or the single legacy file.
+     */
+    private List<BlobInfo> objectsOf(String reference) throws IOException {
+        String key = reference.substring(1);
+        List<BlobInfo> objects = new ArrayList<>();
+        if (SET_REFERENCE.matcher(reference).matches()) {
+            blobStore.list(key + "/", objects::add);
+        } else {
+            BlobInfo blob = blobStore.stat(key);
+            if (Objects.nonNull(blob)) {
+                objects.add(blob);
+            }
+        }
+        return objects;
+    }
+
+    private void sweep(String root, Set<String> referenced, long now, PhotoCleanupReport report) {
+        //先列完再删, 删除时会顺带清掉空目录
+        List<BlobInfo> orphans = new ArrayList<>();
+        try {
+            blobStore.list(root + "/", blob -> {
+                String reference = sweepReferenceOf(blob.getKey());
+                if (Objects.nonNull(reference) && !referenced.contains(reference) && isOlderThanGrace(blob, now)) {
+                    orphans.add(blob);
+                }
+            });
+        } catch (IOException e) {
+            log.warn("Failed to scan {}", root, e);
+            report.setFailed(report.getFailed() + 1);
+        }
+        for (BlobInfo orphan : orphans) {
+            try {
+                blobStore.delete(orphan.getKey());
+                report.setDeleted(report.getDeleted() + 1);
+                report.setReclaimedBytes(report.getReclaimedBytes() + orphan.getSize());
+            } catch (IOException e) {
+                log.warn("Failed to delete {}", orphan.getKey(), e);
+                report.setFailed(report.getFailed() + 1);
+            }
+        }
+    }
+
+    /**
+     * @return what a url would have to reference to keep the object, null when the object is never cleaned up
+     */
+    private static String sweepReferenceOf(String key) {
+        Matcher matcher = USER_OBJECT.matcher(key);
+        if (matcher.matches()) {
+            //用户目录下: 照片集, 以及中断的上传留下的临时文件
+            return "/" + matcher.group(1);
+        }
+        return LEGACY_FILE.matcher(key).matches() ? "/" + key : null;
+    }
+
+    private boolean isOlderThanGrace(BlobInfo blob, long now) {
+        return blob.getLastModified() < now - graceMs;
+    }
+
+    private static String referenceOf(String photo) {
+        Matcher matcher = SET_URL.matcher(photo);
+        return matcher.matches() ? matcher.group(1) : photo;
+    }
+}
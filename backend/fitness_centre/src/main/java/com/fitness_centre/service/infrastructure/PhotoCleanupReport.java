@@ -0,0 +1,27 @@
+package com.fitness_centre.service.infrastructure;
+
+import lombok.Data;
+
+/**
+ * @author
+ * @Classname PhotoCleanupReport
+ * @Description Outcome of one PhotoCleanupJob run
+ * @date 19/10/2026
+ */
+@Data
+public class PhotoCleanupReport {
+
+    //读取了多少条 coach_info
+    private long scannedCoaches;
+
+    //从 temp 搬到 formal 的照片数
+    private long promoted;
+
+    //删除的照片集或文件数
+    private long deleted;
+
+    private long reclaimedBytes;
+
+    //搬迁, 扫描或删除失败的次数, 原因见 WARN 日志
+    private long failed;
+}
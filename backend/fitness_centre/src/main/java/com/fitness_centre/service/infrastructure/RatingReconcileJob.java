@@ -0,0 +1,57 @@
+package com.fitness_centre.service.infrastructure;
+
+import com.fitness_centre.mapper.CoachMapper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.util.List;
+
+/**
+ * @author
+ * @Classname RatingReconcileJob
+ * @Description Recomputes coach rating aggregates that no longer match the ratings in training history
+ * @date 19/10/2026
+ */
+@Service
+public class RatingReconcileJob {
+
+    private static final Logger log = LoggerFactory.getLogger(RatingReconcileJob.class);
+
+    @Autowired
+    private CoachMapper coachMapper;
+
+    @Autowired
+    private CoachSearchIndex coachSearchIndex;
+
+    @Autowired
+    private CoachCardStore coachCardStore;
+
+    /**
+     * Incremental updates keep the aggregates right as long as every rating goes through the service;
+     * this catches the rest (manual fixes, deleted history rows). Only drifted coaches are rewritten.
+     *
+     * @return number of coaches fixed
+     */
+    @Scheduled(cron = "${rating.reconcile-cron:0 15 4 * * *}")
+    public int run() {
+        List<Long> drifted = coachMapper.selectRatingDriftIds();
+        int fixed = 0;
+        for (Long coachId : drifted) {
+            try {
+                coachMapper.recomputeRating(coachId);
+                coachSearchIndex.updateRating(coachId, coachMapper.selectRating(coachId));
+                coachCardStore.refresh(coachId);
+                fixed++;
+            } catch (RuntimeException e) {
+                log.warn("Failed to reconcile rating of coach {}", coachId, e);
+            }
+        }
+        if (!drifted.isEmpty()) {
+            log.info("Rating reconcile: fixed {} of {} coaches", fixed, drifted.size());
+        }
+        return fixed;
+    }
+}
@@ -0,0 +1,158 @@
+package com.fitness_centre.service.infrastructure;
+
+import com.fitness_centre.constant.ErrorCode;
+import com.fitness_centre.domain.Location;
+import com.fitness_centre.dto.GeneralResponseResult;
+import com.fitness_centre.service.biz.interfaces.LocationService;
+import com.fitness_centre.service.biz.interfaces.TagService;
+import lombok.Getter;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.TreeMap;
+import java.util.function.Function;
+
+/**
+ * @author
+ * @Classname ReferenceData
+ * @Description Tags and locations held in memory as one immutable, versioned snapshot; loaded at startup and swapped when the tables change
+ * @date 19/10/2026
+ */
+@Service
+public class ReferenceData {
+
+    private static final Logger log = LoggerFactory.getLogger(ReferenceData.class);
+
+    @Autowired
+    private TagService tagService;
+
+    @Autowired
+    private LocationService locationService;
+
+    private volatile Snapshot snapshot;
+
+    /**
+     * Never modified after construction, so readers share it without locking. The version is derived
+     * from the content, so every instance and every restart hands out the same ETag for the same data.
+     */
+    @Getter
+    public static class Snapshot {
+        //带引号的强 ETag
+        private final String version;
+        private final Map<Long, String> tags;
+        private final Map<Long, String> locationNames;
+        private final List<Location> locations;
+
+        public Snapshot(Map<Long, String> tags, List<Location> locations) {
+            List<Location> sorted = new ArrayList<>(locations);
+            sorted.sort(Comparator.comparing(Location::getId));
+            Map<Long, String> locationNames = new LinkedHashMap<>();
+            for (Location location : sorted) {
+                locationNames.put(location.getId(), location.getLocationName());
+            }
+            this.tags = Collections.unmodifiableMap(new TreeMap<>(tags));
+            this.locationNames = Collections.unmodifiableMap(locationNames);
+            this.locations = Collections.unmodifiableList(sorted);
+            this.version = versionOf(this.tags, this.locations);
+        }
+
+        private static String versionOf(Map<Long, String> tags, List<Location> locations) {
+            StringBuilder content = new StringBuilder();
+            tags.forEach((id, name) -> content.append("t|").append(id).append('|').append(name).append('\n'));
+            for (Location location : locations) {
+                content.append("l|").append(location.getId()).append('|').append(location.getLocationName())
+                        .append('|').append(location.getLatitude()).append('|').append(location.getLongitude())
+                        .append('|').append(location.getPostcode()).append('\n');
+            }
+            try {
+                byte[] digest = MessageDigest.getInstance("SHA-256").digest(content.toString().getBytes(StandardCharsets.UTF_8));
+                return "\"" + HexFormat.of().formatHex(digest, 0, 8) + "\"";
+            } catch (NoSuchAlgorithmException e) {
+                throw new IllegalStateException(e);
+            }
+        }
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void onReady() {
+        refresh();
+    }
+
+    /**
+     * Reload both tables and swap the snapshot in if anything changed. Tags and locations are only
+     * edited directly in the database, so this runs periodically rather than on a write path.
+     */
+    @Scheduled(initialDelayString = "${reference-data.refresh-ms:300000}", fixedDelayString = "${reference-data.refresh-ms:300000}")
+    public synchronized void refresh() {
+        try {
+            Snapshot fresh = new Snapshot(tagService.getAllTags(), locationService.mapLocation());
+            if (Objects.isNull(snapshot) || !snapshot.getVersion().equals(fresh.getVersion())) {
+                snapshot = fresh;
+            }
+        } catch (RuntimeException e) {
+            //保留旧快照继续服务
+            log.warn("Failed to load tags and locations", e);
+        }
+    }
+
+    public Snapshot current() {
+        Snapshot current = snapshot;
+        if (Objects.nonNull(current)) {
+            return current;
+        }
+        //启动预热前就有请求时同步加载一次
+        synchronized (this) {
+            if (Objects.isNull(snapshot)) {
+                snapshot = new Snapshot(tagService.getAllTags(), locationService.mapLocation());
+            }
+            return snapshot;
+        }
+    }
+
+    /**
+     * Answer from the snapshot with its version as the ETag, or with 304 and no body when the
+     * client already holds that version.
+     */
+    public static ResponseEntity<GeneralResponseResult> respond(String ifNoneMatch, Snapshot snapshot, Function<Snapshot, Object> data) {
+        if (etagMatches(ifNoneMatch, snapshot.getVersion())) {
+            return ResponseEntity.status(HttpStatus.NOT_MODIFIED)
+                    .eTag(snapshot.getVersion())
+                    .header(HttpHeaders.CACHE_CONTROL, FileSender.REVALIDATE)
+                    .build();
+        }
+        return ResponseEntity.ok()
+                .eTag(snapshot.getVersion())
+                .header(HttpHeaders.CACHE_CONTROL, FileSender.REVALIDATE)
+                .body(new GeneralResponseResult(ErrorCode.SUCCESS, data.apply(snapshot)));
+    }
+
+    private static boolean etagMatches(String ifNoneMatch, String etag) {
+        if (Objects.isNull(ifNoneMatch)) {
+            return false;
+        }
+        return Arrays.stream(ifNoneMatch.split(","))
+                .map(String::trim)
+                .map(tag -> tag.startsWith("W/") ? tag.substring(2) : tag)
+                .anyMatch(tag -> tag.equals("*") || tag.equals(etag));
+    }
+}
@@ -0,0 +1,120 @@
+package com.fitness_centre.service.infrastructure;
+
+import com.alibaba.fastjson.JSON;
+import com.fitness_centre.constant.ErrorCode;
+import com.fitness_centre.dto.auth.UserRegisterRequest;
+import com.fitness_centre.exception.AuthException;
+import com.fitness_centre.exception.BusinessException;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.util.Collections;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * @author
+ * @Classname RegistrationStore
+ * @Description Pending registrations kept as one Redis hash per email
+ * @date 19/10/2026
+ */
+@Service
+public class RegistrationStore {
+
+    public static final String KEY_PREFIX = "register:";
+
+    //hash 中的字段
+    public static final String FIELD_INFO = "info";
+    public static final String FIELD_RESEND_AT = "resendAt";
+
+    private static final RedisScript<Long> ISSUE_CODE_SCRIPT = loadScript("lua/registration_issue_code.lua", Long.class);
+
+    private static final RedisScript<List<Object>> VERIFY_SCRIPT = loadScript("lua/registration_verify.lua", listResult());
+
+    @Autowired
+    private StringRedisTemplate stringRedisTemplate;
+
+    private static <T> RedisScript<T> loadScript(String path, Class<T> resultType) {
+        DefaultRedisScript<T> script = new DefaultRedisScript<>();
+        script.setLocation(new ClassPathResource(path));
+        script.setResultType(resultType);
+        return script;
+    }
+
+    //Lua 返回的数组, 元素是 Long 或 String; 泛型类型没有自己的 Class 对象
+    @SuppressWarnings("unchecked")
+    private static Class<List<Object>> listResult() {
+        return (Class<List<Object>>) (Class<?>) List.class;
+    }
+
+    /**
+     * Store the code (and the registration info on first submission) in one round trip,
+     * refusing when the previous code was sent less than {@code resendCooldown} ago.
+     *
+     * @param email registration email
+     * @param request registration info with the password already encoded, null when resending
+     * @param code verification code
+     * @param codeTtl how long the code stays valid
+     * @param resendCooldown minimum interval between two codes
+     * @param registrationTtl how long the whole registration is kept
+     */
+    public void issueCode(String email, UserRegisterRequest request, String code,
+                          Duration codeTtl, Duration resendCooldown, Duration registrationTtl) {
+        String info = Objects.isNull(request) ? "" : JSON.toJSONString(request);
+        Long result = stringRedisTemplate.execute(
+                ISSUE_CODE_SCRIPT,
+                Collections.singletonList(KEY_PREFIX + email),
+                code,
+                String.valueOf(codeTtl.toMillis()),
+                String.valueOf(resendCooldown.toMillis()),
+                String.valueOf(registrationTtl.toMillis()),
+                info);
+        if (Objects.isNull(result)) {
+            throw new BusinessException(ErrorCode.CACHE_ERROR);
+        }
+        if (result == 0) {
+            throw new BusinessException(ErrorCode.TOO_MANY_REQUESTS);
+        }
+        if (result < 0) {
+            throw new AuthException(ErrorCode.USER_INFO_EXPIRED);
+        }
+    }
+
+    /**
+     * Allow an immediate resend, used when the code could not be delivered.
+     */
+    public void releaseCooldown(String email) {
+        stringRedisTemplate.opsForHash().delete(KEY_PREFIX + email, FIELD_RESEND_AT);
+    }
+
+    /**
+     * Check the submitted code and, if it matches, delete the registration in the same step.
+     *
+     * @return the registration info stored by {@link #issueCode}
+     */
+    public UserRegisterRequest verifyAndConsume(String email, String verifyCode) {
+        List<Object> result = stringRedisTemplate.execute(
+                VERIFY_SCRIPT,
+                Collections.singletonList(KEY_PREFIX + email),
+                Objects.isNull(verifyCode) ? "" : verifyCode);
+        if (Objects.isNull(result) || result.isEmpty()) {
+            throw new BusinessException(ErrorCode.CACHE_ERROR);
+        }
+        long status = ((Number) result.get(0)).longValue();
+        if (status == -1) {
+            throw new AuthException(ErrorCode.USER_INFO_EXPIRED);
+        }
+        if (status == -2) {
+            throw new AuthException(ErrorCode.EMAIL_VERIFICATION_FAILED);
+        }
+        if (status == -3) {
+            throw new AuthException(ErrorCode.EMAIL_VERIFICATION_FAILED.getCode(), "Verification code error");
+        }
+        return JSON.parseObject((String) result.get(1), UserRegisterRequest.class);
+    }
+}
@@ -0,0 +1,318 @@
+package com.fitness_centre.service.infrastructure;
+
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.NodeList;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import javax.xml.parsers.DocumentBuilderFactory;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.function.Consumer;
+
+/**
+ * @author
+ * @Classname S3BlobStore
+ * @Description BlobStore on any S3-compatible service (AWS S3, MinIO), path-style addressing and SigV4 signing
+ * @date 19/10/2026
+ */
+public class S3BlobStore implements BlobStore {
+
+    private static final String UNSIGNED_PAYLOAD = "UNSIGNED-PAYLOAD";
+
+    private static final DateTimeFormatter AMZ_DATE = DateTimeFormatter.ofPattern("yyyyMMdd'T'HHmmss'Z'").withZone(ZoneOffset.UTC);
+
+    //S3 要求除最后一块外每块至少 5MB
+    public static final int MIN_PART_SIZE = 5 * 1024 * 1024;
+
+    private final URI endpoint;
+
+    private final String bucket;
+
+    private final String region;
+
+    private final String accessKey;
+
+    private final String secretKey;
+
+    private final int partSize;
+
+    private final HttpClient httpClient;
+
+    //每个请求等响应头的上限; 之后流式读取正文不受它限制
+    private final Duration requestTimeout;
+
+    public S3BlobStore(URI endpoint, String bucket, String region, String accessKey, String secretKey,
+                       int partSize, HttpClient httpClient, Duration requestTimeout) {
+        String base = endpoint.toString();
+        this.endpoint = URI.create(base.endsWith("/") ? base.substring(0, base.length() - 1) : base);
+        this.bucket = bucket;
+        this.region = region;
+        this.accessKey = accessKey;
+        this.secretKey = secretKey;
+        this.partSize = partSize;
+        this.httpClient = httpClient;
+        this.requestTimeout = requestTimeout;
+    }
+
+    /**
+     * Small blobs go up in one PUT; larger ones as a multipart upload, holding one part in memory at a time.
+     * Each read only allocates as much as the stream actually holds, so a thumbnail does not cost a whole part.
+     */
+    @Override
+    public void put(String key, InputStream content, String contentType) throws IOException {
+        byte[] part = content.readNBytes(partSize);
+        if (part.length < partSize) {
+            HttpRequest.BodyPublisher body = HttpRequest.BodyPublishers.ofByteArray(part);
+            check(send("PUT", key, Map.of(), Map.of("content-type", contentType), body), "PUT", key);
+            return;
+        }
+
+        String uploadId = textOf(parse(check(send("POST", key, Map.of("uploads", ""),
+                Map.of("content-type", contentType), HttpRequest.BodyPublishers.noBody()), "POST", key)), "UploadId");
+        try {
+            List<String> etags = new ArrayList<>();
+            while (part.length > 0) {
+                Map<String, String> query = Map.of("partNumber", String.valueOf(etags.size() + 1), "uploadId", uploadId);
+                HttpResponse<byte[]> response = check(send("PUT", key, query, Map.of(),
+                        HttpRequest.BodyPublishers.ofByteArray(part)), "PUT part", key);
+                etags.add(response.headers().firstValue("ETag").orElseThrow(() -> new IOException("Missing part ETag for " + key)));
+                part = content.readNBytes(partSize);
+            }
+
+            StringBuilder complete = new StringBuilder("<CompleteMultipartUpload>");
+            for (int i = 0; i < etags.size(); i++) {
+                complete.append("<Part><PartNumber>").append(i + 1).append("</PartNumber><ETag>")
+                        .append(etags.get(i)).append("</ETag></Part>");
+            }
+            complete.append("</CompleteMultipartUpload>");
+            HttpResponse<byte[]> response = check(send("POST", key, Map.of("uploadId", uploadId), Map.of("content-type", "application/xml"),
+                    HttpRequest.BodyPublishers.ofString(complete.toString())), "complete multipart", key);
+            //完成请求可能返回 200 但正文是错误
+            failOnErrorBody(response, "complete multipart", key);
+        } catch (IOException | RuntimeException e) {
+            try {
+                send("DELETE", key, Map.of("uploadId", uploadId), Map.of(), HttpRequest.BodyPublishers.noBody());
+            } catch (IOException ignored) {
+                //未完成的上传会被桶的生命周期规则清理
+            }
+            throw e;
+        }
+    }
+
+    @Override
+    public BlobInfo stat(String key) throws IOException {
+        HttpResponse<byte[]> response = send("HEAD", key, Map.of(), Map.of(), HttpRequest.BodyPublishers.noBody());
+        if (response.statusCode() == 404) {
+            return null;
+        }
+        check(response, "HEAD", key);
+        long size = response.headers().firstValueAsLong("Content-Length").orElse(0);
+        long lastModified = response.headers().firstValue("Last-Modified")
+                .map(value -> ZonedDateTime.parse(value, DateTimeFormatter.RFC_1123_DATE_TIME).toInstant().toEpochMilli())
+                .orElse(0L);
+        return new BlobInfo(key, size, lastModified, response.headers().firstValue("ETag").orElse(null));
+    }
+
+    @Override
+    public InputStream open(String key, long start, long end) throws IOException {
+        HttpRequest request = signed("GET", key, Map.of(), Map.of("range", "bytes=" + start + "-" + end),
+                HttpRequest.BodyPublishers.noBody());
+        HttpResponse<InputStream> response = execute(request, HttpResponse.BodyHandlers.ofInputStream());
+        if (response.statusCode() / 100 != 2) {
+            response.body().close();
+            throw new IOException("S3 GET " + key + " failed with status " + response.statusCode());
+        }
+        return response.body();
+    }
+
+    @Override
+    public void delete(String key) throws IOException {
+        check(send("DELETE", key, Map.of(), Map.of(), HttpRequest.BodyPublishers.noBody()), "DELETE", key);
+    }
+
+    @Override
+    public void move(String fromKey, String toKey) throws IOException {
+        HttpResponse<byte[]> response = check(send("PUT", toKey, Map.of(),
+                Map.of("x-amz-copy-source", "/" + bucket + "/" + encode(fromKey, false)),
+                HttpRequest.BodyPublishers.noBody()), "COPY", toKey);
+        failOnErrorBody(response, "COPY", toKey);
+        delete(fromKey);
+    }
+
+    @Override
+    public void list(String prefix, Consumer<BlobInfo> visitor) throws IOException {
+        String continuation = null;
+        do {
+            Map<String, String> query = new LinkedHashMap<>();
+            query.put("list-type", "2");
+            query.put("prefix", prefix);
+            if (continuation != null) {
+                query.put("continuation-token", continuation);
+            }
+            Document page = parse(check(send("GET", null, query, Map.of(), HttpRequest.BodyPublishers.noBody()), "LIST", prefix));
+            NodeList contents = page.getElementsByTagName("Contents");
+            for (int i = 0; i < contents.getLength(); i++) {
+                Element item = (Element) contents.item(i);
+                visitor.accept(new BlobInfo(
+                        textOf(item, "Key"),
+                        Long.parseLong(textOf(item, "Size")),
+                        Instant.parse(textOf(item, "LastModified")).toEpochMilli(),
+                        textOf(item, "ETag")));
+            }
+            continuation = "true".equals(textOf(page, "IsTruncated")) ? textOf(page, "NextContinuationToken") : null;
+        } while (continuation != null);
+    }
+
+    private HttpResponse<byte[]> send(String method, String key, Map<String, String> query, Map<String, String> headers,
+                                      HttpRequest.BodyPublisher body) throws IOException {
+        return execute(signed(method, key, query, headers, body), HttpResponse.BodyHandlers.ofByteArray());
+    }
+
+    private <T> HttpResponse<T> execute(HttpRequest request, HttpResponse.BodyHandler<T> handler) throws IOException {
+        try {
+            return httpClient.send(request, handler);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while calling S3", e);
+        }
+    }
+
+    /**
+     * Build a request signed with AWS Signature Version 4. The payload is sent unsigned so bodies can be streamed.
+     */
+    private HttpRequest signed(String method, String key, Map<String, String> query, Map<String, String> headers,
+                               HttpRequest.BodyPublisher body) throws IOException {
+        String path = "/" + bucket + (key == null ? "" : "/" + encode(key, false));
+        StringBuilder canonicalQuery = new StringBuilder();
+        new TreeMap<>(query).forEach((name, value) -> {
+            if (canonicalQuery.length() > 0) {
+                canonicalQuery.append('&');
+            }
+            canonicalQuery.append(encode(name, true)).append('=').append(encode(value, true));
+        });
+        URI uri = URI.create(endpoint + path + (canonicalQuery.length() == 0 ? "" : "?" + canonicalQuery));
+
+        String amzDate = AMZ_DATE.format(Instant.now());
+        String date = amzDate.substring(0, 8);
+        String host = uri.getPort() == -1 ? uri.getHost() : uri.getHost() + ":" + uri.getPort();
+
+        TreeMap<String, String> signedHeaders = new TreeMap<>();
+        headers.forEach((name, value) -> signedHeaders.put(name.toLowerCase(), value.trim()));
+        signedHeaders.put("host", host);
+        signedHeaders.put("x-amz-content-sha256", UNSIGNED_PAYLOAD);
+        signedHeaders.put("x-amz-date", amzDate);
+
+        StringBuilder canonicalHeaders = new StringBuilder();
+        signedHeaders.forEach((name, value) -> canonicalHeaders.append(name).append(':').append(value).append('\n'));
+        String signedHeaderNames = String.join(";", signedHeaders.keySet());
+
+        String canonicalRequest = method + "\n" + path + "\n" + canonicalQuery + "\n"
+                + canonicalHeaders + "\n" + signedHeaderNames + "\n" + UNSIGNED_PAYLOAD;
+        String scope = date + "/" + region + "/s3/aws4_request";
+        String stringToSign = "AWS4-HMAC-SHA256\n" + amzDate + "\n" + scope + "\n" + sha256Hex(canonicalRequest);
+
+        String signature;
+        try {
+            byte[] signingKey = hmac(("AWS4" + secretKey).getBytes(StandardCharsets.UTF_8), date);
+            signingKey = hmac(signingKey, region);
+            signingKey = hmac(signingKey, "s3");
+            signingKey = hmac(signingKey, "aws4_request");
+            signature = HexFormat.of().formatHex(hmac(signingKey, stringToSign));
+        } catch (GeneralSecurityException e) {
+            throw new IOException("Unable to sign S3 request", e);
+        }
+
+        HttpRequest.Builder builder = HttpRequest.newBuilder(uri).method(method, body).timeout(requestTimeout);
+        signedHeaders.forEach((name, value) -> {
+            if (!name.equals("host")) {
+                builder.header(name, value);
+            }
+        });
+        builder.header("Authorization", "AWS4-HMAC-SHA256 Credential=" + accessKey + "/" + scope
+                + ", SignedHeaders=" + signedHeaderNames + ", Signature=" + signature);
+        return builder.build();
+    }
+
+    private static HttpResponse<byte[]> check(HttpResponse<byte[]> response, String action, String key) throws IOException {
+        if (response.statusCode() / 100 != 2) {
+            throw new IOException("S3 " + action + " " + key + " failed with status " + response.statusCode());
+        }
+        return response;
+    }
+
+    private static void failOnErrorBody(HttpResponse<byte[]> response, String action, String key) throws IOException {
+        if (new String(response.body(), StandardCharsets.UTF_8).contains("<Error>")) {
+            throw new IOException("S3 " + action + " " + key + " failed: " + new String(response.body(), StandardCharsets.UTF_8));
+        }
+    }
+
+    private static Document parse(HttpResponse<byte[]> response) throws IOException {
+        try {
+            DocumentBuilderFactory factory = DocumentBuilderFactory.newInstance();
+            factory.setFeature("http://apache.org/xml/features/disallow-doctype-decl", true);
+            return factory.newDocumentBuilder().parse(new ByteArrayInputStream(response.body()));
+        } catch (Exception e) {
+            throw new IOException("Unreadable S3 response", e);
+        }
+    }
+
+    private static String textOf(Document document, String tag) {
+        NodeList nodes = document.getElementsByTagName(tag);
+        return nodes.getLength() == 0 ? null : nodes.item(0).getTextContent();
+    }
+
+    private static String textOf(Element element, String tag) {
+        NodeList nodes = element.getElementsByTagName(tag);
+        return nodes.getLength() == 0 ? null : nodes.item(0).getTextContent();
+    }
+
+    //按 SigV4 规则编码, 路径中的 '/' 保留
+    private static String encode(String value, boolean encodeSlash) {
+        StringBuilder encoded = new StringBuilder();
+        for (byte b : value.getBytes(StandardCharsets.UTF_8)) {
+            char c = (char) (b & 0xff);
+            if ((c >= 'A' && c <= 'Z') || (c >= 'a' && c <= 'z') || (c >= '0' && c <= '9')
+                    || c == '-' || c == '_' || c == '.' || c == '~' || (c == '/' && !encodeSlash)) {
+                encoded.append(c);
+            } else {
+                encoded.append('%').append(String.format("%02X", b & 0xff));
+            }
+        }
+        return encoded.toString();
+    }
+
+    private static String sha256Hex(String value) throws IOException {
+        try {
+            return HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(value.getBytes(StandardCharsets.UTF_8)));
+        } catch (GeneralSecurityException e) {
+            throw new IOException(e);
+        }
+    }
+
+    private static byte[] hmac(byte[] key, String data) throws GeneralSecurityException {
+        Mac mac = Mac.getInstance("HmacSHA256");
+        mac.init(new SecretKeySpec(key, "HmacSHA256"));
+        return mac.doFinal(data.getBytes(StandardCharsets.UTF_8));
+    }
+}
@@ -0,0 +1,295 @@
+package com.fitness_centre.service.infrastructure;
+
+import com.baomidou.mybatisplus.core.conditions.query.LambdaQueryWrapper;
+import com.fitness_centre.constant.UserRole;
+import com.fitness_centre.domain.SessionBooking;
+import com.fitness_centre.domain.Subscription;
+import com.fitness_centre.domain.TrainingHistory;
+import com.fitness_centre.mapper.SessionBookingMapper;
+import com.fitness_centre.mapper.SubscriptionMapper;
+import com.fitness_centre.mapper.TrainingHistoryMapper;
+import com.fitness_centre.utils.RedisCache;
+import com.fitness_centre.utils.TransactionHooks;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * @author
+ * @Classname UnreadCounters
+ * @Description Per-user unread counters in a Redis hash, moved by the state changes that flip the read flags instead of counted on every poll
+ * @date 19/10/2026
+ */
+@Service
+public class UnreadCounters {
+
+    private static final Logger log = LoggerFactory.getLogger(UnreadCounters.class);
+
+    public static final String KEY_PREFIX = "unread:";
+
+    public static final String UNRECORDED_PREFIX = "unrecorded:";
+
+    //hash 中的字段, 会员和教练各用其中三个
+    public static final String SUBSCRIPTION = "subscription";
+    public static final String SESSION = "session";
+    public static final String HISTORY = "history";
+    public static final String UNRECORDED = "unrecorded";
+
+    private static final String FIELD_ROLE = "role";
+
+    private static final RedisScript<Long> LOAD_SCRIPT = loadScript("lua/unread_load.lua");
+
+    private static final RedisScript<Long> ADD_SCRIPT = loadScript("lua/unread_add.lua");
+
+    private static final RedisScript<Long> UNRECORDED_SCRIPT = loadScript("lua/unread_unrecorded.lua");
+
+    private static final int SCAN_BATCH = 200;
+
+    @Autowired
+    private StringRedisTemplate stringRedisTemplate;
+
+    @Autowired
+    private RedisCache redisCache;
+
+    @Autowired
+    private SubscriptionMapper subscriptionMapper;
+
+    @Autowired
+    private SessionBookingMapper sessionBookingMapper;
+
+    @Autowired
+    private TrainingHistoryMapper trainingHistoryMapper;
+
+    //不活跃用户的计数器过期, 下次读取时重新统计
+    @Value("${unread.ttl-hours:24}")
+    private long ttlHours = 24;
+
+    private static RedisScript<Long> loadScript(String path) {
+        DefaultRedisScript<Long> script = new DefaultRedisScript<>();
+        script.setLocation(new ClassPathResource(path));
+        script.setResultType(Long.class);
+        return script;
+    }
+
+    //从数据库统计出的一个用户的计数, 以及教练还没记录的课(结束时间可能还没到)
+    private static class Counted {
+        private final Map<String, Long> counts = new LinkedHashMap<>();
+        private final List<SessionBooking> unrecorded = new ArrayList<>();
+    }
+
+    /**
+     * Move one counter once the current transaction commits. Counters that are not loaded are left
+     * alone, since the next read counts them from the database anyway. Redis failures only cost accuracy
+     * until the next reconcile.
+     */
+    public void add(Long userId, String field, long delta) {
+        if (delta == 0) {
+            return;
+        }
+        TransactionHooks.afterCommit(() -> {
+            try {
+                stringRedisTemplate.execute(ADD_SCRIPT, List.of(KEY_PREFIX + userId), field, String.valueOf(delta));
+            } catch (RuntimeException e) {
+                log.warn("Failed to update unread {} of user {}", field, userId, e);
+            }
+        });
+    }
+
+    /**
+     * A session the coach will have to record once it ends. Kept with its end time, because it only
+     * counts as unrecorded from then on and no write happens at that moment.
+     */
+    public void addUnrecorded(Long coachId, Long sessionId, LocalDateTime endTime) {
+        updateUnrecorded(coachId, List.of("add", String.valueOf(epochMillis(endTime)), sessionId.toString()));
+    }
+
+    public void removeUnrecorded(Long coachId, Collection<Long> sessionIds) {
+        if (sessionIds.isEmpty()) {
+            return;
+        }
+        List<String> args = new ArrayList<>(sessionIds.size() + 1);
+        args.add("rem");
+        sessionIds.forEach(sessionId -> args.add(sessionId.toString()));
+        updateUnrecorded(coachId, args);
+    }
+
+    private void updateUnrecorded(Long coachId, List<String> args) {
+        TransactionHooks.afterCommit(() -> {
+            try {
+                stringRedisTemplate.execute(UNRECORDED_SCRIPT, List.of(KEY_PREFIX + coachId, UNRECORDED_PREFIX + coachId), args.toArray());
+            } catch (RuntimeException e) {
+                log.warn("Failed to update unrecorded sessions of coach {}", coachId, e);
+            }
+        });
+    }
+
+    /**
+     * @return counter name -> count for the user's role: subscription, session and history for a member;
+     * subscription, session and unrecorded for a coach
+     */
+    public Map<String, Long> counts(Long userId, UserRole role) {
+        Counted counted = null;
+        try {
+            Map<Object, Object> entries = stringRedisTemplate.opsForHash().entries(KEY_PREFIX + userId);
+            if (!entries.isEmpty() && role.getRole().equals(entries.get(FIELD_ROLE))) {
+                Map<String, Long> counts = new LinkedHashMap<>();
+                for (String field : fieldsOf(role)) {
+                    counts.put(field, UNRECORDED.equals(field) ? endedUnrecorded(userId) : toCount(entries.get(field)));
+                }
+                return counts;
+            }
+            counted = count(userId, role);
+            store(userId, role, counted);
+            return counted.counts;
+        } catch (RuntimeException e) {
+            //Redis 不可用时直接查库
+            log.warn("Failed to read unread counters of user {}", userId, e);
+            return Objects.nonNull(counted) ? counted.counts : count(userId, role).counts;
+        }
+    }
+
+    /**
+     * Recount every loaded user from the database and rewrite the ones that drifted: writes that did not
+     * go through the services, deleted rows, or an update lost while Redis was down.
+     *
+     * @return number of users fixed
+     */
+    @Scheduled(initialDelayString = "${unread.reconcile-ms:900000}", fixedDelayString = "${unread.reconcile-ms:900000}")
+    public int reconcile() {
+        int[] fixed = {0};
+        redisCache.scan(KEY_PREFIX + "*", SCAN_BATCH, keys -> {
+            for (String key : keys) {
+                try {
+                    if (reconcile(Long.valueOf(key.substring(KEY_PREFIX.length())))) {
+                        fixed[0]++;
+                    }
+                } catch (RuntimeException e) {
+                    log.warn("Failed to reconcile unread counters {}", key, e);
+                }
+            }
+        });
+        if (fixed[0] > 0) {
+            log.info("Unread reconcile: fixed {} users", fixed[0]);
+        }
+        return fixed[0];
+    }
+
+    private boolean reconcile(Long userId) {
+        Map<Object, Object> entries = stringRedisTemplate.opsForHash().entries(KEY_PREFIX + userId);
+        UserRole role = roleOf(entries.get(FIELD_ROLE));
+        if (Objects.isNull(role)) {
+            //期间过期了, 下次读取时会重新统计
+            return false;
+        }
+        Counted counted = count(userId, role);
+        boolean drifted = false;
+        for (Map.Entry<String, Long> count : counted.counts.entrySet()) {
+            if (UNRECORDED.equals(count.getKey())) {
+                Long size = stringRedisTemplate.opsForZSet().zCard(UNRECORDED_PREFIX + userId);
+                drifted |= !Objects.equals(Objects.isNull(size) ? 0L : size, (long) counted.unrecorded.size());
+            } else {
+                drifted |= !count.getValue().toString().equals(entries.get(count.getKey()));
+            }
+        }
+        if (drifted) {
+            store(userId, role, counted);
+        }
+        return drifted;
+    }
+
+    private Counted count(Long userId, UserRole role) {
+        Counted counted = new Counted();
+        switch (role) {
+            case MEMBER -> {
+                counted.counts.put(SUBSCRIPTION, subscriptionMapper.selectCount(new LambdaQueryWrapper<Subscription>()
+                        .eq(Subscription::getMemberId, userId).eq(Subscription::getMemberIsRead, false)));
+                counted.counts.put(SESSION, sessionBookingMapper.selectCount(new LambdaQueryWrapper<SessionBooking>()
+                        .eq(SessionBooking::getMemberId, userId).eq(SessionBooking::getMemberIsRead, false)));
+                counted.counts.put(HISTORY, trainingHistoryMapper.selectCount(new LambdaQueryWrapper<TrainingHistory>()
+                        .eq(TrainingHistory::getMemberId, userId).eq(TrainingHistory::getMemberIsRead, false)));
+            }
+            case COACH -> {
+                counted.counts.put(SUBSCRIPTION, subscriptionMapper.selectCount(new LambdaQueryWrapper<Subscription>()
+                        .eq(Subscription::getCoachId, userId).eq(Subscription::getCoachIsRead, false)));
+                counted.counts.put(SESSION, sessionBookingMapper.selectCount(new LambdaQueryWrapper<SessionBooking>()
+                        .eq(SessionBooking::getCoachId, userId).eq(SessionBooking::getCoachIsRead, false)));
+                counted.unrecorded.addAll(sessionBookingMapper.selectUnrecorded(userId));
+                LocalDateTime now = LocalDateTime.now();
+                counted.counts.put(UNRECORDED, counted.unrecorded.stream()
+                        .filter(session -> !session.getEndTime().isAfter(now)).count());
+            }
+            default -> {
+            }
+        }
+        return counted;
+    }
+
+    private void store(Long userId, UserRole role, Counted counted) {
+        List<String> args = new ArrayList<>();
+        args.add(String.valueOf(TimeUnit.HOURS.toMillis(ttlHours)));
+        args.add(role.getRole());
+        List<String> fields = new ArrayList<>();
+        counted.counts.forEach((field, count) -> {
+            if (!UNRECORDED.equals(field)) {
+                fields.add(field);
+                fields.add(count.toString());
+            }
+        });
+        args.add(String.valueOf(fields.size() / 2));
+        args.addAll(fields);
+        for (SessionBooking session : counted.unrecorded) {
+            args.add(String.valueOf(epochMillis(session.getEndTime())));
+            args.add(session.getId().toString());
+        }
+        stringRedisTemplate.execute(LOAD_SCRIPT, List.of(KEY_PREFIX + userId, UNRECORDED_PREFIX + userId), args.toArray());
+    }
+
+    private long endedUnrecorded(Long coachId) {
+        Long count = stringRedisTemplate.opsForZSet().count(UNRECORDED_PREFIX + coachId,
+                Double.NEGATIVE_INFINITY, epochMillis(LocalDateTime.now()));
+        return Objects.isNull(count) ? 0L : count;
+    }
+
+    private static List<String> fieldsOf(UserRole role) {
+        return switch (role) {
+            case MEMBER -> List.of(SUBSCRIPTION, SESSION, HISTORY);
+            case COACH -> List.of(SUBSCRIPTION, SESSION, UNRECORDED);
+            default -> List.of();
+        };
+    }
+
+    private static UserRole roleOf(Object role) {
+        for (UserRole userRole : UserRole.values()) {
+            if (userRole.getRole().equals(role)) {
+                return userRole;
+            }
+        }
+        return null;
+    }
+
+    //并发的加减和重新统计交错时可能短暂为负, 显示为 0
+    private static long toCount(Object value) {
+        return Objects.isNull(value) ? 0L : Math.max(0L, Long.parseLong(value.toString()));
+    }
+
+    private static long epochMillis(LocalDateTime time) {
+        return time.atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+    }
+}
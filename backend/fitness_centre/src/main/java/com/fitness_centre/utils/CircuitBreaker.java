@@ -0,0 +1,81 @@
+package com.fitness_centre.utils;
+
+import java.time.Clock;
+import java.time.Duration;
+
+/**
+ * @author
+ * @Classname CircuitBreaker
+ * @Description Minimal consecutive-failure circuit breaker for calls to external services
+ * @date 19/10/2026
+ */
+public class CircuitBreaker {
+
+    public enum State {
+        CLOSED,
+        OPEN,
+        HALF_OPEN
+    }
+
+    private final int failureThreshold;
+
+    private final Duration openDuration;
+
+    private final Clock clock;
+
+    private State state = State.CLOSED;
+
+    private int consecutiveFailures;
+
+    private long openedAt;
+
+    /**
+     * @param failureThreshold consecutive failures that open the circuit
+     * @param openDuration how long calls are rejected before a single trial call is let through
+     */
+    public CircuitBreaker(int failureThreshold, Duration openDuration) {
+        this(failureThreshold, openDuration, Clock.systemUTC());
+    }
+
+    public CircuitBreaker(int failureThreshold, Duration openDuration, Clock clock) {
+        this.failureThreshold = failureThreshold;
+        this.openDuration = openDuration;
+        this.clock = clock;
+    }
+
+    /**
+     * Whether a call may go out now. While open, only one trial call is allowed once the open period has passed.
+     */
+    public synchronized boolean tryAcquire() {
+        switch (state) {
+            case CLOSED:
+                return true;
+            case OPEN:
+                if (clock.millis() - openedAt >= openDuration.toMillis()) {
+                    state = State.HALF_OPEN;
+                    return true;
+                }
+                return false;
+            default:
+                //已经有一个试探请求在进行
+                return false;
+        }
+    }
+
+    public synchronized void recordSuccess() {
+        consecutiveFailures = 0;
+        state = State.CLOSED;
+    }
+
+    public synchronized void recordFailure() {
+        consecutiveFailures++;
+        if (state == State.HALF_OPEN || consecutiveFailures >= failureThreshold) {
+            state = State.OPEN;
+            openedAt = clock.millis();
+        }
+    }
+
+    public synchronized State getState() {
+        return state;
+    }
+}
@@ -0,0 +1,148 @@
+package com.fitness_centre.utils;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.PriorityQueue;
+
+/**
+ * @author
+ * @Classname GeoGrid
+ * @Description Fixed-size latitude/longitude grid over points, answering nearest-first queries ring by ring. Not thread-safe.
+ * @date 19/10/2026
+ */
+public class GeoGrid<T> {
+
+    public static final double EARTH_RADIUS_KM = 6371.0088;
+
+    private static final double KM_PER_DEGREE = Math.PI * EARTH_RADIUS_KM / 180;
+
+    private final double cellDegrees;
+
+    private final Map<Long, List<Point<T>>> cells = new HashMap<>();
+
+    //已占用格子的范围, 外扩到这里就可以停了
+    private int minRow = Integer.MAX_VALUE;
+    private int maxRow = Integer.MIN_VALUE;
+    private int minCol = Integer.MAX_VALUE;
+    private int maxCol = Integer.MIN_VALUE;
+
+    public record Point<T>(T value, double latitude, double longitude) {
+    }
+
+    public record Hit<T>(T value, double distanceKm) {
+    }
+
+    /**
+     * @param cellDegrees cell edge in degrees; 0.05 is about 5.5 km north-south
+     */
+    public GeoGrid(double cellDegrees) {
+        this.cellDegrees = cellDegrees;
+    }
+
+    public void add(T value, double latitude, double longitude) {
+        int row = row(latitude);
+        int col = col(longitude);
+        cells.computeIfAbsent(key(row, col), k -> new ArrayList<>()).add(new Point<>(value, latitude, longitude));
+        minRow = Math.min(minRow, row);
+        maxRow = Math.max(maxRow, row);
+        minCol = Math.min(minCol, col);
+        maxCol = Math.max(maxCol, col);
+    }
+
+    /**
+     * Points in ascending distance from the origin, up to maxKm away. Cells are read one ring at a time,
+     * and only as far as the caller keeps iterating.
+     */
+    public Iterator<Hit<T>> nearestFirst(double latitude, double longitude, double maxKm) {
+        int originRow = row(latitude);
+        int originCol = col(longitude);
+        return new Iterator<>() {
+            private final PriorityQueue<Hit<T>> pending = new PriorityQueue<>((a, b) -> Double.compare(a.distanceKm(), b.distanceKm()));
+            private int ring = -1;
+            private boolean exhausted = cells.isEmpty();
+
+            @Override
+            public boolean hasNext() {
+                //队首比下一圈可能出现的最近距离还近时才能确定它是下一个
+                while (!exhausted && (pending.isEmpty() || pending.peek().distanceKm() > nextRingLowerBound())) {
+                    ring++;
+                    scanRing();
+                    if (beyondGrid() || nextRingLowerBound() > maxKm) {
+                        exhausted = true;
+                    }
+                }
+                return !pending.isEmpty() && pending.peek().distanceKm() <= maxKm;
+            }
+
+            @Override
+            public Hit<T> next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                return pending.poll();
+            }
+
+            private void scanRing() {
+                for (int row = originRow - ring; row <= originRow + ring; row++) {
+                    for (int col = originCol - ring; col <= originCol + ring; col++) {
+                        if (Math.abs(row - originRow) != ring && Math.abs(col - originCol) != ring) {
+                            continue;
+                        }
+                        List<Point<T>> points = cells.get(key(row, col));
+                        if (points == null) {
+                            continue;
+                        }
+                        for (Point<T> point : points) {
+                            pending.add(new Hit<>(point.value(), distanceKm(latitude, longitude, point.latitude(), point.longitude())));
+                        }
+                    }
+                }
+            }
+
+            private boolean beyondGrid() {
+                return originRow - ring <= minRow && originRow + ring >= maxRow
+                        && originCol - ring <= minCol && originCol + ring >= maxCol;
+            }
+
+            /**
+             * Anything outside the rings read so far is at least `ring` whole cells away. East-west cells
+             * shrink with latitude, so use the narrowest one those rings can reach.
+             */
+            private double nextRingLowerBound() {
+                if (ring < 0) {
+                    return -1;
+                }
+                double farthestLatitude = Math.min(90, Math.abs(latitude) + (ring + 1) * cellDegrees);
+                double cellKm = cellDegrees * KM_PER_DEGREE * Math.cos(Math.toRadians(farthestLatitude));
+                return ring * cellKm;
+            }
+        };
+    }
+
+    /**
+     * Great-circle distance by the haversine formula.
+     */
+    public static double distanceKm(double lat1, double lon1, double lat2, double lon2) {
+        double dLat = Math.toRadians(lat2 - lat1);
+        double dLon = Math.toRadians(lon2 - lon1);
+        double a = Math.sin(dLat / 2) * Math.sin(dLat / 2)
+                + Math.cos(Math.toRadians(lat1)) * Math.cos(Math.toRadians(lat2)) * Math.sin(dLon / 2) * Math.sin(dLon / 2);
+        return 2 * EARTH_RADIUS_KM * Math.asin(Math.min(1, Math.sqrt(a)));
+    }
+
+    private int row(double latitude) {
+        return (int) Math.floor(latitude / cellDegrees);
+    }
+
+    private int col(double longitude) {
+        return (int) Math.floor(longitude / cellDegrees);
+    }
+
+    private static long key(int row, int col) {
+        return ((long) row << 32) | (col & 0xffffffffL);
+    }
+}
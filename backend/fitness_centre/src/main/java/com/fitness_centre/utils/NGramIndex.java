@@ -0,0 +1,113 @@
+package com.fitness_centre.utils;
+
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * @author
+ * @Classname NGramIndex
+ * @Description Trigram posting lists over documents numbered 0..n-1, for prefix and typo-tolerant matching. Not thread-safe.
+ * @date 19/10/2026
+ */
+public class NGramIndex {
+
+    private final Map<String, BitSet> postings = new HashMap<>();
+
+    /**
+     * Lower-case, strip accents and turn punctuation into spaces, so "José-Luis" is indexed as "jose luis".
+     */
+    public static String normalize(String text) {
+        if (Objects.isNull(text)) {
+            return "";
+        }
+        String plain = Normalizer.normalize(text, Normalizer.Form.NFD).replaceAll("\\p{M}", "");
+        return plain.toLowerCase(Locale.ROOT).replaceAll("[^\\p{L}\\p{N}]+", " ").trim();
+    }
+
+    /**
+     * Grams of an indexed text: every trigram of " word ", plus " w" so one-letter queries match word starts.
+     */
+    public static List<String> documentGrams(String normalized) {
+        List<String> grams = new ArrayList<>();
+        for (String word : normalized.split(" ")) {
+            if (word.isEmpty()) {
+                continue;
+            }
+            String padded = " " + word + " ";
+            grams.add(padded.substring(0, 2));
+            for (int i = 0; i + 3 <= padded.length(); i++) {
+                grams.add(padded.substring(i, i + 3));
+            }
+        }
+        return grams;
+    }
+
+    /**
+     * Grams of a query: words are only padded in front, so a half-typed word still matches as a prefix.
+     */
+    public static List<String> queryGrams(String normalized) {
+        List<String> grams = new ArrayList<>();
+        for (String word : normalized.split(" ")) {
+            if (word.isEmpty()) {
+                continue;
+            }
+            String padded = " " + word;
+            if (padded.length() < 3) {
+                grams.add(padded);
+                continue;
+            }
+            for (int i = 0; i + 3 <= padded.length(); i++) {
+                grams.add(padded.substring(i, i + 3));
+            }
+        }
+        //重复的 gram 只算一次
+        return new ArrayList<>(new LinkedHashSet<>(grams));
+    }
+
+    public void add(int document, String normalized) {
+        for (String gram : documentGrams(normalized)) {
+            postings.computeIfAbsent(gram, key -> new BitSet()).set(document);
+        }
+    }
+
+    public void remove(int document, String normalized) {
+        for (String gram : documentGrams(normalized)) {
+            BitSet bits = postings.get(gram);
+            if (Objects.nonNull(bits)) {
+                bits.clear(document);
+                if (bits.isEmpty()) {
+                    postings.remove(gram);
+                }
+            }
+        }
+    }
+
+    /**
+     * Count, per document, how many of the query grams it contains. Only the posting lists of the
+     * query grams are read, so the cost follows the matches rather than the number of documents.
+     *
+     * @param hits per-document counters, incremented in place
+     * @return the documents sharing at least one gram with the query
+     */
+    public BitSet match(List<String> queryGrams, int[] hits) {
+        BitSet candidates = new BitSet();
+        for (String gram : queryGrams) {
+            BitSet bits = postings.get(gram);
+            if (Objects.isNull(bits)) {
+                continue;
+            }
+            candidates.or(bits);
+            for (int i = bits.nextSetBit(0); i >= 0 && i < hits.length; i = bits.nextSetBit(i + 1)) {
+                hits[i]++;
+            }
+        }
+        return candidates;
+    }
+}
@@ -0,0 +1,130 @@
+package com.fitness_centre.utils;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.function.IntPredicate;
+
+/**
+ * @author
+ * @Classname PrefixSuggester
+ * @Description Sorted array of (key, document) pairs answering prefix lookups with a binary search. Not thread-safe.
+ * @date 19/10/2026
+ */
+public class PrefixSuggester {
+
+    private String[] keys = new String[16];
+
+    private int[] documents = new int[16];
+
+    private int size;
+
+    private record Entry(String key, int document) {
+    }
+
+    /**
+     * Replace the contents with one text per document (document = list index), sorting once
+     * instead of inserting one key at a time.
+     */
+    public void load(List<String> normalizedTexts) {
+        List<Entry> entries = new ArrayList<>();
+        for (int document = 0; document < normalizedTexts.size(); document++) {
+            for (String key : keysOf(normalizedTexts.get(document))) {
+                entries.add(new Entry(key, document));
+            }
+        }
+        entries.sort(Comparator.comparing(Entry::key).thenComparingInt(Entry::document));
+        size = entries.size();
+        keys = new String[Math.max(16, size)];
+        documents = new int[keys.length];
+        for (int i = 0; i < size; i++) {
+            keys[i] = entries.get(i).key();
+            documents[i] = entries.get(i).document();
+        }
+    }
+
+    /**
+     * Index the text once per word, from that word to the end, so "alice smith" is found by "ali" and by "smi".
+     */
+    public void add(int document, String normalized) {
+        for (String key : keysOf(normalized)) {
+            int at = position(key, document);
+            if (at < size && keys[at].equals(key) && documents[at] == document) {
+                continue;
+            }
+            if (size == keys.length) {
+                keys = Arrays.copyOf(keys, size * 2);
+                documents = Arrays.copyOf(documents, size * 2);
+            }
+            System.arraycopy(keys, at, keys, at + 1, size - at);
+            System.arraycopy(documents, at, documents, at + 1, size - at);
+            keys[at] = key;
+            documents[at] = document;
+            size++;
+        }
+    }
+
+    public void remove(int document, String normalized) {
+        for (String key : keysOf(normalized)) {
+            int at = position(key, document);
+            if (at < size && keys[at].equals(key) && documents[at] == document) {
+                System.arraycopy(keys, at + 1, keys, at, size - at - 1);
+                System.arraycopy(documents, at + 1, documents, at, size - at - 1);
+                size--;
+                keys[size] = null;
+            }
+        }
+    }
+
+    /**
+     * @param accept skips documents that should not be suggested (e.g. deleted ones)
+     * @return up to limit distinct documents with a key starting with the prefix, in key order
+     */
+    public List<Integer> complete(String prefix, int limit, IntPredicate accept) {
+        Set<Integer> found = new LinkedHashSet<>();
+        if (prefix.isEmpty()) {
+            return new ArrayList<>(found);
+        }
+        for (int i = position(prefix, Integer.MIN_VALUE); i < size && found.size() < limit && keys[i].startsWith(prefix); i++) {
+            if (accept.test(documents[i])) {
+                found.add(documents[i]);
+            }
+        }
+        return new ArrayList<>(found);
+    }
+
+    public int size() {
+        return size;
+    }
+
+    private static List<String> keysOf(String normalized) {
+        List<String> keys = new ArrayList<>();
+        if (normalized.isEmpty()) {
+            return keys;
+        }
+        keys.add(normalized);
+        for (int i = normalized.indexOf(' '); i >= 0; i = normalized.indexOf(' ', i + 1)) {
+            keys.add(normalized.substring(i + 1));
+        }
+        return keys;
+    }
+
+    //第一个不小于 (key, document) 的位置
+    private int position(String key, int document) {
+        int low = 0;
+        int high = size;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            int compare = keys[mid].compareTo(key);
+            if (compare < 0 || (compare == 0 && documents[mid] < document)) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+}
@@ -1,17 +1,20 @@
 package com.fitness_centre.utils;
 
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.http.HttpEntity;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.MediaType;
 import org.springframework.stereotype.Component;
 import org.springframework.beans.factory.annotation.Value;
-import org.springframework.util.LinkedMultiValueMap;
-import org.springframework.util.MultiValueMap;
 import org.springframework.web.client.RestTemplate;
 
+import java.time.Duration;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.Map;
-import java.util.Objects;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
 
 /**
  * @author
@@ -21,13 +24,36 @@ import java.util.Objects;
  */
 @Component
 public class RecaptchaValidator {
+
+    public static final String DEFAULT_VERIFY_URL = "https://recaptchaenterprise.googleapis.com/v1/projects/"
+            + "my-project-4899-1741522706419"
+            + "/assessments";
+
+    //连续失败多少次后熔断, 熔断多久后放一个试探请求
+    private static final int FAILURE_THRESHOLD = 5;
+    private static final Duration OPEN_DURATION = Duration.ofSeconds(30);
+
     @Value("${recaptcha.secretKey}")
     private String secretKey;
 
     @Value("${recaptcha.API_KEY}")
     private String API_KEY;
 
-    private final RestTemplate restTemplate = new RestTemplate();
+    @Value("${recaptcha.verify-url:" + DEFAULT_VERIFY_URL + "}")
+    private String verifyUrl = DEFAULT_VERIFY_URL;
+
+    @Autowired
+    @Qualifier("recaptchaRestTemplate")
+    private RestTemplate restTemplate;
+
+    private CircuitBreaker circuitBreaker = new CircuitBreaker(FAILURE_THRESHOLD, OPEN_DURATION);
+
+    //调用统计
+    private final LongAdder calls = new LongAdder();
+    private final LongAdder failures = new LongAdder();
+    private final LongAdder rejected = new LongAdder();
+    private final LongAdder totalLatencyMs = new LongAdder();
+    private final LongAccumulator maxLatencyMs = new LongAccumulator(Math::max, 0);
 
     /*
         threshold:Confidence
@@ -37,11 +63,21 @@ public class RecaptchaValidator {
         if(recaptchaToken == null || recaptchaToken.isEmpty()){
             return false;
         }
+        RecaptchaVerdict verdict = assess(recaptchaToken, expectedAction);
+        return verdict != null && verdict.passes(threshold, expectedAction);
+    }
 
-        String verifyUrl = "https://recaptchaenterprise.googleapis.com/v1/projects/"
-                + "my-project-4899-1741522706419"
-                + "/assessments?key=" + API_KEY ;
-
+    /**
+     * Ask Google for an assessment of the token.
+     *
+     * @return the parsed verdict, or null when the call failed, was short-circuited or the body could not be read
+     */
+    public RecaptchaVerdict assess(String recaptchaToken, String expectedAction) {
+        if (!circuitBreaker.tryAcquire()) {
+            //熔断中, 直接拒绝, 不再占用请求线程等待超时
+            rejected.increment();
+            return null;
+        }
 
         Map<String, Object> requestBody = new HashMap<>();
         Map<String, String> eventMap = new HashMap<>();
@@ -58,50 +94,42 @@ public class RecaptchaValidator {
         HttpEntity<Map<String,Object>> httpEntity = new HttpEntity<>(requestBody,headers);
 
         Map<?,?> responseBody;
-
+        long start = System.nanoTime();
         try{
-            responseBody = restTemplate.postForObject(verifyUrl,httpEntity,Map.class);
+            responseBody = restTemplate.postForObject(verifyUrl + "?key=" + API_KEY,httpEntity,Map.class);
+            circuitBreaker.recordSuccess();
         }
         catch (Exception ex){
-            return false;
+            failures.increment();
+            circuitBreaker.recordFailure();
+            return null;
         }
-
-
-        if(responseBody == null){
-            return false;
+        finally {
+            long elapsedMs = (System.nanoTime() - start) / 1_000_000;
+            calls.increment();
+            totalLatencyMs.add(elapsedMs);
+            maxLatencyMs.accumulate(elapsedMs);
         }
 
-        // get tokenProperties from responseBody
-        Map<String, Object> tokenProperties = (Map<String, Object>) responseBody.get("tokenProperties");
-        if (tokenProperties == null) {
-            return false;
-        }
-
-        Boolean valid = (Boolean) tokenProperties.get("valid");
-        String action = (String) tokenProperties.get("action");
-
-        // get riskAnalysis
-        Map<String, Object> riskAnalysis = (Map<String, Object>) responseBody.get("riskAnalysis");
-        if (riskAnalysis == null) {
-            return false;
-        }
+        return RecaptchaVerdict.from(responseBody);
+    }
 
-        Object rawScore =  riskAnalysis.get("score");
+    public CircuitBreaker.State getCircuitState() {
+        return circuitBreaker.getState();
+    }
 
-        if (valid == null || !valid) {
-            // token  invalidReason
-            return false;
-        }
-        if (rawScore instanceof Number) {
-            Number numScore = (Number) rawScore;
-            double score = numScore.doubleValue();
-            if(score < threshold){
-                return false;
-            }
-        }
-        if (expectedAction != null && !expectedAction.equals(action)) {
-            return false;
-        }
-        return true;
+    /**
+     * Snapshot of call count, failures, calls rejected by the open circuit and latency.
+     */
+    public Map<String, Object> getMetrics() {
+        long callCount = calls.sum();
+        Map<String, Object> metrics = new LinkedHashMap<>();
+        metrics.put("calls", callCount);
+        metrics.put("failures", failures.sum());
+        metrics.put("rejected", rejected.sum());
+        metrics.put("avgLatencyMs", callCount == 0 ? 0 : totalLatencyMs.sum() / callCount);
+        metrics.put("maxLatencyMs", maxLatencyMs.get());
+        metrics.put("circuitState", getCircuitState().name());
+        return metrics;
     }
-}
\ No newline at end of file
+}
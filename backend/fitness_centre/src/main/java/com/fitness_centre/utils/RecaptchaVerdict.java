@@ -0,0 +1,66 @@
+package com.fitness_centre.utils;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * @author
+ * @Classname RecaptchaVerdict
+ * @Description Parsed reCAPTCHA Enterprise assessment
+ * @date 19/10/2026
+ */
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class RecaptchaVerdict {
+
+    private boolean valid;
+
+    private String action;
+
+    /**
+     * null when the assessment carries no score
+     */
+    private Double score;
+
+    private String invalidReason;
+
+    /**
+     * Parse the assessment body, returning null when tokenProperties or riskAnalysis is missing.
+     */
+    @SuppressWarnings("unchecked")
+    public static RecaptchaVerdict from(Map<?, ?> responseBody) {
+        if (Objects.isNull(responseBody)) {
+            return null;
+        }
+        Map<String, Object> tokenProperties = (Map<String, Object>) responseBody.get("tokenProperties");
+        Map<String, Object> riskAnalysis = (Map<String, Object>) responseBody.get("riskAnalysis");
+        if (Objects.isNull(tokenProperties) || Objects.isNull(riskAnalysis)) {
+            return null;
+        }
+        Object rawScore = riskAnalysis.get("score");
+        return new RecaptchaVerdict(
+                Boolean.TRUE.equals(tokenProperties.get("valid")),
+                (String) tokenProperties.get("action"),
+                rawScore instanceof Number number ? number.doubleValue() : null,
+                (String) tokenProperties.get("invalidReason"));
+    }
+
+    /**
+     * @param threshold minimum score
+     * @param expectedAction action the token must have been issued for, null to skip the check
+     */
+    public boolean passes(double threshold, String expectedAction) {
+        if (!valid) {
+            return false;
+        }
+        if (score != null && score < threshold) {
+            return false;
+        }
+        return expectedAction == null || expectedAction.equals(action);
+    }
+}
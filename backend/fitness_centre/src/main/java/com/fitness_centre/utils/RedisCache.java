@@ -1,14 +1,23 @@
 package com.fitness_centre.utils;
 
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.dao.DataAccessException;
+import org.springframework.data.redis.connection.zset.Aggregate;
+import org.springframework.data.redis.connection.zset.Weights;
 import org.springframework.data.redis.core.BoundSetOperations;
+import org.springframework.data.redis.core.Cursor;
 import org.springframework.data.redis.core.HashOperations;
+import org.springframework.data.redis.core.RedisOperations;
 import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.ScanOptions;
+import org.springframework.data.redis.core.SessionCallback;
 import org.springframework.data.redis.core.ValueOperations;
+import org.springframework.data.redis.core.ZSetOperations;
 import org.springframework.stereotype.Component;
 
 import java.util.*;
 import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
 
 @SuppressWarnings(value = { "unchecked", "rawtypes" })
 @Component
@@ -78,6 +87,50 @@ public class RedisCache
         return operation.get(key);
     }
 
+    /**
+     * Get several cached basic objects with a single MGET
+     *
+     * @param keys cache keys
+     * @return values in the same order as the keys, null for missing keys
+     */
+    public <T> List<T> getMultiCacheObject(final Collection<String> keys)
+    {
+        if (keys == null || keys.isEmpty())
+        {
+            return new ArrayList<>();
+        }
+        List<T> values = redisTemplate.opsForValue().multiGet(keys);
+        return values == null ? new ArrayList<>(Collections.nCopies(keys.size(), null)) : values;
+    }
+
+    /**
+     * Cache several basic objects with the same expiration time in one pipelined round trip
+     *
+     * @param dataMap key -> value to be cached
+     * @param timeout timeout duration
+     * @param timeUnit time unit
+     */
+    public <T> void setMultiCacheObject(final Map<String, T> dataMap, final long timeout, final TimeUnit timeUnit)
+    {
+        if (dataMap == null || dataMap.isEmpty())
+        {
+            return;
+        }
+        redisTemplate.executePipelined(new SessionCallback<Object>()
+        {
+            @Override
+            public Object execute(RedisOperations operations) throws DataAccessException
+            {
+                ValueOperations valueOperations = operations.opsForValue();
+                for (Map.Entry<String, T> entry : dataMap.entrySet())
+                {
+                    valueOperations.set(entry.getKey(), entry.getValue(), timeout, timeUnit);
+                }
+                return null;
+            }
+        });
+    }
+
     /**
      * Delete a single object
      *
@@ -96,7 +149,12 @@ public class RedisCache
      */
     public long deleteObject(final Collection collection)
     {
-        return redisTemplate.delete(collection);
+        if (collection == null || collection.isEmpty())
+        {
+            return 0;
+        }
+        Long count = redisTemplate.delete(collection);
+        return count == null ? 0 : count;
     }
 
     /**
@@ -225,14 +283,110 @@ public class RedisCache
         return redisTemplate.opsForHash().multiGet(key, hKeys);
     }
 
+    /**
+     * Iterate over the keys matching a pattern with SCAN, handing them to the consumer in batches.
+     * Unlike KEYS this never blocks Redis for the whole keyspace.
+     *
+     * @param pattern key pattern, e.g. "login:*"
+     * @param batchSize COUNT hint for each SCAN call and the size of each batch
+     * @param consumer called with each batch of keys
+     */
+    public void scan(final String pattern, final int batchSize, final Consumer<List<String>> consumer)
+    {
+        ScanOptions options = ScanOptions.scanOptions().match(pattern).count(batchSize).build();
+        try (Cursor<String> cursor = redisTemplate.scan(options))
+        {
+            List<String> batch = new ArrayList<>(batchSize);
+            while (cursor.hasNext())
+            {
+                batch.add(cursor.next());
+                if (batch.size() >= batchSize)
+                {
+                    consumer.accept(batch);
+                    batch = new ArrayList<>(batchSize);
+                }
+            }
+            if (!batch.isEmpty())
+            {
+                consumer.accept(batch);
+            }
+        }
+    }
+
+    /**
+     * Delete every key matching a pattern, one SCAN batch at a time
+     *
+     * @param pattern key pattern
+     * @return number of deleted keys
+     */
+    public long deleteByPattern(final String pattern)
+    {
+        long[] deleted = {0};
+        scan(pattern, 500, batch -> deleted[0] += deleteObject(batch));
+        return deleted[0];
+    }
+
+    /**
+     * Add to the score of a sorted set member, creating the set and member as needed
+     *
+     * @param key Redis key
+     * @param value member
+     * @param delta amount to add, may be negative
+     * @return the new score
+     */
+    public <T> Double incrementCacheZSetScore(final String key, final T value, final double delta)
+    {
+        return redisTemplate.opsForZSet().incrementScore(key, value, delta);
+    }
+
+    /**
+     * Get the highest scoring members of a sorted set, highest first
+     *
+     * @param key Redis key
+     * @param count number of members
+     * @return members with their scores
+     */
+    public <T> Set<ZSetOperations.TypedTuple<T>> getCacheZSetTop(final String key, final long count)
+    {
+        Set<ZSetOperations.TypedTuple<T>> top = redisTemplate.opsForZSet().reverseRangeWithScores(key, 0, count - 1);
+        return top == null ? new LinkedHashSet<>() : top;
+    }
+
+    /**
+     * Store the weighted sum of several sorted sets (ZUNIONSTORE ... WEIGHTS)
+     *
+     * @param destKey key receiving the result, may be one of the sources
+     * @param keys source keys
+     * @param weights one weight per source key
+     */
+    public void unionAndStoreCacheZSet(final String destKey, final List<String> keys, final double... weights)
+    {
+        redisTemplate.opsForZSet().unionAndStore(keys.get(0), keys.subList(1, keys.size()), destKey,
+                Aggregate.SUM, Weights.of(weights));
+    }
+
+    /**
+     * Cache an object only if the key does not exist yet (SET NX)
+     *
+     * @return true if this call stored it
+     */
+    public <T> boolean setCacheObjectIfAbsent(final String key, final T value, final long timeout, final TimeUnit timeUnit)
+    {
+        return Boolean.TRUE.equals(redisTemplate.opsForValue().setIfAbsent(key, value, timeout, timeUnit));
+    }
+
     /**
      * Get a list of cached basic objects
      *
      * @param pattern string prefix
      * @return list of objects
+     * @deprecated collects the whole result in memory, use {@link #scan(String, int, Consumer)} instead
      */
+    @Deprecated
     public Collection<String> keys(final String pattern)
     {
-        return redisTemplate.keys(pattern);
+        Set<String> keys = new LinkedHashSet<>();
+        scan(pattern, 500, keys::addAll);
+        return keys;
     }
-}
\ No newline at end of file
+}
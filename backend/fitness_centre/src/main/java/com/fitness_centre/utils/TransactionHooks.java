@@ -0,0 +1,30 @@
+package com.fitness_centre.utils;
+
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+/**
+ * @author
+ * @Classname TransactionHooks
+ * @Description Run side effects (caches, in-memory indexes, Redis counters) only once the database change is committed
+ * @date 19/10/2026
+ */
+public class TransactionHooks {
+
+    /**
+     * Run the task after the current transaction commits, or right away when there is none.
+     * A rolled-back change never reaches the task.
+     */
+    public static void afterCommit(Runnable task) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    task.run();
+                }
+            });
+        } else {
+            task.run();
+        }
+    }
+}
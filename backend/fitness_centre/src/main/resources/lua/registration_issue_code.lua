@@ -0,0 +1,29 @@
+-- Issue a verification code for a pending registration if the resend cooldown has expired.
+-- KEYS[1]  registration hash (register:<email>)
+-- ARGV[1]  verification code
+-- ARGV[2]  code ttl (ms)
+-- ARGV[3]  resend cooldown (ms)
+-- ARGV[4]  registration ttl (ms)
+-- ARGV[5]  registration info json, empty when resending a code
+-- return   1 issued, 0 still cooling down, -1 no pending registration
+local time = redis.call('TIME')
+local now = tonumber(time[1]) * 1000 + math.floor(tonumber(time[2]) / 1000)
+
+if ARGV[5] == '' and redis.call('HEXISTS', KEYS[1], 'info') == 0 then
+    return -1
+end
+
+local resendAt = tonumber(redis.call('HGET', KEYS[1], 'resendAt'))
+if resendAt and now < resendAt then
+    return 0
+end
+
+redis.call('HSET', KEYS[1],
+        'code', ARGV[1],
+        'codeExpireAt', now + tonumber(ARGV[2]),
+        'resendAt', now + tonumber(ARGV[3]))
+if ARGV[5] ~= '' then
+    redis.call('HSET', KEYS[1], 'info', ARGV[5])
+    redis.call('PEXPIRE', KEYS[1], ARGV[4])
+end
+return 1
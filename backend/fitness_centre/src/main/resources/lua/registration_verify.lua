@@ -0,0 +1,20 @@
+-- Check a submitted verification code and consume the registration on success.
+-- KEYS[1]  registration hash (register:<email>)
+-- ARGV[1]  submitted code
+-- return   {1, info} verified, {-1} no pending registration, {-2} code missing or expired, {-3} code mismatch
+local time = redis.call('TIME')
+local now = tonumber(time[1]) * 1000 + math.floor(tonumber(time[2]) / 1000)
+
+local state = redis.call('HMGET', KEYS[1], 'info', 'code', 'codeExpireAt')
+if not state[1] then
+    return {-1}
+end
+if not state[2] or not state[3] or now > tonumber(state[3]) then
+    return {-2}
+end
+if state[2] ~= ARGV[1] then
+    return {-3}
+end
+
+redis.call('DEL', KEYS[1])
+return {1, state[1]}
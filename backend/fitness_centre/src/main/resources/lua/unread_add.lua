@@ -0,0 +1,11 @@
+-- Add to one unread counter, only if the user's counters are loaded.
+-- A missing hash is counted from the database on the next read, so nothing is lost by skipping.
+-- KEYS[1]  counter hash (unread:<userId>)
+-- ARGV[1]  field
+-- ARGV[2]  delta
+-- return   1 applied, 0 not loaded
+if redis.call('EXISTS', KEYS[1]) == 0 then
+    return 0
+end
+redis.call('HINCRBY', KEYS[1], ARGV[1], ARGV[2])
+return 1
@@ -0,0 +1,21 @@
+-- Replace a user's unread counters with values counted from the database.
+-- KEYS[1]  counter hash (unread:<userId>)
+-- KEYS[2]  unrecorded sessions of a coach (unrecorded:<userId>), member -> end time (ms)
+-- ARGV[1]  ttl (ms)
+-- ARGV[2]  role
+-- ARGV[3]  number of counter fields n
+-- ARGV[4 .. 3+2n]  field, count pairs
+-- ARGV[4+2n ..]    end time, session id pairs
+-- return   1
+redis.call('DEL', KEYS[1], KEYS[2])
+redis.call('HSET', KEYS[1], 'role', ARGV[2])
+local n = tonumber(ARGV[3])
+for i = 0, n - 1 do
+    redis.call('HSET', KEYS[1], ARGV[4 + 2 * i], ARGV[5 + 2 * i])
+end
+for i = 4 + 2 * n, #ARGV, 2 do
+    redis.call('ZADD', KEYS[2], ARGV[i], ARGV[i + 1])
+end
+redis.call('PEXPIRE', KEYS[1], ARGV[1])
+redis.call('PEXPIRE', KEYS[2], ARGV[1])
+return 1
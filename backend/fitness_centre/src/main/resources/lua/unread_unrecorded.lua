@@ -0,0 +1,23 @@
+-- Add or remove unrecorded sessions of a coach, only if the coach's counters are loaded.
+-- KEYS[1]  counter hash (unread:<userId>)
+-- KEYS[2]  unrecorded sessions (unrecorded:<userId>)
+-- ARGV[1]  'add' followed by end time (ms), session id pairs, or 'rem' followed by session ids
+-- return   1 applied, 0 not loaded
+if redis.call('EXISTS', KEYS[1]) == 0 then
+    return 0
+end
+if ARGV[1] == 'add' then
+    for i = 2, #ARGV, 2 do
+        redis.call('ZADD', KEYS[2], ARGV[i], ARGV[i + 1])
+    end
+    -- an empty set has no key, so a newly created one takes the hash ttl
+    local ttl = redis.call('PTTL', KEYS[1])
+    if ttl > 0 then
+        redis.call('PEXPIRE', KEYS[2], ttl)
+    end
+else
+    for i = 2, #ARGV do
+        redis.call('ZREM', KEYS[2], ARGV[i])
+    end
+end
+return 1
@@ -0,0 +1,140 @@
+package infrastructure;
+
+import com.fitness_centre.dto.member.CoachCard;
+import com.fitness_centre.dto.member.CoachLabel;
+import com.fitness_centre.mapper.CoachLocationMapper;
+import com.fitness_centre.mapper.CoachMapper;
+import com.fitness_centre.mapper.CoachTagMapper;
+import com.fitness_centre.service.infrastructure.CoachCardStore;
+import com.fitness_centre.service.infrastructure.CoachPageCache;
+import com.fitness_centre.utils.RedisCache;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.Mockito;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Tests for CoachCardStore cache hits, batched miss loading and refresh.
+ */
+@ExtendWith(MockitoExtension.class)
+public class CoachCardStoreTest {
+
+    @Mock private RedisCache redisCache;
+    @Mock private CoachMapper coachMapper;
+    @Mock private CoachTagMapper coachTagMapper;
+    @Mock private CoachLocationMapper coachLocationMapper;
+    @Mock private CoachPageCache coachPageCache;
+
+    @InjectMocks private CoachCardStore store;
+
+    @BeforeEach
+    public void setUp() {
+        ReflectionTestUtils.setField(store, "ttlMinutes", 1440L);
+    }
+
+    private static CoachCard card(long id, String name) {
+        CoachCard card = new CoachCard();
+        card.setCoachId(id);
+        card.setUserName(name);
+        card.setBirthday(LocalDate.of(1990, 1, 1));
+        return card;
+    }
+
+    @Test
+    @DisplayName("getCards should load only the misses in one batch, keep tag names intact and cache them")
+    @SuppressWarnings("unchecked")
+    public void testGetCards() {
+        CoachCard cached = card(1L, "Alice");
+        Mockito.when(redisCache.getMultiCacheObject(List.of("coach:card:3", "coach:card:1", "coach:card:2", "coach:card:4")))
+                .thenReturn(Arrays.asList(null, cached, null, null));
+        // 4 号教练已被删除, 查不到
+        Mockito.when(coachMapper.selectCardsByIds(List.of(3L, 2L, 4L))).thenReturn(List.of(card(2L, "Bob"), card(3L, "Carol")));
+        Mockito.when(coachTagMapper.selectTagNamesByCoachIds(Mockito.anyList())).thenReturn(List.of(
+                new CoachLabel(2L, "Yoga, Pilates"),
+                new CoachLabel(2L, "Boxing"),
+                new CoachLabel(3L, "Running")));
+        Mockito.when(coachLocationMapper.selectLocationNamesByCoachIds(Mockito.anyList())).thenReturn(List.of(
+                new CoachLabel(3L, "Central")));
+
+        Map<Long, CoachCard> cards = store.getCards(List.of(3L, 1L, 2L, 4L));
+
+        Assertions.assertEquals(List.of(3L, 1L, 2L), new ArrayList<>(cards.keySet()));
+        Assertions.assertSame(cached, cards.get(1L));
+        // 名字里带逗号也不会被拆开
+        Assertions.assertEquals(List.of("Yoga, Pilates", "Boxing"), cards.get(2L).getTagNames());
+        Assertions.assertEquals(List.of("Central"), cards.get(3L).getLocationNames());
+        Assertions.assertTrue(cards.get(2L).getLocationNames().isEmpty());
+
+        ArgumentCaptor<Map<String, CoachCard>> written = ArgumentCaptor.forClass(Map.class);
+        Mockito.verify(redisCache).setMultiCacheObject(written.capture(), Mockito.eq(1440L), Mockito.eq(TimeUnit.MINUTES));
+        Assertions.assertEquals(2, written.getValue().size());
+        Assertions.assertTrue(written.getValue().containsKey("coach:card:2"));
+        Assertions.assertTrue(written.getValue().containsKey("coach:card:3"));
+    }
+
+    @Test
+    @DisplayName("getCards should not touch the database when every card is cached")
+    public void testAllCached() {
+        Mockito.when(redisCache.getMultiCacheObject(List.of("coach:card:1")))
+                .thenReturn(new ArrayList<>(List.of(card(1L, "Alice"))));
+
+        Assertions.assertEquals(1, store.getCards(List.of(1L)).size());
+        Mockito.verifyNoInteractions(coachMapper, coachTagMapper, coachLocationMapper);
+    }
+
+    @Test
+    @DisplayName("refresh should rewrite the card, or delete it once the coach is gone")
+    public void testRefresh() {
+        Mockito.when(coachMapper.selectCardsByIds(List.of(5L))).thenReturn(List.of(card(5L, "Eve")));
+        store.refresh(5L);
+        Mockito.verify(redisCache).setMultiCacheObject(Mockito.argThat(entries -> entries.containsKey("coach:card:5")),
+                Mockito.anyLong(), Mockito.eq(TimeUnit.MINUTES));
+
+        Mockito.when(coachMapper.selectCardsByIds(List.of(6L))).thenReturn(List.of());
+        store.refresh(6L);
+        Mockito.verify(redisCache).deleteObject("coach:card:6");
+        Mockito.verify(coachPageCache, Mockito.times(2)).invalidate();
+    }
+
+    @Test
+    @DisplayName("getCards should load from the tables when Redis is down")
+    public void testRedisDown() {
+        Mockito.when(redisCache.getMultiCacheObject(Mockito.anyCollection())).thenThrow(new IllegalStateException("down"));
+        Mockito.when(coachMapper.selectCardsByIds(List.of(2L, 1L))).thenReturn(List.of(card(1L, "Alice"), card(2L, "Bob")));
+
+        Map<Long, CoachCard> cards = store.getCards(List.of(2L, 1L));
+
+        Assertions.assertEquals(List.of(2L, 1L), new ArrayList<>(cards.keySet()));
+        Mockito.verify(redisCache, Mockito.never()).setMultiCacheObject(Mockito.anyMap(), Mockito.anyLong(), Mockito.any());
+    }
+
+    @Test
+    @DisplayName("refresh and evict should swallow failures, delete the stale card and still invalidate pages")
+    public void testRefreshFailure() {
+        Mockito.when(coachMapper.selectCardsByIds(List.of(5L))).thenReturn(List.of(card(5L, "Eve")));
+        Mockito.doThrow(new IllegalStateException("down")).when(redisCache)
+                .setMultiCacheObject(Mockito.anyMap(), Mockito.anyLong(), Mockito.any());
+
+        Assertions.assertDoesNotThrow(() -> store.refresh(5L));
+        Mockito.verify(redisCache).deleteObject("coach:card:5");
+
+        Mockito.when(redisCache.deleteObject("coach:card:6")).thenThrow(new IllegalStateException("down"));
+        Mockito.doThrow(new IllegalStateException("down")).when(coachPageCache).invalidate();
+        Assertions.assertDoesNotThrow(() -> store.evict(6L));
+        Mockito.verify(coachPageCache, Mockito.times(2)).invalidate();
+    }
+}
@@ -0,0 +1,61 @@
+package infrastructure;
+
+import com.fitness_centre.dto.member.CoachPageResponse;
+import com.fitness_centre.dto.member.CoachQueryRequest;
+import com.fitness_centre.service.infrastructure.CoachPageCache;
+import com.fitness_centre.utils.RedisCache;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.Mockito;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.ValueOperations;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Tests for CoachPageCache keys and generation-based invalidation.
+ */
+@ExtendWith(MockitoExtension.class)
+public class CoachPageCacheTest {
+
+    @Mock private RedisCache redisCache;
+    @Mock private StringRedisTemplate stringRedisTemplate;
+    @Mock private ValueOperations<String, String> valueOperations;
+
+    @InjectMocks private CoachPageCache cache;
+
+    @Test
+    @DisplayName("pages should be keyed by generation and the normalised filter")
+    public void testKey() {
+        CoachQueryRequest request = new CoachQueryRequest();
+        request.setUserName(" Ali ");
+        request.setTagIds(List.of(11L, 10L, 11L));
+
+        cache.put(request, 3L, new CoachPageResponse(1, 10));
+
+        Mockito.verify(redisCache).setCacheObject(Mockito.eq("coach:page:3:n=ali|t=10,11|l=|f=0|o=|p=1|s=10"),
+                Mockito.any(CoachPageCache.Entry.class), Mockito.anyInt(), Mockito.eq(TimeUnit.SECONDS));
+        Assertions.assertNull(cache.get(request, 4L));
+        Mockito.verify(redisCache).getCacheObject("coach:page:4:n=ali|t=10,11|l=|f=0|o=|p=1|s=10");
+    }
+
+    @Test
+    @DisplayName("invalidate should bump the generation instead of scanning for pages")
+    public void testInvalidate() {
+        Mockito.when(stringRedisTemplate.opsForValue()).thenReturn(valueOperations);
+        Mockito.when(valueOperations.get(CoachPageCache.GENERATION_KEY)).thenReturn(null, "1");
+
+        Assertions.assertEquals(0L, cache.generation());
+        cache.invalidate();
+        Assertions.assertEquals(1L, cache.generation());
+
+        Mockito.verify(valueOperations).increment(CoachPageCache.GENERATION_KEY);
+        Mockito.verify(redisCache, Mockito.never()).deleteByPattern(Mockito.anyString());
+    }
+}
@@ -0,0 +1,99 @@
+package infrastructure;
+
+import com.fitness_centre.constant.RequestStatus;
+import com.fitness_centre.service.infrastructure.CoachPopularity;
+import com.fitness_centre.utils.RedisCache;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.Mockito;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.redis.core.DefaultTypedTuple;
+import org.springframework.data.redis.core.ZSetOperations;
+
+import java.time.LocalDate;
+import java.time.format.DateTimeFormatter;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Tests for CoachPopularity scoring, the top-N read and the window roll.
+ */
+@ExtendWith(MockitoExtension.class)
+public class CoachPopularityTest {
+
+    @Mock private RedisCache redisCache;
+
+    @InjectMocks private CoachPopularity popularity;
+
+    @Test
+    @DisplayName("record should add to today's bucket, keep the bucket past the window and add to the window total")
+    public void testRecord() {
+        String bucket = "coach:popular:" + LocalDate.now().format(DateTimeFormatter.BASIC_ISO_DATE);
+
+        popularity.record(7L, -CoachPopularity.SUBSCRIPTION_WEIGHT);
+
+        Mockito.verify(redisCache).incrementCacheZSetScore(bucket, "7", -2);
+        Mockito.verify(redisCache).expire(bucket, 34, TimeUnit.DAYS);
+        Mockito.verify(redisCache).incrementCacheZSetScore(CoachPopularity.WINDOW_KEY, "7", -2);
+    }
+
+    @Test
+    @DisplayName("record should swallow Redis failures")
+    public void testRecordRedisDown() {
+        Mockito.when(redisCache.incrementCacheZSetScore(Mockito.anyString(), Mockito.any(), Mockito.anyDouble()))
+                .thenThrow(new IllegalStateException("down"));
+
+        Assertions.assertDoesNotThrow(() -> popularity.record(7L, CoachPopularity.SESSION_WEIGHT));
+    }
+
+    @Test
+    @DisplayName("recordTransition should only move the score when a request enters or leaves ACCEPT")
+    public void testRecordTransition() {
+        popularity.recordTransition(7L, CoachPopularity.SESSION_WEIGHT, RequestStatus.ACCEPT, RequestStatus.ACCEPT);
+        popularity.recordTransition(7L, CoachPopularity.SESSION_WEIGHT, RequestStatus.PENDING, RequestStatus.REJECT);
+        Mockito.verifyNoInteractions(redisCache);
+
+        popularity.recordTransition(7L, CoachPopularity.SESSION_WEIGHT, RequestStatus.PENDING, RequestStatus.ACCEPT);
+        popularity.recordTransition(7L, CoachPopularity.SESSION_WEIGHT, RequestStatus.ACCEPT, RequestStatus.REJECT);
+        Mockito.verify(redisCache).incrementCacheZSetScore(CoachPopularity.WINDOW_KEY, "7", 1);
+        Mockito.verify(redisCache).incrementCacheZSetScore(CoachPopularity.WINDOW_KEY, "7", -1);
+    }
+
+    @Test
+    @DisplayName("top should keep the Redis order and skip coaches at zero or below")
+    public void testTop() {
+        Set<ZSetOperations.TypedTuple<Object>> tuples = new LinkedHashSet<>();
+        tuples.add(new DefaultTypedTuple<>("3", 5.0));
+        tuples.add(new DefaultTypedTuple<>("1", 2.0));
+        tuples.add(new DefaultTypedTuple<>("2", 0.0));
+        Mockito.when(redisCache.getCacheZSetTop(CoachPopularity.WINDOW_KEY, 3)).thenReturn(tuples);
+
+        Map<Long, Long> top = popularity.top(3);
+
+        Assertions.assertEquals(List.of(3L, 1L), List.copyOf(top.keySet()));
+        Assertions.assertEquals(5L, top.get(3L));
+    }
+
+    @Test
+    @DisplayName("roll should subtract each expired bucket once, skipping days already rolled")
+    public void testRoll() {
+        Mockito.when(redisCache.setCacheObjectIfAbsent(Mockito.anyString(), Mockito.any(), Mockito.anyLong(), Mockito.eq(TimeUnit.DAYS)))
+                .thenAnswer(invocation -> !"coach:popular:rolled:20260918".equals(invocation.getArgument(0)));
+
+        popularity.roll(LocalDate.of(2026, 10, 19));
+
+        // 窗口 30 天: 9 月 19 日的桶今天移出, 前两天的桶是漏跑补偿
+        Mockito.verify(redisCache).unionAndStoreCacheZSet(CoachPopularity.WINDOW_KEY,
+                List.of(CoachPopularity.WINDOW_KEY, "coach:popular:20260919"), 1, -1);
+        Mockito.verify(redisCache).unionAndStoreCacheZSet(CoachPopularity.WINDOW_KEY,
+                List.of(CoachPopularity.WINDOW_KEY, "coach:popular:20260917"), 1, -1);
+        Mockito.verify(redisCache, Mockito.times(2)).unionAndStoreCacheZSet(Mockito.anyString(), Mockito.anyList(), Mockito.any(double[].class));
+    }
+}
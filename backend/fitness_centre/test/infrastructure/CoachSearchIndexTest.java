@@ -0,0 +1,248 @@
+package infrastructure;
+
+import com.fitness_centre.domain.CoachLocation;
+import com.fitness_centre.domain.CoachTag;
+import com.fitness_centre.domain.Location;
+import com.fitness_centre.dto.member.CoachDetailsResponse;
+import com.fitness_centre.dto.member.CoachQueryRequest;
+import com.fitness_centre.dto.member.CoachSuggestion;
+import com.fitness_centre.mapper.CoachLocationMapper;
+import com.fitness_centre.mapper.CoachMapper;
+import com.fitness_centre.mapper.CoachTagMapper;
+import com.fitness_centre.mapper.LocationMapper;
+import com.fitness_centre.service.infrastructure.CoachSearchIndex;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.Mockito;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Tests for CoachSearchIndex bitmap filtering, paging and patches.
+ */
+@ExtendWith(MockitoExtension.class)
+public class CoachSearchIndexTest {
+
+    @Mock private CoachMapper coachMapper;
+    @Mock private CoachTagMapper coachTagMapper;
+    @Mock private CoachLocationMapper coachLocationMapper;
+    @Mock private LocationMapper locationMapper;
+
+    @InjectMocks private CoachSearchIndex index;
+
+    private static CoachDetailsResponse coach(long id, String name) {
+        CoachDetailsResponse coach = new CoachDetailsResponse();
+        coach.setCoachId(id);
+        coach.setUserName(name);
+        return coach;
+    }
+
+    private CoachSearchIndex.SearchHits search(String userName, List<Long> tagIds, List<Long> locationIds,
+                                               long offset, int limit, boolean facets) {
+        CoachQueryRequest request = new CoachQueryRequest();
+        request.setUserName(userName);
+        request.setTagIds(tagIds);
+        request.setLocationIds(locationIds);
+        request.setFacets(facets);
+        return index.search(request, offset, limit);
+    }
+
+    @BeforeEach
+    public void setUp() {
+        // 1900000000000000001 等是 ASSIGN_ID 风格的稀疏 id
+        Mockito.when(coachMapper.selectIndexRows()).thenReturn(List.of(
+                coach(1900000000000000001L, "Alice"),
+                coach(1900000000000000002L, "Bob"),
+                coach(1900000000000000003L, "alicia")));
+        Mockito.when(coachTagMapper.selectList(null)).thenReturn(List.of(
+                new CoachTag(1900000000000000001L, 10L),
+                new CoachTag(1900000000000000002L, 10L),
+                new CoachTag(1900000000000000002L, 11L),
+                new CoachTag(1900000000000000003L, 12L)));
+        Mockito.when(coachLocationMapper.selectList(null)).thenReturn(List.of(
+                new CoachLocation(1900000000000000001L, 20L),
+                new CoachLocation(1900000000000000003L, 21L)));
+        index.rebuild();
+    }
+
+    @Test
+    @DisplayName("search should OR within tags and locations and AND between them")
+    public void testFilters() {
+        Assertions.assertTrue(index.isReady());
+
+        CoachSearchIndex.SearchHits all = search(null, null, null, 0, 10, false);
+        Assertions.assertEquals(3, all.getTotal());
+
+        CoachSearchIndex.SearchHits tags = search(null, List.of(10L, 12L), null, 0, 10, false);
+        Assertions.assertEquals(List.of(1900000000000000001L, 1900000000000000002L, 1900000000000000003L), tags.getCoachIds());
+
+        CoachSearchIndex.SearchHits both = search(null, List.of(10L, 11L), List.of(20L, 21L), 0, 10, false);
+        Assertions.assertEquals(List.of(1900000000000000001L), both.getCoachIds());
+
+        CoachSearchIndex.SearchHits name = search("ALI", null, null, 0, 10, false);
+        Assertions.assertEquals(List.of(1900000000000000001L, 1900000000000000003L), name.getCoachIds());
+    }
+
+    @Test
+    @DisplayName("search should return the total and only the requested page of ids")
+    public void testPaging() {
+        CoachSearchIndex.SearchHits page = search(null, null, null, 1, 1, false);
+
+        Assertions.assertEquals(3, page.getTotal());
+        Assertions.assertEquals(List.of(1900000000000000002L), page.getCoachIds());
+    }
+
+    @Test
+    @DisplayName("patches should replace a coach's tags and locations and removals should hide the coach")
+    public void testPatches() {
+        index.updateCoach(1900000000000000002L, "Bobby", null, List.of(12L), List.of(21L));
+        index.updateCoach(1900000000000000004L, "Carl", null, List.of(10L), List.of());
+        index.removeCoach(1900000000000000001L);
+
+        Assertions.assertEquals(List.of(1900000000000000004L), search(null, List.of(10L), null, 0, 10, false).getCoachIds());
+        Assertions.assertEquals(List.of(1900000000000000002L, 1900000000000000003L),
+                search(null, List.of(12L), List.of(21L), 0, 10, false).getCoachIds());
+        Assertions.assertEquals(List.of(1900000000000000002L), search("bobby", null, null, 0, 10, false).getCoachIds());
+        Assertions.assertEquals(3, search(null, null, null, 0, 10, false).getTotal());
+    }
+
+    @Test
+    @DisplayName("patches committed while a rebuild reads the database should survive the swap")
+    public void testPatchDuringRebuild() {
+        Mockito.when(coachMapper.selectIndexRows()).thenAnswer(invocation -> {
+            // 读库期间另一个请求提交了修改
+            index.updateCoach(1900000000000000002L, "Bobby", null, List.of(12L), null);
+            index.removeCoach(1900000000000000001L);
+            return List.of(
+                    coach(1900000000000000001L, "Alice"),
+                    coach(1900000000000000002L, "Bob"),
+                    coach(1900000000000000003L, "alicia"));
+        });
+        index.rebuild();
+
+        Assertions.assertEquals(List.of(1900000000000000002L), search("bobby", null, null, 0, 10, false).getCoachIds());
+        Assertions.assertEquals(List.of(1900000000000000002L, 1900000000000000003L),
+                search(null, List.of(12L), null, 0, 10, false).getCoachIds());
+        Assertions.assertEquals(2, search(null, null, null, 0, 10, false).getTotal());
+
+        // 重放过的修改不会留到下一次 rebuild
+        Mockito.when(coachMapper.selectIndexRows()).thenReturn(List.of(coach(1900000000000000001L, "Alice")));
+        index.rebuild();
+        Assertions.assertEquals(1, search(null, null, null, 0, 10, false).getTotal());
+    }
+
+    @Test
+    @DisplayName("facet counts should ignore their own filter and respect the others")
+    public void testFacets() {
+        CoachSearchIndex.SearchHits hits = search(null, List.of(10L), List.of(20L), 0, 10, true);
+
+        Assertions.assertEquals(1, hits.getTotal());
+        // location 20 只有 1 号教练, 按 tag 计数时不看 tag 条件
+        Assertions.assertEquals(Map.of(10L, 1, 11L, 0, 12L, 0), hits.getTagCounts());
+        // tag 10 有 1、2 号教练, 只有 1 号在 location 20
+        Assertions.assertEquals(Map.of(20L, 1, 21L, 0), hits.getLocationCounts());
+
+        CoachSearchIndex.SearchHits named = search("ali", null, null, 0, 10, true);
+        Assertions.assertEquals(Map.of(10L, 1, 11L, 0, 12L, 1), named.getTagCounts());
+        Assertions.assertNull(search(null, null, null, 0, 10, false).getTagCounts());
+    }
+
+    @Test
+    @DisplayName("name search should tolerate typos, match intros and rank exact names first")
+    public void testRankedNameSearch() {
+        CoachDetailsResponse dave = coach(1900000000000000006L, "Dave Alison");
+        dave.setIntro("Certified yoga teacher");
+        Mockito.when(coachMapper.selectIndexRows()).thenReturn(List.of(
+                coach(1900000000000000001L, "Alice"),
+                coach(1900000000000000002L, "Bob"),
+                coach(1900000000000000003L, "Malicia"),
+                dave));
+        index.rebuild();
+
+        // "alis" 是 Alison 的前缀, 比错了一个字的 Alice 更接近
+        Assertions.assertEquals(List.of(1900000000000000006L, 1900000000000000001L),
+                search("alise", null, null, 0, 10, false).getCoachIds());
+        // 单词开头命中排在词中间命中之前
+        Assertions.assertEquals(List.of(1900000000000000001L, 1900000000000000006L, 1900000000000000003L),
+                search("ali", null, null, 0, 10, false).getCoachIds());
+        Assertions.assertEquals(List.of(1900000000000000006L), search("Yoga", null, null, 0, 10, false).getCoachIds());
+        Assertions.assertEquals(0, search("xyz", null, null, 0, 10, false).getTotal());
+    }
+
+    @Test
+    @DisplayName("suggest should complete name and later-word prefixes and follow renames")
+    public void testSuggest() {
+        Assertions.assertEquals(List.of(new CoachSuggestion(1900000000000000001L, "Alice"), new CoachSuggestion(1900000000000000003L, "alicia")),
+                index.suggest("Ali", 10));
+        Assertions.assertEquals(1, index.suggest("ali", 1).size());
+
+        index.updateCoach(1900000000000000002L, "Bob Alison", null, null, null);
+        index.removeCoach(1900000000000000001L);
+
+        Assertions.assertEquals(List.of(new CoachSuggestion(1900000000000000003L, "alicia"), new CoachSuggestion(1900000000000000002L, "Bob Alison")),
+                index.suggest("ali", 10));
+        Assertions.assertEquals(List.of(), index.suggest("", 10));
+    }
+
+    @Test
+    @DisplayName("nearby search should keep coaches within the radius, nearest location first")
+    public void testNearby() {
+        Mockito.when(locationMapper.selectList(null)).thenReturn(List.of(
+                new Location(20L, "Central", -0.1276, 51.5072, null),
+                new Location(21L, "North", -0.1276, 51.6072, null),
+                new Location(22L, "Birmingham", -1.8904, 52.4862, null),
+                new Location(23L, "No coordinates", null, null, null)));
+        index.rebuild();
+
+        CoachQueryRequest request = new CoachQueryRequest();
+        request.setLatitude(51.5072);
+        request.setLongitude(-0.1276);
+        request.setRadiusKm(20.0);
+        CoachSearchIndex.SearchHits hits = index.search(request, 0, 10);
+
+        Assertions.assertEquals(2, hits.getTotal());
+        Assertions.assertEquals(List.of(1900000000000000001L, 1900000000000000003L), hits.getCoachIds());
+        Assertions.assertEquals(0.0, hits.getDistances().get(1900000000000000001L), 1e-9);
+        Assertions.assertEquals(11.1, hits.getDistances().get(1900000000000000003L), 0.1);
+
+        // 第二页, 以及不限半径
+        Assertions.assertEquals(List.of(1900000000000000003L), index.search(request, 1, 1).getCoachIds());
+        request.setRadiusKm(5.0);
+        Assertions.assertEquals(List.of(1900000000000000001L), index.search(request, 0, 10).getCoachIds());
+        request.setRadiusKm(null);
+        request.setLatitude(52.4862);
+        request.setLongitude(-1.8904);
+        Assertions.assertEquals(List.of(1900000000000000003L, 1900000000000000001L), index.search(request, 0, 10).getCoachIds());
+    }
+
+    @Test
+    @DisplayName("rating sort should page the matches highest rated first and follow rating patches")
+    public void testRatingSort() {
+        CoachDetailsResponse alice = coach(1900000000000000001L, "Alice");
+        alice.setRating(3.5);
+        CoachDetailsResponse bob = coach(1900000000000000002L, "Bob");
+        bob.setRating(4.8);
+        Mockito.when(coachMapper.selectIndexRows()).thenReturn(List.of(alice, bob, coach(1900000000000000003L, "alicia")));
+        index.rebuild();
+
+        CoachQueryRequest request = new CoachQueryRequest();
+        request.setSort(CoachQueryRequest.SORT_RATING);
+        Assertions.assertEquals(List.of(1900000000000000002L, 1900000000000000001L, 1900000000000000003L),
+                index.search(request, 0, 10).getCoachIds());
+        Assertions.assertEquals(List.of(1900000000000000001L), index.search(request, 1, 1).getCoachIds());
+
+        // 未评分的教练拿到高分后排到最前; 名字过滤之后仍按评分排
+        index.updateRating(1900000000000000003L, 5.0);
+        request.setUserName("ali");
+        CoachSearchIndex.SearchHits hits = index.search(request, 0, 10);
+        Assertions.assertEquals(2, hits.getTotal());
+        Assertions.assertEquals(List.of(1900000000000000003L, 1900000000000000001L), hits.getCoachIds());
+    }
+}
@@ -0,0 +1,80 @@
+package infrastructure;
+
+import com.fitness_centre.constant.ExportFormat;
+import com.fitness_centre.constant.RequestStatus;
+import com.fitness_centre.dto.export.BookingExportRow;
+import com.fitness_centre.dto.export.HistoryExportRow;
+import com.fitness_centre.mapper.SessionBookingMapper;
+import com.fitness_centre.mapper.TrainingHistoryMapper;
+import com.fitness_centre.service.infrastructure.DataExporter;
+import com.fitness_centre.service.infrastructure.ReferenceData;
+import org.apache.ibatis.cursor.Cursor;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.Mockito;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Tests for DataExporter: rows read from the cursor, tag names from reference data, cursor closed.
+ */
+@ExtendWith(MockitoExtension.class)
+public class DataExporterTest {
+
+    @Mock private TrainingHistoryMapper trainingHistoryMapper;
+    @Mock private SessionBookingMapper sessionBookingMapper;
+    @Mock private ReferenceData referenceData;
+
+    @InjectMocks private DataExporter dataExporter;
+
+    @SuppressWarnings("unchecked")
+    private static <T> Cursor<T> cursorOf(List<T> rows) {
+        Cursor<T> cursor = Mockito.mock(Cursor.class);
+        Mockito.when(cursor.iterator()).thenReturn(rows.iterator());
+        return cursor;
+    }
+
+    @Test
+    @DisplayName("history export should resolve tag names from the snapshot and close the cursor")
+    public void testHistory() throws Exception {
+        LocalDateTime start = LocalDateTime.of(2026, 10, 19, 9, 0);
+        Cursor<HistoryExportRow> cursor = cursorOf(List.of(
+                new HistoryExportRow(5L, start, start.plusHours(1), "Mia", "Carol", null, "Good form", 4, "1,9")));
+        Mockito.when(trainingHistoryMapper.streamForExport(3L)).thenReturn(cursor);
+        Mockito.when(referenceData.current()).thenReturn(new ReferenceData.Snapshot(Map.of(1L, "Yoga"), List.of()));
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+        dataExporter.exportTrainingHistory(3L, ExportFormat.NDJSON, out);
+
+        Assertions.assertEquals("{\"id\":5,\"startTime\":\"2026-10-19 09:00\",\"endTime\":\"2026-10-19 10:00\","
+                + "\"member\":\"Mia\",\"coach\":\"Carol\",\"feedback\":\"Good form\",\"rating\":4,\"tags\":[\"Yoga\",\"9\"]}\n",
+                out.toString(StandardCharsets.UTF_8));
+        Mockito.verify(cursor).close();
+    }
+
+    @Test
+    @DisplayName("booking export should write the header and one CSV line per booking")
+    public void testBookings() throws Exception {
+        LocalDateTime start = LocalDateTime.of(2026, 10, 19, 9, 0);
+        BookingExportRow row = new BookingExportRow(8L, start, start.plusHours(1), "Mia", "Carol",
+                RequestStatus.ACCEPT, "Legs", null, start.minusDays(1), null, null, true);
+        Cursor<BookingExportRow> cursor = cursorOf(List.of(row));
+        Mockito.when(sessionBookingMapper.streamForExport(null)).thenReturn(cursor);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+        dataExporter.exportBookings(null, ExportFormat.CSV, out);
+
+        String[] lines = out.toString(StandardCharsets.UTF_8).split("\r\n");
+        Assertions.assertEquals(2, lines.length);
+        Assertions.assertEquals("8,2026-10-19 09:00,2026-10-19 10:00,Mia,Carol,Accept,Legs,,2026-10-18 09:00,,,true", lines[1]);
+    }
+}
@@ -0,0 +1,56 @@
+package infrastructure;
+
+import com.fitness_centre.constant.ExportFormat;
+import com.fitness_centre.service.infrastructure.ExportWriter;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Tests for ExportWriter CSV quoting and NDJSON lines.
+ */
+public class ExportWriterTest {
+
+    @Test
+    @DisplayName("CSV should start with a BOM and header, quote separators and neutralise formulas")
+    public void testCsv() throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (ExportWriter writer = new ExportWriter(ExportFormat.CSV, out, List.of("id", "time", "note", "tags"))) {
+            writer.row(Arrays.asList(1L, LocalDateTime.of(2026, 10, 19, 9, 30), "said \"hi\", left", List.of("Yoga", "Boxing")));
+            writer.row(Arrays.asList(-2, null, "=SUM(A1)", List.of()));
+        }
+
+        String csv = out.toString(StandardCharsets.UTF_8);
+        Assertions.assertEquals("﻿id,time,note,tags\r\n"
+                + "1,2026-10-19 09:30,\"said \"\"hi\"\", left\",Yoga; Boxing\r\n"
+                + "-2,,'=SUM(A1),\r\n", csv);
+    }
+
+    @Test
+    @DisplayName("NDJSON should write one object per row with the columns in order")
+    public void testNdjson() throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (ExportWriter writer = new ExportWriter(ExportFormat.NDJSON, out, List.of("id", "time", "tags"))) {
+            writer.row(Arrays.asList(1L, LocalDateTime.of(2026, 10, 19, 9, 30), List.of("Yoga")));
+            writer.row(Arrays.asList(2L, null, List.of()));
+        }
+
+        String[] lines = out.toString(StandardCharsets.UTF_8).split("\n");
+        Assertions.assertEquals(2, lines.length);
+        Assertions.assertEquals("{\"id\":1,\"time\":\"2026-10-19 09:30\",\"tags\":[\"Yoga\"]}", lines[0]);
+        Assertions.assertEquals("{\"id\":2,\"tags\":[]}", lines[1]);
+    }
+
+    @Test
+    @DisplayName("an unknown format should be rejected before anything is written")
+    public void testUnknownFormat() {
+        Assertions.assertThrows(RuntimeException.class, () -> ExportFormat.of("xlsx"));
+        Assertions.assertEquals(ExportFormat.NDJSON, ExportFormat.of("NDJSON"));
+    }
+}
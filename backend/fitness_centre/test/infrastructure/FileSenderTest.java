@@ -0,0 +1,134 @@
+package infrastructure;
+
+import com.fitness_centre.service.infrastructure.BlobStore;
+import com.fitness_centre.service.infrastructure.FileSender;
+import com.fitness_centre.service.infrastructure.LocalBlobStore;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * Tests for FileSender caching headers, conditional GET and ranges.
+ */
+public class FileSenderTest {
+
+    private static final String HASHED = "/42/0123456789abcdef/full.jpg";
+
+    private static Path root;
+
+    private final FileSender sender = new FileSender();
+
+    private final LocalBlobStore store = new LocalBlobStore(Map.of("temp", root));
+
+    @BeforeAll
+    public static void setUp() throws Exception {
+        root = Files.createTempDirectory("sender-test");
+        Files.createDirectories(root.resolve("42/0123456789abcdef"));
+        Files.writeString(root.resolve("42/0123456789abcdef/full.jpg"), "0123456789", StandardCharsets.US_ASCII);
+        Files.writeString(root.resolve("default.jpg"), "default", StandardCharsets.US_ASCII);
+        Files.createDirectories(root.resolve("42/fedcba9876543210"));
+        Files.writeString(root.resolve("42/fedcba9876543210/source.jpg"), "original", StandardCharsets.US_ASCII);
+    }
+
+    private MockHttpServletResponse get(String path, String header, String value) throws Exception {
+        ReflectionTestUtils.setField(sender, "blobStore", store);
+        return send(path, header, value);
+    }
+
+    private MockHttpServletResponse send(String path, String header, String value) throws Exception {
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/temp" + path);
+        if (header != null) {
+            request.addHeader(header, value);
+        }
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        sender.send("temp" + path, request, response);
+        return response;
+    }
+
+    @Test
+    @DisplayName("hashed files should be immutable and unhashed ones revalidated")
+    public void testCacheHeaders() throws Exception {
+        MockHttpServletResponse hashed = get(HASHED, null, null);
+        Assertions.assertEquals(200, hashed.getStatus());
+        Assertions.assertEquals(FileSender.IMMUTABLE, hashed.getHeader("Cache-Control"));
+        Assertions.assertEquals("image/jpeg", hashed.getContentType());
+        Assertions.assertEquals("0123456789", hashed.getContentAsString());
+
+        Assertions.assertEquals(FileSender.REVALIDATE, get("/default.jpg", null, null).getHeader("Cache-Control"));
+    }
+
+    @Test
+    @DisplayName("renditions not generated yet should be served from the staged source without immutable caching")
+    public void testSourceFallback() throws Exception {
+        MockHttpServletResponse card = get("/42/fedcba9876543210/card.jpg", null, null);
+        Assertions.assertEquals(200, card.getStatus());
+        Assertions.assertEquals(FileSender.REVALIDATE, card.getHeader("Cache-Control"));
+        Assertions.assertEquals("original", card.getContentAsString());
+
+        Assertions.assertEquals(FileSender.REVALIDATE, get("/42/fedcba9876543210/source.jpg", null, null).getHeader("Cache-Control"));
+        Assertions.assertEquals(404, get("/42/0123456789abcdef/card.jpg", null, null).getStatus());
+    }
+
+    @Test
+    @DisplayName("matching If-None-Match should return 304 without a body")
+    public void testNotModified() throws Exception {
+        String etag = get(HASHED, null, null).getHeader("ETag");
+
+        MockHttpServletResponse response = get(HASHED, "If-None-Match", etag);
+
+        Assertions.assertEquals(304, response.getStatus());
+        Assertions.assertEquals(0, response.getContentAsByteArray().length);
+    }
+
+    @Test
+    @DisplayName("byte ranges should return 206, and unsatisfiable ranges 416")
+    public void testRanges() throws Exception {
+        MockHttpServletResponse partial = get(HASHED, "Range", "bytes=2-5");
+        Assertions.assertEquals(206, partial.getStatus());
+        Assertions.assertEquals("bytes 2-5/10", partial.getHeader("Content-Range"));
+        Assertions.assertEquals("2345", partial.getContentAsString());
+
+        Assertions.assertEquals("789", get(HASHED, "Range", "bytes=-3").getContentAsString());
+        Assertions.assertEquals(416, get(HASHED, "Range", "bytes=20-").getStatus());
+
+        MockHttpServletResponse overflow = get(HASHED, "Range", "bytes=99999999999999999999-");
+        Assertions.assertEquals(416, overflow.getStatus());
+        Assertions.assertEquals("bytes */10", overflow.getHeader("Content-Range"));
+        Assertions.assertEquals(416, get(HASHED, "Range", "bytes=0-99999999999999999999").getStatus());
+        Assertions.assertEquals(416, get(HASHED, "Range", "bytes=-99999999999999999999").getStatus());
+    }
+
+    @Test
+    @DisplayName("paths escaping the root should return 404")
+    public void testTraversal() throws Exception {
+        Assertions.assertEquals(404, get("/../etc/passwd", null, null).getStatus());
+        Assertions.assertEquals(404, get("/42/./0123456789abcdef/full.jpg", null, null).getStatus());
+        Assertions.assertEquals(404, get("/42/missing.jpg", null, null).getStatus());
+    }
+
+    @Test
+    @DisplayName("stores without local files should stream the requested range")
+    public void testRemoteStore() throws Exception {
+        //只暴露接口, 没有 localFile, 走流式读取
+        BlobStore remote = Mockito.mock(BlobStore.class, Mockito.withSettings().defaultAnswer(invocation ->
+                invocation.getMethod().isDefault() ? Optional.empty() : invocation.getMethod().invoke(store, invocation.getArguments())));
+        ReflectionTestUtils.setField(sender, "blobStore", remote);
+
+        MockHttpServletResponse partial = send(HASHED, "Range", "bytes=4-6");
+
+        Assertions.assertEquals(206, partial.getStatus());
+        Assertions.assertEquals("456", partial.getContentAsString());
+        Mockito.verify(remote).open("temp" + HASHED, 4, 6);
+    }
+}
@@ -1,8 +1,10 @@
 package infrastructure;
 
+import com.fitness_centre.constant.ErrorCode;
 import com.fitness_centre.exception.BusinessException;
 import com.fitness_centre.exception.SystemException;
 import com.fitness_centre.service.infrastructure.FileService;
+import com.fitness_centre.service.infrastructure.LocalBlobStore;
 import org.apache.commons.io.FileUtils;
 import org.junit.jupiter.api.*;
 import org.junit.jupiter.api.extension.ExtendWith;
@@ -17,6 +19,9 @@ import java.io.File;
 import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ThreadPoolExecutor;
 
 /**
  * Tests for FileService upload and delete logic.
@@ -31,8 +36,8 @@ public class FileServiceTest {
         if (tempDir == null) {
             tempDir = Files.createTempDirectory("fs-test");
         }
-        ReflectionTestUtils.setField(svc, "tempPath", tempDir.toString());
-        ReflectionTestUtils.setField(svc, "formalPath", tempDir.toString());
+        ReflectionTestUtils.setField(svc, "blobStore", new LocalBlobStore(Map.of("temp", tempDir, "formal", tempDir)));
+        svc.init();
         return svc;
     }
 
@@ -44,25 +49,90 @@ public class FileServiceTest {
         Assertions.assertThrows(BusinessException.class, () -> svc.uploadFileToTemp(nonImg, 1L));
     }
 
+    private static byte[] pngBytes(int width, int height) throws IOException {
+        BufferedImage img = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        try (java.io.ByteArrayOutputStream baos = new java.io.ByteArrayOutputStream()) {
+            ImageIO.write(img, "png", baos);
+            return baos.toByteArray();
+        }
+    }
+
+    private static void await(File file) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (!file.exists() && System.currentTimeMillis() < deadline) {
+            Thread.sleep(20);
+        }
+    }
+
     @Test
-    @DisplayName("uploadFileToTemp should store jpeg/png and return path")
+    @DisplayName("uploadFileToTemp should store a content-hashed photo set and return the full rendition path")
     public void testUploadSuccess() throws Exception {
         FileService svc = buildService();
 
-        // Create small 1x1 png image in memory
-        BufferedImage img = new BufferedImage(1, 1, BufferedImage.TYPE_INT_RGB);
-        byte[] imgBytes;
-        try (java.io.ByteArrayOutputStream baos = new java.io.ByteArrayOutputStream()) {
-            ImageIO.write(img, "png", baos);
-            imgBytes = baos.toByteArray();
-        }
-        MockMultipartFile file = new MockMultipartFile("file", "avatar.png", "image/png", imgBytes);
+        MockMultipartFile file = new MockMultipartFile("file", "avatar.png", "image/png", pngBytes(2000, 1000));
 
         String path = svc.uploadFileToTemp(file, 42L);
-        Assertions.assertEquals("/temp/42.png", path);
-        // Ensure file exists
-        File saved = new File(tempDir.toFile(), "42.png");
-        Assertions.assertTrue(saved.exists());
+        Assertions.assertTrue(path.matches("/temp/42/[0-9a-f]{16}/full\\.png"), path);
+
+        // Renditions are produced in the background, the staged source is removed afterwards
+        File setDir = new File(tempDir.toFile(), path.substring("/temp/".length(), path.lastIndexOf('/')));
+        File thumb = new File(setDir, "thumb.png");
+        await(thumb);
+        Assertions.assertTrue(thumb.exists());
+        Assertions.assertEquals(160, ImageIO.read(thumb).getWidth());
+        Assertions.assertEquals(480, ImageIO.read(new File(setDir, "card.png")).getWidth());
+        Assertions.assertEquals(1600, ImageIO.read(new File(setDir, "full.png")).getWidth());
+        long deadline = System.currentTimeMillis() + 5000;
+        while (new File(setDir, "source.png").exists() && System.currentTimeMillis() < deadline) {
+            Thread.sleep(20);
+        }
+        Assertions.assertFalse(new File(setDir, "source.png").exists());
+
+        // Same content maps to the same url
+        Assertions.assertEquals(path, svc.uploadFileToTemp(
+                new MockMultipartFile("file", "again.png", "image/png", file.getBytes()), 42L));
+    }
+
+    @Test
+    @DisplayName("uploading the same image again should fill in missing renditions without rewriting published ones")
+    public void testUploadRepairsIncompleteSet() throws Exception {
+        FileService svc = buildService();
+        MockMultipartFile file = new MockMultipartFile("file", "avatar.png", "image/png", pngBytes(600, 300));
+
+        String path = svc.uploadFileToTemp(file, 44L);
+        File setDir = new File(tempDir.toFile(), path.substring("/temp/".length(), path.lastIndexOf('/')));
+        File thumb = new File(setDir, "thumb.png");
+        await(thumb);
+        // 模拟之前渲染失败: 只留下 full
+        File full = new File(setDir, "full.png");
+        Assertions.assertTrue(full.setLastModified(1_000_000L));
+        Assertions.assertTrue(thumb.delete());
+        Assertions.assertTrue(new File(setDir, "card.png").delete());
+
+        Assertions.assertEquals(path, svc.uploadFileToTemp(
+                new MockMultipartFile("file", "again.png", "image/png", file.getBytes()), 44L));
+
+        await(thumb);
+        Assertions.assertTrue(thumb.exists());
+        Assertions.assertTrue(new File(setDir, "card.png").exists());
+        Assertions.assertEquals(1_000_000L, full.lastModified());
+    }
+
+    @Test
+    @DisplayName("uploadFileToTemp should reject oversized images from the header and mislabelled files")
+    public void testUploadLimits() throws Exception {
+        FileService svc = buildService();
+        ReflectionTestUtils.setField(svc, "maxPixels", 100L);
+
+        MockMultipartFile big = new MockMultipartFile("file", "big.png", "image/png", pngBytes(20, 20));
+        Assertions.assertThrows(BusinessException.class, () -> svc.uploadFileToTemp(big, 43L));
+
+        MockMultipartFile fake = new MockMultipartFile("file", "fake.png", "image/png", "hello".getBytes());
+        Assertions.assertThrows(BusinessException.class, () -> svc.uploadFileToTemp(fake, 43L));
+
+        ReflectionTestUtils.setField(svc, "maxBytes", 10L);
+        MockMultipartFile heavy = new MockMultipartFile("file", "heavy.png", "image/png", pngBytes(1, 1));
+        Assertions.assertThrows(BusinessException.class, () -> svc.uploadFileToTemp(heavy, 43L));
     }
 
     @Test
@@ -77,4 +147,44 @@ public class FileServiceTest {
         Assertions.assertDoesNotThrow(() -> svc.deleteFileByUseId(99L));
         Assertions.assertFalse(f.exists());
     }
-} 
\ No newline at end of file
+
+    @Test
+    @DisplayName("uploadFileToTemp should reject when the rendition queue is full instead of rendering on the caller thread")
+    public void testUploadRejectedWhenBusy() throws Exception {
+        FileService svc = new FileService();
+        if (tempDir == null) {
+            tempDir = Files.createTempDirectory("fs-test");
+        }
+        ReflectionTestUtils.setField(svc, "blobStore", new LocalBlobStore(Map.of("temp", tempDir, "formal", tempDir)));
+        ReflectionTestUtils.setField(svc, "imageWorkers", 1);
+        ReflectionTestUtils.setField(svc, "imageQueue", 1);
+        svc.init();
+        // 占住唯一的工作线程和唯一的队列位置
+        ThreadPoolExecutor pool = (ThreadPoolExecutor) ReflectionTestUtils.getField(svc, "imagePool");
+        CountDownLatch release = new CountDownLatch(1);
+        CountDownLatch started = new CountDownLatch(1);
+        pool.execute(() -> {
+            started.countDown();
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        started.await();
+        pool.execute(() -> { });
+        try {
+            MockMultipartFile file = new MockMultipartFile("file", "busy.png", "image/png", pngBytes(300, 200));
+
+            BusinessException e = Assertions.assertThrows(BusinessException.class, () -> svc.uploadFileToTemp(file, 45L));
+
+            Assertions.assertEquals(ErrorCode.TOO_MANY_REQUESTS.getCode(), e.getCode());
+            // 调用线程没有渲染, 也没有留下暂存的原图
+            File userDir = new File(tempDir.toFile(), "45");
+            Assertions.assertTrue(!userDir.exists() || FileUtils.listFiles(userDir, null, true).isEmpty());
+        } finally {
+            release.countDown();
+            svc.shutdown();
+        }
+    }
+}
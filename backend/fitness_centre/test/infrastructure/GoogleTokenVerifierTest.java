@@ -0,0 +1,173 @@
+package infrastructure;
+
+import com.fitness_centre.service.infrastructure.GoogleTokenVerifier;
+import com.google.api.client.googleapis.auth.oauth2.GoogleIdToken;
+import com.google.api.client.json.jackson2.JacksonFactory;
+import com.google.api.client.json.webtoken.JsonWebSignature;
+import com.sun.net.httpserver.HttpServer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.security.KeyFactory;
+import java.security.PrivateKey;
+import java.security.spec.PKCS8EncodedKeySpec;
+import java.util.Base64;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Tests for GoogleTokenVerifier against a local stand-in for Google's certificate endpoint.
+ */
+public class GoogleTokenVerifierTest {
+
+    private static final String CLIENT_ID = "test-client-id";
+
+    private static final String KEY_ID = "test-kid";
+
+    //keytool 生成的自签名证书和对应私钥, 只用于测试
+    private static final String CERT_PEM = """
+            -----BEGIN CERTIFICATE-----
+            MIIC3TCCAcWgAwIBAgIIF7bayNr4M58wDQYJKoZIhvcNAQEMBQAwHDEaMBgGA1UE
+            AxMRdGVzdC1nb29nbGUtY2VydHMwIBcNMjYxMDE5MDkyODI4WhgPMjEyNjA5MjUw
+            OTI4MjhaMBwxGjAYBgNVBAMTEXRlc3QtZ29vZ2xlLWNlcnRzMIIBIjANBgkqhkiG
+            9w0BAQEFAAOCAQ8AMIIBCgKCAQEAnrVWLh+Ba+ekHp84/wX0AXhyN2fVCe3A0wjO
+            NrRqO+p5i/ko+376kyoR/qfUd9sAH6vgKeBWCgXWdrGn4UGA9kCJGsqmV03psgor
+            lDrJF7utV7gtOYqv9B0LalgQgv//L0bRK+9XH1jPkGSvk0+NjiiHCplg1UWtdmfb
+            Pqt7n+8v1wJEXnV3pBcpU66Wxf/uy2sUoxb2TaJQfyuWNrnfsheOlk05nNmqFHZv
+            L10kcqHgpM9JgoLxKpefkySbOkSPjWs+gkS1+wXU5tDLAg/bINBLdcyGLB1k6sGs
+            Llp5IzdnrHSGFWPdrO3s4A1rnJTv5tPPwEyLNf91hCWYirBuuwIDAQABoyEwHzAd
+            BgNVHQ4EFgQUDCUDgUaxiJJbpmNZ2fWw45dE6VMwDQYJKoZIhvcNAQEMBQADggEB
+            AFpVBEQ5Zkio1gCmbZiWfLSL5ULcrr/3MqkAZ4nCW/W+c4Hz6TeeiXjxkr0ROqwG
+            X4+WCw5Hu1lWkPFY71+YYyhNweurFLZ6Zx0JNF/hYp5tU9tF4HjDt/YqB5wLN1z8
+            di1tiVb9bkxL/iAQ/YhF3hAbKAikRWeS1GKI7EC5fwIHPJAMeFAxsz2G8AnyncpE
+            nW8QgCTAe6HRBSEyI8YwQk1mvGoPaxx/vaj+YGIwUlix7HkHbgdln1pgjddyTvht
+            /15jltyt0rcipCXzGjmoFFD+vAxXgFvm7qwDTna+MdP/Ji+615qyfR2EsNvtzPLV
+            rg5sFVHiXjBPMyctAR6AlIk=
+            -----END CERTIFICATE-----
+            """;
+
+    private static final String PRIVATE_KEY_BASE64 = """
+            MIIEvAIBADANBgkqhkiG9w0BAQEFAASCBKYwggSiAgEAAoIBAQCetVYuH4Fr56Qe
+            nzj/BfQBeHI3Z9UJ7cDTCM42tGo76nmL+Sj7fvqTKhH+p9R32wAfq+Ap4FYKBdZ2
+            safhQYD2QIkayqZXTemyCiuUOskXu61XuC05iq/0HQtqWBCC//8vRtEr71cfWM+Q
+            ZK+TT42OKIcKmWDVRa12Z9s+q3uf7y/XAkRedXekFylTrpbF/+7LaxSjFvZNolB/
+            K5Y2ud+yF46WTTmc2aoUdm8vXSRyoeCkz0mCgvEql5+TJJs6RI+Naz6CRLX7BdTm
+            0MsCD9sg0Et1zIYsHWTqwawuWnkjN2esdIYVY92s7ezgDWuclO/m08/ATIs1/3WE
+            JZiKsG67AgMBAAECggEAAYMn2ZOqR41zBmmtAN0dKKBtsjJ2mLwfwMMON/47HuwK
+            kXdj2RWqLJnThxIxV50KIMMiBTQijcDlfMcPmvllUbNmuw8gS6et6Ojo5mYzAVtj
+            +PiD0c8NAy39rFs/eQgYdepeVuVWdrGBdNZIyAYTir2/H647enzJ/N1bfPrkWC9K
+            9FsyIflAPamerWSbQslNiTzbvX4NAnpAoGD50wNQwPpAYkJ7QnDvBuCyglrGIsBI
+            IBHWrabIPluF0qEKEnUGb7rNijCTrcjKBNW9yGXOgNFWvQC9qWAreg/5EX3htfUx
+            AiEWy40D8L7jDFwc6DBDK2dPoZoxETpacBDHOf0PyQKBgQDAJZ5LbTjaOG0cxijy
+            G42NYI1anr/66SF62O3qSqCfys8jvR+hS0sPtQFrtZYoYhQu0cmdMCdxcJVEiXjE
+            TmUlQMttplHFdSkLNt0Ex7Q/RvxETJk/Hu2XRX57aSAyoCnTfbiyLeihL2r2ADOv
+            FamX+CiuB68gzkG9zmfcwhI34wKBgQDTcwUUIhDeonJdTaly50uCmt73KEtMV3uq
+            9ot5gXXIswPPr6Apdvx6EN0ufzH60xke7RFBIS6noyYmgTjFtLKSXicvwrDKQGSN
+            /e/U7aomj323Fby9rYmjU+mRUqxbe+tdHulcWlbBnB87OzLJUPHBa7RXQJQfa993
+            /9l9KQm1SQKBgAiBYclq80pNlx7f8q4M5C4u6PLq9gqQSUgb1CQ723JXUuX9GCpW
+            n+L5Gy/+YMA23zfXV3payFQwLJtVDoB6C+YjQR4Ab7wy3Hc/nXb5tBPc+4u2bE4r
+            +05n6BpkY+V5y4AuH3/bomGILM7o4WDNr60ncf2KH4lvN9/EBDr0aEQLAoGAQSAG
+            62mGmpub78LQstQsPKColaUyc+Pp8gEXeif2eAcy4E+uW7cLEimJhh2k7iUAcrb/
+            fnjS3szwHiHks3fxHAWluh8TxmdI0TbqHEHLCy9cv/wQ8ra1UrmwkZLOBStIlZjE
+            tS4Z1G3abKrR/JFStIkQtWLtfDQEUvhZKyRtmgkCgYA8VTi3rsxSKN2ZFJsqiN6W
+            gOL8tUyHeep9CtvwHkya2KZfFeDZVsN5LovsSwhzznW2bc+Kc2qQRkB1t79UmSmK
+            l8i3J9CJexbkEuofdyGVXNDL1Xhu8KBanYjqEpQ+44bhhrOTojyIdzj8bVvzJztj
+            MorLPGujgylzsAhzrgq29w==
+            """;
+
+    private HttpServer server;
+
+    private final AtomicInteger certFetches = new AtomicInteger();
+
+    private volatile long maxAgeSeconds = 3600;
+
+    private GoogleTokenVerifier verifier;
+
+    @BeforeEach
+    public void setUp() throws Exception {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/certs", exchange -> {
+            certFetches.incrementAndGet();
+            byte[] body = JacksonFactory.getDefaultInstance().toString(Map.of(KEY_ID, CERT_PEM))
+                    .getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().add("Content-Type", "application/json");
+            exchange.getResponseHeaders().add("Cache-Control", "public, max-age=" + maxAgeSeconds);
+            exchange.sendResponseHeaders(200, body.length);
+            try (OutputStream os = exchange.getResponseBody()) {
+                os.write(body);
+            }
+        });
+        server.start();
+
+        verifier = new GoogleTokenVerifier();
+        ReflectionTestUtils.setField(verifier, "clientId", CLIENT_ID);
+        ReflectionTestUtils.setField(verifier, "certsUrl",
+                "http://127.0.0.1:" + server.getAddress().getPort() + "/certs");
+        verifier.init();
+    }
+
+    @AfterEach
+    public void tearDown() {
+        server.stop(0);
+    }
+
+    private String signToken(String audience) throws Exception {
+        PrivateKey privateKey = KeyFactory.getInstance("RSA").generatePrivate(
+                new PKCS8EncodedKeySpec(Base64.getMimeDecoder().decode(PRIVATE_KEY_BASE64)));
+        JsonWebSignature.Header header = new JsonWebSignature.Header()
+                .setAlgorithm("RS256")
+                .setKeyId(KEY_ID);
+        long now = System.currentTimeMillis() / 1000;
+        GoogleIdToken.Payload payload = new GoogleIdToken.Payload()
+                .setIssuer("https://accounts.google.com")
+                .setAudience(audience)
+                .setIssuedAtTimeSeconds(now)
+                .setExpirationTimeSeconds(now + 3600)
+                .setEmail("member@example.com");
+        return JsonWebSignature.signUsingRsaSha256(privateKey, JacksonFactory.getDefaultInstance(), header, payload);
+    }
+
+    @Test
+    @DisplayName("verify should check tokens locally after a single certificate fetch")
+    public void testVerifyUsesCachedKeys() throws Exception {
+        String token = signToken(CLIENT_ID);
+
+        GoogleIdToken first = verifier.verify(token);
+        GoogleIdToken second = verifier.verify(token);
+
+        Assertions.assertEquals("member@example.com", first.getPayload().getEmail());
+        Assertions.assertNotNull(second);
+        Assertions.assertEquals(1, certFetches.get());
+    }
+
+    @Test
+    @DisplayName("verify should reject a token issued for another client or a malformed token")
+    public void testVerifyRejects() throws Exception {
+        Assertions.assertNull(verifier.verify(signToken("other-client")));
+        Assertions.assertNull(verifier.verify("not-a-token"));
+    }
+
+    @Test
+    @DisplayName("refreshIfExpiring should only fetch when the cached keys are close to expiry")
+    public void testBackgroundRefresh() {
+        verifier.refreshIfExpiring();
+        Assertions.assertEquals(1, certFetches.get());
+
+        //一小时有效, 不需要刷新
+        verifier.refreshIfExpiring();
+        Assertions.assertEquals(1, certFetches.get());
+
+        maxAgeSeconds = 60;
+        verifier.init();
+        verifier.refreshIfExpiring();
+        verifier.refreshIfExpiring();
+        Assertions.assertEquals(3, certFetches.get());
+    }
+}
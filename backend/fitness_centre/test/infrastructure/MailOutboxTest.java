@@ -0,0 +1,208 @@
+package infrastructure;
+
+import com.fitness_centre.constant.MailJobStatus;
+import com.fitness_centre.service.infrastructure.MailJob;
+import com.fitness_centre.service.infrastructure.MailOutbox;
+import com.fitness_centre.service.infrastructure.MailService;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+import org.springframework.mail.javamail.JavaMailSenderImpl;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.thymeleaf.context.IContext;
+import org.thymeleaf.spring6.SpringTemplateEngine;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BooleanSupplier;
+
+/**
+ * Tests for MailOutbox against a local SMTP stand-in.
+ */
+public class MailOutboxTest {
+
+    private StubSmtpServer smtp;
+
+    private MailOutbox outbox;
+
+    @BeforeEach
+    public void setUp() throws Exception {
+        smtp = new StubSmtpServer();
+
+        JavaMailSenderImpl sender = new JavaMailSenderImpl();
+        sender.setHost("127.0.0.1");
+        sender.setPort(smtp.getPort());
+
+        SpringTemplateEngine templateEngine = Mockito.mock(SpringTemplateEngine.class);
+        Mockito.when(templateEngine.process(Mockito.anyString(), Mockito.any(IContext.class))).thenReturn("<p>123456</p>");
+
+        MailService mailService = new MailService();
+        ReflectionTestUtils.setField(mailService, "mailSender", sender);
+        ReflectionTestUtils.setField(mailService, "templateEngine", templateEngine);
+        ReflectionTestUtils.setField(mailService, "fromEmail", "noreply@example.com");
+
+        outbox = new MailOutbox();
+        ReflectionTestUtils.setField(outbox, "mailService", mailService);
+        ReflectionTestUtils.setField(outbox, "workers", 1);
+        ReflectionTestUtils.setField(outbox, "maxAttempts", 3);
+        ReflectionTestUtils.setField(outbox, "initialBackoffMs", 20L);
+    }
+
+    @AfterEach
+    public void tearDown() throws Exception {
+        outbox.stop();
+        smtp.close();
+    }
+
+    private MailJob job(String to) {
+        return new MailJob(to, "Registration Verification Code", "email_verification", Map.of("code", "123456"));
+    }
+
+    private static void await(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (!condition.getAsBoolean() && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        Assertions.assertTrue(condition.getAsBoolean());
+    }
+
+    private String status(String jobId) {
+        return (String) outbox.getJobStatus(jobId).get("status");
+    }
+
+    @Test
+    @DisplayName("queued mails should be sent as one batch over a single SMTP connection")
+    public void testBatchOverOneConnection() throws Exception {
+        String[] ids = new String[5];
+        for (int i = 0; i < ids.length; i++) {
+            ids[i] = outbox.enqueue(job("user" + i + "@example.com"), null);
+        }
+        Assertions.assertEquals(MailJobStatus.PENDING.getStatus(), status(ids[0]));
+
+        outbox.start();
+
+        await(() -> smtp.delivered.get() == 5);
+        await(() -> status(ids[4]).equals(MailJobStatus.SENT.getStatus()));
+        Assertions.assertEquals(1, smtp.connections.get());
+    }
+
+    @Test
+    @DisplayName("a rejected mail should be retried after a backoff")
+    public void testRetry() throws Exception {
+        smtp.rejections.set(1);
+        outbox.start();
+
+        String id = outbox.enqueue(job("user@example.com"), null);
+
+        await(() -> status(id).equals(MailJobStatus.SENT.getStatus()));
+        Assertions.assertEquals(2, outbox.getJobStatus(id).get("attempts"));
+        Assertions.assertEquals(1, smtp.delivered.get());
+    }
+
+    @Test
+    @DisplayName("a mail should be marked failed and run its callback once attempts run out")
+    public void testGiveUp() throws Exception {
+        smtp.rejections.set(100);
+        outbox.start();
+        CountDownLatch released = new CountDownLatch(1);
+
+        String id = outbox.enqueue(job("user@example.com"), released::countDown);
+
+        Assertions.assertTrue(released.await(5, TimeUnit.SECONDS));
+        Assertions.assertEquals(MailJobStatus.FAILED.getStatus(), status(id));
+        Assertions.assertEquals(3, outbox.getJobStatus(id).get("attempts"));
+        Assertions.assertEquals(0, smtp.delivered.get());
+    }
+
+    /**
+     * Just enough SMTP to accept messages, rejecting the first {@code rejections} DATA commands with 451.
+     */
+    private static class StubSmtpServer implements AutoCloseable {
+
+        private final ServerSocket serverSocket = new ServerSocket(0, 50, InetAddress.getLoopbackAddress());
+
+        private final AtomicInteger connections = new AtomicInteger();
+
+        private final AtomicInteger delivered = new AtomicInteger();
+
+        private final AtomicInteger rejections = new AtomicInteger();
+
+        StubSmtpServer() throws IOException {
+            Thread acceptor = new Thread(() -> {
+                while (!serverSocket.isClosed()) {
+                    try {
+                        Socket socket = serverSocket.accept();
+                        connections.incrementAndGet();
+                        Thread handler = new Thread(() -> handle(socket));
+                        handler.setDaemon(true);
+                        handler.start();
+                    } catch (IOException e) {
+                        return;
+                    }
+                }
+            });
+            acceptor.setDaemon(true);
+            acceptor.start();
+        }
+
+        int getPort() {
+            return serverSocket.getLocalPort();
+        }
+
+        private void handle(Socket socket) {
+            try (socket;
+                 BufferedReader in = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.US_ASCII));
+                 OutputStream out = socket.getOutputStream()) {
+                reply(out, "220 stub ESMTP");
+                String line;
+                while ((line = in.readLine()) != null) {
+                    String command = line.length() >= 4 ? line.substring(0, 4).toUpperCase() : line.toUpperCase();
+                    switch (command) {
+                        case "DATA" -> {
+                            reply(out, "354 end with .");
+                            while (!".".equals(in.readLine())) {
+                                //丢弃正文
+                            }
+                            if (rejections.getAndDecrement() > 0) {
+                                reply(out, "451 try again later");
+                            } else {
+                                delivered.incrementAndGet();
+                                reply(out, "250 queued");
+                            }
+                        }
+                        case "QUIT" -> {
+                            reply(out, "221 bye");
+                            return;
+                        }
+                        default -> reply(out, "250 OK");
+                    }
+                }
+            } catch (IOException ignored) {
+                //连接被客户端关闭
+            }
+        }
+
+        private static void reply(OutputStream out, String line) throws IOException {
+            out.write((line + "\r\n").getBytes(StandardCharsets.US_ASCII));
+            out.flush();
+        }
+
+        @Override
+        public void close() throws IOException {
+            serverSocket.close();
+        }
+    }
+}
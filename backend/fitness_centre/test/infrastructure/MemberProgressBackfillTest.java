@@ -0,0 +1,53 @@
+package infrastructure;
+
+import com.fitness_centre.mapper.MemberProgressMapper;
+import com.fitness_centre.service.infrastructure.MemberProgressBackfill;
+import com.fitness_centre.utils.RedisCache;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.Mockito;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Tests for MemberProgressBackfill: the startup marker and the full rebuild.
+ */
+@ExtendWith(MockitoExtension.class)
+public class MemberProgressBackfillTest {
+
+    @Mock private MemberProgressMapper memberProgressMapper;
+    @Mock private RedisCache redisCache;
+
+    @InjectMocks private MemberProgressBackfill backfill;
+
+    @Test
+    @DisplayName("startup should rebuild even when counters already exist, unless a recent rebuild left its marker")
+    public void testStartup() {
+        Mockito.when(redisCache.getCacheObject(MemberProgressBackfill.REBUILT_KEY)).thenReturn(null, 1);
+        Mockito.when(memberProgressMapper.rebuildAll()).thenReturn(12);
+
+        backfill.rebuildIfStale();
+        backfill.rebuildIfStale();
+
+        Mockito.verify(memberProgressMapper, Mockito.times(1)).rebuildAll();
+        Mockito.verify(redisCache).setCacheObject(MemberProgressBackfill.REBUILT_KEY, 1, 1, TimeUnit.DAYS);
+    }
+
+    @Test
+    @DisplayName("rebuild should drop counters without history and not mark a failed run")
+    public void testRebuild() {
+        Mockito.when(memberProgressMapper.deleteUncounted()).thenReturn(2);
+        Mockito.when(memberProgressMapper.rebuildAll()).thenReturn(12).thenThrow(new IllegalStateException("down"));
+
+        Assertions.assertEquals(12, backfill.rebuild());
+        Mockito.verify(memberProgressMapper, Mockito.times(1)).deleteUncounted();
+
+        Assertions.assertEquals(0, backfill.rebuild());
+        Mockito.verify(redisCache, Mockito.times(1)).setCacheObject(Mockito.anyString(), Mockito.any(), Mockito.anyInt(), Mockito.any());
+    }
+}
@@ -0,0 +1,112 @@
+package infrastructure;
+
+import com.fitness_centre.domain.CoachInfo;
+import com.fitness_centre.mapper.CoachMapper;
+import com.fitness_centre.service.infrastructure.CoachCardStore;
+import com.fitness_centre.service.infrastructure.LocalBlobStore;
+import com.fitness_centre.service.infrastructure.PhotoCleanupJob;
+import com.fitness_centre.service.infrastructure.PhotoCleanupReport;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.Mockito;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Tests for PhotoCleanupJob promotion and orphan deletion.
+ */
+@ExtendWith(MockitoExtension.class)
+public class PhotoCleanupJobTest {
+
+    private static final String HASH_A = "aaaaaaaaaaaaaaaa";
+    private static final String HASH_B = "bbbbbbbbbbbbbbbb";
+    private static final String HASH_C = "cccccccccccccccc";
+
+    @Mock
+    private CoachMapper coachMapper;
+
+    @Mock
+    private CoachCardStore coachCardStore;
+
+    private Path temp;
+
+    private Path formal;
+
+    private PhotoCleanupJob job;
+
+    @BeforeEach
+    public void setUp() throws Exception {
+        Path root = Files.createTempDirectory("cleanup-test");
+        temp = Files.createDirectories(root.resolve("temp"));
+        formal = Files.createDirectories(root.resolve("formal"));
+
+        job = new PhotoCleanupJob();
+        ReflectionTestUtils.setField(job, "blobStore", new LocalBlobStore(Map.of("temp", temp, "formal", formal)));
+        ReflectionTestUtils.setField(job, "chunkSize", 2);
+        ReflectionTestUtils.setField(job, "coachMapper", coachMapper);
+        ReflectionTestUtils.setField(job, "coachCardStore", coachCardStore);
+    }
+
+    private Path write(Path file, int bytes, boolean old) throws Exception {
+        Files.createDirectories(file.getParent());
+        Files.write(file, new byte[bytes]);
+        if (old) {
+            FileTime longAgo = FileTime.fromMillis(System.currentTimeMillis() - 86_400_000L);
+            Files.setLastModifiedTime(file, longAgo);
+            Files.setLastModifiedTime(file.getParent(), longAgo);
+        }
+        return file;
+    }
+
+    private static CoachInfo coach(long id, String photo) {
+        return new CoachInfo(id, photo, null, null);
+    }
+
+    @Test
+    @DisplayName("run should promote referenced temp photos and delete old orphans only")
+    public void testRun() throws Exception {
+        // coach 1: settled temp upload, to be promoted
+        write(temp.resolve("1/" + HASH_A + "/full.png"), 10, true);
+        // coach 2: references a formal set; an older set of theirs is orphaned
+        write(formal.resolve("2/" + HASH_B + "/full.png"), 10, true);
+        write(formal.resolve("2/" + HASH_C + "/full.png"), 100, true);
+        // coach 3 (deleted): legacy file, nothing references it
+        write(formal.resolve("3.png"), 1000, true);
+        // just uploaded, not referenced yet
+        write(temp.resolve("4/" + HASH_C + "/full.png"), 10, false);
+        write(formal.resolve("default.jpg"), 10, true);
+
+        Mockito.when(coachMapper.selectPhotosAfter(0L, 2)).thenReturn(List.of(
+                coach(1L, "/temp/1/" + HASH_A + "/full.png"),
+                coach(2L, "/formal/2/" + HASH_B + "/full.png")));
+        Mockito.when(coachMapper.selectPhotosAfter(2L, 2)).thenReturn(List.of(coach(5L, "/formal/default.jpg")));
+        Mockito.when(coachMapper.updatePhotoIfUnchanged(1L, "/temp/1/" + HASH_A + "/full.png",
+                "/formal/1/" + HASH_A + "/full.png")).thenReturn(1);
+
+        PhotoCleanupReport report = job.run();
+
+        Assertions.assertEquals(3, report.getScannedCoaches());
+        Assertions.assertEquals(1, report.getPromoted());
+        Assertions.assertEquals(2, report.getDeleted());
+        Assertions.assertEquals(1100, report.getReclaimedBytes());
+        Assertions.assertEquals(0, report.getFailed());
+
+        Assertions.assertTrue(Files.exists(formal.resolve("1/" + HASH_A + "/full.png")));
+        Assertions.assertFalse(Files.exists(temp.resolve("1/" + HASH_A)));
+        Assertions.assertTrue(Files.exists(formal.resolve("2/" + HASH_B + "/full.png")));
+        Assertions.assertFalse(Files.exists(formal.resolve("2/" + HASH_C)));
+        Assertions.assertFalse(Files.exists(formal.resolve("3.png")));
+        Assertions.assertTrue(Files.exists(temp.resolve("4/" + HASH_C + "/full.png")));
+        Assertions.assertTrue(Files.exists(formal.resolve("default.jpg")));
+    }
+}
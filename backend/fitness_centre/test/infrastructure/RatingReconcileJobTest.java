@@ -0,0 +1,50 @@
+package infrastructure;
+
+import com.fitness_centre.mapper.CoachMapper;
+import com.fitness_centre.service.infrastructure.CoachCardStore;
+import com.fitness_centre.service.infrastructure.CoachSearchIndex;
+import com.fitness_centre.service.infrastructure.RatingReconcileJob;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.Mockito;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.util.List;
+
+/**
+ * Tests for RatingReconcileJob.
+ */
+@ExtendWith(MockitoExtension.class)
+public class RatingReconcileJobTest {
+
+    @Mock private CoachMapper coachMapper;
+    @Mock private CoachSearchIndex coachSearchIndex;
+    @Mock private CoachCardStore coachCardStore;
+
+    @InjectMocks private RatingReconcileJob job;
+
+    @Test
+    @DisplayName("run should recompute only drifted coaches and keep going after a failure")
+    public void testRun() {
+        Mockito.when(coachMapper.selectRatingDriftIds()).thenReturn(List.of(1L, 2L, 3L));
+        Mockito.when(coachMapper.recomputeRating(Mockito.anyLong())).thenAnswer(invocation -> {
+            if (invocation.<Long>getArgument(0) == 2L) {
+                throw new RuntimeException("lock wait timeout");
+            }
+            return 1;
+        });
+        Mockito.when(coachMapper.selectRating(1L)).thenReturn(4.0);
+        Mockito.when(coachMapper.selectRating(3L)).thenReturn(null);
+
+        Assertions.assertEquals(2, job.run());
+
+        Mockito.verify(coachSearchIndex).updateRating(1L, 4.0);
+        Mockito.verify(coachSearchIndex).updateRating(3L, null);
+        Mockito.verify(coachCardStore, Mockito.never()).refresh(2L);
+        Mockito.verify(coachCardStore).refresh(3L);
+    }
+}
@@ -0,0 +1,84 @@
+package infrastructure;
+
+import com.fitness_centre.domain.Location;
+import com.fitness_centre.service.biz.interfaces.LocationService;
+import com.fitness_centre.service.biz.interfaces.TagService;
+import com.fitness_centre.service.infrastructure.ReferenceData;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.Mockito;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Tests for ReferenceData snapshot versions, refresh and conditional responses.
+ */
+@ExtendWith(MockitoExtension.class)
+public class ReferenceDataTest {
+
+    @Mock private TagService tagService;
+    @Mock private LocationService locationService;
+
+    @InjectMocks private ReferenceData referenceData;
+
+    private static Location location(long id, String name) {
+        return new Location(id, name, -0.1, 51.5, "EC1");
+    }
+
+    @Test
+    @DisplayName("the version should depend only on the content, not on the order it was read in")
+    public void testVersion() {
+        ReferenceData.Snapshot a = new ReferenceData.Snapshot(Map.of(1L, "Yoga", 2L, "Boxing"),
+                List.of(location(1L, "Central"), location(2L, "East")));
+        ReferenceData.Snapshot b = new ReferenceData.Snapshot(Map.of(2L, "Boxing", 1L, "Yoga"),
+                List.of(location(2L, "East"), location(1L, "Central")));
+        ReferenceData.Snapshot renamed = new ReferenceData.Snapshot(Map.of(1L, "Yoga", 2L, "Boxing"),
+                List.of(location(1L, "Central"), location(2L, "East Side")));
+
+        Assertions.assertEquals(a.getVersion(), b.getVersion());
+        Assertions.assertNotEquals(a.getVersion(), renamed.getVersion());
+        Assertions.assertEquals(List.of(1L, 2L), List.copyOf(b.getLocationNames().keySet()));
+    }
+
+    @Test
+    @DisplayName("refresh should swap in changed data and keep serving the old snapshot when loading fails")
+    public void testRefresh() {
+        Mockito.when(tagService.getAllTags()).thenReturn(Map.of(1L, "Yoga"));
+        Mockito.when(locationService.mapLocation()).thenReturn(List.of(location(1L, "Central")));
+        ReferenceData.Snapshot first = referenceData.current();
+        referenceData.refresh();
+        // 内容没变, 不换快照
+        Assertions.assertSame(first, referenceData.current());
+
+        Mockito.when(tagService.getAllTags()).thenReturn(Map.of(1L, "Yoga", 2L, "Boxing"));
+        referenceData.refresh();
+        ReferenceData.Snapshot second = referenceData.current();
+        Assertions.assertEquals("Boxing", second.getTags().get(2L));
+
+        Mockito.when(tagService.getAllTags()).thenThrow(new IllegalStateException("down"));
+        referenceData.refresh();
+        Assertions.assertSame(second, referenceData.current());
+    }
+
+    @Test
+    @DisplayName("respond should answer 304 for a matching If-None-Match and the data otherwise")
+    public void testRespond() {
+        ReferenceData.Snapshot snapshot = new ReferenceData.Snapshot(Map.of(1L, "Yoga"), List.of());
+
+        ResponseEntity<?> notModified = ReferenceData.respond("W/" + snapshot.getVersion(), snapshot, ReferenceData.Snapshot::getTags);
+        Assertions.assertEquals(HttpStatus.NOT_MODIFIED, notModified.getStatusCode());
+        Assertions.assertNull(notModified.getBody());
+
+        ResponseEntity<?> fresh = ReferenceData.respond("\"stale\"", snapshot, ReferenceData.Snapshot::getTags);
+        Assertions.assertEquals(HttpStatus.OK, fresh.getStatusCode());
+        Assertions.assertEquals(snapshot.getVersion(), fresh.getHeaders().getETag());
+    }
+}
@@ -0,0 +1,90 @@
+package infrastructure;
+
+import com.alibaba.fastjson.JSON;
+import com.fitness_centre.dto.auth.UserRegisterRequest;
+import com.fitness_centre.exception.AuthException;
+import com.fitness_centre.exception.BusinessException;
+import com.fitness_centre.service.infrastructure.RegistrationStore;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.Mockito;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.Duration;
+import java.util.List;
+
+/**
+ * Tests for RegistrationStore script result handling.
+ */
+@ExtendWith(MockitoExtension.class)
+public class RegistrationStoreTest {
+
+    @Mock
+    private StringRedisTemplate stringRedisTemplate;
+
+    private RegistrationStore store;
+
+    @BeforeEach
+    public void setUp() {
+        store = new RegistrationStore();
+        ReflectionTestUtils.setField(store, "stringRedisTemplate", stringRedisTemplate);
+    }
+
+    @SuppressWarnings("unchecked")
+    private void scriptReturns(Object result) {
+        Mockito.when(stringRedisTemplate.execute(Mockito.any(RedisScript.class), Mockito.anyList(), Mockito.any(Object[].class)))
+                .thenReturn(result);
+    }
+
+    private void issue(UserRegisterRequest request) {
+        store.issueCode("a@b.com", request, "123456",
+                Duration.ofMinutes(5), Duration.ofMinutes(1), Duration.ofMinutes(45));
+    }
+
+    @Test
+    @DisplayName("issueCode should throw TOO_MANY_REQUESTS while cooling down")
+    public void testIssueCoolingDown() {
+        scriptReturns(0L);
+        Assertions.assertThrows(BusinessException.class, () -> issue(new UserRegisterRequest()));
+    }
+
+    @Test
+    @DisplayName("issueCode should throw when resending without a pending registration")
+    public void testIssueWithoutRegistration() {
+        scriptReturns(-1L);
+        Assertions.assertThrows(AuthException.class, () -> issue(null));
+    }
+
+    @Test
+    @DisplayName("verifyAndConsume should map script status codes to exceptions")
+    public void testVerifyFailures() {
+        scriptReturns(List.of(-1L));
+        Assertions.assertThrows(AuthException.class, () -> store.verifyAndConsume("a@b.com", "1"));
+
+        Mockito.reset(stringRedisTemplate);
+        scriptReturns(List.of(-3L));
+        AuthException ex = Assertions.assertThrows(AuthException.class, () -> store.verifyAndConsume("a@b.com", "1"));
+        Assertions.assertEquals("Verification code error", ex.getMessage());
+    }
+
+    @Test
+    @DisplayName("verifyAndConsume should return the stored registration info")
+    public void testVerifySuccess() {
+        UserRegisterRequest request = new UserRegisterRequest();
+        request.setEmail("a@b.com");
+        request.setUserName("Alice");
+        scriptReturns(List.of(1L, JSON.toJSONString(request)));
+
+        UserRegisterRequest stored = store.verifyAndConsume("a@b.com", "123456");
+
+        Assertions.assertEquals("Alice", stored.getUserName());
+        Assertions.assertEquals("a@b.com", stored.getEmail());
+    }
+}
@@ -0,0 +1,265 @@
+package infrastructure;
+
+import com.fitness_centre.service.infrastructure.BlobInfo;
+import com.fitness_centre.service.infrastructure.S3BlobStore;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.URLDecoder;
+import java.net.http.HttpClient;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Tests for S3BlobStore against an in-memory S3 stand-in.
+ */
+public class S3BlobStoreTest {
+
+    private static final int PART_SIZE = 16;
+
+    private HttpServer server;
+
+    //桶内对象, key -> 内容
+    private final Map<String, byte[]> objects = new ConcurrentHashMap<>();
+
+    private final Map<String, TreeMap<Integer, byte[]>> uploads = new ConcurrentHashMap<>();
+
+    private final List<String> requests = new CopyOnWriteArrayList<>();
+
+    private final AtomicInteger uploadIds = new AtomicInteger();
+
+    private volatile int failPartNumber = -1;
+
+    //大于 0 时, 服务端在响应前先停这么久
+    private volatile long stallMs = 0;
+
+    private S3BlobStore store;
+
+    @BeforeEach
+    public void setUp() throws Exception {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/", this::handle);
+        server.start();
+        store = new S3BlobStore(URI.create("http://127.0.0.1:" + server.getAddress().getPort()), "photos",
+                "us-east-1", "minio", "minio-secret", PART_SIZE, HttpClient.newHttpClient(), Duration.ofSeconds(5));
+    }
+
+    @AfterEach
+    public void tearDown() {
+        server.stop(0);
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        String method = exchange.getRequestMethod();
+        String path = exchange.getRequestURI().getRawPath();
+        Map<String, String> query = new HashMap<>();
+        String rawQuery = exchange.getRequestURI().getRawQuery();
+        if (rawQuery != null) {
+            for (String pair : rawQuery.split("&")) {
+                int eq = pair.indexOf('=');
+                query.put(URLDecoder.decode(pair.substring(0, eq), StandardCharsets.UTF_8),
+                        URLDecoder.decode(pair.substring(eq + 1), StandardCharsets.UTF_8));
+            }
+        }
+        String authorization = exchange.getRequestHeaders().getFirst("Authorization");
+        if (authorization == null || !authorization.startsWith("AWS4-HMAC-SHA256 Credential=minio/")
+                || exchange.getRequestHeaders().getFirst("x-amz-date") == null) {
+            respond(exchange, 403, new byte[0]);
+            return;
+        }
+        requests.add(method + " " + path + (rawQuery == null ? "" : "?" + rawQuery));
+        if (stallMs > 0) {
+            try {
+                Thread.sleep(stallMs);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        byte[] body = exchange.getRequestBody().readAllBytes();
+        String key = path.length() > "/photos/".length() ? URLDecoder.decode(path.substring("/photos/".length()), StandardCharsets.UTF_8) : null;
+
+        if (method.equals("GET") && "2".equals(query.get("list-type"))) {
+            //每页只返回一个对象, 覆盖分页
+            List<String> keys = new ArrayList<>(new TreeMap<>(objects).keySet());
+            keys.removeIf(k -> !k.startsWith(query.get("prefix")));
+            int from = query.containsKey("continuation-token") ? Integer.parseInt(query.get("continuation-token")) : 0;
+            StringBuilder xml = new StringBuilder("<ListBucketResult>");
+            if (from < keys.size()) {
+                String k = keys.get(from);
+                xml.append("<Contents><Key>").append(k).append("</Key><LastModified>").append(Instant.now())
+                        .append("</LastModified><ETag>\"e\"</ETag><Size>").append(objects.get(k).length).append("</Size></Contents>");
+            }
+            boolean truncated = from + 1 < keys.size();
+            xml.append("<IsTruncated>").append(truncated).append("</IsTruncated>");
+            if (truncated) {
+                xml.append("<NextContinuationToken>").append(from + 1).append("</NextContinuationToken>");
+            }
+            respond(exchange, 200, xml.append("</ListBucketResult>").toString().getBytes(StandardCharsets.UTF_8));
+        } else if (method.equals("POST") && query.containsKey("uploads")) {
+            String uploadId = "u" + uploadIds.incrementAndGet();
+            uploads.put(uploadId, new TreeMap<>());
+            respond(exchange, 200, ("<InitiateMultipartUploadResult><UploadId>" + uploadId + "</UploadId></InitiateMultipartUploadResult>").getBytes(StandardCharsets.UTF_8));
+        } else if (method.equals("PUT") && query.containsKey("partNumber")) {
+            int partNumber = Integer.parseInt(query.get("partNumber"));
+            if (partNumber == failPartNumber) {
+                respond(exchange, 500, new byte[0]);
+                return;
+            }
+            uploads.get(query.get("uploadId")).put(partNumber, body);
+            exchange.getResponseHeaders().add("ETag", "\"p" + partNumber + "\"");
+            respond(exchange, 200, new byte[0]);
+        } else if (method.equals("POST") && query.containsKey("uploadId")) {
+            TreeMap<Integer, byte[]> parts = uploads.remove(query.get("uploadId"));
+            ByteArrayOutputStream joined = new ByteArrayOutputStream();
+            parts.values().forEach(joined::writeBytes);
+            objects.put(key, joined.toByteArray());
+            respond(exchange, 200, "<CompleteMultipartUploadResult/>".getBytes(StandardCharsets.UTF_8));
+        } else if (method.equals("DELETE") && query.containsKey("uploadId")) {
+            uploads.remove(query.get("uploadId"));
+            respond(exchange, 204, null);
+        } else if (method.equals("PUT")) {
+            String copySource = exchange.getRequestHeaders().getFirst("x-amz-copy-source");
+            if (copySource != null) {
+                objects.put(key, objects.get(URLDecoder.decode(copySource.substring("/photos/".length()), StandardCharsets.UTF_8)));
+                respond(exchange, 200, "<CopyObjectResult/>".getBytes(StandardCharsets.UTF_8));
+            } else {
+                objects.put(key, body);
+                respond(exchange, 200, new byte[0]);
+            }
+        } else if (method.equals("HEAD") || method.equals("GET")) {
+            byte[] content = objects.get(key);
+            if (content == null) {
+                respond(exchange, 404, null);
+                return;
+            }
+            exchange.getResponseHeaders().add("ETag", "\"etag-" + content.length + "\"");
+            exchange.getResponseHeaders().add("Last-Modified", "Mon, 19 Oct 2026 10:00:00 GMT");
+            if (method.equals("HEAD")) {
+                exchange.getResponseHeaders().add("Content-Length", String.valueOf(content.length));
+                exchange.sendResponseHeaders(200, -1);
+                exchange.close();
+                return;
+            }
+            String range = exchange.getRequestHeaders().getFirst("Range");
+            String[] bounds = range.substring("bytes=".length()).split("-");
+            int start = Integer.parseInt(bounds[0]);
+            int end = Math.min(content.length - 1, Integer.parseInt(bounds[1]));
+            byte[] slice = new byte[end - start + 1];
+            System.arraycopy(content, start, slice, 0, slice.length);
+            respond(exchange, 206, slice);
+        } else if (method.equals("DELETE")) {
+            objects.remove(key);
+            respond(exchange, 204, null);
+        } else {
+            respond(exchange, 400, new byte[0]);
+        }
+    }
+
+    private static void respond(HttpExchange exchange, int status, byte[] body) throws IOException {
+        exchange.sendResponseHeaders(status, body == null || body.length == 0 ? -1 : body.length);
+        if (body != null && body.length > 0) {
+            exchange.getResponseBody().write(body);
+        }
+        exchange.close();
+    }
+
+    private static byte[] bytes(int length) {
+        byte[] content = new byte[length];
+        for (int i = 0; i < length; i++) {
+            content[i] = (byte) ('a' + i % 26);
+        }
+        return content;
+    }
+
+    @Test
+    @DisplayName("small blobs should be stored with a single signed PUT and read back by range")
+    public void testPutStatAndRange() throws Exception {
+        store.put("temp/42/0123456789abcdef/full.jpg", new ByteArrayInputStream(bytes(10)), "image/jpeg");
+
+        Assertions.assertEquals(List.of("PUT /photos/temp/42/0123456789abcdef/full.jpg"), requests);
+        BlobInfo info = store.stat("temp/42/0123456789abcdef/full.jpg");
+        Assertions.assertEquals(10, info.getSize());
+        Assertions.assertEquals("\"etag-10\"", info.getEtag());
+        Assertions.assertNull(store.stat("temp/42/missing.jpg"));
+        try (InputStream in = store.open("temp/42/0123456789abcdef/full.jpg", 2, 4)) {
+            Assertions.assertEquals("cde", new String(in.readAllBytes(), StandardCharsets.US_ASCII));
+        }
+    }
+
+    @Test
+    @DisplayName("large blobs should be uploaded in parts and assembled in order")
+    public void testMultipartUpload() throws Exception {
+        byte[] content = bytes(PART_SIZE * 2 + 5);
+
+        store.put("formal/7/big.png", new ByteArrayInputStream(content), "image/png");
+
+        Assertions.assertArrayEquals(content, objects.get("formal/7/big.png"));
+        Assertions.assertEquals(5, requests.size());
+        Assertions.assertTrue(requests.get(0).startsWith("POST /photos/formal/7/big.png?uploads"));
+        Assertions.assertTrue(requests.get(4).startsWith("POST /photos/formal/7/big.png?uploadId="));
+    }
+
+    @Test
+    @DisplayName("a failed part should abort the multipart upload")
+    public void testMultipartAbort() {
+        failPartNumber = 2;
+
+        Assertions.assertThrows(IOException.class,
+                () -> store.put("formal/7/big.png", new ByteArrayInputStream(bytes(PART_SIZE * 3)), "image/png"));
+
+        Assertions.assertTrue(uploads.isEmpty());
+        Assertions.assertFalse(objects.containsKey("formal/7/big.png"));
+        Assertions.assertTrue(requests.get(requests.size() - 1).startsWith("DELETE /photos/formal/7/big.png?uploadId="));
+    }
+
+    @Test
+    @DisplayName("list should follow continuation tokens and move should copy then delete")
+    public void testListAndMove() throws Exception {
+        objects.put("temp/1/a/full.jpg", bytes(3));
+        objects.put("temp/1/a/thumb.jpg", bytes(2));
+        objects.put("temp/2/b/full.jpg", bytes(1));
+
+        List<String> keys = new ArrayList<>();
+        store.list("temp/1/", blob -> keys.add(blob.getKey() + ":" + blob.getSize()));
+        Assertions.assertEquals(List.of("temp/1/a/full.jpg:3", "temp/1/a/thumb.jpg:2"), keys);
+
+        store.move("temp/1/a/full.jpg", "formal/1/a/full.jpg");
+        Assertions.assertArrayEquals(bytes(3), objects.get("formal/1/a/full.jpg"));
+        Assertions.assertFalse(objects.containsKey("temp/1/a/full.jpg"));
+
+        store.delete("temp/2/b/full.jpg");
+        Assertions.assertFalse(objects.containsKey("temp/2/b/full.jpg"));
+    }
+
+    @Test
+    @DisplayName("a stalled S3 should fail the request after the request timeout instead of blocking")
+    public void testRequestTimeout() {
+        store = new S3BlobStore(URI.create("http://127.0.0.1:" + server.getAddress().getPort()), "photos",
+                "us-east-1", "minio", "minio-secret", PART_SIZE, HttpClient.newHttpClient(), Duration.ofMillis(200));
+        stallMs = 2000;
+
+        long started = System.currentTimeMillis();
+        Assertions.assertThrows(IOException.class, () -> store.stat("temp/42/0123456789abcdef/full.jpg"));
+        Assertions.assertTrue(System.currentTimeMillis() - started < 1500);
+    }
+}
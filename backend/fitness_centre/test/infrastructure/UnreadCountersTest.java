@@ -0,0 +1,142 @@
+package infrastructure;
+
+import com.fitness_centre.constant.UserRole;
+import com.fitness_centre.domain.SessionBooking;
+import com.fitness_centre.mapper.SessionBookingMapper;
+import com.fitness_centre.mapper.SubscriptionMapper;
+import com.fitness_centre.mapper.TrainingHistoryMapper;
+import com.fitness_centre.service.infrastructure.UnreadCounters;
+import com.fitness_centre.utils.RedisCache;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.Mockito;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.redis.core.HashOperations;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.ZSetOperations;
+import org.springframework.data.redis.core.script.RedisScript;
+
+import java.time.LocalDateTime;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+
+/**
+ * Tests for UnreadCounters: reads from the hash, loading on a miss, the Redis fallback and reconcile.
+ */
+@ExtendWith(MockitoExtension.class)
+public class UnreadCountersTest {
+
+    @Mock private StringRedisTemplate stringRedisTemplate;
+    @Mock private RedisCache redisCache;
+    @Mock private SubscriptionMapper subscriptionMapper;
+    @Mock private SessionBookingMapper sessionBookingMapper;
+    @Mock private TrainingHistoryMapper trainingHistoryMapper;
+    @Mock private HashOperations<String, Object, Object> hashOperations;
+    @Mock private ZSetOperations<String, String> zSetOperations;
+
+    @InjectMocks private UnreadCounters counters;
+
+    @BeforeEach
+    public void setUp() {
+        Mockito.lenient().when(stringRedisTemplate.opsForHash()).thenReturn(hashOperations);
+        Mockito.lenient().when(stringRedisTemplate.opsForZSet()).thenReturn(zSetOperations);
+    }
+
+    private static SessionBooking session(long id, LocalDateTime endTime) {
+        SessionBooking session = new SessionBooking();
+        session.setId(id);
+        session.setEndTime(endTime);
+        return session;
+    }
+
+    @Test
+    @DisplayName("counts should read a loaded hash and count only the unrecorded sessions that have ended")
+    public void testCountsFromRedis() {
+        Mockito.when(hashOperations.entries("unread:7")).thenReturn(Map.of("role", "coach", "subscription", "2", "session", "-1"));
+        Mockito.when(zSetOperations.count(Mockito.eq("unrecorded:7"), Mockito.eq(Double.NEGATIVE_INFINITY), Mockito.anyDouble())).thenReturn(3L);
+
+        Map<String, Long> counts = counters.counts(7L, UserRole.COACH);
+
+        Assertions.assertEquals(Map.of("subscription", 2L, "session", 0L, "unrecorded", 3L), counts);
+        Mockito.verifyNoInteractions(subscriptionMapper, sessionBookingMapper);
+    }
+
+    @Test
+    @DisplayName("counts should count from the database and load Redis when the hash is missing")
+    @SuppressWarnings("unchecked")
+    public void testCountsLoad() {
+        LocalDateTime ended = LocalDateTime.now().minusHours(1);
+        Mockito.when(hashOperations.entries("unread:7")).thenReturn(Map.of());
+        Mockito.when(subscriptionMapper.selectCount(Mockito.any())).thenReturn(1L);
+        Mockito.when(sessionBookingMapper.selectCount(Mockito.any())).thenReturn(4L);
+        Mockito.when(sessionBookingMapper.selectUnrecorded(7L)).thenReturn(
+                List.of(session(100L, ended), session(101L, LocalDateTime.now().plusDays(1))));
+
+        Map<String, Long> counts = counters.counts(7L, UserRole.COACH);
+
+        Assertions.assertEquals(Map.of("subscription", 1L, "session", 4L, "unrecorded", 1L), counts);
+        ArgumentCaptor<Object[]> args = ArgumentCaptor.forClass(Object[].class);
+        Mockito.verify(stringRedisTemplate).execute(Mockito.any(RedisScript.class),
+                Mockito.eq(List.of("unread:7", "unrecorded:7")), args.capture());
+        List<Object> loaded = Arrays.asList(args.getValue());
+        // ttl, 角色, 两个计数字段, 然后是两节课
+        Assertions.assertEquals(List.of("coach", "2", "subscription", "1", "session", "4"), loaded.subList(1, 7));
+        Assertions.assertEquals(List.of("100", "101"), List.of(loaded.get(8), loaded.get(10)));
+    }
+
+    @Test
+    @DisplayName("counts should fall back to the database when Redis is down")
+    public void testCountsRedisDown() {
+        Mockito.when(hashOperations.entries("unread:3")).thenThrow(new IllegalStateException("down"));
+        Mockito.when(subscriptionMapper.selectCount(Mockito.any())).thenReturn(0L);
+        Mockito.when(sessionBookingMapper.selectCount(Mockito.any())).thenReturn(2L);
+        Mockito.when(trainingHistoryMapper.selectCount(Mockito.any())).thenReturn(5L);
+
+        Map<String, Long> counts = counters.counts(3L, UserRole.MEMBER);
+
+        Assertions.assertEquals(Map.of("subscription", 0L, "session", 2L, "history", 5L), counts);
+    }
+
+    @Test
+    @DisplayName("add should run the script on the user's hash and swallow Redis failures")
+    @SuppressWarnings("unchecked")
+    public void testAdd() {
+        counters.add(3L, UnreadCounters.HISTORY, -1);
+        Mockito.verify(stringRedisTemplate).execute(Mockito.any(RedisScript.class), Mockito.eq(List.of("unread:3")),
+                Mockito.eq(UnreadCounters.HISTORY), Mockito.eq("-1"));
+
+        Mockito.when(stringRedisTemplate.execute(Mockito.any(RedisScript.class), Mockito.anyList(), Mockito.any(Object[].class)))
+                .thenThrow(new IllegalStateException("down"));
+        Assertions.assertDoesNotThrow(() -> counters.add(3L, UnreadCounters.HISTORY, 1));
+    }
+
+    @Test
+    @DisplayName("reconcile should rewrite only the users whose counters drifted")
+    @SuppressWarnings("unchecked")
+    public void testReconcile() {
+        Mockito.doAnswer(invocation -> {
+            invocation.<Consumer<List<String>>>getArgument(2).accept(List.of("unread:3", "unread:4"));
+            return null;
+        }).when(redisCache).scan(Mockito.eq("unread:*"), Mockito.anyInt(), Mockito.any());
+        Mockito.when(hashOperations.entries("unread:3")).thenReturn(Map.of("role", "member", "subscription", "0", "session", "2", "history", "5"));
+        Mockito.when(hashOperations.entries("unread:4")).thenReturn(Map.of("role", "member", "subscription", "0", "session", "2", "history", "6"));
+        Mockito.when(subscriptionMapper.selectCount(Mockito.any())).thenReturn(0L);
+        Mockito.when(sessionBookingMapper.selectCount(Mockito.any())).thenReturn(2L);
+        Mockito.when(trainingHistoryMapper.selectCount(Mockito.any())).thenReturn(5L);
+
+        Assertions.assertEquals(1, counters.reconcile());
+
+        Mockito.verify(stringRedisTemplate).execute(Mockito.any(RedisScript.class),
+                Mockito.eq(List.of("unread:4", "unrecorded:4")), Mockito.any(Object[].class));
+        Mockito.verify(stringRedisTemplate, Mockito.never()).execute(Mockito.any(RedisScript.class),
+                Mockito.eq(List.of("unread:3", "unrecorded:3")), Mockito.any(Object[].class));
+    }
+}
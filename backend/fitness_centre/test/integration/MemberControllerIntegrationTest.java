@@ -2,6 +2,7 @@ package integration;
 
 import com.fitness_centre.constant.ErrorCode;
 import com.fitness_centre.controller.MemberController;
+import com.fitness_centre.domain.Location;
 import com.fitness_centre.dto.GeneralResponseResult;
 import com.fitness_centre.filter.JwtAuthenticationTokenFilter;
 import com.fitness_centre.service.biz.interfaces.CoachService;
@@ -10,6 +11,8 @@ import com.fitness_centre.service.biz.interfaces.SubscriptionService;
 import com.fitness_centre.service.biz.interfaces.TagService;
 import com.fitness_centre.service.biz.interfaces.SessionBookingService;
 import com.fitness_centre.service.biz.interfaces.TrainingHistoryService;
+import com.fitness_centre.service.infrastructure.ReferenceData;
+import jakarta.servlet.FilterChain;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
@@ -17,6 +20,7 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
 import org.springframework.boot.test.mock.mockito.MockBean;
 import org.springframework.context.annotation.Import;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.MediaType;
 import org.springframework.security.test.context.support.WithMockUser;
 import org.springframework.security.web.AuthenticationEntryPoint;
@@ -27,13 +31,16 @@ import org.springframework.test.context.ContextConfiguration;
 import org.springframework.test.web.servlet.setup.MockMvcBuilders;
 
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.Mockito.*;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
 import static org.springframework.test.web.servlet.result.MockMvcResultHandlers.print;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 
 @WebMvcTest(MemberController.class)
@@ -61,38 +68,70 @@ public class MemberControllerIntegrationTest {
     @MockBean private AuthenticationEntryPoint authenticationEntryPoint;
     @MockBean private AccessDeniedHandler accessDeniedHandler;
     
+    @MockBean private ReferenceData referenceData;
+
     @BeforeEach
-    public void setup() {
-        // 不模拟Controller方法，而是模拟Service层方法
+    public void setup() throws Exception {
+        // 标签和场馆来自内存快照, 不再经过 Service
         Map<Long, String> tags = Map.of(1L, "瑜伽", 2L, "普拉提");
-        Map<Long, String> locations = Map.of(1L, "CBD 会所", 2L, "Uptown 健身房");
-        
-        when(tagService.getAllTags()).thenReturn(tags);
-        when(locationService.getAllLocations()).thenReturn(locations);
+        List<Location> locations = List.of(
+                new Location(1L, "CBD 会所", null, null, null),
+                new Location(2L, "Uptown 健身房", null, null, null));
+
+        when(referenceData.current()).thenReturn(new ReferenceData.Snapshot(tags, locations));
+        // 让 mock 的 JWT 过滤器放行, 请求才会到达 Controller
+        doAnswer(invocation -> {
+            ((FilterChain) invocation.getArgument(2)).doFilter(invocation.getArgument(0), invocation.getArgument(1));
+            return null;
+        }).when(jwtAuthenticationTokenFilter).doFilter(any(), any(), any());
     }
 
     @Test
-    @DisplayName("测试 TagService 和 LocationService 返回正确的标签和位置数据")
+    @DisplayName("测试 filter 接口从快照返回标签和位置数据, 并带上 ETag")
     @WithMockUser(roles = "member")
     void coachFilterSuccess() throws Exception {
-        // 预期的数据
-        Map<Long, String> expectedTags = Map.of(1L, "瑜伽", 2L, "普拉提");
-        Map<Long, String> expectedLocations = Map.of(1L, "CBD 会所", 2L, "Uptown 健身房");
-        
-        // 直接验证 mock service 返回的数据是否正确
-        Map<Long, String> actualTags = tagService.getAllTags();
-        Map<Long, String> actualLocations = locationService.getAllLocations();
-        
-        assertEquals(expectedTags, actualTags, "标签数据应该匹配");
-        assertEquals(expectedLocations, actualLocations, "位置数据应该匹配");
-        
-        // 验证 Controller 接口返回 200 状态码
-        mockMvc.perform(get("/member/coach/filter")
+        MvcResult result = mockMvc.perform(get("/member/coach/filter")
+                .accept(MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.data.tags.1").value("瑜伽"))
+                .andExpect(jsonPath("$.data.locations.2").value("Uptown 健身房"))
+                .andReturn();
+
+        assertEquals(referenceData.current().getVersion(), result.getResponse().getHeader(HttpHeaders.ETAG));
+        verifyNoInteractions(tagService, locationService);
+    }
+
+    @Test
+    @DisplayName("filter should answer 304 without a body when the client already has the version")
+    @WithMockUser(roles = "member")
+    void coachFilterNotModified() throws Exception {
+        String etag = referenceData.current().getVersion();
+
+        MvcResult result = mockMvc.perform(get("/member/coach/filter")
+                .header(HttpHeaders.IF_NONE_MATCH, etag)
+                .accept(MediaType.APPLICATION_JSON))
+                .andExpect(status().isNotModified())
+                .andReturn();
+
+        assertEquals(0, result.getResponse().getContentLength());
+        assertEquals(etag, result.getResponse().getHeader(HttpHeaders.ETAG));
+    }
+
+    @Test
+    @DisplayName("suggest should pass the query and limit to the coach service")
+    @WithMockUser(roles = "member")
+    void coachSuggest() throws Exception {
+        when(coachService.coachSuggest("ali", 5)).thenReturn(new GeneralResponseResult(ErrorCode.SUCCESS));
+        // 让 mock 的 JWT 过滤器放行, 请求才会到达 Controller
+        doAnswer(invocation -> {
+            ((FilterChain) invocation.getArgument(2)).doFilter(invocation.getArgument(0), invocation.getArgument(1));
+            return null;
+        }).when(jwtAuthenticationTokenFilter).doFilter(any(), any(), any());
+
+        mockMvc.perform(get("/member/coach/suggest").param("q", "ali").param("limit", "5")
                 .accept(MediaType.APPLICATION_JSON))
                 .andExpect(status().isOk());
-                
-        // 验证 service 方法被调用
-        verify(tagService, times(1)).getAllTags();
-        verify(locationService, times(1)).getAllLocations();
+
+        verify(coachService, times(1)).coachSuggest("ali", 5);
     }
-} 
\ No newline at end of file
+}
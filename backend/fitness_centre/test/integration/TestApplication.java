@@ -27,6 +27,9 @@ import com.fitness_centre.controller.MemberController;
 import com.fitness_centre.controller.CoachController;
 import com.fitness_centre.controller.AuthController;
 import com.fitness_centre.dto.GeneralResponseResult;
+import com.fitness_centre.mapper.SessionBookingMapper;
+import com.fitness_centre.mapper.SubscriptionMapper;
+import com.fitness_centre.mapper.TrainingHistoryMapper;
 import com.fitness_centre.service.biz.interfaces.LocationService;
 import com.fitness_centre.service.biz.interfaces.AvailabilityService;
 import com.fitness_centre.service.biz.interfaces.CoachService;
@@ -35,6 +38,11 @@ import com.fitness_centre.service.biz.interfaces.SessionBookingService;
 import com.fitness_centre.service.biz.interfaces.TrainingHistoryService;
 import com.fitness_centre.service.biz.interfaces.TagService;
 import com.fitness_centre.service.biz.interfaces.UserService;
+import com.fitness_centre.service.infrastructure.DataExporter;
+import com.fitness_centre.service.infrastructure.ReferenceData;
+import com.fitness_centre.service.infrastructure.UnreadCounters;
+import com.fitness_centre.utils.RedisCache;
+import org.springframework.data.redis.core.StringRedisTemplate;
 
 import java.nio.charset.StandardCharsets;
 import java.util.List;
@@ -105,6 +113,51 @@ public class TestApplication implements WebMvcConfigurer {
         return mockTagService;
     }
     
+    @Bean
+    public ReferenceData referenceData() {
+        ReferenceData mockReferenceData = mock(ReferenceData.class);
+        return mockReferenceData;
+    }
+    
+    @Bean
+    public DataExporter dataExporter() {
+        DataExporter mockDataExporter = mock(DataExporter.class);
+        return mockDataExporter;
+    }
+    
+    //DataExporter 的 mock 仍会做字段注入
+    @Bean
+    public TrainingHistoryMapper trainingHistoryMapper() {
+        return mock(TrainingHistoryMapper.class);
+    }
+    
+    @Bean
+    public SessionBookingMapper sessionBookingMapper() {
+        return mock(SessionBookingMapper.class);
+    }
+    
+    @Bean
+    public UnreadCounters unreadCounters() {
+        UnreadCounters mockUnreadCounters = mock(UnreadCounters.class);
+        return mockUnreadCounters;
+    }
+    
+    //UnreadCounters 的 mock 同样会做字段注入
+    @Bean
+    public SubscriptionMapper subscriptionMapper() {
+        return mock(SubscriptionMapper.class);
+    }
+    
+    @Bean
+    public RedisCache redisCache() {
+        return mock(RedisCache.class);
+    }
+    
+    @Bean
+    public StringRedisTemplate stringRedisTemplate() {
+        return mock(StringRedisTemplate.class);
+    }
+    
     @Bean
     public UserService userService() {
         UserService mockUserService = mock(UserService.class);
@@ -0,0 +1,106 @@
+package service;
+
+import com.baomidou.mybatisplus.core.metadata.IPage;
+import com.fitness_centre.dto.member.CoachCard;
+import com.fitness_centre.dto.member.CoachDetailsResponse;
+import com.fitness_centre.dto.member.CoachPageResponse;
+import com.fitness_centre.dto.member.CoachQueryRequest;
+import com.fitness_centre.mapper.CoachMapper;
+import com.fitness_centre.mapper.SubscriptionMapper;
+import com.fitness_centre.service.biz.impl.CoachServiceImpl;
+import com.fitness_centre.service.infrastructure.CoachCardStore;
+import com.fitness_centre.service.infrastructure.CoachPageCache;
+import com.fitness_centre.service.infrastructure.CoachSearchIndex;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.Mockito;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Tests for CoachServiceImpl.coachList: the shared page cache and the per-member status overlay.
+ */
+@ExtendWith(MockitoExtension.class)
+public class CoachServiceCoachListTest {
+
+    @Mock private CoachMapper coachMapper;
+    @Mock private SubscriptionMapper subscriptionMapper;
+    @Mock private CoachSearchIndex coachSearchIndex;
+    @Mock private CoachCardStore coachCardStore;
+    @Mock private CoachPageCache coachPageCache;
+
+    @InjectMocks private CoachServiceImpl coachService;
+
+    private static CoachDetailsResponse details(long id) {
+        CoachDetailsResponse details = new CoachDetailsResponse();
+        details.setCoachId(id);
+        return details;
+    }
+
+    private static CoachCard card(long id, String name) {
+        CoachCard card = new CoachCard();
+        card.setCoachId(id);
+        card.setUserName(name);
+        card.setPhoto("/formal/7/0123456789abcdef/full.jpg");
+        return card;
+    }
+
+    @Test
+    @DisplayName("a cached page should only get the member's pending statuses overlaid")
+    public void testCachedPage() {
+        CoachQueryRequest request = new CoachQueryRequest();
+        CoachPageResponse cached = new CoachPageResponse(1, 10);
+        cached.setTotal(2);
+        cached.setRecords(new ArrayList<>(List.of(details(1L), details(2L))));
+        Mockito.when(coachPageCache.generation()).thenReturn(4L);
+        Mockito.when(coachPageCache.get(request, 4L)).thenReturn(cached);
+        Mockito.when(subscriptionMapper.selectPendingCoachIds(99L, List.of(1L, 2L))).thenReturn(List.of(2L));
+
+        IPage<CoachDetailsResponse> page = coachService.coachList(99L, request);
+
+        Assertions.assertEquals(2, page.getTotal());
+        Assertions.assertEquals("Normal", page.getRecords().get(0).getStatus());
+        Assertions.assertEquals("pending", page.getRecords().get(1).getStatus());
+        Mockito.verifyNoInteractions(coachSearchIndex, coachCardStore, coachMapper);
+        Mockito.verify(coachPageCache, Mockito.never()).put(Mockito.any(), Mockito.anyLong(), Mockito.any());
+    }
+
+    @Test
+    @DisplayName("a miss should build the page from the index and cards and cache it before any status is set")
+    public void testBuildAndCache() {
+        CoachQueryRequest request = new CoachQueryRequest();
+        request.setTagIds(List.of(10L));
+        Mockito.when(coachPageCache.generation()).thenReturn(4L);
+        Mockito.when(coachSearchIndex.search(request, 0, 10))
+                .thenReturn(new CoachSearchIndex.SearchHits(3, List.of(3L, 1L), null, null, null));
+        Map<Long, CoachCard> cards = new LinkedHashMap<>();
+        cards.put(3L, card(3L, "Carol"));
+        cards.put(1L, card(1L, "Alice"));
+        Mockito.when(coachCardStore.getCards(List.of(3L, 1L))).thenReturn(cards);
+        ArgumentCaptor<CoachPageResponse> cachedPage = ArgumentCaptor.forClass(CoachPageResponse.class);
+        Mockito.doAnswer(invocation -> {
+            // 写入缓存时还不能带上任何会员的状态
+            CoachPageResponse page = invocation.getArgument(2);
+            page.getRecords().forEach(details -> Assertions.assertNull(details.getStatus()));
+            return null;
+        }).when(coachPageCache).put(Mockito.eq(request), Mockito.eq(4L), cachedPage.capture());
+        Mockito.when(subscriptionMapper.selectPendingCoachIds(99L, List.of(3L, 1L))).thenReturn(List.of());
+
+        IPage<CoachDetailsResponse> page = coachService.coachList(99L, request);
+
+        Assertions.assertSame(cachedPage.getValue(), page);
+        Assertions.assertEquals(3, page.getTotal());
+        Assertions.assertEquals("Carol", page.getRecords().get(0).getUserName());
+        Assertions.assertEquals("/formal/7/0123456789abcdef/card.jpg", page.getRecords().get(0).getPhoto());
+        Assertions.assertEquals("Normal", page.getRecords().get(1).getStatus());
+    }
+}
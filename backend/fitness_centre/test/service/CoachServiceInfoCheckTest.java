@@ -7,6 +7,8 @@ import com.fitness_centre.domain.CoachLocation;
 import com.fitness_centre.domain.CoachTag;
 import com.fitness_centre.mapper.*;
 import com.fitness_centre.service.biz.impl.CoachServiceImpl;
+import com.fitness_centre.service.infrastructure.CoachCardStore;
+import com.fitness_centre.service.infrastructure.CoachSearchIndex;
 import com.fitness_centre.service.infrastructure.FileService;
 import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.BeforeEach;
@@ -34,6 +36,8 @@ public class CoachServiceInfoCheckTest {
     @Mock private CoachLocationMapper coachLocationMapper;
     @Mock private UserMapper userMapper; // not used but required by service
     @Mock private FileService fileService;
+    @Mock private CoachSearchIndex coachSearchIndex;
+    @Mock private CoachCardStore coachCardStore;
 
     @InjectMocks private CoachServiceImpl coachService;
     
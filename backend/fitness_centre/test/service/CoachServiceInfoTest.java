@@ -0,0 +1,116 @@
+package service;
+
+import com.fitness_centre.domain.CoachInfo;
+import com.fitness_centre.domain.Location;
+import com.fitness_centre.domain.Tag;
+import com.fitness_centre.domain.User;
+import com.fitness_centre.dto.GeneralResponseResult;
+import com.fitness_centre.dto.coach.CoachInfoResponse;
+import com.fitness_centre.mapper.CoachLocationMapper;
+import com.fitness_centre.mapper.CoachMapper;
+import com.fitness_centre.mapper.CoachTagMapper;
+import com.fitness_centre.mapper.UserMapper;
+import com.fitness_centre.service.biz.impl.CoachServiceImpl;
+import com.fitness_centre.service.infrastructure.ReferenceData;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.Mockito;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Tests for CoachServiceImpl.coachInfo: parallel lookups and the not-chosen sets taken from reference data.
+ */
+@ExtendWith(MockitoExtension.class)
+public class CoachServiceInfoTest {
+
+    @Mock private UserMapper userMapper;
+    @Mock private CoachMapper coachMapper;
+    @Mock private CoachTagMapper coachTagMapper;
+    @Mock private CoachLocationMapper coachLocationMapper;
+    @Mock private ReferenceData referenceData;
+
+    @InjectMocks private CoachServiceImpl coachService;
+
+    @BeforeEach
+    public void setUp() {
+        coachService.init();
+        Mockito.when(referenceData.current()).thenReturn(new ReferenceData.Snapshot(
+                Map.of(1L, "Yoga", 2L, "Boxing", 3L, "Pilates"),
+                List.of(new Location(10L, "Central", null, null, null), new Location(11L, "East", null, null, null))));
+    }
+
+    @AfterEach
+    public void tearDown() {
+        coachService.shutdown();
+    }
+
+    private void stubLookups(Long coachId) {
+        User user = new User();
+        user.setUserName("Carol");
+        Mockito.when(userMapper.selectById(coachId)).thenReturn(user);
+        Mockito.when(coachMapper.selectById(coachId)).thenReturn(new CoachInfo(coachId, "/p.jpg", "Hi", null));
+        // 查询失败时这条可能还没跑到就已经结束了
+        Mockito.lenient().when(coachLocationMapper.selectLocationsByCoachId(coachId))
+                .thenReturn(List.of(new Location(11L, "East", null, null, null)));
+    }
+
+    @Test
+    @DisplayName("coachInfo should list the chosen tags and locations and the rest of the reference data as others")
+    public void testOthersFromReferenceData() {
+        stubLookups(7L);
+        Mockito.when(coachTagMapper.selectTagsByCoachId(7L)).thenReturn(List.of(new Tag(2L, "Boxing")));
+
+        GeneralResponseResult<?> result = coachService.coachInfo(7L);
+
+        CoachInfoResponse response = (CoachInfoResponse) result.getData();
+        Assertions.assertEquals("Carol", response.getUserName());
+        Assertions.assertEquals("Hi", response.getIntro());
+        Assertions.assertEquals(List.of(new Tag(1L, "Yoga"), new Tag(3L, "Pilates")), response.getOtherTags());
+        Assertions.assertEquals(List.of(10L), response.getOtherLocations().stream().map(Location::getId).toList());
+        Assertions.assertEquals(List.of(11L), response.getCoachLocations().stream().map(Location::getId).toList());
+    }
+
+    @Test
+    @DisplayName("coachInfo should run the lookups at the same time")
+    public void testLookupsOverlap() {
+        stubLookups(7L);
+        // 两个查询互相等待, 串行执行时会超时
+        CountDownLatch bothStarted = new CountDownLatch(2);
+        Mockito.when(coachTagMapper.selectTagsByCoachId(7L)).thenAnswer(invocation -> {
+            bothStarted.countDown();
+            Assertions.assertTrue(bothStarted.await(5, TimeUnit.SECONDS));
+            return List.of();
+        });
+        Mockito.when(coachLocationMapper.selectLocationsByCoachId(7L)).thenAnswer(invocation -> {
+            bothStarted.countDown();
+            Assertions.assertTrue(bothStarted.await(5, TimeUnit.SECONDS));
+            return List.of();
+        });
+
+        CoachInfoResponse response = (CoachInfoResponse) coachService.coachInfo(7L).getData();
+
+        Assertions.assertEquals(3, response.getOtherTags().size());
+        Assertions.assertEquals(2, response.getOtherLocations().size());
+    }
+
+    @Test
+    @DisplayName("an exception thrown by a lookup should reach the caller unwrapped")
+    public void testLookupFailure() {
+        stubLookups(7L);
+        Mockito.when(coachTagMapper.selectTagsByCoachId(7L)).thenThrow(new IllegalStateException("db down"));
+
+        IllegalStateException e = Assertions.assertThrows(IllegalStateException.class, () -> coachService.coachInfo(7L));
+        Assertions.assertEquals("db down", e.getMessage());
+    }
+}
@@ -6,6 +6,8 @@ import com.fitness_centre.dto.coach.CoachInfoUpdateRequest;
 import com.fitness_centre.exception.BusinessException;
 import com.fitness_centre.mapper.*;
 import com.fitness_centre.service.biz.impl.CoachServiceImpl;
+import com.fitness_centre.service.infrastructure.CoachCardStore;
+import com.fitness_centre.service.infrastructure.CoachSearchIndex;
 import com.fitness_centre.service.infrastructure.FileService;
 import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.DisplayName;
@@ -29,6 +31,8 @@ public class CoachServiceUpdateInfoTest {
     @Mock private CoachTagMapper coachTagMapper;
     @Mock private CoachLocationMapper coachLocationMapper;
     @Mock private FileService fileService;
+    @Mock private CoachSearchIndex coachSearchIndex;
+    @Mock private CoachCardStore coachCardStore;
 
     @InjectMocks private CoachServiceImpl coachService;
 
@@ -77,5 +81,6 @@ public class CoachServiceUpdateInfoTest {
         Mockito.verify(coachTagMapper).insertTagsIfNotExists(coachId, req.getCoachTagIds());
         Mockito.verify(coachLocationMapper).deleteLocationsNotInList(coachId, req.getCoachLocationIds());
         Mockito.verify(coachLocationMapper).insertLocationsIfNotExists(coachId, req.getCoachLocationIds());
+        Mockito.verify(coachSearchIndex).updateCoach(coachId, "John", "hi", req.getCoachTagIds(), req.getCoachLocationIds());
     }
 } 
\ No newline at end of file
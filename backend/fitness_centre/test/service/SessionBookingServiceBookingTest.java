@@ -1,12 +1,20 @@
 package service;
 
+import com.baomidou.mybatisplus.core.MybatisConfiguration;
+import com.baomidou.mybatisplus.core.metadata.TableInfoHelper;
 import com.fitness_centre.constant.ErrorCode;
+import com.fitness_centre.constant.RequestStatus;
+import com.fitness_centre.domain.SessionBooking;
 import com.fitness_centre.dto.GeneralResponseResult;
 import com.fitness_centre.dto.member.BookingRequest;
 import com.fitness_centre.exception.BusinessException;
 import com.fitness_centre.mapper.*;
 import com.fitness_centre.service.biz.impl.SessionBookingServiceImpl;
+import com.fitness_centre.service.infrastructure.CoachPopularity;
+import com.fitness_centre.service.infrastructure.UnreadCounters;
+import org.apache.ibatis.builder.MapperBuilderAssistant;
 import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeAll;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
@@ -15,7 +23,9 @@ import org.mockito.Mock;
 import org.mockito.Mockito;
 import org.mockito.junit.jupiter.MockitoExtension;
 
+import java.time.LocalDateTime;
 import java.time.LocalTime;
+import java.util.List;
 
 /**
  * Tests for SessionBookingServiceImpl.bookingSession validation logic
@@ -28,9 +38,17 @@ public class SessionBookingServiceBookingTest {
     @Mock private AvailabilityMapper availabilityMapper;
     @Mock private UserMapper userMapper;
     @Mock private TrainingHistoryMapper historyMapper;
+    @Mock private CoachPopularity coachPopularity;
+    @Mock private UnreadCounters unreadCounters;
 
     @InjectMocks private SessionBookingServiceImpl service;
 
+    //coachHandleRequest 的 LambdaUpdateWrapper 需要实体的列信息
+    @BeforeAll
+    public static void initTableInfo() {
+        TableInfoHelper.initTableInfo(new MapperBuilderAssistant(new MybatisConfiguration(), ""), SessionBooking.class);
+    }
+
     private BookingRequest buildRequest(long coachId) {
         BookingRequest req = new BookingRequest();
         req.setCoachId(coachId);
@@ -68,5 +86,68 @@ public class SessionBookingServiceBookingTest {
 
         GeneralResponseResult res = service.bookingSession(1L, req);
         Assertions.assertEquals(ErrorCode.SUCCESS.getCode(), res.getCode());
+        Mockito.verify(unreadCounters).add(2L, UnreadCounters.SESSION, 1);
+    }
+
+    @Test
+    @DisplayName("coachHandleRequest should add the popularity weight once when the same request is accepted twice")
+    public void testAcceptTwice() {
+        SessionBooking pending = new SessionBooking();
+        pending.setId(5L);
+        pending.setCoachId(2L);
+        pending.setMemberId(1L);
+        pending.setStatus(RequestStatus.PENDING);
+        pending.setStartTime(LocalDateTime.of(2026, 10, 19, 10, 0));
+        pending.setEndTime(LocalDateTime.of(2026, 10, 19, 11, 0));
+        SessionBooking accepted = new SessionBooking();
+        accepted.setId(5L);
+        accepted.setCoachId(2L);
+        accepted.setMemberId(1L);
+        accepted.setStatus(RequestStatus.ACCEPT);
+        accepted.setStartTime(pending.getStartTime());
+        accepted.setEndTime(pending.getEndTime());
+        Mockito.when(sessionBookingMapper.selectOne(Mockito.any())).thenReturn(pending, accepted);
+        Mockito.when(sessionBookingMapper.update(Mockito.any())).thenReturn(1);
+        Mockito.when(sessionBookingMapper.selectList(Mockito.any())).thenReturn(List.of());
+        Mockito.doCallRealMethod().when(coachPopularity).recordTransition(Mockito.any(), Mockito.anyInt(), Mockito.any(), Mockito.any());
+
+        service.coachHandleRequest(5L, 2L, RequestStatus.ACCEPT, "ok");
+        service.coachHandleRequest(5L, 2L, RequestStatus.ACCEPT, "ok again");
+
+        Mockito.verify(coachPopularity, Mockito.times(1)).record(2L, CoachPopularity.SESSION_WEIGHT);
+    }
+
+    @Test
+    @DisplayName("coachHandleRequest should take the weight back when an accepted request is rejected")
+    public void testAcceptThenReject() {
+        SessionBooking accepted = new SessionBooking();
+        accepted.setId(5L);
+        accepted.setCoachId(2L);
+        accepted.setMemberId(1L);
+        accepted.setStatus(RequestStatus.ACCEPT);
+        accepted.setStartTime(LocalDateTime.of(2026, 10, 19, 10, 0));
+        accepted.setEndTime(LocalDateTime.of(2026, 10, 19, 11, 0));
+        Mockito.when(sessionBookingMapper.selectOne(Mockito.any())).thenReturn(accepted);
+        Mockito.when(sessionBookingMapper.update(Mockito.any())).thenReturn(1);
+        Mockito.when(sessionBookingMapper.selectList(Mockito.any())).thenReturn(List.of());
+        Mockito.doCallRealMethod().when(coachPopularity).recordTransition(Mockito.any(), Mockito.anyInt(), Mockito.any(), Mockito.any());
+
+        service.coachHandleRequest(5L, 2L, RequestStatus.REJECT, "sorry");
+
+        Mockito.verify(coachPopularity).record(2L, -CoachPopularity.SESSION_WEIGHT);
+    }
+
+    @Test
+    @DisplayName("coachHandleRequest should fail without touching popularity when the status changed concurrently")
+    public void testConcurrentReply() {
+        SessionBooking pending = new SessionBooking();
+        pending.setId(5L);
+        pending.setCoachId(2L);
+        pending.setStatus(RequestStatus.PENDING);
+        Mockito.when(sessionBookingMapper.selectOne(Mockito.any())).thenReturn(pending);
+        Mockito.when(sessionBookingMapper.update(Mockito.any())).thenReturn(0);
+
+        Assertions.assertThrows(BusinessException.class, () -> service.coachHandleRequest(5L, 2L, RequestStatus.ACCEPT, "ok"));
+        Mockito.verifyNoInteractions(coachPopularity);
     }
-} 
\ No newline at end of file
+}
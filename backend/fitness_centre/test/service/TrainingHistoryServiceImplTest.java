@@ -1,23 +1,47 @@
 package service;
 
+import com.baomidou.mybatisplus.core.metadata.IPage;
+import com.baomidou.mybatisplus.extension.plugins.pagination.Page;
 import com.fitness_centre.constant.ErrorCode;
+import com.fitness_centre.constant.UserRole;
+import com.fitness_centre.domain.HistoryTag;
+import com.fitness_centre.domain.MemberProgress;
 import com.fitness_centre.domain.SessionBooking;
+import com.fitness_centre.domain.Tag;
 import com.fitness_centre.domain.TrainingHistory;
+import com.fitness_centre.dto.AddHistoryRequest;
 import com.fitness_centre.dto.GeneralResponseResult;
+import com.fitness_centre.dto.HistorySearchRequest;
+import com.fitness_centre.dto.HistorySearchRow;
+import com.fitness_centre.dto.MemberProgressResponse;
+import com.fitness_centre.dto.ProgressPoint;
+import com.fitness_centre.dto.TrainingHistoryListResponse;
+import com.fitness_centre.dto.member.CoachCard;
 import com.fitness_centre.exception.SystemException;
 import com.fitness_centre.mapper.*;
+import com.fitness_centre.exception.BusinessException;
 import com.fitness_centre.service.biz.impl.TrainingHistoryServiceImpl;
+import com.fitness_centre.service.infrastructure.CoachCardStore;
+import com.fitness_centre.service.infrastructure.CoachSearchIndex;
+import com.fitness_centre.service.infrastructure.ReferenceData;
+import com.fitness_centre.service.infrastructure.UnreadCounters;
 import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.Mockito;
 import org.mockito.junit.jupiter.MockitoExtension;
 
+import java.time.DayOfWeek;
+import java.time.LocalDate;
 import java.time.LocalDateTime;
+import java.time.temporal.TemporalAdjusters;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 /**
  * Tests for TrainingHistoryServiceImpl
@@ -30,6 +54,12 @@ public class TrainingHistoryServiceImplTest {
     @Mock private HistoryTagMapper historyTagMapper;
     @Mock private UserMapper userMapper;
     @Mock private TagMapper tagMapper;
+    @Mock private CoachMapper coachMapper;
+    @Mock private CoachSearchIndex coachSearchIndex;
+    @Mock private CoachCardStore coachCardStore;
+    @Mock private MemberProgressMapper memberProgressMapper;
+    @Mock private ReferenceData referenceData;
+    @Mock private UnreadCounters unreadCounters;
 
     @InjectMocks private TrainingHistoryServiceImpl service;
 
@@ -48,36 +78,124 @@ public class TrainingHistoryServiceImplTest {
     @DisplayName("addTrainingHistory should succeed and link tags")
     public void testAddSuccess() {
         SessionBooking sb = buildSession();
-        Mockito.when(sessionBookingMapper.selectOne(Mockito.any())).thenReturn(sb);
+        Mockito.when(sessionBookingMapper.markRecorded(Mockito.eq(2L), Mockito.eq(List.of(100L)), Mockito.any())).thenReturn(1);
+        Mockito.when(sessionBookingMapper.selectList(Mockito.any())).thenReturn(List.of(sb));
         Mockito.when(trainingHistoryMapper.insert(Mockito.any(TrainingHistory.class))).thenAnswer(inv -> {
             TrainingHistory th = inv.getArgument(0);
             th.setId(500L); // mimic pk fill
             return 1;
         });
-        Mockito.when(sessionBookingMapper.update(Mockito.any())).thenReturn(1);
-        Mockito.when(historyTagMapper.insert(Mockito.any(com.fitness_centre.domain.HistoryTag.class))).thenReturn(1);
+        Mockito.when(historyTagMapper.insertLinks(Mockito.anyList())).thenReturn(2);
 
         GeneralResponseResult res = service.addTrainingHistory(2L, 100L, "good", List.of(10L,11L));
         Assertions.assertEquals(ErrorCode.SUCCESS.getCode(), res.getCode());
 
-        // verify inserts for tags
-        Mockito.verify(historyTagMapper, Mockito.times(2)).insert(Mockito.any(com.fitness_centre.domain.HistoryTag.class));
+        // verify one multi-row insert for tags
+        Mockito.verify(historyTagMapper).insertLinks(List.of(new HistoryTag(500L, 10L), new HistoryTag(500L, 11L)));
+        Mockito.verify(unreadCounters).add(1L, UnreadCounters.HISTORY, 1);
+        Mockito.verify(unreadCounters).removeUnrecorded(2L, List.of(100L));
     }
 
     @Test
     @DisplayName("addTrainingHistory should throw when insert fails")
     public void testAddFailInsert() {
         SessionBooking sb = buildSession();
-        Mockito.when(sessionBookingMapper.selectOne(Mockito.any())).thenReturn(sb);
+        Mockito.when(sessionBookingMapper.markRecorded(Mockito.eq(2L), Mockito.eq(List.of(100L)), Mockito.any())).thenReturn(1);
+        Mockito.when(sessionBookingMapper.selectList(Mockito.any())).thenReturn(List.of(sb));
         Mockito.when(trainingHistoryMapper.insert(Mockito.any(com.fitness_centre.domain.TrainingHistory.class))).thenReturn(0);
 
         Assertions.assertThrows(SystemException.class, () -> service.addTrainingHistory(2L, 100L, "bad", List.of()));
     }
 
+    @Test
+    @DisplayName("addTrainingHistory should refuse a session that is already recorded, before writing anything")
+    public void testAddAlreadyRecorded() {
+        Mockito.when(sessionBookingMapper.markRecorded(Mockito.eq(2L), Mockito.eq(List.of(100L)), Mockito.any())).thenReturn(0);
+
+        BusinessException e = Assertions.assertThrows(BusinessException.class,
+                () -> service.addTrainingHistory(2L, 100L, "again", List.of(10L)));
+        Assertions.assertEquals(ErrorCode.RESOURCE_CONFLICT.getCode(), e.getCode());
+        Mockito.verifyNoInteractions(trainingHistoryMapper, historyTagMapper);
+    }
+
+    @Test
+    @DisplayName("addTrainingHistories should record every session and write all tag links in one insert")
+    public void testAddBatch() {
+        SessionBooking first = buildSession();
+        SessionBooking second = buildSession();
+        second.setId(101L);
+        Mockito.when(sessionBookingMapper.markRecorded(Mockito.eq(2L), Mockito.eq(List.of(100L, 101L)), Mockito.any())).thenReturn(2);
+        Mockito.when(sessionBookingMapper.selectList(Mockito.any())).thenReturn(List.of(second, first));
+        long[] nextId = {500L};
+        Mockito.when(trainingHistoryMapper.insert(Mockito.any(TrainingHistory.class))).thenAnswer(inv -> {
+            ((TrainingHistory) inv.getArgument(0)).setId(nextId[0]++);
+            return 1;
+        });
+        Mockito.when(historyTagMapper.insertLinks(Mockito.anyList())).thenReturn(3);
+
+        GeneralResponseResult res = service.addTrainingHistories(2L, List.of(
+                new AddHistoryRequest(100L, List.of(10L, 10L), "first"),
+                new AddHistoryRequest(101L, List.of(11L, 12L), "second")));
+
+        Assertions.assertEquals(ErrorCode.SUCCESS.getCode(), res.getCode());
+        Mockito.verify(historyTagMapper).insertLinks(List.of(
+                new HistoryTag(500L, 10L), new HistoryTag(501L, 11L), new HistoryTag(501L, 12L)));
+
+        // 两节课在同一周: 课程数 2, 同一个教练 2, 每个 tag 各 1
+        ArgumentCaptor<List<MemberProgress>> counters = ArgumentCaptor.forClass(List.class);
+        Mockito.verify(memberProgressMapper).addCounts(counters.capture());
+        Map<String, Integer> counts = new HashMap<>();
+        counters.getValue().forEach(counter -> counts.put(counter.getDimension() + ":" + counter.getItemId(), counter.getCount()));
+        Assertions.assertEquals(Map.of("session:0", 2, "coach:2", 2, "tag:10", 1, "tag:11", 1, "tag:12", 1), counts);
+        Assertions.assertTrue(counters.getValue().stream()
+                .allMatch(counter -> counter.getWeekStart().getDayOfWeek() == DayOfWeek.MONDAY && counter.getMemberId() == 1L));
+    }
+
+    @Test
+    @DisplayName("memberProgress should zero-fill the weeks and name tags and coaches without touching their tables")
+    public void testMemberProgress() {
+        LocalDate thisWeek = LocalDate.now().with(TemporalAdjusters.previousOrSame(DayOfWeek.MONDAY));
+        Mockito.when(memberProgressMapper.selectList(Mockito.any())).thenReturn(List.of(
+                new MemberProgress(1L, thisWeek, MemberProgress.SESSIONS, 0L, 3),
+                new MemberProgress(1L, thisWeek.minusWeeks(2), MemberProgress.SESSIONS, 0L, 1),
+                new MemberProgress(1L, thisWeek, MemberProgress.TAGS, 10L, 1),
+                new MemberProgress(1L, thisWeek.minusWeeks(2), MemberProgress.TAGS, 11L, 1),
+                new MemberProgress(1L, thisWeek, MemberProgress.TAGS, 11L, 2),
+                new MemberProgress(1L, thisWeek, MemberProgress.COACHES, 2L, 4)));
+        Mockito.when(referenceData.current()).thenReturn(new ReferenceData.Snapshot(Map.of(10L, "Yoga", 11L, "Boxing"), List.of()));
+        CoachCard card = new CoachCard();
+        card.setCoachId(2L);
+        card.setUserName("Carol");
+        Mockito.when(coachCardStore.getCards(List.of(2L))).thenReturn(Map.of(2L, card));
+
+        MemberProgressResponse progress = (MemberProgressResponse) service.memberProgress(1L, 3).getData();
+
+        Assertions.assertEquals(List.of(1L, 0L, 3L), progress.getSessions().stream().map(ProgressPoint::getValue).toList());
+        Assertions.assertEquals(thisWeek.toString(), progress.getSessions().get(2).getLabel());
+        Assertions.assertEquals("Boxing", progress.getTags().get(0).getName());
+        Assertions.assertEquals(3, progress.getTags().get(0).getTotal());
+        Assertions.assertEquals("Carol", progress.getCoaches().get(0).getName());
+        Mockito.verifyNoInteractions(tagMapper, userMapper);
+    }
+
+    @Test
+    @DisplayName("addTrainingHistories should roll back the whole batch when any session cannot be recorded")
+    public void testAddBatchPartlyRecorded() {
+        Mockito.when(sessionBookingMapper.markRecorded(Mockito.eq(2L), Mockito.eq(List.of(100L, 101L)), Mockito.any())).thenReturn(1);
+
+        Assertions.assertThrows(BusinessException.class, () -> service.addTrainingHistories(2L, List.of(
+                new AddHistoryRequest(100L, List.of(), "first"),
+                new AddHistoryRequest(101L, null, "second"))));
+        Assertions.assertThrows(BusinessException.class, () -> service.addTrainingHistories(2L, List.of(
+                new AddHistoryRequest(100L, null, "first"),
+                new AddHistoryRequest(100L, null, "twice"))));
+        Mockito.verifyNoInteractions(trainingHistoryMapper);
+    }
+
     @Test
     @DisplayName("countUnReadTrainingHistory should return count map")
     public void testCountUnread() {
-        Mockito.when(trainingHistoryMapper.selectCount(Mockito.any())).thenReturn(5L);
+        Mockito.when(unreadCounters.counts(1L, UserRole.MEMBER)).thenReturn(Map.of(UnreadCounters.HISTORY, 5L));
         GeneralResponseResult res = service.countUnReadTrainingHistory(1L);
         Assertions.assertEquals(ErrorCode.SUCCESS.getCode(), res.getCode());
         Assertions.assertEquals(5L, ((java.util.Map<?,?>)res.getData()).get("count"));
@@ -89,4 +207,102 @@ public class TrainingHistoryServiceImplTest {
         Mockito.when(trainingHistoryMapper.update(Mockito.any())).thenReturn(0);
         Assertions.assertThrows(SystemException.class, () -> service.readTrainingHistory(1L, 2L));
     }
-} 
\ No newline at end of file
+
+    @Test
+    @DisplayName("readTrainingHistory should take one off the unread counter only when the history was unread")
+    public void testReadCounter() {
+        Mockito.when(trainingHistoryMapper.update(Mockito.any())).thenReturn(1);
+        service.readTrainingHistory(1L, 2L);
+        Mockito.verify(unreadCounters).add(1L, UnreadCounters.HISTORY, -1);
+
+        // 已读过的再读一次: 成功, 计数不变
+        Mockito.reset(unreadCounters);
+        Mockito.when(trainingHistoryMapper.update(Mockito.any())).thenReturn(0);
+        Mockito.when(trainingHistoryMapper.exists(Mockito.any())).thenReturn(true);
+        GeneralResponseResult res = service.readTrainingHistory(1L, 2L);
+        Assertions.assertEquals(ErrorCode.SUCCESS.getCode(), res.getCode());
+        Mockito.verifyNoInteractions(unreadCounters);
+    }
+
+    private TrainingHistory ratedHistory(Integer rating) {
+        TrainingHistory history = new TrainingHistory();
+        history.setId(500L);
+        history.setMemberId(1L);
+        history.setCoachId(2L);
+        history.setRating(rating);
+        return history;
+    }
+
+    @Test
+    @DisplayName("rateTrainingHistory should add a first rating to the coach's sum and count")
+    void rateFirstTime() {
+        Mockito.when(trainingHistoryMapper.selectOne(Mockito.any())).thenReturn(ratedHistory(null));
+        Mockito.when(trainingHistoryMapper.updateRatingIfUnchanged(500L, 1L, null, 4)).thenReturn(1);
+        Mockito.when(coachMapper.addRating(2L, 4, 1)).thenReturn(1);
+        Mockito.when(coachMapper.selectRating(2L)).thenReturn(4.5);
+
+        GeneralResponseResult result = service.rateTrainingHistory(1L, 500L, 4);
+
+        Assertions.assertEquals(ErrorCode.SUCCESS.getCode(), result.getCode());
+        Mockito.verify(coachSearchIndex).updateRating(2L, 4.5);
+        Mockito.verify(coachCardStore).refresh(2L);
+    }
+
+    @Test
+    @DisplayName("rateTrainingHistory should only move the sum when a rating is changed")
+    void rateChange() {
+        Mockito.when(trainingHistoryMapper.selectOne(Mockito.any())).thenReturn(ratedHistory(5));
+        Mockito.when(trainingHistoryMapper.updateRatingIfUnchanged(500L, 1L, 5, 2)).thenReturn(1);
+        Mockito.when(coachMapper.addRating(2L, -3, 0)).thenReturn(1);
+
+        service.rateTrainingHistory(1L, 500L, 2);
+
+        Mockito.verify(coachMapper).addRating(2L, -3, 0);
+    }
+
+    @Test
+    @DisplayName("rateTrainingHistory should reject out-of-range ratings and lost races")
+    void rateInvalid() {
+        Assertions.assertThrows(BusinessException.class, () -> service.rateTrainingHistory(1L, 500L, 6));
+        Assertions.assertThrows(BusinessException.class, () -> service.rateTrainingHistory(1L, 500L, null));
+
+        Mockito.when(trainingHistoryMapper.selectOne(Mockito.any())).thenReturn(ratedHistory(null));
+        Mockito.when(trainingHistoryMapper.updateRatingIfUnchanged(500L, 1L, null, 3)).thenReturn(0);
+        SystemException ex = Assertions.assertThrows(SystemException.class, () -> service.rateTrainingHistory(1L, 500L, 3));
+        Assertions.assertEquals(ErrorCode.RESOURCE_CONFLICT.getCode(), ex.getCode());
+        Mockito.verifyNoInteractions(coachMapper, coachSearchIndex, coachCardStore);
+    }
+
+    @Test
+    @DisplayName("searchTrainingHistory should turn words into required phrases and keep the ranked order")
+    public void testSearch() {
+        LocalDateTime start = LocalDateTime.of(2026, 10, 12, 9, 0);
+        HistorySearchRow hit = new HistorySearchRow(500L, start, start.plusHours(1), "Mia", "Carol", "msg", true,
+                "Watch the left knee", "3,7", 1.5);
+        Page<HistorySearchRow> hits = new Page<>(1, 10, 1);
+        hits.setRecords(List.of(hit));
+        Mockito.when(trainingHistoryMapper.searchFeedback(Mockito.any(), Mockito.eq(1L), Mockito.eq("+\"knee\" +\"left\""),
+                Mockito.eq(LocalDate.of(2026, 10, 1).atStartOfDay()), Mockito.isNull(), Mockito.eq(List.of(3L))))
+                .thenReturn(hits);
+        Mockito.when(referenceData.current()).thenReturn(new ReferenceData.Snapshot(Map.of(3L, "Mobility"), List.of()));
+
+        HistorySearchRequest request = new HistorySearchRequest("  knee -left*  ", LocalDate.of(2026, 10, 1), null, List.of(3L), 1, 10);
+        GeneralResponseResult<?> res = service.searchTrainingHistory(1L, request);
+
+        IPage<?> page = (IPage<?>) res.getData();
+        Assertions.assertEquals(1, page.getTotal());
+        TrainingHistoryListResponse response = (TrainingHistoryListResponse) page.getRecords().get(0);
+        Assertions.assertEquals("Carol", response.getCoachName());
+        Assertions.assertEquals(List.of(new Tag(3L, "Mobility"), new Tag(7L, "未知标签")), response.getTagList());
+    }
+
+    @Test
+    @DisplayName("searchTrainingHistory should reject a query with nothing left to search for")
+    public void testSearchEmptyQuery() {
+        HistorySearchRequest request = new HistorySearchRequest(" +* \"\" ", null, null, null, 1, 10);
+
+        BusinessException ex = Assertions.assertThrows(BusinessException.class, () -> service.searchTrainingHistory(1L, request));
+        Assertions.assertEquals(ErrorCode.INVALID_PARAMETER.getCode(), ex.getCode());
+        Mockito.verifyNoInteractions(trainingHistoryMapper);
+    }
+}
@@ -1,20 +1,24 @@
 package service;
 
 import com.fitness_centre.constant.ErrorCode;
+import com.fitness_centre.dto.GeneralResponseResult;
 import com.fitness_centre.exception.BusinessException;
 import com.fitness_centre.service.biz.impl.UserServiceImpl;
+import com.fitness_centre.service.infrastructure.MailJob;
+import com.fitness_centre.service.infrastructure.MailOutbox;
 import com.fitness_centre.service.infrastructure.MailService;
-import com.fitness_centre.utils.RedisCache;
+import com.fitness_centre.service.infrastructure.RegistrationStore;
 import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
 import org.mockito.Mockito;
 import org.mockito.junit.jupiter.MockitoExtension;
 import org.springframework.test.util.ReflectionTestUtils;
 
-import java.time.LocalDateTime;
-import java.util.concurrent.TimeUnit;
+import java.time.Duration;
+import java.util.Map;
 
 /**
  * Tests for UserServiceImpl.sendCode
@@ -22,48 +26,75 @@ import java.util.concurrent.TimeUnit;
 @ExtendWith(MockitoExtension.class)
 public class UserServiceSendCodeTest {
 
-    private UserServiceImpl buildService(RedisCache redis, MailService mail) {
+    private UserServiceImpl buildService(RegistrationStore store, MailService mail, MailOutbox outbox) {
         UserServiceImpl svc = new UserServiceImpl();
-        ReflectionTestUtils.setField(svc, "redisCache", redis);
+        ReflectionTestUtils.setField(svc, "registrationStore", store);
         ReflectionTestUtils.setField(svc, "mailService", mail);
+        ReflectionTestUtils.setField(svc, "mailOutbox", outbox);
         return svc;
     }
 
     @Test
-    @DisplayName("sendCode should limit frequency and throw BusinessException when called too often")
+    @DisplayName("sendCode should limit frequency and not queue mail when still cooling down")
     public void testFrequencyLimit() {
         String email = "test@example.com";
-        RedisCache redis = Mockito.mock(RedisCache.class);
+        RegistrationStore store = Mockito.mock(RegistrationStore.class);
         MailService mail = Mockito.mock(MailService.class);
+        MailOutbox outbox = Mockito.mock(MailOutbox.class);
 
-        // redis already has sendFreq key
-        Mockito.when(redis.getCacheObject("emailSendFreq:" + email)).thenReturn(LocalDateTime.now());
+        Mockito.when(mail.generateCode(6)).thenReturn("123456");
+        Mockito.doThrow(new BusinessException(ErrorCode.TOO_MANY_REQUESTS))
+                .when(store).issueCode(Mockito.eq(email), Mockito.isNull(), Mockito.eq("123456"),
+                        Mockito.any(), Mockito.any(), Mockito.any());
 
-        UserServiceImpl svc = buildService(redis, mail);
+        UserServiceImpl svc = buildService(store, mail, outbox);
 
         Assertions.assertThrows(BusinessException.class, () -> svc.sendCode(email));
+        Mockito.verify(outbox, Mockito.never()).enqueue(Mockito.any(), Mockito.any());
     }
 
     @Test
-    @DisplayName("sendCode should store frequency key, call mail service, and cache verification code")
-    public void testSendCodeSuccess() throws Exception {
+    @DisplayName("sendCode should store the code atomically and return once the mail is queued")
+    public void testSendCodeSuccess() {
         String email = "user@example.com";
-        RedisCache redis = Mockito.mock(RedisCache.class);
+        RegistrationStore store = Mockito.mock(RegistrationStore.class);
         MailService mail = Mockito.mock(MailService.class);
+        MailOutbox outbox = Mockito.mock(MailOutbox.class);
+        MailJob job = new MailJob(email, "subject", "email_verification", Map.of("code", "123456"));
 
-        // No frequency key present
-        Mockito.when(redis.getCacheObject("emailSendFreq:" + email)).thenReturn(null);
-        Mockito.when(mail.sendVerificationCode(email)).thenReturn("123456");
+        Mockito.when(mail.generateCode(6)).thenReturn("123456");
+        Mockito.when(mail.verificationCodeMail(email, "123456")).thenReturn(job);
+        Mockito.when(outbox.enqueue(Mockito.eq(job), Mockito.any())).thenReturn("job-1");
 
-        UserServiceImpl svc = buildService(redis, mail);
+        UserServiceImpl svc = buildService(store, mail, outbox);
 
+        GeneralResponseResult result = svc.sendCode(email);
+
+        // Verify code stored with 5 minutes validity and 1 minute resend cooldown
+        Mockito.verify(store).issueCode(email, null, "123456",
+                Duration.ofMinutes(5), Duration.ofMinutes(1), Duration.ofMinutes(45));
+        Assertions.assertEquals(Map.of("mailJobId", "job-1"), result.getData());
+    }
+
+    @Test
+    @DisplayName("sendCode should release the cooldown when the mail finally cannot be sent")
+    public void testSendCodeMailFailure() {
+        String email = "user@example.com";
+        RegistrationStore store = Mockito.mock(RegistrationStore.class);
+        MailService mail = Mockito.mock(MailService.class);
+        MailOutbox outbox = Mockito.mock(MailOutbox.class);
+
+        Mockito.when(mail.generateCode(6)).thenReturn("123456");
+        Mockito.when(outbox.enqueue(Mockito.any(), Mockito.any())).thenReturn("job-1");
+
+        UserServiceImpl svc = buildService(store, mail, outbox);
         svc.sendCode(email);
 
-        // Verify frequency key stored
-        Mockito.verify(redis).setCacheObject(Mockito.eq("emailSendFreq:" + email), Mockito.any(LocalDateTime.class), Mockito.eq(1), Mockito.eq(TimeUnit.MINUTES));
-        // Verify verification code stored
-        Mockito.verify(redis).setCacheObject("verifyCode:" + email, "123456", 5, TimeUnit.MINUTES);
-        // Verify mail called
-        Mockito.verify(mail).sendVerificationCode(email);
+        ArgumentCaptor<Runnable> onFailure = ArgumentCaptor.forClass(Runnable.class);
+        Mockito.verify(outbox).enqueue(Mockito.any(), onFailure.capture());
+        Mockito.verify(store, Mockito.never()).releaseCooldown(email);
+
+        onFailure.getValue().run();
+        Mockito.verify(store).releaseCooldown(email);
     }
-} 
\ No newline at end of file
+}
@@ -0,0 +1,55 @@
+package utils;
+
+import com.fitness_centre.utils.GeoGrid;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Tests for GeoGrid nearest-first ordering and radius cut-off.
+ */
+public class GeoGridTest {
+
+    @Test
+    @DisplayName("distanceKm should match a known city pair")
+    public void testDistance() {
+        // 伦敦到巴黎约 344 km
+        Assertions.assertEquals(344, GeoGrid.distanceKm(51.5072, -0.1276, 48.8566, 2.3522), 2);
+    }
+
+    @Test
+    @DisplayName("nearestFirst should return the same order as sorting every point by distance")
+    public void testNearestFirst() {
+        GeoGrid<Integer> grid = new GeoGrid<>(0.05);
+        List<double[]> points = new ArrayList<>();
+        Random random = new Random(7);
+        for (int i = 0; i < 500; i++) {
+            double latitude = 51 + random.nextDouble();
+            double longitude = -1 + random.nextDouble() * 2;
+            points.add(new double[]{latitude, longitude});
+            grid.add(i, latitude, longitude);
+        }
+
+        List<Integer> expected = new ArrayList<>();
+        for (int i = 0; i < points.size(); i++) {
+            if (GeoGrid.distanceKm(51.5, 0, points.get(i)[0], points.get(i)[1]) <= 15) {
+                expected.add(i);
+            }
+        }
+        expected.sort(Comparator.comparingDouble(i -> GeoGrid.distanceKm(51.5, 0, points.get(i)[0], points.get(i)[1])));
+
+        List<Integer> actual = new ArrayList<>();
+        grid.nearestFirst(51.5, 0, 15).forEachRemaining(hit -> actual.add(hit.value()));
+        Assertions.assertEquals(expected, actual);
+
+        List<Integer> all = new ArrayList<>();
+        grid.nearestFirst(51.5, 0, Double.MAX_VALUE).forEachRemaining(hit -> all.add(hit.value()));
+        Assertions.assertEquals(500, all.size());
+        Assertions.assertEquals(expected, all.subList(0, expected.size()));
+    }
+}
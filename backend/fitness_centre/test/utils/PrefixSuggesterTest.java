@@ -0,0 +1,44 @@
+package utils;
+
+import com.fitness_centre.utils.PrefixSuggester;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+/**
+ * Tests for PrefixSuggester ordering, incremental updates and bulk load.
+ */
+public class PrefixSuggesterTest {
+
+    @Test
+    @DisplayName("complete should return distinct documents in key order")
+    public void testComplete() {
+        PrefixSuggester suggester = new PrefixSuggester();
+        suggester.load(List.of("sam smith", "anna", "samuel"));
+
+        Assertions.assertEquals(List.of(0, 2), suggester.complete("sam", 10, document -> true));
+        Assertions.assertEquals(List.of(0), suggester.complete("smi", 10, document -> true));
+        Assertions.assertEquals(List.of(2), suggester.complete("sam", 10, document -> document != 0));
+        Assertions.assertEquals(List.of(), suggester.complete("zed", 10, document -> true));
+    }
+
+    @Test
+    @DisplayName("add and remove should keep the array sorted")
+    public void testAddRemove() {
+        PrefixSuggester suggester = new PrefixSuggester();
+        for (int i = 0; i < 40; i++) {
+            suggester.add(i, "coach " + (char) ('z' - i % 26) + i);
+        }
+        Assertions.assertEquals(80, suggester.size());
+        Assertions.assertEquals(List.of(25), suggester.complete("a2", 10, document -> true));
+
+        suggester.remove(25, "coach a25");
+        suggester.add(25, "bea");
+
+        Assertions.assertEquals(List.of(), suggester.complete("a2", 10, document -> true));
+        Assertions.assertEquals(List.of(25), suggester.complete("be", 10, document -> true));
+        Assertions.assertEquals(40, suggester.complete("coach", 100, document -> document != 25).size() + 1);
+    }
+}
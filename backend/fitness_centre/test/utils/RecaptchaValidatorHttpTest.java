@@ -0,0 +1,112 @@
+package utils;
+
+import com.fitness_centre.config.RecaptchaConfig;
+import com.fitness_centre.utils.CircuitBreaker;
+import com.fitness_centre.utils.RecaptchaValidator;
+import com.sun.net.httpserver.HttpServer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Tests for RecaptchaValidator against a local stub of the assessment endpoint.
+ */
+public class RecaptchaValidatorHttpTest {
+
+    private static final String PASS_BODY =
+            "{\"tokenProperties\":{\"valid\":true,\"action\":\"login\"},\"riskAnalysis\":{\"score\":0.9}}";
+
+    private HttpServer server;
+
+    private final AtomicInteger hits = new AtomicInteger();
+
+    private volatile long delayMs;
+
+    private volatile int status = 200;
+
+    @BeforeEach
+    public void setUp() throws Exception {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/assessments", exchange -> {
+            hits.incrementAndGet();
+            exchange.getRequestBody().readAllBytes();
+            try {
+                Thread.sleep(delayMs);
+            } catch (InterruptedException ignored) {
+                Thread.currentThread().interrupt();
+            }
+            byte[] body = PASS_BODY.getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().add("Content-Type", "application/json");
+            exchange.sendResponseHeaders(status, body.length);
+            try (OutputStream os = exchange.getResponseBody()) {
+                os.write(body);
+            }
+        });
+        server.start();
+    }
+
+    @AfterEach
+    public void tearDown() {
+        server.stop(0);
+    }
+
+    private RecaptchaValidator createValidator(Duration readTimeout) {
+        RecaptchaValidator validator = new RecaptchaValidator();
+        ReflectionTestUtils.setField(validator, "restTemplate",
+                RecaptchaConfig.buildRestTemplate(Duration.ofSeconds(1), readTimeout));
+        ReflectionTestUtils.setField(validator, "secretKey", "dummySiteKey");
+        ReflectionTestUtils.setField(validator, "API_KEY", "dummyApiKey");
+        ReflectionTestUtils.setField(validator, "verifyUrl",
+                "http://127.0.0.1:" + server.getAddress().getPort() + "/assessments");
+        return validator;
+    }
+
+    @Test
+    @DisplayName("verify should pass over HTTP and record latency")
+    public void testVerifyOverHttp() {
+        RecaptchaValidator validator = createValidator(Duration.ofSeconds(2));
+
+        Assertions.assertTrue(validator.verify("token", 0.5, "login"));
+        Assertions.assertTrue(validator.verify("token", 0.5, "login"));
+
+        Assertions.assertEquals(2L, validator.getMetrics().get("calls"));
+        Assertions.assertEquals(0L, validator.getMetrics().get("failures"));
+    }
+
+    @Test
+    @DisplayName("slow endpoint should hit the read timeout and return false")
+    public void testReadTimeout() {
+        delayMs = 1000;
+        RecaptchaValidator validator = createValidator(Duration.ofMillis(200));
+
+        long start = System.nanoTime();
+        Assertions.assertFalse(validator.verify("token", 0.5, "login"));
+        Assertions.assertTrue(Duration.ofNanos(System.nanoTime() - start).toMillis() < 900);
+        Assertions.assertEquals(1L, validator.getMetrics().get("failures"));
+    }
+
+    @Test
+    @DisplayName("repeated server errors should open the circuit and stop calling the endpoint")
+    public void testCircuitOpens() {
+        status = 503;
+        RecaptchaValidator validator = createValidator(Duration.ofSeconds(2));
+        ReflectionTestUtils.setField(validator, "circuitBreaker", new CircuitBreaker(3, Duration.ofMinutes(1)));
+
+        for (int i = 0; i < 5; i++) {
+            Assertions.assertFalse(validator.verify("token", 0.5, "login"));
+        }
+
+        Assertions.assertEquals(3, hits.get());
+        Assertions.assertEquals(CircuitBreaker.State.OPEN, validator.getCircuitState());
+        Assertions.assertEquals(2L, validator.getMetrics().get("rejected"));
+    }
+}
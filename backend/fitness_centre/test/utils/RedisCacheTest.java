@@ -10,10 +10,17 @@ import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.Mockito;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.redis.core.Cursor;
 import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.ScanOptions;
+import org.springframework.data.redis.core.SessionCallback;
 import org.springframework.data.redis.core.ValueOperations;
 import org.springframework.test.util.ReflectionTestUtils;
 
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
 import java.util.concurrent.TimeUnit;
 
 /**
@@ -68,4 +75,54 @@ public class RedisCacheTest {
         Mockito.verify(redisTemplate).expire(key, timeout, TimeUnit.SECONDS);
         Assertions.assertTrue(result);
     }
-} 
\ No newline at end of file
+
+    @Test
+    @DisplayName("getMultiCacheObject should issue a single multiGet and skip empty input")
+    public void testGetMultiCacheObject() {
+        List<String> keys = List.of("a", "b");
+        Mockito.when(redisTemplate.opsForValue()).thenReturn(valueOperations);
+        Mockito.when(valueOperations.multiGet(keys)).thenReturn(java.util.Arrays.asList("1", null));
+
+        List<String> values = redisCache.getMultiCacheObject(keys);
+
+        Assertions.assertEquals(java.util.Arrays.asList("1", null), values);
+        Assertions.assertTrue(redisCache.getMultiCacheObject(List.of()).isEmpty());
+        Mockito.verify(valueOperations, Mockito.times(1)).multiGet(Mockito.anyCollection());
+    }
+
+    @Test
+    @DisplayName("setMultiCacheObject should write every entry with TTL inside one pipeline")
+    @SuppressWarnings("unchecked")
+    public void testSetMultiCacheObject() {
+        Mockito.when(redisTemplate.executePipelined(Mockito.any(SessionCallback.class))).thenAnswer(inv -> {
+            SessionCallback<Object> callback = inv.getArgument(0);
+            RedisTemplate<String, Object> ops = Mockito.mock(RedisTemplate.class);
+            Mockito.when(ops.opsForValue()).thenReturn(valueOperations);
+            callback.execute(ops);
+            return List.of();
+        });
+
+        redisCache.setMultiCacheObject(Map.of("a", 1, "b", 2), 30, TimeUnit.SECONDS);
+
+        Mockito.verify(redisTemplate, Mockito.times(1)).executePipelined(Mockito.any(SessionCallback.class));
+        Mockito.verify(valueOperations).set("a", 1, 30, TimeUnit.SECONDS);
+        Mockito.verify(valueOperations).set("b", 2, 30, TimeUnit.SECONDS);
+    }
+
+    @Test
+    @DisplayName("scan should stream matching keys in batches and close the cursor")
+    @SuppressWarnings("unchecked")
+    public void testScan() {
+        Cursor<String> cursor = Mockito.mock(Cursor.class);
+        Iterator<String> it = List.of("login:1", "login:2", "login:3").iterator();
+        Mockito.when(cursor.hasNext()).thenAnswer(inv -> it.hasNext());
+        Mockito.when(cursor.next()).thenAnswer(inv -> it.next());
+        Mockito.when(redisTemplate.scan(Mockito.any(ScanOptions.class))).thenReturn(cursor);
+
+        List<List<String>> batches = new ArrayList<>();
+        redisCache.scan("login:*", 2, batches::add);
+
+        Assertions.assertEquals(List.of(List.of("login:1", "login:2"), List.of("login:3")), batches);
+        Mockito.verify(cursor).close();
+    }
+}
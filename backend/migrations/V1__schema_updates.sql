@@ -0,0 +1,59 @@
+/*
+ Schema changes since fitness_centre.sql. Run once against an existing
+ fitness_centre database.
+*/
+
+-- ----------------------------
+-- Coach ratings
+-- ----------------------------
+/*
+ Members rate a finished session 1-5. coach_info keeps the running sum and
+ count next to the existing average, so a new rating is one UPDATE and the
+ reconcile job only has to compare them against training_history.
+
+ The aggregates add to rating_sum and rating_count, so both must start at 0
+ rather than NULL.
+*/
+
+ALTER TABLE `training_history`
+  ADD COLUMN `rating` tinyint NULL DEFAULT NULL AFTER `feedback`;
+
+ALTER TABLE `coach_info`
+  ADD COLUMN `rating_sum` bigint NOT NULL DEFAULT 0 AFTER `rating`,
+  ADD COLUMN `rating_count` int NOT NULL DEFAULT 0 AFTER `rating_sum`;
+
+-- 旧的 rating 没有评分记录支撑, 清空后由会员评分重新累计
+UPDATE `coach_info` SET `rating` = NULL WHERE `rating_count` = 0;
+
+-- ----------------------------
+-- Weekly member progress
+-- ----------------------------
+/*
+ One row per member, week (Monday), dimension and item. dimension is
+ 'session' (item_id 0), 'tag' (tag id) or 'coach' (coach id). Recording a
+ session upserts on the primary key; MemberProgressBackfill rebuilds the
+ table from training_history at startup and every night.
+*/
+CREATE TABLE `member_progress` (
+  `member_id` bigint NOT NULL,
+  `week_start` date NOT NULL,
+  `dimension` varchar(16) NOT NULL,
+  `item_id` bigint NOT NULL,
+  `count` int NOT NULL,
+  PRIMARY KEY (`member_id`, `week_start`, `dimension`, `item_id`)
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COLLATE=utf8mb4_0900_ai_ci;
+
+-- ----------------------------
+-- Training feedback search
+-- ----------------------------
+/*
+ Full-text index over the coach's feedback, used by the member history
+ search. The ngram parser splits Chinese and English text alike.
+
+ Keep the server's ngram_token_size at its default of 2. The search turns
+ each word into a phrase of bigrams, so with a larger token size any word
+ shorter than it would never match. Changing it also needs this index
+ rebuilt.
+*/
+ALTER TABLE `training_history`
+  ADD FULLTEXT INDEX `ft_feedback` (`feedback`) WITH PARSER ngram;